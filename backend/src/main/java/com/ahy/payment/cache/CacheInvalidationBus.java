@@ -0,0 +1,17 @@
+package com.ahy.payment.cache;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Carries "transaction X changed" to every node's read cache. The in-process implementation only
+ * reaches the local node; a multi-node deployment plugs in one backed by its message broker
+ * (Redis pub/sub, Postgres LISTEN/NOTIFY, ...) and selects it with {@code payments.cache.invalidation}.
+ */
+public interface CacheInvalidationBus {
+
+    // Delivered to every subscriber, including the ones on this node
+    void publish(UUID transactionId);
+
+    void subscribe(Consumer<UUID> listener);
+}
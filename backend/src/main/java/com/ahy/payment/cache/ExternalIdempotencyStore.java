@@ -0,0 +1,36 @@
+package com.ahy.payment.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * No node-local state: every request is resolved against the shared store (the unique
+ * idempotency_key index in the database). Use when several nodes serve the same clients
+ * and a local cache would only add memory without improving the hit rate.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.idempotency.store", havingValue = "external")
+public class ExternalIdempotencyStore implements IdempotencyStore {
+
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public UUID computeIfAbsent(String idempotencyKey, Supplier<UUID> loader) {
+        misses.increment();
+        return loader.get();
+    }
+
+    @Override
+    public void invalidate(String idempotencyKey) {
+        // nothing cached locally
+    }
+
+    @Override
+    public IdempotencyCacheStats stats() {
+        return new IdempotencyCacheStats(0, 0, misses.sum(), 0, 0);
+    }
+}
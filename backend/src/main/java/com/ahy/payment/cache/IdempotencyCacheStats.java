@@ -0,0 +1,14 @@
+package com.ahy.payment.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IdempotencyCacheStats {
+    private long hits;          // answered from a completed cached result
+    private long inFlightJoins; // merged into a request already running for the same key
+    private long misses;        // loader invoked
+    private long evictions;     // removed by size or TTL
+    private long size;          // current entry count (estimate)
+}
@@ -0,0 +1,29 @@
+package com.ahy.payment.cache;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Answers repeated authorize requests for the same idempotency key with the id of the transaction the
+ * key created. Only the id is kept, never the entity: the caller reads the row again, so a replay after
+ * a capture or refund sees the current status, and nothing a caller does to its copy reaches another.
+ * Implementations decide whether results are kept locally or always resolved by the shared store (the database).
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Return the transaction id already known for this key, or run the loader to produce it.
+     * Concurrent callers with the same key must observe a single loader invocation.
+     * @param idempotencyKey client supplied key
+     * @param loader resolves the transaction (lookup, gateway call, insert) and returns its id
+     * @return id of the transaction for the key
+     */
+    UUID computeIfAbsent(String idempotencyKey, Supplier<UUID> loader);
+
+    /**
+     * Drop any locally cached result for the key.
+     */
+    void invalidate(String idempotencyKey);
+
+    IdempotencyCacheStats stats();
+}
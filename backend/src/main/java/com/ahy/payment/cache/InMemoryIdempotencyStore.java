@@ -0,0 +1,101 @@
+package com.ahy.payment.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Node-local idempotency cache of key to transaction id, bounded by size and TTL.
+ * Entries are futures so that concurrent requests for the same key wait on the first one
+ * instead of each running a lookup, a gateway call and an insert.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final AsyncCache<String, UUID> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder inFlightJoins = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public InMemoryIdempotencyStore(
+            @Value("${payments.idempotency.cache.maxSize:100000}") long maxSize,
+            @Value("${payments.idempotency.cache.ttl:PT10M}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .evictionListener((key, value, cause) -> evictions.increment())
+                .buildAsync();
+    }
+
+    @Override
+    public UUID computeIfAbsent(String idempotencyKey, Supplier<UUID> loader) {
+        CompletableFuture<UUID> mine = new CompletableFuture<>();
+        CompletableFuture<UUID> existing = cache.asMap().putIfAbsent(idempotencyKey, mine);
+
+        if (existing != null) {
+            if (existing.isDone()) {
+                hits.increment();
+            } else {
+                inFlightJoins.increment();
+            }
+            return await(existing);
+        }
+
+        misses.increment();
+        try {
+            UUID result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            // never cache failures: the next retry must be allowed to run again
+            cache.asMap().remove(idempotencyKey, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void invalidate(String idempotencyKey) {
+        cache.synchronous().invalidate(idempotencyKey);
+    }
+
+    @Override
+    public IdempotencyCacheStats stats() {
+        return new IdempotencyCacheStats(
+                hits.sum(),
+                inFlightJoins.sum(),
+                misses.sum(),
+                evictions.sum(),
+                cache.synchronous().estimatedSize()
+        );
+    }
+
+    // Visible for tests: run pending size/TTL maintenance on the calling thread
+    void cleanUp() {
+        cache.synchronous().cleanUp();
+    }
+
+    private static UUID await(CompletableFuture<UUID> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ahy.payment.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers invalidations synchronously to subscribers in this JVM. Enough for a single node and for tests.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.cache.invalidation", havingValue = "in-process", matchIfMissing = true)
+public class InProcessCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(UUID transactionId) {
+        for (Consumer<UUID> listener : listeners) {
+            listener.accept(transactionId);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<UUID> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ahy.payment.cache;
+
+import com.ahy.payment.repository.ProcessedWebhookEventRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers which Stripe event ids were already accepted, so redeliveries are acknowledged without
+ * touching the transaction table. Recent ids live in a bounded in-memory window; the
+ * processed_webhook_event table covers older ids and ids recorded by other instances.
+ * <p>
+ * {@link #record} is insert-first, like the idempotency reservation: the primary key decides which
+ * delivery owns an event id, and {@link #forget} releases it if that delivery could not be handled.
+ */
+@Component
+public class ProcessedWebhookEventStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedWebhookEventStore.class);
+
+    private final ProcessedWebhookEventRepository repository;
+    private final Cache<String, Boolean> recent;
+    private final Duration retention;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+
+    public ProcessedWebhookEventStore(ProcessedWebhookEventRepository repository,
+                                      @Value("${payments.webhooks.dedup.maxSize:100000}") long maxSize,
+                                      @Value("${payments.webhooks.dedup.window:PT1H}") Duration window,
+                                      @Value("${payments.webhooks.dedup.retention:P3D}") Duration retention) {
+        this.repository = repository;
+        this.retention = retention;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /*
+     * Returns true for the first delivery of an event, false for a redelivery. A redelivery inside the
+     * window costs one map lookup; otherwise this is a single INSERT, and the primary key decides.
+     * A null id (not a Stripe event) is always treated as a first delivery.
+     */
+    public boolean record(String eventId) {
+        if (eventId == null) {
+            return true;
+        }
+        if (recent.getIfPresent(eventId) != null) {
+            memoryHits.increment();
+            return false;
+        }
+        try {
+            repository.insert(eventId, Instant.now());
+        } catch (DataIntegrityViolationException duplicate) {
+            recent.put(eventId, Boolean.TRUE);
+            tableHits.increment();
+            return false;
+        }
+        recent.put(eventId, Boolean.TRUE);
+        recorded.increment();
+        return true;
+    }
+
+    /*
+     * Releases an id recorded by a delivery that then failed, so Stripe's retry is processed. When the
+     * id was recorded in the caller's rolled-back transaction the row is already gone and only the
+     * in-memory window needs clearing; the delete covers ids recorded outside one.
+     */
+    public void forget(String eventId) {
+        if (eventId == null) {
+            return;
+        }
+        recent.invalidate(eventId);
+        repository.deleteById(eventId);
+    }
+
+    public WebhookDedupStats stats() {
+        return new WebhookDedupStats(memoryHits.sum(), tableHits.sum(), recorded.sum(), recent.estimatedSize());
+    }
+
+    @Scheduled(fixedDelayString = "${payments.webhooks.dedup.purgeInterval:PT1H}",
+            initialDelayString = "${payments.webhooks.dedup.purgeInterval:PT1H}")
+    public void purgeExpired() {
+        int purged = repository.deleteProcessedBefore(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} processed webhook event ids older than {}", purged, retention);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ahy.payment.cache;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of the {@link TransactionResponse} served by GET /payments/{id}.
+ * <p>
+ * Every status change calls {@link #invalidate}, which goes through the {@link CacheInvalidationBus}
+ * so other nodes drop their copy as well. Inside a transaction the message is sent after commit:
+ * sent earlier, a concurrent read could reload and cache the row as it was before the commit.
+ * The TTL bounds staleness for changes that bypass the service (manual SQL, a lost message).
+ * <p>
+ * Entries are futures, so an invalidation never waits for a load in progress: it drops the pending entry
+ * and the load's (possibly stale) result is returned to its caller but not cached. A blocking cache would
+ * make the invalidating thread, still holding its JDBC connection in afterCommit, wait for a load that is
+ * itself waiting for a connection; under load that drained the pool.
+ */
+@Component
+public class TransactionViewCache {
+
+    private final AsyncCache<UUID, TransactionResponse> cache;
+    private final CacheInvalidationBus bus;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TransactionViewCache(CacheInvalidationBus bus,
+                                @Value("${payments.cache.transactions.maxSize:10000}") long maxSize,
+                                @Value("${payments.cache.transactions.ttl:PT30S}") Duration ttl) {
+        this.bus = bus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .evictionListener((key, value, cause) -> evictions.increment())
+                .buildAsync();
+        bus.subscribe(this::evictLocal);
+    }
+
+    // Returns null (and caches nothing) when the loader finds no transaction
+    public TransactionResponse get(UUID id, Function<UUID, TransactionResponse> loader) {
+        CompletableFuture<TransactionResponse> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            hits.increment();
+            return cached.join();
+        }
+        misses.increment();
+        // the load runs on this thread; concurrent readers of the same id wait for its future
+        CompletableFuture<TransactionResponse> loading = new CompletableFuture<>();
+        CompletableFuture<TransactionResponse> prior = cache.asMap().putIfAbsent(id, loading);
+        if (prior != null) {
+            return prior.join();
+        }
+        try {
+            TransactionResponse loaded = loader.apply(id);
+            loading.complete(loaded); // a null result removes the entry
+            return loaded;
+        } catch (RuntimeException ex) {
+            loading.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    public void invalidate(UUID id) {
+        if (id == null) {
+            return; // never persisted, so never cached
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bus.publish(id);
+                }
+            });
+        } else {
+            bus.publish(id);
+        }
+    }
+
+    public TransactionViewCacheStats stats() {
+        return new TransactionViewCacheStats(hits.sum(), misses.sum(), invalidations.sum(), evictions.sum(),
+                cache.synchronous().estimatedSize());
+    }
+
+    private void evictLocal(UUID id) {
+        invalidations.increment();
+        cache.synchronous().invalidate(id);
+    }
+}
@@ -0,0 +1,14 @@
+package com.ahy.payment.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TransactionViewCacheStats {
+    private long hits;
+    private long misses;        // loaded from the database
+    private long invalidations; // received from the invalidation bus
+    private long evictions;     // removed by size or TTL
+    private long size;          // current entry count (estimate)
+}
@@ -0,0 +1,17 @@
+package com.ahy.payment.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class WebhookDedupStats {
+    private long memoryHits; // duplicates answered from the in-memory window
+    private long tableHits;  // duplicates found in processed_webhook_event (older, or seen by another instance)
+    private long recorded;   // first deliveries recorded
+    private long size;       // ids in the in-memory window (estimate)
+
+    public long getDuplicates() {
+        return memoryHits + tableHits;
+    }
+}
@@ -0,0 +1,164 @@
+package com.ahy.payment.config;
+
+import com.ahy.payment.cache.IdempotencyCacheStats;
+import com.ahy.payment.cache.IdempotencyStore;
+import com.ahy.payment.cache.ProcessedWebhookEventStore;
+import com.ahy.payment.cache.TransactionViewCache;
+import com.ahy.payment.cache.TransactionViewCacheStats;
+import com.ahy.payment.cache.WebhookDedupStats;
+import com.ahy.payment.gateway.http.PooledStripeHttpClient;
+import com.ahy.payment.gateway.http.StripeHttpClientStats;
+import com.ahy.payment.gateway.raw.RawResponseStats;
+import com.ahy.payment.gateway.raw.RawResponseStore;
+import com.ahy.payment.gateway.resilience.CircuitBreaker;
+import com.ahy.payment.gateway.resilience.GatewayResilienceStats;
+import com.ahy.payment.gateway.resilience.ResilientPaymentGateway;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.observability.PaymentMetrics;
+import com.ahy.payment.service.PaymentStateMachine;
+import com.ahy.payment.service.WebhookInbox;
+import com.ahy.payment.service.WebhookQueueStats;
+import io.micrometer.common.KeyValues;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the counts the caches, stores, gateway and webhook queue keep for themselves as function
+ * counters and gauges, read from their {@code stats()} when the metrics are. Registered before
+ * initialization, while the bean is still the component itself and not the observing proxy around it.
+ */
+class ComponentStatsMeters implements BeanPostProcessor {
+
+    private final ObjectProvider<PaymentMetrics> metrics;
+
+    ComponentStatsMeters(ObjectProvider<PaymentMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof IdempotencyStore store) {
+            idempotency(store);
+        } else if (bean instanceof TransactionViewCache cache) {
+            viewCache(cache);
+        } else if (bean instanceof ProcessedWebhookEventStore store) {
+            webhookDedup(store);
+        } else if (bean instanceof WebhookInbox inbox) {
+            webhookQueue(inbox);
+        } else if (bean instanceof RawResponseStore store) {
+            rawResponses(store);
+        } else if (bean instanceof ResilientPaymentGateway gateway) {
+            resilience(gateway);
+        } else if (bean instanceof PooledStripeHttpClient client) {
+            stripeHttp(client);
+        } else if (bean instanceof PaymentStateMachine stateMachine) {
+            transitions(stateMachine);
+        }
+        return bean;
+    }
+
+    private void idempotency(IdempotencyStore store) {
+        Supplier<IdempotencyCacheStats> stats = store::stats;
+        counter("payments.idempotency.lookups", KeyValues.of("result", "hit"), stats, IdempotencyCacheStats::getHits);
+        counter("payments.idempotency.lookups", KeyValues.of("result", "joined"), stats, IdempotencyCacheStats::getInFlightJoins);
+        counter("payments.idempotency.lookups", KeyValues.of("result", "miss"), stats, IdempotencyCacheStats::getMisses);
+        counter("payments.idempotency.evictions", KeyValues.empty(), stats, IdempotencyCacheStats::getEvictions);
+        gauge("payments.idempotency.size", KeyValues.empty(), stats, IdempotencyCacheStats::getSize);
+    }
+
+    private void viewCache(TransactionViewCache cache) {
+        Supplier<TransactionViewCacheStats> stats = cache::stats;
+        counter("payments.views.lookups", KeyValues.of("result", "hit"), stats, TransactionViewCacheStats::getHits);
+        counter("payments.views.lookups", KeyValues.of("result", "miss"), stats, TransactionViewCacheStats::getMisses);
+        counter("payments.views.invalidations", KeyValues.empty(), stats, TransactionViewCacheStats::getInvalidations);
+        counter("payments.views.evictions", KeyValues.empty(), stats, TransactionViewCacheStats::getEvictions);
+        gauge("payments.views.size", KeyValues.empty(), stats, TransactionViewCacheStats::getSize);
+    }
+
+    private void webhookDedup(ProcessedWebhookEventStore store) {
+        Supplier<WebhookDedupStats> stats = store::stats;
+        counter("payments.webhooks.dedup", KeyValues.of("result", "memory_hit"), stats, WebhookDedupStats::getMemoryHits);
+        counter("payments.webhooks.dedup", KeyValues.of("result", "table_hit"), stats, WebhookDedupStats::getTableHits);
+        counter("payments.webhooks.dedup", KeyValues.of("result", "recorded"), stats, WebhookDedupStats::getRecorded);
+        gauge("payments.webhooks.dedup.size", KeyValues.empty(), stats, WebhookDedupStats::getSize);
+    }
+
+    private void webhookQueue(WebhookInbox inbox) {
+        Supplier<WebhookQueueStats> stats = inbox::stats;
+        counter("payments.webhooks.queue.events", KeyValues.of("result", "enqueued"), stats, WebhookQueueStats::getEnqueued);
+        counter("payments.webhooks.queue.events", KeyValues.of("result", "rejected"), stats, WebhookQueueStats::getRejected);
+        counter("payments.webhooks.queue.events", KeyValues.of("result", "processed"), stats, WebhookQueueStats::getProcessed);
+        counter("payments.webhooks.queue.events", KeyValues.of("result", "retried"), stats, WebhookQueueStats::getRetried);
+        counter("payments.webhooks.queue.events", KeyValues.of("result", "failed"), stats, WebhookQueueStats::getFailed);
+        gauge("payments.webhooks.queue.depth", KeyValues.empty(), stats, WebhookQueueStats::getDepth);
+        gauge("payments.webhooks.queue.batch", KeyValues.empty(), stats, WebhookQueueStats::getLastBatchSize);
+        gauge("payments.webhooks.queue.lag.millis", KeyValues.empty(), stats, WebhookQueueStats::getLastLagMillis);
+    }
+
+    private void rawResponses(RawResponseStore store) {
+        Supplier<RawResponseStats> stats = store::stats;
+        counter("payments.gateway.responses", KeyValues.of("result", "recorded"), stats, RawResponseStats::getRecorded);
+        counter("payments.gateway.responses", KeyValues.of("result", "sampled_out"), stats, RawResponseStats::getSampledOut);
+        counter("payments.gateway.responses", KeyValues.of("result", "failed"), stats, RawResponseStats::getFailed);
+        counter("payments.gateway.responses.truncated", KeyValues.empty(), stats, RawResponseStats::getTruncated);
+        counter("payments.gateway.responses.bytes", KeyValues.of("form", "raw"), stats, RawResponseStats::getRawBytes);
+        counter("payments.gateway.responses.bytes", KeyValues.of("form", "stored"), stats, RawResponseStats::getStoredBytes);
+    }
+
+    private void resilience(ResilientPaymentGateway gateway) {
+        Supplier<GatewayResilienceStats> stats = gateway::stats;
+        counter("payments.gateway.calls", KeyValues.empty(), stats, GatewayResilienceStats::getCalls);
+        counter("payments.gateway.calls.failed", KeyValues.empty(), stats, GatewayResilienceStats::getFailures);
+        counter("payments.gateway.calls.timeouts", KeyValues.empty(), stats, GatewayResilienceStats::getTimeouts);
+        counter("payments.gateway.calls.rejected", KeyValues.of("reason", "bulkhead"), stats, GatewayResilienceStats::getBulkheadRejected);
+        counter("payments.gateway.calls.rejected", KeyValues.of("reason", "circuit"), stats, GatewayResilienceStats::getCircuitRejected);
+        counter("payments.gateway.retries", KeyValues.empty(), stats, GatewayResilienceStats::getRetries);
+        counter("payments.gateway.hedges", KeyValues.empty(), stats, GatewayResilienceStats::getHedges);
+        counter("payments.gateway.circuit.opened", KeyValues.empty(), stats, GatewayResilienceStats::getCircuitOpened);
+        gauge("payments.gateway.inflight", KeyValues.empty(), stats, GatewayResilienceStats::getInFlight);
+        // 1 for the state the circuit is in, 0 for the others
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            gauge("payments.gateway.circuit.state", KeyValues.of("state", state.name()), stats,
+                    s -> state.name().equals(s.getCircuitState()) ? 1 : 0);
+        }
+    }
+
+    private void stripeHttp(PooledStripeHttpClient client) {
+        Supplier<StripeHttpClientStats> stats = client::stats;
+        counter("payments.stripe.http.requests", KeyValues.of("protocol", "all"), stats, StripeHttpClientStats::getRequests);
+        counter("payments.stripe.http.requests", KeyValues.of("protocol", "http2"), stats, StripeHttpClientStats::getHttp2Responses);
+        counter("payments.stripe.http.handshakes", KeyValues.empty(), stats, StripeHttpClientStats::getHandshakes);
+        counter("payments.stripe.http.route.waits", KeyValues.empty(), stats, StripeHttpClientStats::getRouteWaits);
+        counter("payments.stripe.http.route.rejected", KeyValues.empty(), stats, StripeHttpClientStats::getRouteRejected);
+        gauge("payments.stripe.http.inflight", KeyValues.empty(), stats, StripeHttpClientStats::getInFlight);
+        gauge("payments.stripe.http.saturation", KeyValues.empty(), stats, StripeHttpClientStats::getSaturation);
+    }
+
+    /*
+     * Applied changes per (from, to) pair the transition table allows; rejected ones per current status
+     * only, so the refused pairs (most of the 64) do not each become a meter.
+     */
+    private void transitions(PaymentStateMachine stateMachine) {
+        for (PaymentStatus from : PaymentStatus.values()) {
+            for (PaymentStatus to : from.nextStatuses()) {
+                counter("payments.transitions", KeyValues.of("from", from.name(), "to", to.name()), stateMachine::stats,
+                        s -> s.getApplied().getOrDefault(from, Map.of()).getOrDefault(to, 0L));
+            }
+            counter("payments.transitions.rejected", KeyValues.of("from", from.name()), stateMachine::stats,
+                    s -> s.getRejected().getOrDefault(from, Map.of()).values().stream().mapToLong(Long::longValue).sum());
+        }
+    }
+
+    private <S> void counter(String name, KeyValues tags, Supplier<S> stats, ToLongFunction<S> count) {
+        metrics.getObject().functionCounter(name, tags, () -> count.applyAsLong(stats.get()));
+    }
+
+    private <S> void gauge(String name, KeyValues tags, Supplier<S> stats, ToDoubleFunction<S> value) {
+        metrics.getObject().gauge(name, tags, () -> value.applyAsDouble(stats.get()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.ahy.payment.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution mode for blocking PSP I/O.
+ *
+ * The switch is Spring Boot's {@code spring.threads.virtual.enabled}: on a Java 21+ runtime Boot moves
+ * Tomcat request handling onto virtual threads, and {@link #gatewayExecutor} follows the same setting so
+ * fan-out gateway calls run there too. On older runtimes (the build targets Java 17) both fall back to
+ * platform threads.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    /**
+     * Executor for gateway calls made off the request thread (batch fan-out).
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gatewayExecutor(Environment environment,
+                                           @Value("${payments.execution.platformMaxThreads:200}") int platformMaxThreads) {
+        return newExecutor("Gateway executor", environment, platformMaxThreads, "gateway-");
+    }
+
+    /**
+     * Executor the PSP calls themselves run on, so the caller can stop waiting after the operation's
+     * timeout ({@code ResilientPaymentGateway}). Separate from {@link #gatewayExecutor} because batch
+     * fan-out tasks wait on these calls; one pool for both could fill up with waiters. The bulkhead holds
+     * a permit until the call really returns, so one thread per permit is enough.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gatewayCallExecutor(Environment environment,
+                                               @Value("${payments.gateway.resilience.bulkhead.maxConcurrent:64}") int maxConcurrent) {
+        return newExecutor("Gateway call executor", environment, maxConcurrent, "gateway-call-");
+    }
+
+    /**
+     * Executor the "reactive" profile runs its short JDBC transactions on, so request and timer threads never
+     * block on the database. Always platform threads, sized to the connection pool: more threads would
+     * only queue for connections.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @Profile("reactive")
+    public ExecutorService persistenceExecutor(@Value("${payments.reactive.persistence.maxThreads:10}") int maxThreads) {
+        log.info("Persistence executor: platform threads (max {})", maxThreads);
+        return newPlatformExecutor(maxThreads, "persistence-");
+    }
+
+    private static ExecutorService newExecutor(String name, Environment environment, int platformMaxThreads, String threadPrefix) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                log.info("{}: virtual threads", name);
+                return virtual;
+            }
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled=true but the runtime is Java {}; using platform threads",
+                    Runtime.version().feature());
+        }
+
+        log.info("{}: platform threads (max {})", name, platformMaxThreads);
+        return newPlatformExecutor(platformMaxThreads, threadPrefix);
+    }
+
+    static ExecutorService newPlatformExecutor(int maxThreads, String threadPrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxThreads, maxThreads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                namedDaemonThreads(threadPrefix)
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists on Java 21+, so it's looked up reflectively
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.ahy.payment.config;
+
+import com.ahy.payment.observability.MetricsObservationHandler;
+import com.ahy.payment.observability.ObservingBeanPostProcessor;
+import com.ahy.payment.observability.PaymentMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Metrics without Actuator: one {@link ObservationRegistry} feeding {@link PaymentMetrics}, observed by
+ * Spring MVC's own request filter (per endpoint), by {@link ObservingBeanPostProcessor} (services, PSP
+ * gateways, repositories), Hikari pool gauges, and the counts the caches, stores, PSP gateway and webhook
+ * queue keep ({@link ComponentStatsMeters}). The meters are served at GET /internal/metrics.
+ * <p>
+ * {@code payments.observability.enabled=false} leaves everything unobserved; the webhook counters, being
+ * plain counters, still count.
+ */
+@Configuration
+@ConditionalOnProperty(name = "payments.observability.enabled", havingValue = "true", matchIfMissing = true)
+public class ObservabilityConfig {
+
+    @Bean
+    public ObservationRegistry observationRegistry(PaymentMetrics metrics) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new MetricsObservationHandler(metrics));
+        return registry;
+    }
+
+    // static: post-processors are created before the other beans, and must not drag this class along
+    @Bean
+    public static BeanPostProcessor observingBeanPostProcessor(ObjectProvider<ObservationRegistry> registry) {
+        return new ObservingBeanPostProcessor(registry);
+    }
+
+    /**
+     * {@code http.server.requests} per endpoint; the URI tag is the mapping's pattern (/payments/{id}/capture),
+     * set by Spring MVC once the handler is known. First in the chain, so it times the whole request.
+     */
+    @Bean
+    public FilterRegistrationBean<ServerHttpObservationFilter> serverHttpObservationFilter(ObservationRegistry registry) {
+        FilterRegistrationBean<ServerHttpObservationFilter> registration =
+                new FilterRegistrationBean<>(new ServerHttpObservationFilter(registry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    /**
+     * Connection pool gauges, read when the metrics are: connections in use, idle, total, and threads
+     * waiting for one. Waiting threads above zero mean requests are queueing on the pool, not on the database.
+     */
+    @Bean
+    public static BeanPostProcessor hikariPoolGauges(ObjectProvider<PaymentMetrics> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    PaymentMetrics registry = metrics.getObject();
+                    // tagged with the bean name: Hikari names the pool only when it starts
+                    KeyValues tags = KeyValues.of("pool", beanName);
+                    gauge(registry, tags, dataSource, "db.pool.active", HikariPoolMXBean::getActiveConnections);
+                    gauge(registry, tags, dataSource, "db.pool.idle", HikariPoolMXBean::getIdleConnections);
+                    gauge(registry, tags, dataSource, "db.pool.total", HikariPoolMXBean::getTotalConnections);
+                    gauge(registry, tags, dataSource, "db.pool.pending", HikariPoolMXBean::getThreadsAwaitingConnection);
+                    registry.gauge("db.pool.max", tags, dataSource::getMaximumPoolSize);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor componentStatsMeters(ObjectProvider<PaymentMetrics> metrics) {
+        return new ComponentStatsMeters(metrics);
+    }
+
+    // The pool starts on the first connection; until then there is nothing to report
+    private static void gauge(PaymentMetrics metrics, KeyValues tags, HikariDataSource dataSource, String name,
+                              ToIntFunction<HikariPoolMXBean> value) {
+        metrics.gauge(name, tags, () -> {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? null : value.applyAsInt(pool);
+        });
+    }
+}
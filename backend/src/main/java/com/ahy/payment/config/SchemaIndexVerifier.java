@@ -0,0 +1,95 @@
+package com.ahy.payment.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Warns at startup when an index the hot queries rely on is missing, e.g. on a database whose schema
+ * was created by ddl-auto and never migrated. Without them every webhook is a sequential scan of
+ * {@code transaction}, which works fine until the table is large.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.schema.verifyIndexes", havingValue = "true", matchIfMissing = true)
+public class SchemaIndexVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaIndexVerifier.class);
+
+    /*
+     * table -> indexes created by db/migration: V2 (inbox, dedup, raw responses), V3 (webhook lookup, recovery,
+     * inbox claim; the claim index comes in V9 on H2), V5 (archiver) and V7 (inbox retention)
+     */
+    static final Map<String, List<String>> REQUIRED = Map.of(
+            "transaction", List.of("idx_transaction_external_transaction_id", "idx_transaction_in_progress",
+                    "idx_transaction_terminal"),
+            "webhook_inbox", List.of("idx_webhook_inbox_status_id", "idx_webhook_inbox_open", "idx_webhook_inbox_done"),
+            "processed_webhook_event", List.of("idx_processed_webhook_event_processed_at"),
+            "gateway_response", List.of("idx_gateway_response_transaction_id")
+    );
+
+    private final DataSource dataSource;
+
+    public SchemaIndexVerifier(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        try {
+            List<String> missing = missingIndexes();
+            if (!missing.isEmpty()) {
+                log.warn("Missing database indexes {}: lookups on these tables will scan. Apply the Flyway migrations " +
+                        "in db/migration instead of relying on ddl-auto", missing);
+            }
+        } catch (SQLException e) {
+            log.warn("Could not check database indexes: {}", e.getMessage());
+        }
+    }
+
+    // "table.index" for every required index not found in the connected database
+    List<String> missingIndexes() throws SQLException {
+        List<String> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (Map.Entry<String, List<String>> table : REQUIRED.entrySet()) {
+                Set<String> present = indexNames(metaData, table.getKey());
+                for (String index : table.getValue()) {
+                    if (!present.contains(index)) {
+                        missing.add(table.getKey() + "." + index);
+                    }
+                }
+            }
+        }
+        missing.sort(null);
+        return missing;
+    }
+
+    private static Set<String> indexNames(DatabaseMetaData metaData, String table) throws SQLException {
+        String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Set<String> names = new HashSet<>();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, name, false, true)) {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                if (index != null) {
+                    names.add(index.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return names;
+    }
+}
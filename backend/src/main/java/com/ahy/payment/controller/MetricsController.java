@@ -0,0 +1,36 @@
+package com.ahy.payment.controller;
+
+import com.ahy.payment.observability.MeterSnapshot;
+import com.ahy.payment.observability.PaymentMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Read-only view of {@link PaymentMetrics}: every timer, counter and gauge with its tags, optionally only
+ * those whose name starts with {@code prefix} (e.g. {@code ?prefix=payments.gateway}). Meant for operators
+ * and scrapers, not for clients: it is served on the API's port without authentication, so it only exists
+ * with {@code payments.observability.endpoint.enabled=true}, for deployments that keep the path off the
+ * public ingress.
+ */
+@RestController
+@ConditionalOnProperty(name = "payments.observability.endpoint.enabled", havingValue = "true")
+@RequestMapping("/internal/metrics")
+public class MetricsController {
+
+    private final PaymentMetrics metrics;
+
+    public MetricsController(PaymentMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @GetMapping
+    public List<MeterSnapshot> metrics(@RequestParam(required = false) String prefix) {
+        List<MeterSnapshot> meters = metrics.snapshot();
+        return prefix == null ? meters : meters.stream().filter(m -> m.getName().startsWith(prefix)).toList();
+    }
+}
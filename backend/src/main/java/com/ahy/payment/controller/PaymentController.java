@@ -1,10 +1,15 @@
 package com.ahy.payment.controller;
 
 import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.dto.request.BatchAuthorizeRequest;
+import com.ahy.payment.dto.response.BatchAuthorizeResponse;
 import com.ahy.payment.dto.response.TransactionResponse;
 import com.ahy.payment.exception.TransactionNotFoundException;
 import com.ahy.payment.model.Transaction;
+import com.ahy.payment.service.BatchAuthorizeResult;
+import com.ahy.payment.service.BatchPaymentService;
 import com.ahy.payment.service.PaymentService;
+import com.ahy.payment.service.WebhookInbox;
 import com.ahy.payment.util.SignatureUtil;
 import com.ahy.payment.util.TransactionMapper;
 import com.stripe.exception.SignatureVerificationException;
@@ -12,22 +17,30 @@ import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/payments")
+@Profile("!reactive") // the "reactive" profile serves the same API from ReactivePaymentController
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final BatchPaymentService batchPaymentService;
     private final com.ahy.payment.util.StripeWebhookVerifier webhookVerifier;
+    private final WebhookInbox webhookInbox;
 
-    public PaymentController(PaymentService paymentService, com.ahy.payment.util.StripeWebhookVerifier webhookVerifier) {
+    public PaymentController(PaymentService paymentService, BatchPaymentService batchPaymentService,
+                             com.ahy.payment.util.StripeWebhookVerifier webhookVerifier, WebhookInbox webhookInbox) {
         this.paymentService = paymentService;
+        this.batchPaymentService = batchPaymentService;
         this.webhookVerifier = webhookVerifier;
+        this.webhookInbox = webhookInbox;
     }
 
     @Value("${payments.stripe.webhookSecret}")
@@ -38,13 +51,22 @@ public class PaymentController {
     // ------------------------------
     @PostMapping("/authorize")
     public ResponseEntity<TransactionResponse> authorizePayment(@Valid @RequestBody AuthorizeRequest request) {
-        Transaction tx = paymentService.authorizePayment(
+        TransactionResponse view = paymentService.authorizePaymentView(
                 request.getAmount(),
                 request.getCurrency(),
                 request.getMetadata(),
                 request.getIdempotencyKey()
         );
-        return ResponseEntity.status(HttpStatus.CREATED).body(TransactionMapper.toResponse(tx));
+        return ResponseEntity.status(HttpStatus.CREATED).body(view);
+    }
+
+    // ------------------------------
+    // Authorize Payments (batch)
+    // ------------------------------
+    @PostMapping("/authorize/batch")
+    public ResponseEntity<BatchAuthorizeResponse> authorizePayments(@Valid @RequestBody BatchAuthorizeRequest request) {
+        List<BatchAuthorizeResult> results = batchPaymentService.authorizeBatch(request.getRequests());
+        return ResponseEntity.ok(TransactionMapper.toBatchResponse(results));
     }
 
     // ------------------------------
@@ -52,9 +74,9 @@ public class PaymentController {
     // ------------------------------
     @GetMapping("/{id}")
     public ResponseEntity<TransactionResponse> getPayment(@PathVariable UUID id) {
-        Transaction tx = paymentService.getTransaction(id);
-        if (tx == null) throw new TransactionNotFoundException(id);
-        return ResponseEntity.ok(TransactionMapper.toResponse(tx));
+        TransactionResponse view = paymentService.getTransactionView(id);
+        if (view == null) throw new TransactionNotFoundException(id);
+        return ResponseEntity.ok(view);
     }
 
     // ------------------------------
@@ -91,17 +113,9 @@ public class PaymentController {
             return ResponseEntity.badRequest().build();
         }
 
-        switch (event.getType()) {
-
-            case "payment_intent.succeeded" -> paymentService.handlePaymentIntentSucceeded(event.getPaymentIntentId());
-
-            case "payment_intent.payment_failed" -> paymentService.handlePaymentIntentFailed(event.getPaymentIntentId());
-
-            case "charge.refunded" -> paymentService.handleChargeRefunded(event.getPaymentIntentId());
-
-            default -> {
-                // Ignore unhandled events
-            }
+        // Persisted and acknowledged here; the payment update happens on the inbox consumers
+        if (!webhookInbox.accept(event)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "30").build();
         }
 
         return ResponseEntity.ok().build();
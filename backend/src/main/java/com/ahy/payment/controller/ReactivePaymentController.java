@@ -0,0 +1,107 @@
+package com.ahy.payment.controller;
+
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.dto.request.BatchAuthorizeRequest;
+import com.ahy.payment.dto.response.BatchAuthorizeResponse;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.exception.TransactionNotFoundException;
+import com.ahy.payment.service.BatchAuthorizeResult;
+import com.ahy.payment.service.BatchPaymentService;
+import com.ahy.payment.service.ReactivePaymentService;
+import com.ahy.payment.service.WebhookInbox;
+import com.ahy.payment.util.StripeWebhookVerifier;
+import com.ahy.payment.util.TransactionMapper;
+import com.ahy.payment.util.WebhookEvent;
+import com.stripe.exception.SignatureVerificationException;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PaymentController}'s API for the "reactive" profile. Single-payment endpoints return a
+ * {@link CompletableFuture}: Spring MVC starts servlet async processing, the request thread goes back to the
+ * pool, and the response is written when the future completes (errors go through GlobalExceptionHandler as usual).
+ * Batch and webhook endpoints are unchanged; they already bound their own work.
+ */
+@RestController
+@RequestMapping("/payments")
+@Profile("reactive")
+public class ReactivePaymentController {
+
+    private final ReactivePaymentService paymentService;
+    private final BatchPaymentService batchPaymentService;
+    private final StripeWebhookVerifier webhookVerifier;
+    private final WebhookInbox webhookInbox;
+
+    public ReactivePaymentController(ReactivePaymentService paymentService, BatchPaymentService batchPaymentService,
+                                     StripeWebhookVerifier webhookVerifier, WebhookInbox webhookInbox) {
+        this.paymentService = paymentService;
+        this.batchPaymentService = batchPaymentService;
+        this.webhookVerifier = webhookVerifier;
+        this.webhookInbox = webhookInbox;
+    }
+
+    @Value("${payments.stripe.webhookSecret}")
+    private String webhookSecret;
+
+    @PostMapping("/authorize")
+    public CompletableFuture<ResponseEntity<TransactionResponse>> authorizePayment(@Valid @RequestBody AuthorizeRequest request) {
+        return paymentService.authorizePayment(
+                request.getAmount(),
+                request.getCurrency(),
+                request.getMetadata(),
+                request.getIdempotencyKey()
+        ).thenApply(tx -> ResponseEntity.status(HttpStatus.CREATED).body(TransactionMapper.toResponse(tx)));
+    }
+
+    @PostMapping("/authorize/batch")
+    public ResponseEntity<BatchAuthorizeResponse> authorizePayments(@Valid @RequestBody BatchAuthorizeRequest request) {
+        List<BatchAuthorizeResult> results = batchPaymentService.authorizeBatch(request.getRequests());
+        return ResponseEntity.ok(TransactionMapper.toBatchResponse(results));
+    }
+
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<TransactionResponse>> getPayment(@PathVariable UUID id) {
+        return paymentService.getTransactionView(id).thenApply(view -> {
+            if (view == null) throw new TransactionNotFoundException(id);
+            return ResponseEntity.ok(view);
+        });
+    }
+
+    @PostMapping("/{id}/capture")
+    public CompletableFuture<ResponseEntity<TransactionResponse>> capturePayment(@PathVariable UUID id) {
+        return paymentService.capturePayment(id).thenApply(tx -> ResponseEntity.ok(TransactionMapper.toResponse(tx)));
+    }
+
+    @PostMapping("/{id}/refund")
+    public CompletableFuture<ResponseEntity<TransactionResponse>> refundPayment(@PathVariable UUID id) {
+        return paymentService.refundPayment(id).thenApply(tx -> ResponseEntity.ok(TransactionMapper.toResponse(tx)));
+    }
+
+    @PostMapping("/webhooks/stripe")
+    public ResponseEntity<Void> handleStripeWebhook(
+            @RequestBody String payload,
+            @RequestHeader("Stripe-Signature") String signature
+    ) {
+        WebhookEvent event;
+
+        try {
+            event = webhookVerifier.verifyStripeSignature(payload, signature, webhookSecret);
+        } catch (SignatureVerificationException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!webhookInbox.accept(event)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "30").build();
+        }
+
+        return ResponseEntity.ok().build();
+    }
+}
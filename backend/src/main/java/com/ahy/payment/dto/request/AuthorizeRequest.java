@@ -9,7 +9,7 @@ import java.util.Map;
 import jakarta.validation.constraints.NotNull;
 
 @Data
-
+@CurrencyAmount
 public class AuthorizeRequest {
 
     @NotNull(message = "Amount is required")
@@ -0,0 +1,17 @@
+package com.ahy.payment.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+
+public class BatchAuthorizeRequest {
+
+    @NotEmpty(message = "At least one authorization is required")
+    @Size(max = 500, message = "A batch holds at most 500 authorizations")
+    private List<@Valid AuthorizeRequest> requests;
+}
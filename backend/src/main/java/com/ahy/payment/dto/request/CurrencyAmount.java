@@ -0,0 +1,26 @@
+package com.ahy.payment.dto.request;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The request's currency is an ISO 4217 code and its amount has no more decimals than the currency's
+ * minor unit allows (two for USD, none for JPY, three for BHD). The PSP is sent the amount in minor
+ * units; checked here, it never has to round what the client asked for.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = CurrencyAmountValidator.class)
+public @interface CurrencyAmount {
+
+    String message() default "Amount must be in an ISO-4217 currency with at most its number of decimals";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
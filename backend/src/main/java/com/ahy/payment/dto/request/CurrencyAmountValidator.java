@@ -0,0 +1,38 @@
+package com.ahy.payment.dto.request;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Locale;
+
+// Null or blank fields are left to @NotNull/@NotBlank, so each problem is reported once
+public class CurrencyAmountValidator implements ConstraintValidator<CurrencyAmount, AuthorizeRequest> {
+
+    @Override
+    public boolean isValid(AuthorizeRequest request, ConstraintValidatorContext context) {
+        if (request == null || request.getCurrency() == null || request.getCurrency().length() != 3) {
+            return true;
+        }
+        Currency currency;
+        try {
+            currency = Currency.getInstance(request.getCurrency().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException unknown) {
+            return reject(context, "currency", "Unknown ISO-4217 currency " + request.getCurrency());
+        }
+        BigDecimal amount = request.getAmount();
+        int fractionDigits = Math.max(0, currency.getDefaultFractionDigits());
+        if (amount != null && amount.stripTrailingZeros().scale() > fractionDigits) {
+            return reject(context, "amount", "Amount must have at most " + fractionDigits + " decimals for "
+                    + currency.getCurrencyCode());
+        }
+        return true;
+    }
+
+    private static boolean reject(ConstraintValidatorContext context, String field, String message) {
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(message).addPropertyNode(field).addConstraintViolation();
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ahy.payment.dto.response;
+
+import lombok.Data;
+
+@Data
+
+public class BatchAuthorizeItemResponse {
+
+    private String idempotencyKey;
+    private TransactionResponse transaction; // null when the item failed
+    private String error;                    // null when the item succeeded
+}
@@ -0,0 +1,16 @@
+package com.ahy.payment.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchAuthorizeResponse {
+
+    // one entry per request item, in request order
+    private List<BatchAuthorizeItemResponse> results;
+}
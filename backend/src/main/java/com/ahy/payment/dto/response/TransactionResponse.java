@@ -1,13 +1,17 @@
 package com.ahy.payment.dto.response;
 
 import com.ahy.payment.model.PaymentStatus;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor // constructor expression in TransactionRepository.findResponseById
 
 public class TransactionResponse {
 
@@ -0,0 +1,16 @@
+package com.ahy.payment.exception;
+
+/**
+ * The PSP could not be reached or answered with a temporary error (network failure, 429, 5xx). Whether it
+ * acted on the request is unknown, so it may only be retried with the same idempotency key.
+ */
+public class GatewayTransientException extends RuntimeException {
+
+    public GatewayTransientException(String message) {
+        super(message);
+    }
+
+    public GatewayTransientException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ahy.payment.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The gateway call was refused before anything was sent to the PSP (circuit open, bulkhead full),
+ * so the payment is exactly as it was and the request can be retried after {@link #getRetryAfter()}.
+ */
+@Getter
+public class GatewayUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public GatewayUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -6,8 +6,11 @@ import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -30,7 +33,51 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
     }
 
-    @ExceptionHandler({SignatureVerificationException.class, IllegalArgumentException.class})
+    // Capture/refund of a payment in the wrong status, or one that another request moved concurrently
+    @ExceptionHandler({InvalidStatusTransitionException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<ErrorResponse> handleConflict(RuntimeException ex) {
+        ErrorResponse error = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                ""
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    // Refused before reaching the PSP (circuit open, bulkhead full); the payment is unchanged
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleGatewayUnavailable(GatewayUnavailableException ex) {
+        log.warn("Payment gateway unavailable: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                ex.getMessage(),
+                ""
+        );
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(error);
+    }
+
+    // The PSP kept failing with retryable errors; the payment is unchanged and a retry with the same key is safe
+    @ExceptionHandler(GatewayTransientException.class)
+    public ResponseEntity<ErrorResponse> handleGatewayError(GatewayTransientException ex) {
+        log.warn("Payment gateway error: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                Instant.now(),
+                HttpStatus.BAD_GATEWAY.value(),
+                "Bad Gateway",
+                ex.getMessage(),
+                ""
+        );
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(error);
+    }
+
+    @ExceptionHandler({SignatureVerificationException.class, IllegalArgumentException.class, MethodArgumentNotValidException.class})
     public ResponseEntity<ErrorResponse> handleBadRequest(Exception ex) {
         log.warn("Bad request: {}", ex.getMessage());
         ErrorResponse error = new ErrorResponse(
@@ -0,0 +1,19 @@
+package com.ahy.payment.exception;
+
+import com.ahy.payment.model.PaymentStatus;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+public class InvalidStatusTransitionException extends RuntimeException {
+
+    private final PaymentStatus current;
+    private final PaymentStatus target;
+
+    public InvalidStatusTransitionException(UUID transactionId, PaymentStatus current, PaymentStatus target) {
+        super("Payment " + transactionId + " is " + current + " and cannot move to " + target);
+        this.current = current;
+        this.target = target;
+    }
+}
@@ -11,23 +11,39 @@ public interface PaymentGateway {
      * @param amount in major currency unit (e.g. 10.50 means 10.50 USD)
      * @param currency currency code (USD, EUR...)
      * @param metadata key-value metadata
+     * @param idempotencyKey the client's key for this payment; a PSP that deduplicates by key answers a repeated
+     *                       call with the first call's result, which is what makes retries and hedging safe
      * @return GatewayResponse (status + external id)
      */
-    GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata);
+    GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey);
 
     /**
      * Capture a previously authorized payment.
+     * Retries and the recovery job may send it again for the same payment, so a repeat must be harmless
+     * (e.g. an idempotency key derived from externalId).
      * @param externalId id returned by gateway when authorize was called (PSP id)
      * @param amount amount to capture (nullable if full)
+     * @param currency the authorization's currency code, as stored on the transaction
      * @return GatewayResponse
      */
-    GatewayResponse capture(String externalId, BigDecimal amount);
+    GatewayResponse capture(String externalId, BigDecimal amount, String currency);
 
     /**
-     * Refund a captured payment.
+     * Refund a captured payment. Like capture, may be sent more than once for the same payment.
      * @param externalId the gateway's id for the captured transaction
      * @param amount amount to refund (nullable for full)
+     * @param currency the payment's currency code, as stored on the transaction
      * @return GatewayResponse
      */
-    GatewayResponse refund(String externalId, BigDecimal amount);
+    GatewayResponse refund(String externalId, BigDecimal amount, String currency);
+
+    /**
+     * Whether the PSP answers a call sent while an identical one (same idempotency key) is still in flight,
+     * rather than rejecting it until the first one finishes. Hedging needs it: Stripe answers such a call
+     * with 409 {@code idempotency_key_in_use}, so a hedge there only adds load.
+     * @return false unless the implementation knows its PSP allows concurrent duplicates
+     */
+    default boolean allowsConcurrentDuplicates() {
+        return false;
+    }
 }
@@ -0,0 +1,21 @@
+package com.ahy.payment.gateway;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking twin of {@link PaymentGateway}, used by the "reactive" profile: each call returns at once and
+ * the future completes when the PSP answers, so a call in flight does not hold a thread.
+ * Parameters and outcomes are those of {@link PaymentGateway}; a call that fails completes the future
+ * exceptionally with the exception the blocking method would have thrown.
+ */
+public interface ReactivePaymentGateway {
+
+    CompletableFuture<GatewayResponse> authorize(BigDecimal amount, String currency, Map<String, String> metadata,
+                                                 String idempotencyKey);
+
+    CompletableFuture<GatewayResponse> capture(String externalId, BigDecimal amount, String currency);
+
+    CompletableFuture<GatewayResponse> refund(String externalId, BigDecimal amount, String currency);
+}
@@ -0,0 +1,265 @@
+package com.ahy.payment.gateway.http;
+
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.Authenticator;
+import com.stripe.net.BearerTokenAuthenticator;
+import com.stripe.net.HttpContent;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.stripe.net.StripeResponseGetterOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transport for the Stripe SDK on the JDK {@link HttpClient} instead of the SDK's per-request
+ * {@code HttpURLConnection}: one client per instance, so connections (and their TLS sessions) are pooled and
+ * kept alive between calls, and HTTP/2 is negotiated by ALPN where the server offers it, multiplexing
+ * concurrent requests over one connection.
+ * <ul>
+ *   <li>{@code maxConnectionsPerRoute}: requests in flight per host and port. On HTTP/1.1 that bounds the
+ *   connections the pool opens; a request waits up to {@code acquireTimeout} for a slot and then fails as
+ *   a connection error (retryable).</li>
+ *   <li>{@code connectTimeout} / {@code readTimeout}: TCP+TLS connect, and time to the response;
+ *   keep them below {@code payments.gateway.resilience.timeouts.*}.</li>
+ *   <li>Idle connections are closed after the JDK's {@code jdk.httpclient.keepalive.timeout} (seconds,
+ *   a system property).</li>
+ * </ul>
+ * Handshakes are counted by wrapping the {@link SSLContext}: one engine per new TLS connection.
+ */
+@Component
+@Profile("stripe")
+public class PooledStripeHttpClient extends com.stripe.net.HttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledStripeHttpClient.class);
+
+    // Set by the JDK client itself; it refuses them as request headers
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+    private final int maxPerRoute;
+    private final Duration acquireTimeout;
+    private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder handshakes = new LongAdder();
+    private final LongAdder routeWaits = new LongAdder();
+    private final LongAdder routeRejected = new LongAdder();
+
+    @Autowired
+    public PooledStripeHttpClient(@Value("${payments.stripe.http.version:HTTP_2}") HttpClient.Version version,
+                                  @Value("${payments.stripe.http.connectTimeout:PT2S}") Duration connectTimeout,
+                                  @Value("${payments.stripe.http.readTimeout:PT8S}") Duration readTimeout,
+                                  @Value("${payments.stripe.http.maxConnectionsPerRoute:32}") int maxPerRoute,
+                                  @Value("${payments.stripe.http.acquireTimeout:PT1S}") Duration acquireTimeout)
+            throws NoSuchAlgorithmException {
+        this(version, connectTimeout, readTimeout, maxPerRoute, acquireTimeout, SSLContext.getDefault());
+    }
+
+    PooledStripeHttpClient(HttpClient.Version version, Duration connectTimeout, Duration readTimeout,
+                           int maxPerRoute, Duration acquireTimeout, SSLContext sslContext) {
+        this.client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .sslContext(new HandshakeCountingSslContext(sslContext, handshakes))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.readTimeout = readTimeout;
+        this.maxPerRoute = maxPerRoute;
+        this.acquireTimeout = acquireTimeout;
+        log.info("Stripe HTTP client: {}, {} requests per route, connect {} / read {}",
+                version, maxPerRoute, connectTimeout, readTimeout);
+    }
+
+    // A StripeClient that sends through this transport; nothing is set on the SDK's static configuration
+    public StripeClient newStripeClient(String apiKey, String apiBase) {
+        return new StripeClient(new LiveStripeResponseGetter(new ClientOptions(apiKey, apiBase), this));
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws StripeException {
+        Semaphore route = routes.computeIfAbsent(routeOf(request.url()), key -> new Semaphore(maxPerRoute));
+        acquire(route, request.url());
+        try {
+            HttpResponse<String> response = client.send(toHttpRequest(request), HttpResponse.BodyHandlers.ofString());
+            requests.increment();
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            }
+            return new StripeResponse(response.statusCode(),
+                    com.stripe.net.HttpHeaders.of(response.headers().map()), response.body());
+        } catch (IOException ex) {
+            throw new ApiConnectionException("IOException during API request to Stripe (" + request.url() + "): "
+                    + ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted during API request to Stripe (" + request.url() + ")", ex);
+        } finally {
+            route.release();
+        }
+    }
+
+    public StripeHttpClientStats stats() {
+        int inFlight = 0;
+        for (Semaphore route : routes.values()) {
+            inFlight += maxPerRoute - route.availablePermits();
+        }
+        return new StripeHttpClientStats(
+                requests.sum(),
+                http2Responses.sum(),
+                handshakes.sum(),
+                routeWaits.sum(),
+                routeRejected.sum(),
+                inFlight,
+                maxPerRoute
+        );
+    }
+
+    private void acquire(Semaphore route, URL url) throws ApiConnectionException {
+        if (route.tryAcquire()) {
+            return;
+        }
+        routeWaits.increment();
+        try {
+            if (route.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        routeRejected.increment();
+        throw new ApiConnectionException("No free connection to " + routeOf(url) + " within " + acquireTimeout
+                + " (payments.stripe.http.maxConnectionsPerRoute=" + maxPerRoute + ")");
+    }
+
+    private HttpRequest toHttpRequest(StripeRequest request) throws ApiConnectionException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.url().toURI()).timeout(readTimeout);
+        } catch (URISyntaxException ex) {
+            throw new ApiConnectionException("Invalid Stripe URL " + request.url(), ex);
+        }
+        request.headers().map().forEach((name, values) -> {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> builder.header(name, value));
+            }
+        });
+
+        HttpContent content = request.content();
+        if (content == null) {
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.noBody());
+        } else {
+            builder.header("Content-Type", content.contentType());
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.ofByteArray(content.byteArrayContent()));
+        }
+        return builder.build();
+    }
+
+    private static String routeOf(URL url) {
+        return url.getHost() + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+    }
+
+    // What StripeClient.builder() would configure, minus its own HttpURLConnection timeouts and retries
+    private static final class ClientOptions extends StripeResponseGetterOptions {
+
+        private final Authenticator authenticator;
+        private final String apiBase;
+
+        ClientOptions(String apiKey, String apiBase) {
+            this.authenticator = apiKey == null || apiKey.isBlank() ? null : new BearerTokenAuthenticator(apiKey);
+            this.apiBase = apiBase;
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+
+        @Override
+        public String getClientId() {
+            return null;
+        }
+
+        @Override
+        public int getConnectTimeout() {
+            return com.stripe.Stripe.DEFAULT_CONNECT_TIMEOUT;
+        }
+
+        @Override
+        public Proxy getConnectionProxy() {
+            return null;
+        }
+
+        @Override
+        public int getMaxNetworkRetries() {
+            return 0;
+        }
+
+        @Override
+        public PasswordAuthentication getProxyCredential() {
+            return null;
+        }
+
+        @Override
+        public String getApiBase() {
+            return apiBase;
+        }
+
+        @Override
+        public String getFilesBase() {
+            return com.stripe.Stripe.UPLOAD_API_BASE;
+        }
+
+        @Override
+        public String getConnectBase() {
+            return com.stripe.Stripe.CONNECT_API_BASE;
+        }
+
+        @Override
+        public String getMeterEventsBase() {
+            return com.stripe.Stripe.METER_EVENTS_API_BASE;
+        }
+
+        @Override
+        public int getReadTimeout() {
+            return com.stripe.Stripe.DEFAULT_READ_TIMEOUT;
+        }
+
+        @Override
+        public String getStripeAccount() {
+            return null;
+        }
+
+        @Override
+        public String getStripeContext() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.ahy.payment.gateway.http;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StripeHttpClientStats {
+    private long requests;        // requests sent to Stripe
+    private long http2Responses;  // of those, answered over HTTP/2
+    private long handshakes;      // TLS handshakes, i.e. new connections; the rest reused a pooled one
+    private long routeWaits;      // requests that waited for a free slot on their route
+    private long routeRejected;   // requests that found no slot within payments.stripe.http.acquireTimeout
+    private int inFlight;         // requests holding a route slot now, all routes
+    private int maxPerRoute;      // payments.stripe.http.maxConnectionsPerRoute
+
+    public double getRequestsPerHandshake() {
+        return handshakes == 0 ? 0 : (double) requests / handshakes;
+    }
+
+    // Share of the slots in use, for a single route (Stripe has one); 1.0 means requests are queueing
+    public double getSaturation() {
+        return maxPerRoute == 0 ? 0 : (double) inFlight / maxPerRoute;
+    }
+}
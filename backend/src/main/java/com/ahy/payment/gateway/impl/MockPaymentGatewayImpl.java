@@ -1,56 +1,118 @@
 package com.ahy.payment.gateway.impl;
 
+import com.ahy.payment.exception.GatewayTransientException;
 import com.ahy.payment.gateway.GatewayResponse;
 import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.simulation.MockGatewaySimulation;
+import com.ahy.payment.gateway.simulation.SimulatedOutcome;
+import com.ahy.payment.model.GatewayOperation;
 import com.ahy.payment.model.PaymentStatus;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Profile("mock") // active when spring profile is "mock"
 public class MockPaymentGatewayImpl implements PaymentGateway {
 
-    @org.springframework.beans.factory.annotation.Value("${payments.mock.disableRandom:false}")
-    private boolean disableRandom;
+    // Latency, failures and rules per call (payments.mock.*)
+    private final MockGatewaySimulation simulation;
+
+    public MockPaymentGatewayImpl() {
+        this(MockGatewaySimulation.defaults());
+    }
+
+    @Autowired
+    public MockPaymentGatewayImpl(MockGatewaySimulation simulation) {
+        this.simulation = simulation;
+    }
 
     @Override
-    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata) {
-        // Simulate random failure (10%) unless disabled for tests
-        if (!disableRandom) {
-            int randomFail = ThreadLocalRandom.current().nextInt(1, 11);
-            if (randomFail == 1) {
-                return new GatewayResponse(PaymentStatus.FAILED, null, "Simulated PSP failure");
-            }
-        }
+    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        SimulatedOutcome outcome = await(simulation.next(GatewayOperation.AUTHORIZE, amount, currency));
+        return authorizeAnswer(outcome, idempotencyKey);
+    }
 
-        if (amount.compareTo(new BigDecimal("1000")) > 0) {
-            return new GatewayResponse(PaymentStatus.DECLINED, null, "Amount exceeds limit");
-        }
+    @Override
+    public GatewayResponse capture(String externalId, BigDecimal amount, String currency) {
+        SimulatedOutcome outcome = await(simulation.next(GatewayOperation.CAPTURE, amount, currency));
+        return captureAnswer(outcome, externalId);
+    }
 
-        // success
-        String externalId = "mock_" + UUID.randomUUID();
-        return new GatewayResponse(PaymentStatus.AUTHORIZED, externalId, "Mock authorized");
+    @Override
+    public GatewayResponse refund(String externalId, BigDecimal amount, String currency) {
+        SimulatedOutcome outcome = await(simulation.next(GatewayOperation.REFUND, amount, currency));
+        return refundAnswer(outcome, externalId);
     }
 
+    // Each call draws its own outcome, whatever else is in flight
     @Override
-    public GatewayResponse capture(String externalId, BigDecimal amount) {
+    public boolean allowsConcurrentDuplicates() {
+        return true;
+    }
+
+    /*
+     * The answers, once the simulated latency has passed; ReactiveMockPaymentGatewayImpl waits on a timer
+     * instead of a sleep and gives the same ones.
+     */
+    GatewayResponse authorizeAnswer(SimulatedOutcome outcome, String idempotencyKey) {
+        return switch (outcome) {
+            case FAILED -> new GatewayResponse(PaymentStatus.FAILED, null, "Simulated PSP failure");
+            case DECLINED -> new GatewayResponse(PaymentStatus.DECLINED, null, "Simulated decline");
+            case ERROR -> throw new GatewayTransientException("Simulated PSP error");
+            default -> {
+                // success; the same key gets the same id back, like a PSP deduplicating retried requests
+                UUID id = idempotencyKey == null ? UUID.randomUUID()
+                        : UUID.nameUUIDFromBytes(idempotencyKey.getBytes(StandardCharsets.UTF_8));
+                yield new GatewayResponse(PaymentStatus.AUTHORIZED, "mock_" + id, "Mock authorized");
+            }
+        };
+    }
+
+    GatewayResponse captureAnswer(SimulatedOutcome outcome, String externalId) {
         // Accept any externalId starting with mock_
         if (externalId == null || !externalId.startsWith("mock_")) {
             return new GatewayResponse(PaymentStatus.FAILED, externalId, "Invalid external id");
         }
-        return new GatewayResponse(PaymentStatus.CAPTURED, externalId, "Mock captured");
+        return switch (outcome) {
+            case FAILED -> new GatewayResponse(PaymentStatus.FAILED, externalId, "Simulated PSP failure");
+            case DECLINED -> new GatewayResponse(PaymentStatus.DECLINED, externalId, "Simulated decline");
+            case ERROR -> throw new GatewayTransientException("Simulated PSP error");
+            default -> new GatewayResponse(PaymentStatus.CAPTURED, externalId, "Mock captured");
+        };
     }
 
-    @Override
-    public GatewayResponse refund(String externalId, BigDecimal amount) {
+    // A refund has no DECLINED status to move to (see PaymentStatus), so a refused one answers FAILED
+    GatewayResponse refundAnswer(SimulatedOutcome outcome, String externalId) {
         if (externalId == null || !externalId.startsWith("mock_")) {
             return new GatewayResponse(PaymentStatus.FAILED, externalId, "Invalid external id");
         }
-        return new GatewayResponse(PaymentStatus.REFUNDED, externalId, "Mock refunded");
+        return switch (outcome) {
+            case FAILED, DECLINED -> new GatewayResponse(PaymentStatus.FAILED, externalId, "Simulated PSP failure");
+            case ERROR -> throw new GatewayTransientException("Simulated PSP error");
+            default -> new GatewayResponse(PaymentStatus.REFUNDED, externalId, "Mock refunded");
+        };
+    }
+
+    MockGatewaySimulation simulation() {
+        return simulation;
+    }
+
+    private static SimulatedOutcome await(MockGatewaySimulation.Decision decision) {
+        if (decision.delayNanos() > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(decision.delayNanos());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new GatewayTransientException("Interrupted while waiting for the simulated PSP", ex);
+            }
+        }
+        return decision.outcome();
     }
 }
@@ -0,0 +1,48 @@
+package com.ahy.payment.gateway.impl;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.ReactivePaymentGateway;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/*
+ * For PSPs whose SDK only blocks (Stripe): the blocking gateway, resilience layer included, runs on the
+ * bounded gatewayExecutor. Threads are still held per call, just not request threads; the bulkhead
+ * (payments.gateway.resilience.bulkhead.maxConcurrent) caps how many.
+ */
+@Service
+@Profile("reactive & !mock")
+public class OffloadingReactivePaymentGateway implements ReactivePaymentGateway {
+
+    private final PaymentGateway gateway;
+    private final ExecutorService executor;
+
+    public OffloadingReactivePaymentGateway(PaymentGateway gateway,
+                                            @Qualifier("gatewayExecutor") ExecutorService executor) {
+        this.gateway = gateway;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> authorize(BigDecimal amount, String currency, Map<String, String> metadata,
+                                                        String idempotencyKey) {
+        return CompletableFuture.supplyAsync(() -> gateway.authorize(amount, currency, metadata, idempotencyKey), executor);
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> capture(String externalId, BigDecimal amount, String currency) {
+        return CompletableFuture.supplyAsync(() -> gateway.capture(externalId, amount, currency), executor);
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> refund(String externalId, BigDecimal amount, String currency) {
+        return CompletableFuture.supplyAsync(() -> gateway.refund(externalId, amount, currency), executor);
+    }
+}
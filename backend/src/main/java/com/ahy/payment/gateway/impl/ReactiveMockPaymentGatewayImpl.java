@@ -0,0 +1,67 @@
+package com.ahy.payment.gateway.impl;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.ReactivePaymentGateway;
+import com.ahy.payment.gateway.simulation.MockGatewaySimulation;
+import com.ahy.payment.gateway.simulation.SimulatedOutcome;
+import com.ahy.payment.model.GatewayOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+ * Reactive twin of MockPaymentGatewayImpl for load tests: the same simulation (payments.mock.*) and the
+ * same answers, delivered after the simulated latency. The delay is a timer, not a sleeping thread, so
+ * thousands of calls can be in flight on CompletableFuture's shared delay scheduler.
+ */
+@Service
+@Profile("reactive & mock")
+public class ReactiveMockPaymentGatewayImpl implements ReactivePaymentGateway {
+
+    private final MockPaymentGatewayImpl answers;
+    private final MockGatewaySimulation simulation;
+
+    // Its own answering instance: the mock bean itself may be behind an interface proxy (metrics)
+    @Autowired
+    public ReactiveMockPaymentGatewayImpl(MockGatewaySimulation simulation) {
+        this(new MockPaymentGatewayImpl(simulation));
+    }
+
+    ReactiveMockPaymentGatewayImpl(MockPaymentGatewayImpl answers) {
+        this.answers = answers;
+        this.simulation = answers.simulation();
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> authorize(BigDecimal amount, String currency, Map<String, String> metadata,
+                                                        String idempotencyKey) {
+        return after(simulation.next(GatewayOperation.AUTHORIZE, amount, currency),
+                outcome -> answers.authorizeAnswer(outcome, idempotencyKey));
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> capture(String externalId, BigDecimal amount, String currency) {
+        return after(simulation.next(GatewayOperation.CAPTURE, amount, currency),
+                outcome -> answers.captureAnswer(outcome, externalId));
+    }
+
+    @Override
+    public CompletableFuture<GatewayResponse> refund(String externalId, BigDecimal amount, String currency) {
+        return after(simulation.next(GatewayOperation.REFUND, amount, currency),
+                outcome -> answers.refundAnswer(outcome, externalId));
+    }
+
+    // The answer is computed on the timer thread; it is cheap and never blocks
+    private static CompletableFuture<GatewayResponse> after(MockGatewaySimulation.Decision decision,
+                                                            Function<SimulatedOutcome, GatewayResponse> answer) {
+        Executor timer = CompletableFuture.delayedExecutor(decision.delayNanos(), TimeUnit.NANOSECONDS, Runnable::run);
+        return CompletableFuture.supplyAsync(() -> answer.apply(decision.outcome()), timer);
+    }
+}
@@ -3,11 +3,15 @@ package com.ahy.payment.gateway.impl;
 import com.ahy.payment.gateway.GatewayResponse;
 import com.ahy.payment.gateway.PaymentGateway;
 import com.ahy.payment.gateway.WebhookGateway;
+import com.ahy.payment.gateway.http.PooledStripeHttpClient;
 import com.ahy.payment.model.PaymentStatus;
-import com.stripe.Stripe;
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.*;
+import com.stripe.net.RequestOptions;
 import com.stripe.net.Webhook;
 import com.stripe.param.PaymentIntentCaptureParams;
 import com.stripe.param.PaymentIntentCreateParams;
@@ -16,35 +20,54 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import com.ahy.payment.exception.GatewayTransientException;
 import com.ahy.payment.exception.InvalidSignatureException;
 
-import jakarta.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Locale;
 import java.util.Map;
 
 @Service
 @Profile("stripe") // active when spring profile is "stripe"
 public class StripePaymentGatewayImpl implements PaymentGateway , WebhookGateway {
 
-    @Value("${stripe.secret-key}")
-    private String stripeApiKey;
-
-    @Value("${payments.stripe.webhookSecret}")
-    private String webhookSecret;
-
-
-    @PostConstruct
-    public void init() {
-        if (stripeApiKey == null || stripeApiKey.isBlank()) {
+    private final StripeClient client;
+    private final String webhookSecret;
+
+    /*
+     * A client of its own instead of the SDK's global Stripe.apiKey, sending through the pooled transport;
+     * apiBase only changes for a local stub. The key is read from payments.stripe.apiKey, or stripe.secret-key as before.
+     */
+    public StripePaymentGatewayImpl(@Value("${payments.stripe.apiKey:${stripe.secret-key:}}") String apiKey,
+                                    @Value("${payments.stripe.webhookSecret}") String webhookSecret,
+                                    @Value("${payments.stripe.apiBase:https://api.stripe.com}") String apiBase,
+                                    PooledStripeHttpClient httpClient) {
+        if (apiKey == null || apiKey.isBlank()) {
             // in production fail fast; here we log
             System.err.println("STRIPE API KEY is not set (payments.stripe.apiKey). Stripe gateway will fail.");
-        } else {
-            Stripe.apiKey = stripeApiKey;
         }
+        this.client = httpClient.newStripeClient(apiKey, apiBase);
+        this.webhookSecret = webhookSecret;
+    }
+
+    /*
+     * Every write carries a Stripe idempotency key, so a retried call (ResilientPaymentGateway) gets the first
+     * call's result instead of a second PaymentIntent, capture or refund. Stripe keeps keys for 24h. A call sent
+     * while the first is still running gets 409 idempotency_key_in_use instead, so this gateway is never hedged.
+     * The SDK's own network retries are off; the resilience layer decides when to retry.
+     */
+    private static RequestOptions idempotent(String operation, String key) {
+        RequestOptions.RequestOptionsBuilder options = RequestOptions.builder().setMaxNetworkRetries(0);
+        if (key != null) {
+            options.setIdempotencyKey(operation + ":" + key);
+        }
+        return options.build();
     }
 
     @Override
-    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata) {
+    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
         try {
             // Stripe expects amount in smallest currency unit (e.g., cents)
             long amountInMinor = toMinorUnits(amount, currency);
@@ -55,7 +78,7 @@ public class StripePaymentGatewayImpl implements PaymentGateway , WebhookGateway
                     .setCaptureMethod(PaymentIntentCreateParams.CaptureMethod.MANUAL) // authorize only
                     .putAllMetadata(metadata == null ? Map.of() : metadata);
 
-            PaymentIntent intent = PaymentIntent.create(builder.build());
+            PaymentIntent intent = client.paymentIntents().create(builder.build(), idempotent("authorize", idempotencyKey));
 
             // PaymentIntent status may be requires_confirmation, requires_action, etc.
             // We'll map common statuses: 'requires_capture' or 'requires_payment_method' etc.
@@ -64,81 +87,74 @@ public class StripePaymentGatewayImpl implements PaymentGateway , WebhookGateway
 
             return new GatewayResponse(mapped, intent.getId(), intent.toJson());
         } catch (StripeException ex) {
+            throwIfTransient(ex);
             return new GatewayResponse(PaymentStatus.FAILED, null, ex.getMessage());
         }
     }
 
+    /*
+     * Capture and refund are one request each, addressed by payment intent id: the currency for the minor-unit
+     * amount comes from the stored transaction, and refunds take payment_intent directly, so neither needs the
+     * PaymentIntent or its charges fetched first.
+     */
     @Override
-    public GatewayResponse capture(String externalId, BigDecimal amount) {
+    public GatewayResponse capture(String externalId, BigDecimal amount, String currency) {
         try {
-            // capture the payment intent
-            PaymentIntent intent = PaymentIntent.retrieve(externalId);
-
             PaymentIntentCaptureParams.Builder capBuilder = PaymentIntentCaptureParams.builder();
             if (amount != null) {
-                long minor = toMinorUnits(amount, intent.getCurrency());
-                capBuilder.setAmountToCapture(minor);
+                capBuilder.setAmountToCapture(toMinorUnits(amount, currency));
             }
 
-            PaymentIntent captured = intent.capture(capBuilder.build());
+            PaymentIntent captured = client.paymentIntents().capture(externalId, capBuilder.build(),
+                    idempotent("capture", externalId));
             PaymentStatus mapped = mapStripeStatusToPaymentStatus(captured.getStatus());
             return new GatewayResponse(mapped, captured.getId(), captured.toJson());
         } catch (StripeException ex) {
+            throwIfTransient(ex);
             return new GatewayResponse(PaymentStatus.FAILED, externalId, ex.getMessage());
         }
     }
 
     @Override
-    public GatewayResponse refund(String externalId, BigDecimal amount) {
+    public GatewayResponse refund(String externalId, BigDecimal amount, String currency) {
         try {
-            // 1. Retrieve PaymentIntent
-            PaymentIntent intent = PaymentIntent.retrieve(externalId);
-
-            // 2. Fetch charges linked to this PaymentIntent
-            ChargeCollection charges = Charge.list(
-                    Map.of("payment_intent", intent.getId())
-            );
-
-            if (charges.getData().isEmpty()) {
-                return new GatewayResponse(
-                        PaymentStatus.FAILED,
-                        externalId,
-                        "No charge found to refund"
-                );
+            RefundCreateParams.Builder params = RefundCreateParams.builder().setPaymentIntent(externalId);
+            if (amount != null) {
+                params.setAmount(toMinorUnits(amount, currency));
             }
 
-            // 3. Take first charge
-            String chargeId = charges.getData().get(0).getId();
-
-            // 4. Create refund
-            RefundCreateParams params = RefundCreateParams.builder()
-                    .setCharge(chargeId)
-                    .build();
-
-            Refund refund = Refund.create(params);
-
-            // 5. Map status
-            return new GatewayResponse(
-                    PaymentStatus.REFUNDED,
-                    externalId,
-                    refund.toJson()
-            );
+            Refund refund = client.refunds().create(params.build(), idempotent("refund", externalId));
 
+            // "pending" refunds complete asynchronously and are confirmed by the charge.refunded webhook
+            PaymentStatus mapped = "failed".equals(refund.getStatus()) || "canceled".equals(refund.getStatus())
+                    ? PaymentStatus.FAILED : PaymentStatus.REFUNDED;
+            return new GatewayResponse(mapped, externalId, refund.toJson());
         } catch (StripeException ex) {
-            return new GatewayResponse(
-                    PaymentStatus.FAILED,
-                    externalId,
-                    ex.getMessage()
-            );
+            throwIfTransient(ex);
+            return new GatewayResponse(PaymentStatus.FAILED, externalId, ex.getMessage());
         }
     }
 
+    /*
+     * Network failures, rate limiting, Stripe-side errors and "another request with this key is in flight"
+     * may succeed when repeated with the same key; card declines and invalid requests will not.
+     */
+    private static void throwIfTransient(StripeException ex) {
+        Integer status = ex.getStatusCode();
+        if (ex instanceof ApiConnectionException || ex instanceof RateLimitException
+                || (status != null && (status >= 500 || (status == 409 && "idempotency_key_in_use".equals(ex.getCode()))))) {
+            throw new GatewayTransientException("Stripe request failed: " + ex.getMessage(), ex);
+        }
+    }
 
-    // Helper: convert major units to minor units (e.g., dollars -> cents)
-    private long toMinorUnits(BigDecimal amount, String currency) {
-        // For simplicity assume 2 decimal currencies (USD, EUR). For real app use a currency library.
-        BigDecimal minor = amount.multiply(BigDecimal.valueOf(100));
-        return minor.longValue();
+    /*
+     * Major to minor units by the currency's ISO 4217 exponent (cents for USD, none for JPY). Requests are
+     * checked by @CurrencyAmount, so an amount that would need rounding is a bug and throws rather than
+     * charging something other than what was stored.
+     */
+    static long toMinorUnits(BigDecimal amount, String currency) {
+        int fractionDigits = Currency.getInstance(currency.toUpperCase(Locale.ROOT)).getDefaultFractionDigits();
+        return amount.movePointRight(Math.max(0, fractionDigits)).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
     }
 
     private PaymentStatus mapStripeStatusToPaymentStatus(String stripeStatus) {
@@ -0,0 +1,147 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.GatewayResponseRecord;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.repository.GatewayResponseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling, size cap, compression and retention shared by the stores; subclasses only decide where
+ * the compressed bytes go. Only successful responses are sampled: a decline or failure is the payload
+ * someone will actually want to look at, so those are always kept.
+ * <p>
+ * Each payload is written in a transaction of its own: a failed write is rolled back alone, and a statement
+ * failing inside the caller's transaction would abort it on PostgreSQL even if the exception were caught.
+ */
+public abstract class AbstractRawResponseStore implements RawResponseStore {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractRawResponseStore.class);
+
+    private static final Set<PaymentStatus> SAMPLED =
+            EnumSet.of(PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURED, PaymentStatus.REFUNDED);
+
+    protected final GatewayResponseRepository repository;
+    private final RawResponseCodec codec;
+    private final TransactionTemplate ownTransaction;
+    private final double sampleRate;
+    private final int maxPayloadBytes;
+    private final Duration retention;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+
+    protected AbstractRawResponseStore(GatewayResponseRepository repository, RawResponseCodec codec,
+                                       PlatformTransactionManager transactionManager,
+                                       double sampleRate, int maxPayloadBytes, Duration retention) {
+        if (maxPayloadBytes <= 0 || maxPayloadBytes > GatewayResponseRecord.MAX_STORED_BYTES / 2) {
+            throw new IllegalArgumentException("payments.gatewayResponses.maxPayloadBytes must be between 1 and "
+                    + GatewayResponseRecord.MAX_STORED_BYTES / 2 + ": " + maxPayloadBytes);
+        }
+        this.repository = repository;
+        this.codec = codec;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sampleRate = sampleRate;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.retention = retention;
+    }
+
+    @Override
+    public void record(UUID transactionId, GatewayOperation operation, GatewayResponse response) {
+        if (response.getRawResponse() == null) {
+            return;
+        }
+        if (SAMPLED.contains(response.getStatus()) && !sampled()) {
+            sampledOut.increment();
+            return;
+        }
+
+        GatewayResponseRecord record = new GatewayResponseRecord();
+        record.setTransactionId(transactionId);
+        record.setOperation(operation);
+        record.setStatus(response.getStatus());
+
+        byte[] raw = response.getRawResponse().getBytes(StandardCharsets.UTF_8);
+        record.setRawSize(raw.length);
+        if (raw.length > maxPayloadBytes) {
+            raw = Arrays.copyOf(raw, maxPayloadBytes);
+            record.setTruncated(true);
+            truncated.increment();
+        }
+
+        byte[] stored = codec.encode(raw);
+        record.setStoredSize(stored.length);
+        try {
+            ownTransaction.executeWithoutResult(status -> {
+                write(record, stored);
+                repository.save(record);
+            });
+        } catch (RuntimeException ex) {
+            // losing an audit payload must never cost the payment outcome
+            failed.increment();
+            log.warn("Could not store raw {} response for transaction {}: {}", operation, transactionId, ex.getMessage());
+            return;
+        }
+
+        recorded.increment();
+        rawBytes.add(raw.length);
+        storedBytes.add(stored.length);
+    }
+
+    @Override
+    public Optional<String> read(GatewayResponseRecord record) {
+        return load(record).map(bytes -> new String(codec.decode(bytes), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public RawResponseStats stats() {
+        return new RawResponseStats(recorded.sum(), sampledOut.sum(), truncated.sum(), failed.sum(),
+                rawBytes.sum(), storedBytes.sum());
+    }
+
+    @Scheduled(fixedDelayString = "${payments.gatewayResponses.purgeInterval:PT1H}",
+            initialDelayString = "${payments.gatewayResponses.purgeInterval:PT1H}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        int purged = repository.deleteRecordedBefore(cutoff);
+        purgePayloadsBefore(cutoff);
+        if (purged > 0) {
+            log.info("Purged {} raw gateway responses older than {}", purged, retention);
+        }
+    }
+
+    // Put the compressed payload somewhere and point the (not yet saved) row at it
+    protected abstract void write(GatewayResponseRecord record, byte[] stored);
+
+    protected abstract Optional<byte[]> load(GatewayResponseRecord record);
+
+    // Stores that keep payloads outside gateway_response drop them here; the rows are already gone
+    protected void purgePayloadsBefore(Instant cutoff) {
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ahy.payment.gateway.raw;
+
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate with a preset dictionary built from Stripe's own JSON (PaymentIntent and Refund as
+ * {@code toJson()} prints them: field names, nulls, indentation). Plain deflate has nothing to refer
+ * back to in a single few-KB payload; with the dictionary most of the body becomes back-references.
+ * <p>
+ * The first byte of every encoded payload names the dictionary it was written with, so a retrained
+ * dictionary can be added under a new id without breaking stored payloads.
+ */
+@Component
+public class RawResponseCodec {
+
+    static final byte STRIPE_V1 = 1;
+
+    private static final String STRIPE_V1_RESOURCE = "/gateway/stripe-response.dict";
+
+    private final byte[] stripeV1;
+
+    public RawResponseCodec() {
+        this(loadDictionary(STRIPE_V1_RESOURCE));
+    }
+
+    RawResponseCodec(byte[] stripeV1) {
+        this.stripeV1 = stripeV1;
+    }
+
+    public byte[] encode(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(stripeV1);
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+            out.write(STRIPE_V1);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] decode(byte[] stored) {
+        if (stored.length == 0 || stored[0] != STRIPE_V1) {
+            throw new IllegalArgumentException("Unknown raw response dictionary: " + (stored.length == 0 ? "empty payload" : stored[0]));
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(stripeV1);
+            inflater.setInput(stored, 1, stored.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated raw response payload");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt raw response payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] loadDictionary(String resource) {
+        try (InputStream in = RawResponseCodec.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing compression dictionary " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ahy.payment.gateway.raw;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RawResponseStats {
+    private long recorded;    // payloads written
+    private long sampledOut;  // successful responses skipped by payments.gatewayResponses.sampleRate
+    private long truncated;   // payloads cut at payments.gatewayResponses.maxPayloadBytes
+    private long failed;      // payloads lost because the store could not write them
+    private long rawBytes;    // size before compression (after truncation)
+    private long storedBytes; // size as stored
+
+    public double getCompressionRatio() {
+        return storedBytes == 0 ? 0 : (double) rawBytes / storedBytes;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.GatewayResponseRecord;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps the raw PSP responses for debugging/audit. Every kept response gets a gateway_response row;
+ * implementations decide where the (compressed) payload itself lives.
+ */
+public interface RawResponseStore {
+
+    /**
+     * Keep the raw body of a gateway response, subject to sampling and the size cap.
+     * Called once the transaction that records the outcome has committed; writes in a transaction of its own
+     * and never throws for the payload's sake.
+     * @param transactionId transaction the call was made for
+     * @param operation gateway call that produced the response
+     * @param response gateway response; nothing is kept when it carries no raw body
+     */
+    void record(UUID transactionId, GatewayOperation operation, GatewayResponse response);
+
+    /**
+     * The decompressed payload of a row, or empty if it is no longer available (e.g. past retention).
+     */
+    Optional<String> read(GatewayResponseRecord record);
+
+    RawResponseStats stats();
+}
@@ -0,0 +1,140 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.model.GatewayResponseRecord;
+import com.ahy.payment.repository.GatewayResponseRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Compressed payloads appended to local segment files; the gateway_response row only holds the
+ * segment name, offset and length, so the table carries no payload bytes at all. A segment is
+ * closed once it reaches {@code payments.gatewayResponses.segment.maxSize} and deleted as a whole
+ * when it is older than the retention.
+ * <p>
+ * Appends are not fsynced per payload: these are debugging copies, and a crash loses at most what the
+ * OS had not written yet. Segments are node-local; a row written by another node reads as empty here.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.gatewayResponses.store", havingValue = "segment")
+public class SegmentFileRawResponseStore extends AbstractRawResponseStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentFileRawResponseStore.class);
+
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+
+    private FileChannel active;
+    private String activeName;
+    private long activeSize;
+    private int rolls;
+
+    public SegmentFileRawResponseStore(GatewayResponseRepository repository, RawResponseCodec codec,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${payments.gatewayResponses.sampleRate:1.0}") double sampleRate,
+                                       @Value("${payments.gatewayResponses.maxPayloadBytes:16384}") int maxPayloadBytes,
+                                       @Value("${payments.gatewayResponses.retention:P30D}") Duration retention,
+                                       @Value("${payments.gatewayResponses.segment.directory:./data/gateway-responses}") Path directory,
+                                       @Value("${payments.gatewayResponses.segment.maxSize:64MB}") DataSize maxSegmentSize) {
+        super(repository, codec, transactionManager, sampleRate, maxPayloadBytes, retention);
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentSize.toBytes();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create raw response segment directory " + directory, e);
+        }
+    }
+
+    @Override
+    protected synchronized void write(GatewayResponseRecord record, byte[] stored) {
+        try {
+            if (active == null || activeSize + stored.length > maxSegmentBytes) {
+                roll();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(stored);
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to raw response segment " + activeName, e);
+        }
+        record.setSegment(activeName);
+        record.setSegmentOffset(activeSize);
+        activeSize += stored.length;
+    }
+
+    @Override
+    protected Optional<byte[]> load(GatewayResponseRecord record) {
+        if (record.getSegment() == null || record.getSegmentOffset() == null) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(record.getSegment()), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(record.getStoredSize());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, record.getSegmentOffset() + buffer.position()) < 0) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(buffer.array());
+        } catch (NoSuchFileException purgedOrOtherNode) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read raw response segment " + record.getSegment(), e);
+        }
+    }
+
+    @Override
+    protected synchronized void purgePayloadsBefore(Instant cutoff) {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path segment : segments) {
+                if (segment.getFileName().toString().equals(activeName)) {
+                    continue;
+                }
+                if (Files.getLastModifiedTime(segment).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(segment);
+                    log.info("Deleted raw response segment {}", segment.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not purge raw response segments in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+            active = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+        activeName = "segment-" + System.currentTimeMillis() + "-" + (rolls++) + SUFFIX;
+        active = FileChannel.open(directory.resolve(activeName),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.model.GatewayResponseRecord;
+import com.ahy.payment.repository.GatewayResponseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Compressed payload in gateway_response.payload, written with its row
+@Component
+@ConditionalOnProperty(name = "payments.gatewayResponses.store", havingValue = "table", matchIfMissing = true)
+public class TableRawResponseStore extends AbstractRawResponseStore {
+
+    public TableRawResponseStore(GatewayResponseRepository repository, RawResponseCodec codec,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${payments.gatewayResponses.sampleRate:1.0}") double sampleRate,
+                                 @Value("${payments.gatewayResponses.maxPayloadBytes:16384}") int maxPayloadBytes,
+                                 @Value("${payments.gatewayResponses.retention:P30D}") Duration retention) {
+        super(repository, codec, transactionManager, sampleRate, maxPayloadBytes, retention);
+    }
+
+    @Override
+    protected void write(GatewayResponseRecord record, byte[] stored) {
+        record.setPayload(stored);
+    }
+
+    @Override
+    protected Optional<byte[]> load(GatewayResponseRecord record) {
+        return Optional.ofNullable(record.getPayload());
+    }
+}
@@ -0,0 +1,149 @@
+package com.ahy.payment.gateway.resilience;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based sliding-window circuit breaker.
+ * <ul>
+ *   <li>CLOSED: calls pass; the outcomes of the last {@code windowSize} calls are kept in a ring, and once
+ *   at least {@code minimumCalls} are in it a failure rate at or above the threshold opens the circuit.</li>
+ *   <li>OPEN: calls are refused until {@code openDuration} has passed.</li>
+ *   <li>HALF_OPEN: up to {@code halfOpenCalls} trial calls pass; one failure opens the circuit again,
+ *   {@code halfOpenCalls} successes close it with an empty window.</li>
+ * </ul>
+ * Guarded by the instance lock: calls it protects take milliseconds to seconds, so it is never the contended part.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int next;        // ring position of the next outcome
+    private int recorded;    // outcomes in the ring, up to window.length
+    private int failures;    // failures in the ring
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+    private long timesOpened;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                   Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1
+                || failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings: windowSize=" + windowSize
+                    + ", minimumCalls=" + minimumCalls + ", failureRateThreshold=" + failureRateThreshold
+                    + ", halfOpenCalls=" + halfOpenCalls);
+        }
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+    }
+
+    // A true answer must be followed by exactly one of onSuccess, onFailure or onAbandoned
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                open();
+            }
+        }
+    }
+
+    // The permit was granted but the call never started (bulkhead full), or failed for a reason that says
+    // nothing about the PSP (a rejected request): frees a half-open trial slot
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN && trialsStarted > 0) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized long timesOpened() {
+        return timesOpened;
+    }
+
+    // Time left until a call is let through again; zero unless the circuit is open
+    public synchronized Duration remainingOpen() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openNanos - (nanoClock.getAsLong() - openedAt)));
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        timesOpened++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ahy.payment.gateway.resilience;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GatewayResilienceStats {
+    private long calls;             // calls sent to the PSP (retries and hedges of a call not counted again)
+    private long failures;          // calls that threw
+    private long timeouts;          // calls not answered within their operation's timeout (answered PENDING)
+    private long bulkheadRejected;  // refused because payments.gateway.resilience.bulkhead.maxConcurrent were in flight
+    private long circuitRejected;   // refused because the circuit was open
+    private long retries;           // extra attempts after a transient PSP error
+    private long hedges;            // second attempts started because the first was slower than the hedge delay
+    private int inFlight;           // calls and hedges holding a bulkhead permit, timed-out ones still running included
+    private String circuitState;    // CLOSED, OPEN or HALF_OPEN
+    private long circuitOpened;     // times the circuit opened
+}
@@ -0,0 +1,43 @@
+package com.ahy.payment.gateway.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the last {@code size} successful calls of one operation, for the hedge delay. The percentile
+ * is recomputed every {@value #RECOMPUTE_EVERY} samples rather than on every read.
+ */
+class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private volatile long cachedNanos = -1;
+
+    LatencyWindow(int size, double percentile) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (++sinceRecompute >= RECOMPUTE_EVERY) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cachedNanos = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    // -1 until enough samples have been seen
+    long percentileNanos() {
+        return cachedNanos;
+    }
+}
@@ -0,0 +1,340 @@
+package com.ahy.payment.gateway.resilience;
+
+import com.ahy.payment.exception.GatewayTransientException;
+import com.ahy.payment.exception.GatewayUnavailableException;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.PaymentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the profile's {@link PaymentGateway} (mock or Stripe) so a slow or failing PSP cannot take the
+ * service down with it:
+ * <ul>
+ *   <li>timeout per operation ({@code payments.gateway.resilience.timeouts.*}): the call runs on the
+ *   gateway call executor and the caller stops waiting when the time is up;</li>
+ *   <li>bulkhead: at most {@code bulkhead.maxConcurrent} calls in flight, counted until the call really
+ *   returns, so calls abandoned after a timeout still hold their slot;</li>
+ *   <li>circuit breaker over the last {@code circuitBreaker.windowSize} calls, where a call that timed out
+ *   or still threw {@link GatewayTransientException} after its retries is a failure. Declines are answers,
+ *   not failures, and so are errors about the request itself (an unsupported currency): one client's bad
+ *   requests must not open the circuit for everyone;</li>
+ *   <li>retries of {@link GatewayTransientException} (network errors, 429, 5xx) up to {@code retry.maxAttempts}
+ *   with full-jitter exponential backoff, within the operation's timeout;</li>
+ *   <li>optional hedging ({@code hedge.enabled}): a call still unanswered after the operation's recent
+ *   {@code hedge.percentile} latency gets a second, identical attempt if a bulkhead slot is free, and the first
+ *   answer wins. Only for a delegate that {@linkplain PaymentGateway#allowsConcurrentDuplicates() allows
+ *   concurrent duplicates}; Stripe does not (a hedge would get 409 {@code idempotency_key_in_use} while the
+ *   first call runs), so against Stripe the setting is ignored.</li>
+ * </ul>
+ * Retries and hedges repeat the call with the same idempotency key (capture and refund are keyed by
+ * payment), so they rely on the PSP deduplicating by key, as Stripe does.
+ * <p>
+ * What a caller gets back when the PSP does not answer depends on whether the request left the service:
+ * <ul>
+ *   <li>refused before sending (circuit open, bulkhead full): {@link GatewayUnavailableException}. Nothing
+ *   happened at the PSP, so the payment stays as it was (an authorization's reservation is released) and
+ *   the API answers 503;</li>
+ *   <li>timed out after sending: a {@link PaymentStatus#PENDING} response. The PSP may or may not have acted,
+ *   so the payment is left in PENDING/CAPTURING/REFUNDING for the webhook or the recovery job to settle.</li>
+ * </ul>
+ * Active unless {@code payments.gateway.resilience.enabled=false}; it is the {@code @Primary} gateway,
+ * so the services get it and it gets the profile's implementation.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "payments.gateway.resilience.enabled", havingValue = "true", matchIfMissing = true)
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientPaymentGateway.class);
+
+    private static final int LATENCY_SAMPLES = 1024;
+
+    record RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+    }
+
+    record HedgePolicy(boolean enabled, double percentile, Duration minDelay) {
+    }
+
+    private final PaymentGateway delegate;
+    private final ExecutorService executor;
+    private final Map<GatewayOperation, Duration> timeouts;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final Duration bulkheadMaxWait;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retry;
+    private final HedgePolicy hedge;
+    private final Map<GatewayOperation, LatencyWindow> latencies = new EnumMap<>(GatewayOperation.class);
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder bulkheadRejected = new LongAdder();
+    private final LongAdder circuitRejected = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+
+    // The delegate parameter never resolves to this bean itself: Spring skips self references
+    @Autowired
+    public ResilientPaymentGateway(PaymentGateway delegate,
+                                   @Qualifier("gatewayCallExecutor") ExecutorService executor,
+                                   @Value("${payments.gateway.resilience.timeouts.authorize:PT10S}") Duration authorizeTimeout,
+                                   @Value("${payments.gateway.resilience.timeouts.capture:PT10S}") Duration captureTimeout,
+                                   @Value("${payments.gateway.resilience.timeouts.refund:PT10S}") Duration refundTimeout,
+                                   @Value("${payments.gateway.resilience.bulkhead.maxConcurrent:64}") int maxConcurrent,
+                                   @Value("${payments.gateway.resilience.bulkhead.maxWait:PT0.05S}") Duration bulkheadMaxWait,
+                                   @Value("${payments.gateway.resilience.circuitBreaker.windowSize:50}") int windowSize,
+                                   @Value("${payments.gateway.resilience.circuitBreaker.minimumCalls:20}") int minimumCalls,
+                                   @Value("${payments.gateway.resilience.circuitBreaker.failureRateThreshold:0.5}") double failureRateThreshold,
+                                   @Value("${payments.gateway.resilience.circuitBreaker.openDuration:PT30S}") Duration openDuration,
+                                   @Value("${payments.gateway.resilience.circuitBreaker.halfOpenCalls:3}") int halfOpenCalls,
+                                   @Value("${payments.gateway.resilience.retry.maxAttempts:3}") int retryMaxAttempts,
+                                   @Value("${payments.gateway.resilience.retry.initialBackoff:PT0.1S}") Duration retryInitialBackoff,
+                                   @Value("${payments.gateway.resilience.retry.maxBackoff:PT1S}") Duration retryMaxBackoff,
+                                   @Value("${payments.gateway.resilience.hedge.enabled:false}") boolean hedgeEnabled,
+                                   @Value("${payments.gateway.resilience.hedge.percentile:0.95}") double hedgePercentile,
+                                   @Value("${payments.gateway.resilience.hedge.minDelay:PT0.05S}") Duration hedgeMinDelay) {
+        this(delegate, executor, timeouts(authorizeTimeout, captureTimeout, refundTimeout), maxConcurrent, bulkheadMaxWait,
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls),
+                new RetryPolicy(retryMaxAttempts, retryInitialBackoff, retryMaxBackoff),
+                new HedgePolicy(hedgeEnabled, hedgePercentile, hedgeMinDelay));
+    }
+
+    ResilientPaymentGateway(PaymentGateway delegate, ExecutorService executor, Map<GatewayOperation, Duration> timeouts,
+                            int maxConcurrent, Duration bulkheadMaxWait, CircuitBreaker circuitBreaker,
+                            RetryPolicy retry, HedgePolicy hedge) {
+        if (retry.maxAttempts() < 1) {
+            throw new IllegalArgumentException("payments.gateway.resilience.retry.maxAttempts must be at least 1");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.timeouts = timeouts;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        this.circuitBreaker = circuitBreaker;
+        this.retry = retry;
+        if (hedge.enabled() && !delegate.allowsConcurrentDuplicates()) {
+            log.warn("payments.gateway.resilience.hedge.enabled ignored: {} rejects a call while the same one is in flight",
+                    delegate.getClass().getSimpleName());
+            hedge = new HedgePolicy(false, hedge.percentile(), hedge.minDelay());
+        }
+        this.hedge = hedge;
+        for (GatewayOperation operation : GatewayOperation.values()) {
+            latencies.put(operation, new LatencyWindow(LATENCY_SAMPLES, hedge.percentile()));
+        }
+    }
+
+    static Map<GatewayOperation, Duration> timeouts(Duration authorize, Duration capture, Duration refund) {
+        Map<GatewayOperation, Duration> timeouts = new EnumMap<>(GatewayOperation.class);
+        timeouts.put(GatewayOperation.AUTHORIZE, authorize);
+        timeouts.put(GatewayOperation.CAPTURE, capture);
+        timeouts.put(GatewayOperation.REFUND, refund);
+        return timeouts;
+    }
+
+    @Override
+    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        return call(GatewayOperation.AUTHORIZE, null, () -> delegate.authorize(amount, currency, metadata, idempotencyKey));
+    }
+
+    @Override
+    public GatewayResponse capture(String externalId, BigDecimal amount, String currency) {
+        return call(GatewayOperation.CAPTURE, externalId, () -> delegate.capture(externalId, amount, currency));
+    }
+
+    @Override
+    public GatewayResponse refund(String externalId, BigDecimal amount, String currency) {
+        return call(GatewayOperation.REFUND, externalId, () -> delegate.refund(externalId, amount, currency));
+    }
+
+    public GatewayResilienceStats stats() {
+        return new GatewayResilienceStats(
+                calls.sum(),
+                failures.sum(),
+                timeoutCount.sum(),
+                bulkheadRejected.sum(),
+                circuitRejected.sum(),
+                retries.sum(),
+                hedges.sum(),
+                maxConcurrent - bulkhead.availablePermits(),
+                circuitBreaker.state().name(),
+                circuitBreaker.timesOpened()
+        );
+    }
+
+    private GatewayResponse call(GatewayOperation operation, String externalId, Supplier<GatewayResponse> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejected.increment();
+            throw new GatewayUnavailableException("Payment gateway circuit is open; " + operation + " not sent",
+                    circuitBreaker.remainingOpen());
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.onAbandoned();
+            bulkheadRejected.increment();
+            throw new GatewayUnavailableException("Too many payment gateway calls in flight; " + operation + " not sent",
+                    bulkheadMaxWait);
+        }
+
+        CompletableFuture<GatewayResponse> outcome = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger();
+        try {
+            launch(call, outcome, running);
+        } catch (RuntimeException rejected) {
+            circuitBreaker.onAbandoned();
+            throw rejected;
+        }
+        calls.increment();
+
+        long start = System.nanoTime();
+        Duration timeout = timeouts.get(operation);
+        try {
+            GatewayResponse response = await(operation, call, outcome, running, start, timeout.toNanos());
+            latencies.get(operation).record(System.nanoTime() - start);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (TimeoutException ex) {
+            // stops retries still to come; a request already on the wire runs on and keeps its bulkhead slot
+            outcome.cancel(false);
+            timeoutCount.increment();
+            circuitBreaker.onFailure();
+            log.warn("Payment gateway {} for {} timed out after {}; outcome unknown", operation, externalId, timeout);
+            return new GatewayResponse(PaymentStatus.PENDING, externalId, null);
+        } catch (ExecutionException ex) {
+            failures.increment();
+            if (ex.getCause() instanceof GatewayTransientException) {
+                circuitBreaker.onFailure();
+            } else {
+                // says nothing about the PSP's health: the permit is returned without an outcome
+                circuitBreaker.onAbandoned();
+            }
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Payment gateway " + operation + " failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            // the caller gave up, not the PSP: the call keeps running and does not count against the circuit
+            Thread.currentThread().interrupt();
+            outcome.cancel(false);
+            circuitBreaker.onAbandoned();
+            return new GatewayResponse(PaymentStatus.PENDING, externalId, null);
+        }
+    }
+
+    private GatewayResponse await(GatewayOperation operation, Supplier<GatewayResponse> call,
+                                  CompletableFuture<GatewayResponse> outcome, AtomicInteger running,
+                                  long start, long timeoutNanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long hedgeAfter = hedgeDelayNanos(operation);
+        if (hedgeAfter >= 0 && hedgeAfter < timeoutNanos) {
+            try {
+                return outcome.get(hedgeAfter, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException slow) {
+                // never waits for a slot: under load, hedging would only add to it
+                if (!outcome.isDone() && bulkhead.tryAcquire()) {
+                    hedges.increment();
+                    try {
+                        launch(call, outcome, running);
+                    } catch (RuntimeException rejected) {
+                        log.debug("Hedge not started: {}", rejected.getMessage());
+                    }
+                }
+            }
+        }
+        return outcome.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+    }
+
+    // -1 when hedging is off or the operation has too few successful calls to know its latency
+    private long hedgeDelayNanos(GatewayOperation operation) {
+        if (!hedge.enabled()) {
+            return -1;
+        }
+        long percentile = latencies.get(operation).percentileNanos();
+        return percentile < 0 ? -1 : Math.max(percentile, hedge.minDelay().toNanos());
+    }
+
+    /*
+     * Runs one chain of attempts (first try plus retries) on the executor, holding a bulkhead permit the
+     * caller acquired until it ends. The first chain to succeed completes the outcome; it fails only once
+     * every chain has failed. On rejection the permit is released here and the exception rethrown.
+     */
+    private void launch(Supplier<GatewayResponse> call, CompletableFuture<GatewayResponse> outcome, AtomicInteger running) {
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    outcome.complete(withRetries(call, outcome));
+                } catch (RuntimeException ex) {
+                    if (running.decrementAndGet() == 0) {
+                        outcome.completeExceptionally(ex);
+                    }
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RuntimeException rejected) {
+            running.decrementAndGet();
+            bulkhead.release();
+            throw rejected;
+        }
+    }
+
+    private GatewayResponse withRetries(Supplier<GatewayResponse> call, CompletableFuture<GatewayResponse> outcome) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (GatewayTransientException ex) {
+                // done: the caller timed out or another chain already answered
+                if (attempt >= retry.maxAttempts() || outcome.isDone()) {
+                    throw ex;
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(backoffMillis(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    // Full jitter: uniform in [0, min(maxBackoff, initialBackoff * 2^(attempt - 1))]
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(retry.maxBackoff().toMillis(), retry.initialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadMaxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ahy.payment.gateway.simulation;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Simulated PSP response time. Written in configuration as
+ * <ul>
+ *   <li>{@code fixed(50ms)} or just {@code 50ms}: always the same;</li>
+ *   <li>{@code normal(80ms, 20ms)}: mean and standard deviation, never below zero;</li>
+ *   <li>{@code pareto(30ms, 1.5)} or {@code pareto(30ms, 1.5, 10s)}: scale (the minimum) and shape, optionally
+ *   capped. A long tail: shape 1.5 puts about 3% of calls above 10x the scale and 0.1% above 100x.</li>
+ * </ul>
+ * Durations are Spring's ({@code 250ms}, {@code 2s}, {@code PT0.25S}).
+ */
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = new Fixed(0);
+
+    long sampleNanos(RandomGenerator random);
+
+    static LatencyDistribution parse(String spec) {
+        String text = spec.trim();
+        int open = text.indexOf('(');
+        if (open < 0) {
+            return new Fixed(nanos(text));
+        }
+        if (!text.endsWith(")")) {
+            throw invalid(spec);
+        }
+        String[] args = text.substring(open + 1, text.length() - 1).split(",");
+        LatencyDistribution distribution;
+        try {
+            distribution = switch (text.substring(0, open).trim().toLowerCase(Locale.ROOT)) {
+                case "fixed" -> args.length == 1 ? new Fixed(nanos(args[0])) : null;
+                case "normal" -> args.length == 2 ? new Normal(nanos(args[0]), nanos(args[1])) : null;
+                case "pareto" -> args.length == 2 || args.length == 3
+                        ? new Pareto(nanos(args[0]), Double.parseDouble(args[1].trim()),
+                                args.length == 3 ? nanos(args[2]) : Long.MAX_VALUE)
+                        : null;
+                default -> null;
+            };
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid latency distribution '" + spec + "': " + ex.getMessage(), ex);
+        }
+        if (distribution == null) {
+            throw invalid(spec);
+        }
+        return distribution;
+    }
+
+    private static long nanos(String duration) {
+        return DurationStyle.detectAndParse(duration.trim()).toNanos();
+    }
+
+    private static IllegalArgumentException invalid(String spec) {
+        return new IllegalArgumentException("Invalid latency distribution '" + spec
+                + "'; expected fixed(d), normal(mean, stddev) or pareto(scale, shape[, max])");
+    }
+
+    record Fixed(long nanos) implements LatencyDistribution {
+
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "fixed(" + Duration.ofNanos(nanos) + ")";
+        }
+    }
+
+    record Normal(long meanNanos, long stddevNanos) implements LatencyDistribution {
+
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            return Math.max(0, Math.round(meanNanos + random.nextGaussian() * stddevNanos));
+        }
+
+        @Override
+        public String toString() {
+            return "normal(" + Duration.ofNanos(meanNanos) + ", " + Duration.ofNanos(stddevNanos) + ")";
+        }
+    }
+
+    record Pareto(long scaleNanos, double shape, long maxNanos) implements LatencyDistribution {
+
+        public Pareto {
+            if (shape <= 0) {
+                throw new IllegalArgumentException("shape must be positive");
+            }
+        }
+
+        // Inverse CDF: scale / U^(1/shape), U uniform in (0, 1]
+        @Override
+        public long sampleNanos(RandomGenerator random) {
+            double u = 1.0 - random.nextDouble();
+            double sample = scaleNanos / Math.pow(u, 1.0 / shape);
+            return sample >= maxNanos ? maxNanos : (long) sample;
+        }
+
+        @Override
+        public String toString() {
+            return "pareto(" + Duration.ofNanos(scaleNanos) + ", " + shape
+                    + (maxNanos == Long.MAX_VALUE ? "" : ", " + Duration.ofNanos(maxNanos)) + ")";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ahy.payment.gateway.simulation;
+
+import com.ahy.payment.model.GatewayOperation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * One scripted rule of the mock PSP, written as {@code <conditions> -> <outcome> [<percent>%]}, e.g.
+ * {@code op=authorize & amount>1000 -> DECLINED} or {@code currency=JPY -> TIMEOUT 5%}.
+ * Conditions are joined by {@code &}: {@code op=authorize|capture|refund}, {@code currency=XXX} and
+ * {@code amount} with {@code > >= < <= =}. Capture and refund are not always sent with an amount;
+ * an amount condition never matches those.
+ *
+ * @param probability chance that a matching call gets the outcome; otherwise the next rule is tried
+ */
+public record MockGatewayRule(GatewayOperation operation, String currency, String amountOperator, BigDecimal amount,
+                              SimulatedOutcome outcome, double probability, String text) {
+
+    // Several rules in one property, separated by ';'
+    public static List<MockGatewayRule> parseAll(String rules) {
+        List<MockGatewayRule> parsed = new ArrayList<>();
+        if (rules == null) {
+            return parsed;
+        }
+        for (String rule : rules.split(";")) {
+            if (!rule.isBlank()) {
+                parsed.add(parse(rule));
+            }
+        }
+        return parsed;
+    }
+
+    public static MockGatewayRule parse(String rule) {
+        String text = rule.trim();
+        int arrow = text.indexOf("->");
+        if (arrow < 0) {
+            throw invalid(rule, "missing '->'");
+        }
+
+        GatewayOperation operation = null;
+        String currency = null;
+        String amountOperator = null;
+        BigDecimal amount = null;
+        for (String condition : text.substring(0, arrow).split("&")) {
+            String c = condition.replace(" ", "");
+            if (c.startsWith("op=")) {
+                operation = GatewayOperation.valueOf(c.substring(3).toUpperCase(Locale.ROOT));
+            } else if (c.startsWith("currency=")) {
+                currency = c.substring(9).toUpperCase(Locale.ROOT);
+            } else if (c.startsWith("amount")) {
+                String comparison = c.substring(6);
+                int digits = comparison.startsWith(">=") || comparison.startsWith("<=") ? 2 : 1;
+                amountOperator = comparison.substring(0, digits);
+                if (!List.of(">", ">=", "<", "<=", "=").contains(amountOperator)) {
+                    throw invalid(rule, "unknown comparison '" + amountOperator + "'");
+                }
+                amount = new BigDecimal(comparison.substring(digits));
+            } else if (!c.isEmpty()) {
+                throw invalid(rule, "unknown condition '" + condition.trim() + "'");
+            }
+        }
+
+        String[] result = text.substring(arrow + 2).trim().split("\\s+");
+        SimulatedOutcome outcome = SimulatedOutcome.valueOf(result[0].toUpperCase(Locale.ROOT));
+        double probability = 1.0;
+        if (result.length == 2 && result[1].endsWith("%")) {
+            probability = Double.parseDouble(result[1].substring(0, result[1].length() - 1)) / 100;
+        } else if (result.length != 1) {
+            throw invalid(rule, "expected '<outcome> [<percent>%]' after '->'");
+        }
+        return new MockGatewayRule(operation, currency, amountOperator, amount, outcome, probability, text);
+    }
+
+    public boolean matches(GatewayOperation op, BigDecimal callAmount, String callCurrency) {
+        if (operation != null && operation != op) {
+            return false;
+        }
+        if (currency != null && !currency.equalsIgnoreCase(callCurrency)) {
+            return false;
+        }
+        if (amountOperator != null) {
+            if (callAmount == null) {
+                return false;
+            }
+            int cmp = callAmount.compareTo(amount);
+            return switch (amountOperator) {
+                case ">" -> cmp > 0;
+                case ">=" -> cmp >= 0;
+                case "<" -> cmp < 0;
+                case "<=" -> cmp <= 0;
+                default -> cmp == 0;
+            };
+        }
+        return true;
+    }
+
+    // Draws even when certain, so adding a rule does not shift the draws of the ones after it
+    boolean fires(RandomGenerator random) {
+        return random.nextDouble() < probability;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static IllegalArgumentException invalid(String rule, String reason) {
+        return new IllegalArgumentException("Invalid mock gateway rule '" + rule.trim() + "': " + reason);
+    }
+}
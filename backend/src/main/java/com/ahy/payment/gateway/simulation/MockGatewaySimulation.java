@@ -0,0 +1,146 @@
+package com.ahy.payment.gateway.simulation;
+
+import com.ahy.payment.model.GatewayOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides, per call, how long the mock PSP takes and what it answers ({@code payments.mock.*}):
+ * the first matching {@link MockGatewayRule} that fires, otherwise the operation's timeout, error and
+ * failure rates, otherwise OK. Latency is drawn from the operation's {@link LatencyDistribution}.
+ * <p>
+ * Call n draws from a generator seeded with {@code seed} and n, so a run with the same seed and the same
+ * sequence of calls makes the same decisions; with concurrent callers the order varies but the mix does not.
+ * Without {@code payments.mock.seed} a seed is picked and logged, so any run can be replayed.
+ */
+@Component
+@Profile("mock")
+public class MockGatewaySimulation {
+
+    private static final Logger log = LoggerFactory.getLogger(MockGatewaySimulation.class);
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The mock's behaviour before it was configurable: 10% of authorizations fail, above 1000 they are declined
+    public static final String DEFAULT_RULES = "op=authorize & amount>1000 -> DECLINED";
+    private static final double DEFAULT_AUTHORIZE_FAILURE_RATE = 0.1;
+
+    /**
+     * @param failureRate share of calls answered FAILED
+     * @param errorRate   share of calls thrown as a transient PSP error
+     * @param timeoutRate share of calls answered after timeoutLatency instead of the drawn latency
+     */
+    public record OperationProfile(LatencyDistribution latency, double failureRate, double errorRate, double timeoutRate) {
+    }
+
+    // One decision: wait delayNanos, then answer per outcome
+    public record Decision(long delayNanos, SimulatedOutcome outcome) {
+    }
+
+    private final Map<GatewayOperation, OperationProfile> profiles;
+    private final List<MockGatewayRule> rules;
+    private final long seed;
+    private final long timeoutLatencyNanos;
+    private final AtomicLong calls = new AtomicLong();
+
+    public MockGatewaySimulation(Map<GatewayOperation, OperationProfile> profiles, List<MockGatewayRule> rules,
+                                 long seed, Duration timeoutLatency) {
+        this.profiles = new EnumMap<>(profiles);
+        this.rules = List.copyOf(rules);
+        this.seed = seed;
+        this.timeoutLatencyNanos = timeoutLatency.toNanos();
+    }
+
+    /*
+     * payments.mock.<operation>.latency / failureRate / errorRate / timeoutRate, plus rules, seed and
+     * timeoutLatency. payments.mock.disableRandom (used by tests) zeroes the three rates; rules still apply.
+     */
+    @Autowired
+    public MockGatewaySimulation(Environment environment) {
+        this(profilesFrom(environment),
+                MockGatewayRule.parseAll(environment.getProperty("payments.mock.rules", DEFAULT_RULES)),
+                seedFrom(environment),
+                environment.getProperty("payments.mock.timeoutLatency", Duration.class, Duration.ofSeconds(30)));
+        log.info("Mock gateway: seed {}, {}, rules {}", seed, profiles, rules);
+    }
+
+    // No latency, 10% failed authorizations, declines above 1000: what the mock did before it was configurable
+    public static MockGatewaySimulation defaults() {
+        Map<GatewayOperation, OperationProfile> profiles = new EnumMap<>(GatewayOperation.class);
+        for (GatewayOperation op : GatewayOperation.values()) {
+            double failureRate = op == GatewayOperation.AUTHORIZE ? DEFAULT_AUTHORIZE_FAILURE_RATE : 0;
+            profiles.put(op, new OperationProfile(LatencyDistribution.NONE, failureRate, 0, 0));
+        }
+        return new MockGatewaySimulation(profiles, MockGatewayRule.parseAll(DEFAULT_RULES),
+                ThreadLocalRandom.current().nextLong(), Duration.ofSeconds(30));
+    }
+
+    public Decision next(GatewayOperation operation, BigDecimal amount, String currency) {
+        SplittableRandom random = new SplittableRandom(seed + calls.getAndIncrement() * GOLDEN_GAMMA);
+        OperationProfile profile = profiles.get(operation);
+
+        SimulatedOutcome outcome = null;
+        for (MockGatewayRule rule : rules) {
+            if (rule.matches(operation, amount, currency) && rule.fires(random)) {
+                outcome = rule.outcome();
+                break;
+            }
+        }
+        if (outcome == null) {
+            double u = random.nextDouble();
+            if (u < profile.timeoutRate()) {
+                outcome = SimulatedOutcome.TIMEOUT;
+            } else if (u < profile.timeoutRate() + profile.errorRate()) {
+                outcome = SimulatedOutcome.ERROR;
+            } else if (u < profile.timeoutRate() + profile.errorRate() + profile.failureRate()) {
+                outcome = SimulatedOutcome.FAILED;
+            } else {
+                outcome = SimulatedOutcome.OK;
+            }
+        }
+
+        long latency = profile.latency().sampleNanos(random);
+        return new Decision(outcome == SimulatedOutcome.TIMEOUT ? timeoutLatencyNanos : latency, outcome);
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    private static Map<GatewayOperation, OperationProfile> profilesFrom(Environment environment) {
+        boolean disableRandom = environment.getProperty("payments.mock.disableRandom", Boolean.class, false);
+        Map<GatewayOperation, OperationProfile> profiles = new EnumMap<>(GatewayOperation.class);
+        for (GatewayOperation op : GatewayOperation.values()) {
+            String prefix = "payments.mock." + op.name().toLowerCase(Locale.ROOT) + ".";
+            double defaultFailureRate = op == GatewayOperation.AUTHORIZE ? DEFAULT_AUTHORIZE_FAILURE_RATE : 0;
+            double failureRate = environment.getProperty(prefix + "failureRate", Double.class, defaultFailureRate);
+            double errorRate = environment.getProperty(prefix + "errorRate", Double.class, 0.0);
+            double timeoutRate = environment.getProperty(prefix + "timeoutRate", Double.class, 0.0);
+            profiles.put(op, new OperationProfile(
+                    LatencyDistribution.parse(environment.getProperty(prefix + "latency", "0ms")),
+                    disableRandom ? 0 : failureRate,
+                    disableRandom ? 0 : errorRate,
+                    disableRandom ? 0 : timeoutRate));
+        }
+        return profiles;
+    }
+
+    private static long seedFrom(Environment environment) {
+        String seed = environment.getProperty("payments.mock.seed", "");
+        return seed.isBlank() ? ThreadLocalRandom.current().nextLong() : Long.parseLong(seed.trim());
+    }
+}
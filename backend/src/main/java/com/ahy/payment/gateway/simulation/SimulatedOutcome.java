@@ -0,0 +1,10 @@
+package com.ahy.payment.gateway.simulation;
+
+// What the mock PSP does with one call
+public enum SimulatedOutcome {
+    OK,        // authorized / captured / refunded
+    DECLINED,  // answers DECLINED
+    FAILED,    // answers FAILED
+    ERROR,     // throws GatewayTransientException, like a network error or a 5xx
+    TIMEOUT    // answers OK, but only after payments.mock.timeoutLatency
+}
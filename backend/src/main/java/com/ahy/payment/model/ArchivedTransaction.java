@@ -0,0 +1,49 @@
+package com.ahy.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A transaction in a terminal status, moved out of {@code transaction} by {@code TransactionArchiver}.
+ * Rows are only ever inserted (by a native INSERT ... SELECT) and read. On PostgreSQL the table is
+ * range-partitioned by month of {@code createdAt}, which is why its primary key is (id, created_at).
+ */
+@Data
+@Entity
+@Table(name = "transaction_archive", indexes = {
+        @Index(name = "idx_transaction_archive_external_transaction_id", columnList = "externalTransactionId")
+})
+public class ArchivedTransaction {
+
+    @Id
+    private UUID id;
+
+    private BigDecimal amount;
+
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    private String externalTransactionId;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private Map<String, String> metadata;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    private Instant archivedAt;
+}
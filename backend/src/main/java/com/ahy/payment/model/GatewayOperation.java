@@ -0,0 +1,7 @@
+package com.ahy.payment.model;
+
+public enum GatewayOperation {
+    AUTHORIZE,
+    CAPTURE,
+    REFUND
+}
@@ -0,0 +1,58 @@
+package com.ahy.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Raw PSP response kept for debugging/audit, one row per kept gateway call. Lives outside
+ * {@code transaction} so that loading a payment never reads the payload. The payload is compressed
+ * ({@code RawResponseCodec}) and either stored here or in a segment file at {@code segment}/{@code segmentOffset},
+ * depending on {@code payments.gatewayResponses.store}.
+ */
+@Data
+@Entity
+@Table(name = "gateway_response", indexes = {
+        @Index(name = "idx_gateway_response_transaction_id", columnList = "transactionId"),
+        @Index(name = "idx_gateway_response_recorded_at", columnList = "recordedAt")
+})
+public class GatewayResponseRecord {
+
+    public static final int MAX_STORED_BYTES = 65_535;
+
+    // sequence rather than identity so the inserts of a batch authorize stay JDBC-batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gateway_response_seq")
+    @SequenceGenerator(name = "gateway_response_seq", sequenceName = "gateway_response_seq", allocationSize = 50)
+    private Long id;
+
+    private UUID transactionId;
+
+    @Enumerated(EnumType.STRING)
+    private GatewayOperation operation;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    @Column(length = MAX_STORED_BYTES)
+    private byte[] payload;
+
+    private String segment;
+
+    private Long segmentOffset;
+
+    private int storedSize;
+
+    private int rawSize;
+
+    private boolean truncated;
+
+    private Instant recordedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        recordedAt = Instant.now();
+    }
+}
@@ -1,10 +1,56 @@
 package com.ahy.payment.model;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum PaymentStatus {
     PENDING,
     AUTHORIZED,
+    CAPTURING,   // capture sent to the PSP, outcome not recorded yet
     CAPTURED,
+    REFUNDING,   // refund sent to the PSP, outcome not recorded yet
     REFUNDED,
     DECLINED,
-    FAILED
+    FAILED;
+
+    /*
+     * Every status change the service makes, whoever makes it (API call, PSP outcome, webhook, recovery).
+     * CAPTURED is reachable without CAPTURING because PSPs capture automatically or report it by webhook;
+     * CAPTURING/REFUNDING fall back to where they came from when the PSP call throws. A refund the PSP
+     * refuses falls back too: the money stays captured, so it never makes the payment FAILED.
+     */
+    private static final Map<PaymentStatus, Set<PaymentStatus>> TRANSITIONS = new EnumMap<>(PaymentStatus.class);
+
+    static {
+        allow(PENDING, AUTHORIZED, CAPTURED, DECLINED, FAILED);
+        allow(AUTHORIZED, CAPTURING, CAPTURED, DECLINED, FAILED);
+        allow(CAPTURING, CAPTURED, AUTHORIZED, DECLINED, FAILED);
+        allow(CAPTURED, REFUNDING, REFUNDED);
+        allow(REFUNDING, REFUNDED, CAPTURED);
+        allow(REFUNDED);
+        allow(DECLINED);
+        allow(FAILED);
+    }
+
+    private static void allow(PaymentStatus from, PaymentStatus... to) {
+        Set<PaymentStatus> targets = EnumSet.noneOf(PaymentStatus.class);
+        Collections.addAll(targets, to);
+        TRANSITIONS.put(from, Collections.unmodifiableSet(targets));
+    }
+
+    public boolean canTransitionTo(PaymentStatus target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+
+    public Set<PaymentStatus> nextStatuses() {
+        return TRANSITIONS.get(this);
+    }
+
+    // REFUNDED, DECLINED and FAILED: nothing moves the payment on any more
+    public boolean isTerminal() {
+        return TRANSITIONS.get(this).isEmpty();
+    }
 }
@@ -0,0 +1,23 @@
+package com.ahy.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Stripe event ids that have already been accepted. Kept for {@code payments.webhooks.dedup.retention},
+ * which should cover Stripe's redelivery window.
+ */
+@Data
+@Entity
+@Table(name = "processed_webhook_event", indexes = {
+        @Index(name = "idx_processed_webhook_event_processed_at", columnList = "processedAt")
+})
+public class ProcessedWebhookEvent {
+
+    @Id
+    private String eventId;
+
+    private Instant processedAt;
+}
@@ -12,12 +12,19 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "transaction")
+// Same index names as db/migration; on PostgreSQL the migrations create them as partial indexes. Without
+// partial indexes the in-progress and terminal ones are the same index twice, kept so the names match everywhere
+@Table(name = "transaction", indexes = {
+        @Index(name = "idx_transaction_external_transaction_id", columnList = "externalTransactionId"),
+        @Index(name = "idx_transaction_in_progress", columnList = "status, updatedAt"),
+        @Index(name = "idx_transaction_terminal", columnList = "status, updatedAt")
+})
 
 public class Transaction {
 
+    // time-ordered: inserts append to the primary key index instead of landing on random pages
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     private BigDecimal amount;
@@ -45,8 +52,10 @@ public class Transaction {
     protected void onUpdate() {
         updatedAt = Instant.now();
     }
-    @Lob
-    private String gatewayResponse; // store raw JSON from PSP for debugging/audit
     @Column(name = "idempotency_key", unique = true, nullable = false)
     private String idempotencyKey;
+
+    // Optimistic lock for entity saves; compare-and-set updates in TransactionRepository bump it too
+    @Version
+    private Long version;
 }
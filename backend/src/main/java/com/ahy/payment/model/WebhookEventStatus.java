@@ -0,0 +1,8 @@
+package com.ahy.payment.model;
+
+public enum WebhookEventStatus {
+    NEW,        // persisted, waiting for a consumer
+    PROCESSING, // claimed by a consumer
+    DONE,
+    FAILED      // gave up after the configured number of attempts
+}
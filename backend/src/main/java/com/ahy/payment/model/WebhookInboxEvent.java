@@ -0,0 +1,54 @@
+package com.ahy.payment.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A verified PSP webhook waiting to be applied. Rows are written by the webhook endpoint before it
+ * acknowledges the delivery and drained in id order by {@code WebhookInbox}.
+ */
+@Data
+@Entity
+// Same index names as db/migration; on PostgreSQL idx_webhook_inbox_open and idx_webhook_inbox_done are partial
+@Table(name = "webhook_inbox", indexes = {
+        @Index(name = "idx_webhook_inbox_status_id", columnList = "status, id"),
+        @Index(name = "idx_webhook_inbox_open", columnList = "status, id"),
+        @Index(name = "idx_webhook_inbox_done", columnList = "status, processedAt")
+})
+public class WebhookInboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String eventId;
+
+    private String eventType;
+
+    private String paymentIntentId;
+
+    @Enumerated(EnumType.STRING)
+    private WebhookEventStatus status;
+
+    private int attempts;
+
+    private String lastError;
+
+    private String claimedBy;
+
+    private Instant claimedAt;
+
+    // Not claimed before this instant: set when a failed attempt is put back, null means due now
+    private Instant nextAttemptAt;
+
+    private Instant receivedAt;
+
+    private Instant processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        receivedAt = Instant.now();
+    }
+}
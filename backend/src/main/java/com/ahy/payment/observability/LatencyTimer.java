@@ -0,0 +1,66 @@
+package com.ahy.payment.observability;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, total, max and a fixed-bucket histogram of one timer. Recording is a bucket search over a
+ * dozen bounds and three striped or atomic updates, safe from any thread.
+ */
+public class LatencyTimer {
+
+    // Upper bounds of the histogram buckets, in milliseconds; the last bucket is everything above
+    static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && value > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    // Cumulative counts keyed by upper bound ("le" in Prometheus terms): "1ms", "2ms", ..., "+Inf"
+    public Map<String, Long> cumulativeBuckets() {
+        Map<String, Long> cumulative = new LinkedHashMap<>();
+        long running = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            running += buckets.get(i);
+            cumulative.put(i < BUCKET_BOUNDS_MILLIS.length ? BUCKET_BOUNDS_MILLIS[i] + "ms" : "+Inf", running);
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,25 @@
+package com.ahy.payment.observability;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MeterSnapshot {
+    private String name;
+    private Map<String, String> tags;
+    private String type;               // timer, counter or gauge
+    private Long count;                // timer: recordings; counter: total
+    private Double totalMillis;        // timer only
+    private Double maxMillis;          // timer only
+    private Map<String, Long> buckets; // timer only: cumulative counts per upper bound
+    private Double value;              // gauge only
+
+    public Double getMeanMillis() {
+        return totalMillis == null || count == null || count == 0 ? null : totalMillis / count;
+    }
+}
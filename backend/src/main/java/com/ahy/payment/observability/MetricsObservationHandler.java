@@ -0,0 +1,136 @@
+package com.ahy.payment.observability;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns every stopped Observation into a {@link LatencyTimer} recording named after the observation and
+ * tagged with its low-cardinality key values, plus {@code exception} (the error's simple class name, or
+ * {@code none}) when the observation does not carry one already.
+ * <p>
+ * Observations nest: one started while another is in scope on the same thread becomes its child. Each
+ * top-level observation (in practice an HTTP request) adds up the time its repository and gateway
+ * descendants took and records it as {@code payments.request.breakdown} with {@code component=db|psp|app},
+ * app being the rest. A repository call inside a repository call, or a gateway inside a gateway
+ * (the resilience decorator around the PSP), counts once. Work handed to another thread (the gateway call
+ * executor, the reactive profile's pools) has no parent there and is not part of the breakdown; its own
+ * timers still are. The breakdown of each request is logged at DEBUG, one line per request.
+ */
+public class MetricsObservationHandler implements ObservationHandler<Observation.Context> {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsObservationHandler.class);
+
+    static final String BREAKDOWN = "payments.request.breakdown";
+
+    private enum Component { DB, PSP }
+
+    // Attached to each context on start; only top-level observations carry the per-component sums
+    private static final class Timing {
+        final long startNanos;
+        final LongAdder dbNanos;
+        final LongAdder pspNanos;
+
+        Timing(long startNanos, boolean root) {
+            this.startNanos = startNanos;
+            this.dbNanos = root ? new LongAdder() : null;
+            this.pspNanos = root ? new LongAdder() : null;
+        }
+    }
+
+    private final PaymentMetrics metrics;
+
+    public MetricsObservationHandler(PaymentMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(Timing.class, new Timing(System.nanoTime(), context.getParentObservation() == null));
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Timing timing = context.get(Timing.class);
+        if (timing == null || context.getName() == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - timing.startNanos;
+
+        KeyValues tags = context.getLowCardinalityKeyValues();
+        if (context.getLowCardinalityKeyValue(ObservedComponents.EXCEPTION) == null) {
+            Throwable error = context.getError();
+            tags = tags.and(ObservedComponents.EXCEPTION, error == null ? "none" : error.getClass().getSimpleName());
+        }
+        metrics.timer(context.getName(), tags).record(elapsed);
+
+        Component component = component(context.getName());
+        if (component != null) {
+            attribute(context, component, elapsed);
+        }
+        if (timing.dbNanos != null && ObservedComponents.HTTP_SERVER_REQUESTS.equals(context.getName())) {
+            recordBreakdown(context, elapsed, timing);
+        }
+    }
+
+    // Observations Spring starts itself (scheduled tasks) may have no name until their convention sets one
+    private static Component component(String observationName) {
+        if (observationName == null) {
+            return null;
+        }
+        return switch (observationName) {
+            case ObservedComponents.REPOSITORY -> Component.DB;
+            case ObservedComponents.GATEWAY -> Component.PSP;
+            default -> null;
+        };
+    }
+
+    // Adds the time to the top-level ancestor, unless an ancestor of the same component already covers it
+    private static void attribute(Observation.Context context, Component component, long elapsed) {
+        Observation.ContextView root = null;
+        for (ObservationView parent = context.getParentObservation(); parent != null;
+             parent = root.getParentObservation()) {
+            root = parent.getContextView();
+            if (component(root.getName()) == component) {
+                return;
+            }
+        }
+        Timing rootTiming = root == null ? null : root.get(Timing.class);
+        if (rootTiming == null || rootTiming.dbNanos == null) {
+            return;
+        }
+        (component == Component.DB ? rootTiming.dbNanos : rootTiming.pspNanos).add(elapsed);
+    }
+
+    private void recordBreakdown(Observation.Context context, long elapsed, Timing timing) {
+        long db = timing.dbNanos.sum();
+        long psp = timing.pspNanos.sum();
+        long app = Math.max(0, elapsed - db - psp);
+        KeyValue method = context.getLowCardinalityKeyValue("method");
+        KeyValue uri = context.getLowCardinalityKeyValue("uri");
+        KeyValues tags = KeyValues.of("method", method == null ? "UNKNOWN" : method.getValue(),
+                "uri", uri == null ? "UNKNOWN" : uri.getValue());
+        metrics.timer(BREAKDOWN, tags.and("component", "db")).record(db);
+        metrics.timer(BREAKDOWN, tags.and("component", "psp")).record(psp);
+        metrics.timer(BREAKDOWN, tags.and("component", "app")).record(app);
+        if (log.isDebugEnabled()) {
+            log.debug("{} {}: {}ms (db {}ms, psp {}ms, app {}ms)", method == null ? "?" : method.getValue(),
+                    uri == null ? "?" : uri.getValue(), millis(elapsed), millis(db), millis(psp), millis(app));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
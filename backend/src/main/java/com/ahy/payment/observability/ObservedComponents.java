@@ -0,0 +1,27 @@
+package com.ahy.payment.observability;
+
+/**
+ * Observation (and so timer) names of the instrumented layers, and the tag keys they share.
+ * <ul>
+ *   <li>{@code http.server.requests}: Spring MVC's own, per endpoint ({@code method}, {@code uri} pattern,
+ *   {@code status}, {@code outcome}, {@code exception});</li>
+ *   <li>{@code payments.service}: each {@code PaymentService}, {@code BatchPaymentService} and
+ *   {@code ReactivePaymentService} method ({@code service}, {@code method});</li>
+ *   <li>{@code payments.gateway}: each PSP operation ({@code implementation}, {@code operation}, and
+ *   {@code outcome}: the returned {@code PaymentStatus}, or ERROR);</li>
+ *   <li>{@code payments.repository}: each Spring Data repository method ({@code repository}, {@code method}).</li>
+ * </ul>
+ */
+public final class ObservedComponents {
+
+    public static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+    public static final String SERVICE = "payments.service";
+    public static final String GATEWAY = "payments.gateway";
+    public static final String REPOSITORY = "payments.repository";
+
+    public static final String EXCEPTION = "exception";
+    public static final String OUTCOME = "outcome";
+
+    private ObservedComponents() {
+    }
+}
@@ -0,0 +1,93 @@
+package com.ahy.payment.observability;
+
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.ReactivePaymentGateway;
+import com.ahy.payment.service.BatchPaymentService;
+import com.ahy.payment.service.PaymentService;
+import com.ahy.payment.service.ReactivePaymentService;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Puts an {@link ObservingInterceptor} in front of the service, gateway and repository beans (see
+ * {@link ObservedComponents} for what each records). Beans that are already AOP proxies (transactional
+ * services, Spring Data repositories) get the interceptor as their first advice, so the timing includes
+ * the transaction; the others are wrapped in an interface proxy, so they must be injected by interface.
+ * <p>
+ * The registry is looked up on the first call rather than injected, so this post-processor does not
+ * force the registry and its handlers to be created before the beans they observe.
+ */
+public class ObservingBeanPostProcessor implements BeanPostProcessor {
+
+    private static final List<Class<?>> SERVICES = List.of(PaymentService.class, BatchPaymentService.class,
+            ReactivePaymentService.class);
+    private static final List<Class<?>> GATEWAYS = List.of(PaymentGateway.class, ReactivePaymentGateway.class);
+
+    private final ObjectProvider<ObservationRegistry> registry;
+
+    public ObservingBeanPostProcessor(ObjectProvider<ObservationRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Set<Class<?>> interfaces = ClassUtils.getAllInterfacesForClassAsSet(bean.getClass());
+
+        Class<?> service = first(interfaces, SERVICES);
+        if (service != null) {
+            return observe(bean, new ObservingInterceptor(registry, ObservedComponents.SERVICE,
+                    KeyValues.of("service", service.getSimpleName()), "method", methodNames(List.of(service)), false));
+        }
+        Class<?> gateway = first(interfaces, GATEWAYS);
+        if (gateway != null) {
+            return observe(bean, new ObservingInterceptor(registry, ObservedComponents.GATEWAY,
+                    KeyValues.of("implementation", AopUtils.getTargetClass(bean).getSimpleName()), "operation",
+                    methodNames(List.of(gateway)), true));
+        }
+        List<Class<?>> repositories = interfaces.stream()
+                .filter(type -> Repository.class.isAssignableFrom(type) && type.getPackageName().startsWith("com.ahy.payment"))
+                .toList();
+        if (!repositories.isEmpty()) {
+            return observe(bean, new ObservingInterceptor(registry, ObservedComponents.REPOSITORY,
+                    KeyValues.of("repository", repositories.get(0).getSimpleName()), "method", methodNames(repositories), false));
+        }
+        return bean;
+    }
+
+    private static Object observe(Object bean, ObservingInterceptor interceptor) {
+        if (bean instanceof Advised advised && !advised.isFrozen()) {
+            advised.addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxy = new ProxyFactory(bean);
+        proxy.addAdvice(interceptor);
+        return proxy.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private static Class<?> first(Set<Class<?>> interfaces, List<Class<?>> candidates) {
+        return candidates.stream().filter(interfaces::contains).findFirst().orElse(null);
+    }
+
+    // Interface methods, inherited ones included (findById, save ... for repositories)
+    private static Set<String> methodNames(List<Class<?>> types) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Class<?> type : types) {
+            for (Method method : type.getMethods()) {
+                names.add(method.getName());
+            }
+        }
+        return names;
+    }
+}
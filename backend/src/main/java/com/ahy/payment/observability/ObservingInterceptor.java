@@ -0,0 +1,99 @@
+package com.ahy.payment.observability;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs the observed methods of one bean inside an Observation. A {@link CompletableFuture} result is
+ * observed until it completes, not until it is returned. Other methods (stats accessors, Object
+ * methods) pass straight through.
+ */
+class ObservingInterceptor implements MethodInterceptor {
+
+    private final ObjectProvider<ObservationRegistry> registryProvider;
+    private final String name;
+    private final boolean tagOutcome;
+    // Low-cardinality tags per observed method name, built once
+    private final Map<String, KeyValues> tagsByMethod = new HashMap<>();
+    private volatile ObservationRegistry registry;
+
+    ObservingInterceptor(ObjectProvider<ObservationRegistry> registryProvider, String name, KeyValues beanTags,
+                         String methodKey, Collection<String> methods, boolean tagOutcome) {
+        this.registryProvider = registryProvider;
+        this.name = name;
+        this.tagOutcome = tagOutcome;
+        for (String method : methods) {
+            tagsByMethod.put(method, beanTags.and(methodKey, method));
+        }
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        KeyValues tags = tagsByMethod.get(method.getName());
+        ObservationRegistry registry = registry();
+        if (tags == null || registry.isNoop()) {
+            return invocation.proceed();
+        }
+
+        Observation observation = Observation.createNotStarted(name, registry).lowCardinalityKeyValues(tags).start();
+        boolean async = false;
+        try (Observation.Scope scope = observation.openScope()) {
+            Object result = invocation.proceed();
+            if (result instanceof CompletableFuture<?> future) {
+                async = true;
+                future.whenComplete((value, error) -> stop(observation, value, error));
+            } else {
+                tagOutcome(observation, result, null);
+            }
+            return result;
+        } catch (Throwable ex) {
+            observation.error(ex);
+            tagOutcome(observation, null, ex);
+            throw ex;
+        } finally {
+            if (!async) {
+                observation.stop();
+            }
+        }
+    }
+
+    private void stop(Observation observation, Object value, Throwable failure) {
+        Throwable error = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (error != null) {
+            observation.error(error);
+        }
+        tagOutcome(observation, value, error);
+        observation.stop();
+    }
+
+    private void tagOutcome(Observation observation, Object result, Throwable error) {
+        if (!tagOutcome) {
+            return;
+        }
+        String outcome = error == null && result instanceof GatewayResponse response && response.getStatus() != null
+                ? response.getStatus().name() : "ERROR";
+        observation.lowCardinalityKeyValue(ObservedComponents.OUTCOME, outcome);
+    }
+
+    private ObservationRegistry registry() {
+        ObservationRegistry current = registry;
+        if (current == null) {
+            current = registryProvider.getIfAvailable(() -> ObservationRegistry.NOOP);
+            registry = current;
+        }
+        return current;
+    }
+}
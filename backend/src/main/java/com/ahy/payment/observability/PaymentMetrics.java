@@ -0,0 +1,79 @@
+package com.ahy.payment.observability;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process meter registry: timers, counters and gauges, each identified by a name and a set of tags,
+ * read through {@link #snapshot} (served at GET /internal/metrics).
+ * <p>
+ * Timers are fed by {@link MetricsObservationHandler} from Micrometer Observations, the instrumentation
+ * API Spring already uses for its own HTTP metrics; counters and gauges are registered directly. A component
+ * that already counts for itself registers function counters over its own counts instead. Tags
+ * must have low cardinality (an operation, a status, a URI pattern, never an id): every distinct
+ * combination is a meter that lives as long as the application.
+ */
+@Component
+public class PaymentMetrics {
+
+    private record MeterId(String name, KeyValues tags) {
+    }
+
+    private final Map<MeterId, LatencyTimer> timers = new ConcurrentHashMap<>();
+    private final Map<MeterId, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<MeterId, Supplier<? extends Number>> functionCounters = new ConcurrentHashMap<>();
+    private final Map<MeterId, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public LatencyTimer timer(String name, KeyValues tags) {
+        return timers.computeIfAbsent(new MeterId(name, tags), id -> new LatencyTimer());
+    }
+
+    public LongAdder counter(String name, KeyValues tags) {
+        return counters.computeIfAbsent(new MeterId(name, tags), id -> new LongAdder());
+    }
+
+    // A count kept elsewhere, read on each snapshot; it must only ever grow
+    public void functionCounter(String name, KeyValues tags, Supplier<? extends Number> count) {
+        functionCounters.put(new MeterId(name, tags), count);
+    }
+
+    // Read on each snapshot; a supplier that returns null reports no value
+    public void gauge(String name, KeyValues tags, Supplier<? extends Number> value) {
+        gauges.put(new MeterId(name, tags), value);
+    }
+
+    public List<MeterSnapshot> snapshot() {
+        List<MeterSnapshot> meters = new ArrayList<>();
+        timers.forEach((id, timer) -> meters.add(new MeterSnapshot(id.name(), tags(id), "timer", timer.count(),
+                timer.totalNanos() / 1e6, timer.maxNanos() / 1e6, timer.cumulativeBuckets(), null)));
+        counters.forEach((id, counter) -> meters.add(new MeterSnapshot(id.name(), tags(id), "counter", counter.sum(),
+                null, null, null, null)));
+        functionCounters.forEach((id, counter) -> meters.add(new MeterSnapshot(id.name(), tags(id), "counter",
+                counter.get().longValue(), null, null, null, null)));
+        gauges.forEach((id, gauge) -> {
+            Number value = gauge.get();
+            meters.add(new MeterSnapshot(id.name(), tags(id), "gauge", null, null, null, null,
+                    value == null ? null : value.doubleValue()));
+        });
+        meters.sort(Comparator.comparing(MeterSnapshot::getName).thenComparing(m -> m.getTags().toString()));
+        return meters;
+    }
+
+    private static Map<String, String> tags(MeterId id) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (KeyValue tag : id.tags()) {
+            tags.put(tag.getKey(), tag.getValue());
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,8 @@
+package com.ahy.payment.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A terminal transaction due for the archive; createdAt picks the archive partition
+public record ArchiveCandidate(UUID id, Instant createdAt) {
+}
@@ -0,0 +1,37 @@
+package com.ahy.payment.repository;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.ArchivedTransaction;
+import com.ahy.payment.model.PaymentStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+// Cold tier: only consulted after a miss on the transaction table
+public interface ArchivedTransactionRepository extends JpaRepository<ArchivedTransaction, UUID> {
+
+    // Copies rows column for column, without loading them; the caller deletes the originals in the same transaction
+    @Modifying
+    @Query(value = "insert into transaction_archive (id, amount, currency, status, external_transaction_id, metadata, " +
+            "created_at, updated_at, idempotency_key, archived_at) " +
+            "select id, amount, currency, status, external_transaction_id, metadata, created_at, updated_at, idempotency_key, :archivedAt " +
+            "from transaction where id in (:ids) and status in ('REFUNDED','DECLINED','FAILED')", nativeQuery = true)
+    int copyFromTransaction(@Param("ids") Collection<UUID> ids, @Param("archivedAt") Instant archivedAt);
+
+    @Query("select t.status from ArchivedTransaction t where t.id = :id")
+    Optional<PaymentStatus> findStatusById(@Param("id") UUID id);
+
+    @Query("select new com.ahy.payment.dto.response.TransactionResponse(t.id, t.amount, t.currency, t.status, t.createdAt) " +
+            "from ArchivedTransaction t where t.id = :id")
+    Optional<TransactionResponse> findResponseById(@Param("id") UUID id);
+
+    @Query("select new com.ahy.payment.repository.TransactionStatusView(t.id, t.status) " +
+            "from ArchivedTransaction t where t.externalTransactionId = :externalTransactionId")
+    Optional<TransactionStatusView> findStatusViewByExternalTransactionId(@Param("externalTransactionId") String externalTransactionId);
+}
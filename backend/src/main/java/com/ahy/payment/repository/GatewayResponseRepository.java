@@ -0,0 +1,22 @@
+package com.ahy.payment.repository;
+
+import com.ahy.payment.model.GatewayResponseRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface GatewayResponseRepository extends JpaRepository<GatewayResponseRecord, Long> {
+
+    List<GatewayResponseRecord> findByTransactionIdOrderByIdAsc(UUID transactionId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from GatewayResponseRecord r where r.recordedAt < :before")
+    int deleteRecordedBefore(@Param("before") Instant before);
+}
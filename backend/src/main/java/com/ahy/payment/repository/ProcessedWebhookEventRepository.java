@@ -0,0 +1,24 @@
+package com.ahy.payment.repository;
+
+import com.ahy.payment.model.ProcessedWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface ProcessedWebhookEventRepository extends JpaRepository<ProcessedWebhookEvent, String> {
+
+    // Plain INSERT (save() on an assigned id would SELECT first); a duplicate id fails on the primary key
+    @Transactional
+    @Modifying
+    @Query(value = "insert into processed_webhook_event (event_id, processed_at) values (:eventId, :processedAt)", nativeQuery = true)
+    int insert(@Param("eventId") String eventId, @Param("processedAt") Instant processedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ProcessedWebhookEvent e where e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Instant before);
+}
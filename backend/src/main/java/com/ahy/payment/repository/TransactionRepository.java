@@ -1,14 +1,78 @@
 package com.ahy.payment.repository;
 
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.PaymentStatus;
 import com.ahy.payment.model.Transaction;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 
 public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
     Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
+
+    // Reservation: a key already taken is answered by the unique index, without attempting the insert
+    boolean existsByIdempotencyKey(String idempotencyKey);
     Optional<Transaction> findByExternalTransactionId(String externalTransactionId);
 
+    // Batch authorize: resolve all idempotency keys of a batch in one IN query
+    List<Transaction> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+
+    // Status only: used while waiting on another request's reservation
+    @Query("select t.status from Transaction t where t.idempotencyKey = :idempotencyKey")
+    Optional<PaymentStatus> findStatusByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
+
+    // Status only: tells a rejected transition apart from an unknown id
+    @Query("select t.status from Transaction t where t.id = :id")
+    Optional<PaymentStatus> findStatusById(@Param("id") UUID id);
+
+    // GET /payments/{id}: only the response columns, not the gateway_response LOB or the metadata JSON
+    @Query("select new com.ahy.payment.dto.response.TransactionResponse(t.id, t.amount, t.currency, t.status, t.createdAt) " +
+            "from Transaction t where t.id = :id")
+    Optional<TransactionResponse> findResponseById(@Param("id") UUID id);
+
+    // Webhooks: id and status for the payment intent, no metadata JSON
+    @Query("select new com.ahy.payment.repository.TransactionStatusView(t.id, t.status) " +
+            "from Transaction t where t.externalTransactionId = :externalTransactionId")
+    Optional<TransactionStatusView> findStatusViewByExternalTransactionId(@Param("externalTransactionId") String externalTransactionId);
+
+    /*
+     * Status transitions: moves the row to status only if it is still in one of the expected statuses,
+     * in one statement and without a prior read or row lock. Returns 0 when another writer got there first.
+     * A bulk update skips @PreUpdate and the version check, so it sets updatedAt and bumps the version itself;
+     * the persistence context is flushed before and cleared after, so a following findById sees the new row.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Transaction t set t.status = :status, t.updatedAt = :updatedAt, t.version = t.version + 1 " +
+            "where t.id = :id and t.status in :expected")
+    int compareAndSetStatus(@Param("id") UUID id, @Param("expected") Collection<PaymentStatus> expected,
+                            @Param("status") PaymentStatus status, @Param("updatedAt") Instant updatedAt);
+
+    // Recovery: rows stuck in an in-progress status. The statuses are literals so that PostgreSQL can
+    // match the partial index idx_transaction_in_progress, which a bound IN list never does.
+    @Query("select t from Transaction t where t.status in (com.ahy.payment.model.PaymentStatus.PENDING, " +
+            "com.ahy.payment.model.PaymentStatus.CAPTURING, com.ahy.payment.model.PaymentStatus.REFUNDING) " +
+            "and t.updatedAt < :updatedBefore order by t.updatedAt")
+    List<Transaction> findInProgressUpdatedBefore(@Param("updatedBefore") Instant updatedBefore, Limit limit);
+
+    // Archiving: terminal rows untouched since updatedBefore, oldest first (partial index idx_transaction_terminal)
+    @Query("select new com.ahy.payment.repository.ArchiveCandidate(t.id, t.createdAt) from Transaction t " +
+            "where t.status in (com.ahy.payment.model.PaymentStatus.REFUNDED, " +
+            "com.ahy.payment.model.PaymentStatus.DECLINED, com.ahy.payment.model.PaymentStatus.FAILED) " +
+            "and t.updatedAt < :updatedBefore and t.createdAt is not null order by t.updatedAt")
+    List<ArchiveCandidate> findArchiveCandidates(@Param("updatedBefore") Instant updatedBefore, Limit limit);
+
+    // Archiving: removes rows already copied to transaction_archive, skipping any that left a terminal status meanwhile
+    @Modifying
+    @Query("delete from Transaction t where t.id in :ids and t.status in (com.ahy.payment.model.PaymentStatus.REFUNDED, " +
+            "com.ahy.payment.model.PaymentStatus.DECLINED, com.ahy.payment.model.PaymentStatus.FAILED)")
+    int deleteArchived(@Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,9 @@
+package com.ahy.payment.repository;
+
+import com.ahy.payment.model.PaymentStatus;
+
+import java.util.UUID;
+
+// Id and status only: what the webhook handlers need to decide on a transition
+public record TransactionStatusView(UUID id, PaymentStatus status) {
+}
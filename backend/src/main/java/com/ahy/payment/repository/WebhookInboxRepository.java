@@ -0,0 +1,66 @@
+package com.ahy.payment.repository;
+
+import com.ahy.payment.model.WebhookEventStatus;
+import com.ahy.payment.model.WebhookInboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxEvent, Long> {
+
+    /*
+     * Oldest events that are due (new, or past their retry backoff), or whose consumer stopped heartbeating
+     * (claimed before staleBefore). An event waiting out a backoff holds back the later events for its
+     * payment intent, so they are still applied in order.
+     */
+    @Query("select e.id from WebhookInboxEvent e " +
+            "where (e.status = com.ahy.payment.model.WebhookEventStatus.NEW " +
+            "and (e.nextAttemptAt is null or e.nextAttemptAt <= :now) " +
+            "and not exists (select w.id from WebhookInboxEvent w " +
+            "where w.status = com.ahy.payment.model.WebhookEventStatus.NEW and w.nextAttemptAt > :now " +
+            "and w.paymentIntentId = e.paymentIntentId and w.id < e.id)) " +
+            "or (e.status = com.ahy.payment.model.WebhookEventStatus.PROCESSING and e.claimedAt < :staleBefore) " +
+            "order by e.id")
+    List<Long> findClaimableIds(@Param("now") Instant now, @Param("staleBefore") Instant staleBefore, Pageable page);
+
+    // Same predicate as findClaimableIds, so two consumers never claim the same row
+    @Transactional
+    @Modifying
+    @Query("update WebhookInboxEvent e set e.status = com.ahy.payment.model.WebhookEventStatus.PROCESSING, " +
+            "e.claimedBy = :owner, e.claimedAt = :now " +
+            "where e.id in :ids and (e.status = com.ahy.payment.model.WebhookEventStatus.NEW " +
+            "or (e.status = com.ahy.payment.model.WebhookEventStatus.PROCESSING and e.claimedAt < :staleBefore))")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+              @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    List<WebhookInboxEvent> findByIdInAndClaimedByAndStatusOrderByIdAsc(Collection<Long> ids, String claimedBy, WebhookEventStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update WebhookInboxEvent e set e.status = com.ahy.payment.model.WebhookEventStatus.DONE, " +
+            "e.processedAt = :now, e.claimedBy = null where e.id in :ids")
+    int markDone(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update WebhookInboxEvent e set e.status = :status, e.attempts = :attempts, e.lastError = :error, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.claimedBy = null where e.id = :id")
+    int release(@Param("id") Long id, @Param("status") WebhookEventStatus status, @Param("attempts") int attempts,
+                @Param("error") String error, @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    long countByStatus(WebhookEventStatus status);
+
+    // Retention of applied events; lists DONE as a literal so PostgreSQL can use the partial index
+    @Transactional
+    @Modifying
+    @Query("delete from WebhookInboxEvent e where e.status = com.ahy.payment.model.WebhookEventStatus.DONE " +
+            "and e.processedAt < :before")
+    int deleteDoneBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,21 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchAuthorizeResult {
+    private String idempotencyKey;
+    private Transaction transaction; // null when the item failed
+    private String error;
+
+    public static BatchAuthorizeResult of(Transaction transaction) {
+        return new BatchAuthorizeResult(transaction.getIdempotencyKey(), transaction, null);
+    }
+
+    public static BatchAuthorizeResult failed(String idempotencyKey, String error) {
+        return new BatchAuthorizeResult(idempotencyKey, null, error);
+    }
+}
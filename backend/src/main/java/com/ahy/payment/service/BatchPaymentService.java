@@ -0,0 +1,11 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.dto.request.AuthorizeRequest;
+
+import java.util.List;
+
+public interface BatchPaymentService {
+
+    // Authorize many payments at once; one result per request, in request order
+    List<BatchAuthorizeResult> authorizeBatch(List<AuthorizeRequest> requests);
+}
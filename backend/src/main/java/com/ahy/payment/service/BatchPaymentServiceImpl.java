@@ -0,0 +1,243 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.cache.TransactionViewCache;
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.raw.RawResponseStore;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Batch variant of {@link PaymentService#authorizePayment}: one IN query for known keys, one batched
+ * insert of PENDING reservations, gateway calls fanned out with bounded parallelism, one batched update.
+ */
+@Service
+public class BatchPaymentServiceImpl implements BatchPaymentService {
+
+    private final TransactionRepository repository;
+    private final PaymentGateway gateway;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService gatewayExecutor;
+    private final TransactionViewCache viewCache;
+    private final RawResponseStore rawResponses;
+    private final PaymentStateMachine stateMachine;
+    private final int parallelism;
+    private final int transitionMaxAttempts;
+
+    public BatchPaymentServiceImpl(TransactionRepository repository,
+                                   PaymentGateway gateway,
+                                   PaymentService paymentService,
+                                   TransactionTemplate transactionTemplate,
+                                   @Qualifier("gatewayExecutor") ExecutorService gatewayExecutor,
+                                   TransactionViewCache viewCache,
+                                   RawResponseStore rawResponses,
+                                   PaymentStateMachine stateMachine,
+                                   @Value("${payments.batch.parallelism:16}") int parallelism,
+                                   @Value("${payments.transitions.maxAttempts:3}") int transitionMaxAttempts) {
+        this.repository = repository;
+        this.gateway = gateway;
+        this.paymentService = paymentService;
+        this.transactionTemplate = transactionTemplate;
+        this.gatewayExecutor = gatewayExecutor;
+        this.viewCache = viewCache;
+        this.rawResponses = rawResponses;
+        this.stateMachine = stateMachine;
+        this.parallelism = parallelism;
+        this.transitionMaxAttempts = transitionMaxAttempts;
+    }
+
+    @Override
+    public List<BatchAuthorizeResult> authorizeBatch(List<AuthorizeRequest> requests) {
+        // the same key twice in one batch is one payment
+        Map<String, AuthorizeRequest> byKey = new LinkedHashMap<>();
+        for (AuthorizeRequest request : requests) {
+            byKey.putIfAbsent(request.getIdempotencyKey(), request);
+        }
+
+        Map<String, BatchAuthorizeResult> results = new HashMap<>();
+        for (Transaction existing : repository.findByIdempotencyKeyIn(byKey.keySet())) {
+            results.put(existing.getIdempotencyKey(), BatchAuthorizeResult.of(existing));
+        }
+
+        List<AuthorizeRequest> fresh = byKey.values().stream()
+                .filter(r -> !results.containsKey(r.getIdempotencyKey()))
+                .toList();
+
+        if (!fresh.isEmpty()) {
+            List<Transaction> reserved = reserveAll(fresh);
+            if (reserved != null) {
+                authorizeReserved(reserved, results);
+            } else {
+                // a concurrent request owns at least one key: resolve item by item through the single-payment path
+                List<Outcome<Transaction>> single = fanOut(fresh, r -> paymentService.authorizePayment(
+                        r.getAmount(), r.getCurrency(), r.getMetadata(), r.getIdempotencyKey()));
+                for (int i = 0; i < fresh.size(); i++) {
+                    String key = fresh.get(i).getIdempotencyKey();
+                    Outcome<Transaction> outcome = single.get(i);
+                    results.put(key, outcome.error() == null ? BatchAuthorizeResult.of(outcome.value())
+                            : BatchAuthorizeResult.failed(key, outcome.error()));
+                }
+            }
+        }
+
+        return requests.stream().map(r -> results.get(r.getIdempotencyKey())).toList();
+    }
+
+    // Batched insert of PENDING rows in one transaction; null if any key is already taken
+    private List<Transaction> reserveAll(List<AuthorizeRequest> fresh) {
+        List<Transaction> pending = new ArrayList<>(fresh.size());
+        for (AuthorizeRequest r : fresh) {
+            Transaction tx = new Transaction();
+            tx.setAmount(r.getAmount());
+            tx.setCurrency(r.getCurrency());
+            tx.setMetadata(r.getMetadata());
+            tx.setIdempotencyKey(r.getIdempotencyKey());
+            tx.setStatus(PaymentStatus.PENDING);
+            pending.add(tx);
+        }
+
+        try {
+            return transactionTemplate.execute(status -> repository.saveAllAndFlush(pending));
+        } catch (DataIntegrityViolationException duplicateKey) {
+            return null;
+        }
+    }
+
+    private void authorizeReserved(List<Transaction> reserved, Map<String, BatchAuthorizeResult> results) {
+        List<Outcome<GatewayResponse>> responses = fanOut(reserved,
+                tx -> gateway.authorize(tx.getAmount(), tx.getCurrency(), tx.getMetadata(), tx.getIdempotencyKey()));
+
+        Map<UUID, GatewayResponse> outcomes = new HashMap<>();
+        for (int i = 0; i < reserved.size(); i++) {
+            Transaction tx = reserved.get(i);
+            Outcome<GatewayResponse> outcome = responses.get(i);
+            if (outcome.error() == null) {
+                outcomes.put(tx.getId(), outcome.value());
+            } else {
+                // key released below so a retry can run again, as in the single-payment path
+                results.put(tx.getIdempotencyKey(), BatchAuthorizeResult.failed(tx.getIdempotencyKey(), outcome.error()));
+            }
+        }
+
+        List<UUID> ids = reserved.stream().map(Transaction::getId).toList();
+        List<Transaction> updated = null;
+        for (int attempt = 1; updated == null; attempt++) {
+            try {
+                updated = applyOutcomes(ids, outcomes);
+            } catch (OptimisticLockingFailureException raced) {
+                // recovery settled a row concurrently; the next attempt re-reads and leaves that row alone
+                if (attempt >= transitionMaxAttempts) {
+                    throw raced;
+                }
+            }
+        }
+
+        for (Transaction tx : updated) {
+            results.put(tx.getIdempotencyKey(), BatchAuthorizeResult.of(tx));
+        }
+    }
+
+    /*
+     * One SELECT ... IN for the managed rows, then batched UPDATEs (plus a DELETE for released keys) at
+     * commit; the raw responses are stored after it. The UPDATEs are version-checked, so a row another writer changed since
+     * the SELECT fails the whole transaction instead of being overwritten.
+     */
+    private List<Transaction> applyOutcomes(List<UUID> ids, Map<UUID, GatewayResponse> outcomes) {
+        List<Transaction> moved = new ArrayList<>();
+        List<UUID> answered = new ArrayList<>();
+        List<Transaction> result = transactionTemplate.execute(status -> {
+            List<Transaction> rows = new ArrayList<>(repository.findAllById(ids));
+            List<Transaction> released = new ArrayList<>();
+            for (Transaction row : rows) {
+                // PENDING rows may have been read (and cached) while the gateway calls ran
+                viewCache.invalidate(row.getId());
+                if (row.getStatus() != PaymentStatus.PENDING) {
+                    continue;
+                }
+                GatewayResponse resp = outcomes.get(row.getId());
+                if (resp != null) {
+                    answered.add(row.getId());
+                    if (resp.getStatus() == PaymentStatus.PENDING
+                            || !stateMachine.allows(PaymentStatus.PENDING, resp.getStatus())) {
+                        continue; // gateway timed out or answered nonsense: left PENDING for recovery, as in the single-payment path
+                    }
+                    row.setStatus(resp.getStatus());
+                    row.setExternalTransactionId(resp.getExternalId());
+                    moved.add(row);
+                } else {
+                    released.add(row);
+                }
+            }
+            if (!released.isEmpty()) {
+                repository.deleteAllInBatch(released);
+                rows.removeAll(released);
+            }
+            return rows;
+        });
+        // counted and their raw responses kept once committed; a rolled-back attempt counts nothing
+        moved.forEach(row -> stateMachine.applied(PaymentStatus.PENDING, row.getStatus()));
+        answered.forEach(id -> rawResponses.record(id, GatewayOperation.AUTHORIZE, outcomes.get(id)));
+        return result;
+    }
+
+    /*
+     * Runs call for every item on the gateway executor, with at most `parallelism` in flight.
+     * Outcomes keep the item order; an item whose call threw carries the error message instead of a value.
+     */
+    private <T, R> List<Outcome<R>> fanOut(List<T> items, Function<T, R> call) {
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+
+        for (T item : items) {
+            permits.acquireUninterruptibly();
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return call.apply(item);
+                    } finally {
+                        permits.release();
+                    }
+                }, gatewayExecutor));
+            } catch (RuntimeException rejected) {
+                permits.release();
+                futures.add(CompletableFuture.failedFuture(rejected));
+            }
+        }
+
+        List<Outcome<R>> outcomes = new ArrayList<>(items.size());
+        for (CompletableFuture<R> future : futures) {
+            try {
+                outcomes.add(new Outcome<>(future.join(), null));
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                outcomes.add(new Outcome<>(null, cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+            }
+        }
+        return outcomes;
+    }
+
+    private record Outcome<R>(R value, String error) {
+    }
+}
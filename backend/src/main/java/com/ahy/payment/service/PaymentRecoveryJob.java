@@ -0,0 +1,39 @@
+package com.ahy.payment.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Periodically finishes transactions a crash left between the "mark in progress" and
+ * "record outcome" steps of authorize, capture and refund.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.recovery.enabled", havingValue = "true", matchIfMissing = true)
+public class PaymentRecoveryJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentRecoveryJob.class);
+
+    private final PaymentService paymentService;
+    private final Duration staleAfter;
+
+    public PaymentRecoveryJob(PaymentService paymentService,
+                              @Value("${payments.recovery.staleAfter:PT5M}") Duration staleAfter) {
+        this.paymentService = paymentService;
+        this.staleAfter = staleAfter;
+    }
+
+    @Scheduled(fixedDelayString = "${payments.recovery.interval:PT1M}", initialDelayString = "${payments.recovery.interval:PT1M}")
+    public void recoverStalePayments() {
+        int recovered = paymentService.recoverStalePayments(Instant.now().minus(staleAfter));
+        if (recovered > 0) {
+            log.info("Recovered {} stale in-progress transactions", recovered);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.ahy.payment.service;
 
+import com.ahy.payment.dto.response.TransactionResponse;
 import com.ahy.payment.model.Transaction;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
 
@@ -11,9 +13,15 @@ public interface PaymentService {
     // Authorize a payment (authorize only, no capture)
     Transaction authorizePayment(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey);
 
+    // Same, answered with the response view: a replayed key is served from the read cache without a query
+    TransactionResponse authorizePaymentView(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey);
+
     // Get a transaction by ID
     Transaction getTransaction(UUID id);
 
+    // Response view of a transaction, served from the read cache; null if there is no such transaction
+    TransactionResponse getTransactionView(UUID id);
+
     // Capture a previously authorized payment
     Transaction capturePayment(UUID id);
 
@@ -27,6 +35,12 @@ public interface PaymentService {
     void handlePaymentIntentFailed(String paymentIntentId);
     void handleChargeRefunded(String paymentIntentId);
 
+    /* =======================
+       Recovery
+       ======================= */
+    // Finish transactions left in progress (PENDING/CAPTURING/REFUNDING) since before the given instant
+    int recoverStalePayments(Instant updatedBefore);
+
     
 }
 
@@ -1,115 +1,471 @@
 package com.ahy.payment.service;
 
+import com.ahy.payment.cache.IdempotencyStore;
+import com.ahy.payment.cache.TransactionViewCache;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.exception.InvalidStatusTransitionException;
 import com.ahy.payment.exception.PaymentNotFoundException;
+import com.ahy.payment.exception.TransactionNotFoundException;
 import com.ahy.payment.gateway.GatewayResponse;
 import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.raw.RawResponseStore;
+import com.ahy.payment.model.GatewayOperation;
 import com.ahy.payment.model.PaymentStatus;
 import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.ArchivedTransactionRepository;
 import com.ahy.payment.repository.TransactionRepository;
+import com.ahy.payment.repository.TransactionStatusView;
+import com.ahy.payment.util.TransactionMapper;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
 @Service
-@Transactional
 public class PaymentServiceImpl implements PaymentService {
 
     private final TransactionRepository repository;
     private final PaymentGateway gateway;
+    private final IdempotencyStore idempotencyStore;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionViewCache viewCache;
+    private final RawResponseStore rawResponses;
+    private final ArchivedTransactionRepository archive;
+    private final PaymentStateMachine stateMachine;
 
-    public PaymentServiceImpl(TransactionRepository repository, PaymentGateway gateway) {
+    private static final Logger log = LoggerFactory.getLogger(PaymentServiceImpl.class);
+
+    private static final long MAX_POLL_BACKOFF_MILLIS = 200;
+
+    private static final Limit RECOVERY_BATCH = Limit.of(100);
+
+    @Value("${payments.idempotency.reservation.waitTimeout:PT5S}")
+    private Duration reservationWaitTimeout = Duration.ofSeconds(5);
+
+    @Value("${payments.idempotency.reservation.pollInterval:PT0.02S}")
+    private Duration reservationPollInterval = Duration.ofMillis(20);
+
+    // Compare-and-set attempts for a webhook status change before giving up (the inbox retries the event)
+    @Value("${payments.transitions.maxAttempts:3}")
+    private int transitionMaxAttempts = 3;
+
+    public PaymentServiceImpl(TransactionRepository repository, PaymentGateway gateway,
+                              IdempotencyStore idempotencyStore, TransactionTemplate transactionTemplate,
+                              TransactionViewCache viewCache, RawResponseStore rawResponses,
+                              ArchivedTransactionRepository archive, PaymentStateMachine stateMachine) {
         this.repository = repository;
         this.gateway = gateway;
+        this.idempotencyStore = idempotencyStore;
+        this.transactionTemplate = transactionTemplate;
+        this.viewCache = viewCache;
+        this.rawResponses = rawResponses;
+        this.archive = archive;
+        this.stateMachine = stateMachine;
     }
 
+    /*
+     * No method that calls the gateway runs inside a transaction: each step opens its own short one,
+     * so no JDBC connection or row state is held while the PSP call is outstanding. The steps either side
+     * of the call are package-private: ReactivePaymentServiceImpl runs the same ones around a non-blocking call.
+     */
     @Override
     public Transaction authorizePayment(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
-        return repository.findByIdempotencyKey(idempotencyKey)
-                .orElseGet(() -> {
-                    Transaction transaction = new Transaction();
-                    transaction.setAmount(amount);
-                    transaction.setCurrency(currency);
-                    transaction.setMetadata(metadata);
-                    transaction.setIdempotencyKey(idempotencyKey);
+        return authorize(amount, currency, metadata, idempotencyKey, this::getTransaction, Function.identity());
+    }
+
+    @Override
+    public TransactionResponse authorizePaymentView(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        return authorize(amount, currency, metadata, idempotencyKey, this::getTransactionView, TransactionMapper::toResponse);
+    }
+
+    /*
+     * Repeated keys are answered by the store; concurrent ones share a single reservation + gateway call.
+     * A replay only gets the id from the store and answers with current(id), the payment as it is now;
+     * a request that authorized answers with answer(transaction).
+     */
+    private <T> T authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey,
+                            Function<UUID, T> current, Function<Transaction, T> answer) {
+        AtomicReference<Transaction> produced = new AtomicReference<>();
+        UUID id = idempotencyStore.computeIfAbsent(idempotencyKey, () -> {
+            Transaction tx = reserveAndAuthorize(amount, currency, metadata, idempotencyKey);
+            produced.set(tx);
+            return tx.getId();
+        });
+        if (produced.get() != null) {
+            return answer.apply(produced.get());
+        }
 
-                    GatewayResponse resp = gateway.authorize(amount, currency, metadata);
+        T replay = current.apply(id);
+        if (replay == null) {
+            // gone from both tables since it was cached; the unique index settles the key again
+            idempotencyStore.invalidate(idempotencyKey);
+            return answer.apply(reserveAndAuthorize(amount, currency, metadata, idempotencyKey));
+        }
+        return replay;
+    }
 
-                    transaction.setStatus(resp.getStatus());
-                    transaction.setExternalTransactionId(resp.getExternalId());
+    /*
+     * Insert-first flow: the unique idempotency_key index decides which request owns the key.
+     * Only the owner calls the gateway; every other request waits for the owner's outcome.
+     */
+    private Transaction reserveAndAuthorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        Transaction reserved;
+        while ((reserved = reserve(amount, currency, metadata, idempotencyKey)) == null) {
+            Transaction outcome = join(awaitOutcome(idempotencyKey, PaymentServiceImpl::sleepThenRun));
+            if (outcome != null) {
+                return outcome;
+            }
+            // the holder's gateway call threw and released the key: this request may take it now
+        }
+
+        GatewayResponse resp;
+        try {
+            resp = gateway.authorize(amount, currency, metadata, idempotencyKey);
+        } catch (RuntimeException ex) {
+            releaseReservation(reserved);
+            throw ex;
+        }
+        return completeAuthorization(reserved, resp);
+    }
 
-                    return repository.save(transaction);
+    // The gateway call threw: release the key so a retry can run again, as if nothing had been recorded
+    void releaseReservation(Transaction reserved) {
+        repository.delete(reserved);
+        viewCache.invalidate(reserved.getId());
+    }
+
+    // Records the gateway's answer to an authorization on the reserved PENDING row
+    Transaction completeAuthorization(Transaction reserved, GatewayResponse resp) {
+        if (resp.getStatus() == PaymentStatus.PENDING) {
+            // the gateway timed out after sending: whether the PSP authorized is unknown, recovery settles the row
+            log.warn("Authorization for transaction {} has no outcome yet; left PENDING", reserved.getId());
+            return reserved;
+        }
+        if (!stateMachine.allows(PaymentStatus.PENDING, resp.getStatus())) {
+            // left PENDING: recovery asks again once it is stale, and fails it on the same answer
+            throw new IllegalStateException("Gateway answered an authorization with " + resp.getStatus());
+        }
+
+        reserved.setStatus(resp.getStatus());
+        reserved.setExternalTransactionId(resp.getExternalId());
+        Transaction saved;
+        try {
+            // merge of the reserved row: the version check fails if anything else touched it meanwhile
+            saved = transactionTemplate.execute(status -> repository.save(reserved));
+            stateMachine.applied(PaymentStatus.PENDING, saved.getStatus());
+        } catch (OptimisticLockingFailureException raced) {
+            // only recovery moves a PENDING row, after payments.recovery.staleAfter; its outcome stands
+            log.warn("Authorization result {} for transaction {} arrived after the row left PENDING",
+                    resp.getStatus(), reserved.getId());
+            saved = repository.findById(reserved.getId()).orElseThrow(() -> raced);
+        }
+        // a GET while the row was PENDING may have cached it
+        viewCache.invalidate(saved.getId());
+        // after the commit, so a payload that cannot be stored never takes the outcome with it
+        rawResponses.record(saved.getId(), GatewayOperation.AUTHORIZE, resp);
+        return saved;
+    }
+
+    // Returns the PENDING row if this request won the key, or null if another request already holds it
+    Transaction reserve(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(amount);
+        transaction.setCurrency(currency);
+        transaction.setMetadata(metadata);
+        transaction.setIdempotencyKey(idempotencyKey);
+        transaction.setStatus(PaymentStatus.PENDING);
+
+        // a replay or a request already in flight costs an index lookup, not a failed insert and its rollback
+        if (repository.existsByIdempotencyKey(idempotencyKey)) {
+            return null;
+        }
+        try {
+            return repository.saveAndFlush(transaction);
+        } catch (DataIntegrityViolationException duplicateKey) {
+            // another request inserted the key between the lookup and the insert
+            return null;
+        }
+    }
+
+    /*
+     * Waits for the request holding the key to settle its reservation: reads the status after each backoff
+     * until it leaves PENDING, then the row; on timeout the PENDING row is answered. The reads run outside
+     * any transaction, so they see the committed row rather than an entity cached by a persistence context.
+     * afterBackoff spends the wait: the blocking path sleeps on the caller's thread, ReactivePaymentServiceImpl
+     * schedules the next read instead. Completes with null when the row is gone, i.e. the holder's gateway call
+     * threw and released the key: the caller goes back through reserve.
+     */
+    CompletableFuture<Transaction> awaitOutcome(String idempotencyKey, LongFunction<Executor> afterBackoff) {
+        return awaitOutcome(idempotencyKey, System.nanoTime() + reservationWaitTimeout.toNanos(), 0, afterBackoff);
+    }
+
+    private CompletableFuture<Transaction> awaitOutcome(String idempotencyKey, long deadline, long backoffMillis,
+                                                        LongFunction<Executor> afterBackoff) {
+        return CompletableFuture.supplyAsync(() -> repository.findStatusByIdempotencyKey(idempotencyKey),
+                        afterBackoff.apply(backoffMillis))
+                .thenCompose(status -> {
+                    if (status.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    // an interrupted wait stops and answers with whatever is stored
+                    if (status.get() == PaymentStatus.PENDING && System.nanoTime() < deadline
+                            && !Thread.currentThread().isInterrupted()) {
+                        long next = Math.min(Math.max(backoffMillis * 2, reservationPollInterval.toMillis()), MAX_POLL_BACKOFF_MILLIS);
+                        return awaitOutcome(idempotencyKey, deadline, next, afterBackoff);
+                    }
+                    return CompletableFuture.completedFuture(repository.findByIdempotencyKey(idempotencyKey).orElse(null));
                 });
     }
 
+    // The blocking path's backoff: the next read runs on the calling thread once it has slept
+    private static Executor sleepThenRun(long millis) {
+        return read -> {
+            if (millis > 0) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            read.run();
+        };
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /*
+     * Reads go to the hot table first; only a miss there (an unknown id or a payment the archiver
+     * moved out) costs a second lookup in transaction_archive.
+     */
     @Override
     public Transaction getTransaction(UUID id) {
-        return repository.findById(id).orElse(null);
+        return repository.findById(id)
+                .or(() -> archive.findById(id).map(TransactionMapper::fromArchive))
+                .orElse(null);
+    }
+
+    @Override
+    public TransactionResponse getTransactionView(UUID id) {
+        return viewCache.get(id, key -> repository.findResponseById(key)
+                .or(() -> archive.findResponseById(key))
+                .orElse(null));
     }
 
     @Override
     public Transaction capturePayment(UUID id) {
-        Transaction tx = repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Transaction not found: " + id));
+        Transaction tx = markInProgress(id, PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURING);
 
-        if (tx.getStatus() != PaymentStatus.AUTHORIZED) {
-            throw new RuntimeException("Only AUTHORIZED payments can be captured.");
-        }
+        GatewayResponse resp = callGateway(tx, PaymentStatus.AUTHORIZED,
+                () -> gateway.capture(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()));
 
-        GatewayResponse resp = gateway.capture(tx.getExternalTransactionId(), tx.getAmount());
-        tx.setStatus(resp.getStatus());
-        return repository.save(tx);
+        return recordOutcome(id, PaymentStatus.CAPTURING, GatewayOperation.CAPTURE, resp);
     }
 
     @Override
     public Transaction refundPayment(UUID id) {
-        Transaction tx = repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Transaction not found: " + id));
+        Transaction tx = markInProgress(id, PaymentStatus.CAPTURED, PaymentStatus.REFUNDING);
+
+        GatewayResponse resp = callGateway(tx, PaymentStatus.CAPTURED,
+                () -> gateway.refund(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()));
+
+        return recordOutcome(id, PaymentStatus.REFUNDING, GatewayOperation.REFUND, resp);
+    }
+
+    /*
+     * Rows left in PENDING/CAPTURING/REFUNDING by a crash between the two short transactions, or by a
+     * gateway timeout. All three are re-driven against the gateway: capture and refund carry the payment
+     * intent id, authorize the client's idempotency key, so the PSP answers a repeat with the outcome of
+     * the request it may already have processed instead of acting twice. A row only moves on a definite
+     * answer; one that times out again stays for the next run.
+     */
+    @Override
+    public int recoverStalePayments(Instant updatedBefore) {
+        List<Transaction> stale = repository.findInProgressUpdatedBefore(updatedBefore, RECOVERY_BATCH);
 
-        if (tx.getStatus() != PaymentStatus.CAPTURED) {
-            throw new RuntimeException("Only CAPTURED payments can be refunded.");
+        int recovered = 0;
+        for (Transaction tx : stale) {
+            try {
+                switch (tx.getStatus()) {
+                    case CAPTURING -> recordOutcome(tx.getId(), PaymentStatus.CAPTURING, GatewayOperation.CAPTURE,
+                            gateway.capture(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()));
+                    case REFUNDING -> recordOutcome(tx.getId(), PaymentStatus.REFUNDING, GatewayOperation.REFUND,
+                            gateway.refund(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()));
+                    default -> recoverAuthorization(tx);
+                }
+                recovered++;
+            } catch (RuntimeException ex) {
+                log.warn("Recovery of transaction {} in status {} failed: {}", tx.getId(), tx.getStatus(), ex.getMessage());
+            }
         }
+        return recovered;
+    }
+
+    private void recoverAuthorization(Transaction tx) {
+        GatewayResponse resp = gateway.authorize(tx.getAmount(), tx.getCurrency(), tx.getMetadata(), tx.getIdempotencyKey());
+        if (resp.getStatus() != PaymentStatus.PENDING && !stateMachine.allows(PaymentStatus.PENDING, resp.getStatus())) {
+            // an answer the transition table has no place for will not change on the next run either
+            recordOutcome(tx.getId(), PaymentStatus.PENDING, PaymentStatus.FAILED, GatewayOperation.AUTHORIZE, resp);
+            return;
+        }
+        completeAuthorization(tx, resp);
+    }
+
+    /*
+     * Short transaction #1: expected -> inProgress as one conditional UPDATE, so of two concurrent
+     * captures (or a capture and a webhook) exactly one wins. Only a miss pays for a status read, which
+     * turns it into a 409 naming the status the payment is actually in (or a 404).
+     */
+    Transaction markInProgress(UUID id, PaymentStatus expected, PaymentStatus inProgress) {
+        return transactionTemplate.execute(status -> {
+            if (repository.compareAndSetStatus(id, Set.of(expected), inProgress, Instant.now()) == 0) {
+                PaymentStatus current = currentStatus(id);
+                stateMachine.check(id, current, inProgress);
+                // a legal source other than expected: the row moved between the caller's view and ours
+                throw new InvalidStatusTransitionException(id, current, inProgress);
+            }
+            stateMachine.applied(expected, inProgress);
+            viewCache.invalidate(id);
+            return repository.findById(id).orElseThrow(() -> new TransactionNotFoundException(id));
+        });
+    }
 
-        GatewayResponse resp = gateway.refund(tx.getExternalTransactionId(), tx.getAmount());
-        tx.setStatus(resp.getStatus());
-        return repository.save(tx);
+    // Archived rows keep their (terminal) status, so requests for them are rejected like any other
+    private PaymentStatus currentStatus(UUID id) {
+        return repository.findStatusById(id)
+                .or(() -> archive.findStatusById(id))
+                .orElseThrow(() -> new TransactionNotFoundException(id));
+    }
+
+    // Runs outside any transaction; on an exception the row goes back to its previous status
+    private GatewayResponse callGateway(Transaction tx, PaymentStatus revertTo, Supplier<GatewayResponse> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            recordOutcome(tx.getId(), tx.getStatus(), revertTo);
+            throw ex;
+        }
+    }
+
+    Transaction recordOutcome(UUID id, PaymentStatus inProgress, GatewayOperation operation, GatewayResponse resp) {
+        PaymentStatus outcome = resp.getStatus();
+        if (operation == GatewayOperation.REFUND && (outcome == PaymentStatus.FAILED || outcome == PaymentStatus.DECLINED)) {
+            // the refund failed, the capture did not: back to CAPTURED, and the refused response is kept as the record
+            log.warn("Refund of transaction {} answered {} by the PSP; the payment stays captured", id, resp.getStatus());
+            outcome = PaymentStatus.CAPTURED;
+        }
+        return recordOutcome(id, inProgress, outcome, operation, resp);
+    }
+
+    Transaction recordOutcome(UUID id, PaymentStatus inProgress, PaymentStatus outcome) {
+        return recordOutcome(id, inProgress, outcome, null, null);
+    }
+
+    /*
+     * Short transaction #2: apply the outcome unless someone else (webhook, recovery) already moved the row on,
+     * or the transition table does not allow it. The PSP's raw response is recorded either way, once committed.
+     * A PENDING outcome means the gateway timed out after sending: the row stays CAPTURING/REFUNDING
+     * until a webhook or the recovery job settles it.
+     */
+    private Transaction recordOutcome(UUID id, PaymentStatus inProgress, PaymentStatus outcome,
+                                      GatewayOperation operation, GatewayResponse resp) {
+        Transaction row = transactionTemplate.execute(status -> {
+            if (outcome != PaymentStatus.PENDING
+                    && stateMachine.allows(inProgress, outcome)
+                    && repository.compareAndSetStatus(id, Set.of(inProgress), outcome, Instant.now()) == 1) {
+                stateMachine.applied(inProgress, outcome);
+                viewCache.invalidate(id);
+            }
+            return repository.findById(id).orElseThrow(() -> new TransactionNotFoundException(id));
+        });
+        if (resp != null) {
+            rawResponses.record(id, operation, resp);
+        }
+        return row;
     }
 
     /* =======================
        Webhook helpers
        ======================= */
     @Override
+    @Transactional
     public void handlePaymentIntentSucceeded(String paymentIntentId) {
-        Transaction tx = repository.findByExternalTransactionId(paymentIntentId)
-                .orElseThrow(() -> new PaymentNotFoundException(paymentIntentId));
-
-        if (tx.getStatus() != PaymentStatus.CAPTURED) {
-            tx.setStatus(PaymentStatus.CAPTURED);
-            repository.save(tx);
-        }
+        applyWebhookStatus(paymentIntentId, PaymentStatus.CAPTURED);
     }
 
     @Override
+    @Transactional
     public void handlePaymentIntentFailed(String paymentIntentId) {
-        Transaction tx = repository.findByExternalTransactionId(paymentIntentId)
-                .orElseThrow(() -> new PaymentNotFoundException(paymentIntentId));
-
-        if (tx.getStatus() != PaymentStatus.FAILED) {
-            tx.setStatus(PaymentStatus.FAILED);
-            repository.save(tx);
-        }
+        applyWebhookStatus(paymentIntentId, PaymentStatus.FAILED);
     }
 
     @Override
+    @Transactional
     public void handleChargeRefunded(String paymentIntentId) {
-        Transaction tx = repository.findByExternalTransactionId(paymentIntentId)
-                .orElseThrow(() -> new PaymentNotFoundException(paymentIntentId));
+        applyWebhookStatus(paymentIntentId, PaymentStatus.REFUNDED);
+    }
+
+    /*
+     * Reads id + status, then moves the row on only if it still has the status that was read; the entity
+     * (metadata JSON included) is never loaded. A concurrent capture/refund/recovery changing the row in
+     * between makes the update miss, and the status is read again, up to transitionMaxAttempts times.
+     * Events the transition table does not allow (a late payment_failed for a refunded payment) are
+     * acknowledged without a change; Stripe does not guarantee delivery order.
+     */
+    private void applyWebhookStatus(String paymentIntentId, PaymentStatus target) {
+        for (int attempt = 1; attempt <= transitionMaxAttempts; attempt++) {
+            TransactionStatusView tx = repository.findStatusViewByExternalTransactionId(paymentIntentId).orElse(null);
+            if (tx == null) {
+                // a late redelivery for an archived payment: the archive is read-only, acknowledge and move on
+                if (archive.findStatusViewByExternalTransactionId(paymentIntentId).isPresent()) {
+                    log.debug("Ignoring {} webhook for archived payment intent {}", target, paymentIntentId);
+                    return;
+                }
+                throw new PaymentNotFoundException(paymentIntentId);
+            }
 
-        if (tx.getStatus() != PaymentStatus.REFUNDED) {
-            tx.setStatus(PaymentStatus.REFUNDED);
-            repository.save(tx);
+            if (tx.status() == target) {
+                return;
+            }
+            if (!stateMachine.allows(tx.status(), target)) {
+                log.info("Ignoring {} webhook for payment intent {} in status {}", target, paymentIntentId, tx.status());
+                return;
+            }
+            if (repository.compareAndSetStatus(tx.id(), Set.of(tx.status()), target, Instant.now()) == 1) {
+                stateMachine.applied(tx.status(), target);
+                viewCache.invalidate(tx.id());
+                return;
+            }
         }
+        throw new OptimisticLockingFailureException("Status of payment intent " + paymentIntentId +
+                " kept changing; " + target + " not applied after " + transitionMaxAttempts + " attempts");
     }
 }
@@ -0,0 +1,73 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.exception.InvalidStatusTransitionException;
+import com.ahy.payment.model.PaymentStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gate for every status change: checks it against {@link PaymentStatus#canTransitionTo} and counts it
+ * per (from, to) pair. Callers write the change with a compare-and-set from the status they checked.
+ */
+@Component
+public class PaymentStateMachine {
+
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    // [from][to], preallocated so counting never allocates or locks
+    private final LongAdder[][] applied = counters();
+    private final LongAdder[][] rejected = counters();
+
+    // For requests: the exception maps to 409 Conflict
+    public void check(UUID transactionId, PaymentStatus current, PaymentStatus target) {
+        if (!current.canTransitionTo(target)) {
+            rejected[current.ordinal()][target.ordinal()].increment();
+            throw new InvalidStatusTransitionException(transactionId, current, target);
+        }
+    }
+
+    // For PSP outcomes and webhooks: false (and counted) instead of an exception
+    public boolean allows(PaymentStatus current, PaymentStatus target) {
+        if (current.canTransitionTo(target)) {
+            return true;
+        }
+        rejected[current.ordinal()][target.ordinal()].increment();
+        return false;
+    }
+
+    // Call once the compare-and-set for the transition succeeded
+    public void applied(PaymentStatus from, PaymentStatus to) {
+        applied[from.ordinal()][to.ordinal()].increment();
+    }
+
+    public PaymentTransitionStats stats() {
+        return new PaymentTransitionStats(snapshot(applied), snapshot(rejected));
+    }
+
+    private static LongAdder[][] counters() {
+        LongAdder[][] counters = new LongAdder[STATUSES.length][STATUSES.length];
+        for (LongAdder[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new LongAdder();
+            }
+        }
+        return counters;
+    }
+
+    private static Map<PaymentStatus, Map<PaymentStatus, Long>> snapshot(LongAdder[][] counters) {
+        Map<PaymentStatus, Map<PaymentStatus, Long>> result = new EnumMap<>(PaymentStatus.class);
+        for (PaymentStatus from : STATUSES) {
+            for (PaymentStatus to : STATUSES) {
+                long count = counters[from.ordinal()][to.ordinal()].sum();
+                if (count > 0) {
+                    result.computeIfAbsent(from, k -> new EnumMap<>(PaymentStatus.class)).put(to, count);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class PaymentTransitionStats {
+    // from -> to -> count; only transitions that happened at least once are present
+    private Map<PaymentStatus, Map<PaymentStatus, Long>> applied;   // status changes written
+    private Map<PaymentStatus, Map<PaymentStatus, Long>> rejected;  // refused by the transition table (409 or ignored webhook)
+}
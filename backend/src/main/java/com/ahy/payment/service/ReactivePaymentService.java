@@ -0,0 +1,29 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The request-facing part of {@link PaymentService} for the "reactive" profile. Same outcomes and exceptions;
+ * a failure completes the future exceptionally instead of being thrown.
+ */
+public interface ReactivePaymentService {
+
+    // Authorize a payment (authorize only, no capture)
+    CompletableFuture<Transaction> authorizePayment(BigDecimal amount, String currency, Map<String, String> metadata,
+                                                    String idempotencyKey);
+
+    // Response view of a transaction; completes with null if there is no such transaction
+    CompletableFuture<TransactionResponse> getTransactionView(UUID id);
+
+    // Capture a previously authorized payment
+    CompletableFuture<Transaction> capturePayment(UUID id);
+
+    // Refund a captured payment
+    CompletableFuture<Transaction> refundPayment(UUID id);
+}
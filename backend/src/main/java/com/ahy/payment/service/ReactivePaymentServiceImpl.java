@@ -0,0 +1,120 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.ReactivePaymentGateway;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The steps of {@link PaymentServiceImpl}, chained around a {@link ReactivePaymentGateway} call. Database
+ * steps are short blocking transactions offloaded to the bounded persistenceExecutor; the gateway call holds
+ * no thread, so the number of PSP calls in flight is not tied to any thread count.
+ * <p>
+ * Repeated idempotency keys are settled by the unique index alone (the in-process IdempotencyStore only
+ * fronts the blocking path): a key already taken is found by a lookup before any insert, and waiting for
+ * another request's outcome runs {@link PaymentServiceImpl}'s wait with each read scheduled on a timer
+ * instead of after a sleep.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePaymentServiceImpl implements ReactivePaymentService {
+
+    private final PaymentServiceImpl steps;
+    private final ReactivePaymentGateway gateway;
+    private final ExecutorService persistence;
+
+    public ReactivePaymentServiceImpl(PaymentServiceImpl steps,
+                                      ReactivePaymentGateway gateway,
+                                      @Qualifier("persistenceExecutor") ExecutorService persistence) {
+        this.steps = steps;
+        this.gateway = gateway;
+        this.persistence = persistence;
+    }
+
+    @Override
+    public CompletableFuture<Transaction> authorizePayment(BigDecimal amount, String currency, Map<String, String> metadata,
+                                                           String idempotencyKey) {
+        return CompletableFuture.supplyAsync(() -> steps.reserve(amount, currency, metadata, idempotencyKey), persistence)
+                .thenCompose(reserved -> {
+                    if (reserved == null) {
+                        // null: the holder's gateway call threw and released the key, so reserve it again
+                        return steps.awaitOutcome(idempotencyKey, this::afterBackoff)
+                                .thenCompose(outcome -> outcome != null
+                                        ? CompletableFuture.completedFuture(outcome)
+                                        : authorizePayment(amount, currency, metadata, idempotencyKey));
+                    }
+                    return call(() -> gateway.authorize(amount, currency, metadata, idempotencyKey))
+                            .handleAsync((resp, ex) -> {
+                                if (ex != null) {
+                                    steps.releaseReservation(reserved);
+                                    throw rethrow(ex);
+                                }
+                                return steps.completeAuthorization(reserved, resp);
+                            }, persistence);
+                });
+    }
+
+    @Override
+    public CompletableFuture<TransactionResponse> getTransactionView(UUID id) {
+        return CompletableFuture.supplyAsync(() -> steps.getTransactionView(id), persistence);
+    }
+
+    @Override
+    public CompletableFuture<Transaction> capturePayment(UUID id) {
+        return CompletableFuture.supplyAsync(() -> steps.markInProgress(id, PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURING), persistence)
+                .thenCompose(tx -> settle(tx, PaymentStatus.AUTHORIZED, GatewayOperation.CAPTURE,
+                        call(() -> gateway.capture(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()))));
+    }
+
+    @Override
+    public CompletableFuture<Transaction> refundPayment(UUID id) {
+        return CompletableFuture.supplyAsync(() -> steps.markInProgress(id, PaymentStatus.CAPTURED, PaymentStatus.REFUNDING), persistence)
+                .thenCompose(tx -> settle(tx, PaymentStatus.CAPTURED, GatewayOperation.REFUND,
+                        call(() -> gateway.refund(tx.getExternalTransactionId(), tx.getAmount(), tx.getCurrency()))));
+    }
+
+    // Records the outcome, or puts the row back to revertTo if the call failed, as PaymentServiceImpl.callGateway does
+    private CompletableFuture<Transaction> settle(Transaction tx, PaymentStatus revertTo, GatewayOperation operation,
+                                                  CompletableFuture<GatewayResponse> call) {
+        return call.handleAsync((resp, ex) -> {
+            if (ex != null) {
+                steps.recordOutcome(tx.getId(), tx.getStatus(), revertTo);
+                throw rethrow(ex);
+            }
+            return steps.recordOutcome(tx.getId(), tx.getStatus(), operation, resp);
+        }, persistence);
+    }
+
+    // The next read of a wait runs on the persistence executor once the timer fires; no thread sleeps meanwhile
+    private Executor afterBackoff(long millis) {
+        return millis == 0 ? persistence : CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, persistence);
+    }
+
+    // A gateway that throws instead of returning a failed future is treated the same way
+    private static CompletableFuture<GatewayResponse> call(Supplier<CompletableFuture<GatewayResponse>> call) {
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    private static CompletionException rethrow(Throwable ex) {
+        return ex instanceof CompletionException completion ? completion : new CompletionException(ex);
+    }
+}
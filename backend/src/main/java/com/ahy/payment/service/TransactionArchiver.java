@@ -0,0 +1,143 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.repository.ArchiveCandidate;
+import com.ahy.payment.repository.ArchivedTransactionRepository;
+import com.ahy.payment.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves transactions that reached a terminal status (REFUNDED, DECLINED, FAILED) and have not changed
+ * for {@code payments.archive.after} from {@code transaction} to {@code transaction_archive}, so the hot
+ * table and its indexes only hold recent and in-flight payments. Lookups read the hot table first and
+ * fall back to the archive on a miss.
+ *
+ * <p>An archived idempotency key no longer deduplicates: a retry with it after {@code after} creates a
+ * new payment. The default (30 days) is well past any client retry window; Stripe itself forgets keys
+ * after 24 hours.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class TransactionArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionArchiver.class);
+
+    private final TransactionRepository repository;
+    private final ArchivedTransactionRepository archive;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration after;
+    private final int batchSize;
+
+    // months whose transaction_archive_yyyy_mm partition is known to exist (PostgreSQL only)
+    private final Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+    private volatile Boolean partitioned;
+
+    public TransactionArchiver(TransactionRepository repository,
+                               ArchivedTransactionRepository archive,
+                               TransactionTemplate transactionTemplate,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${payments.archive.after:P30D}") Duration after,
+                               @Value("${payments.archive.batchSize:500}") int batchSize) {
+        this.repository = repository;
+        this.archive = archive;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.after = after;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${payments.archive.interval:PT10M}", initialDelayString = "${payments.archive.interval:PT10M}")
+    public void archiveTerminalTransactions() {
+        int archived = archiveUpdatedBefore(Instant.now().minus(after));
+        if (archived > 0) {
+            log.info("Archived {} terminal transactions", archived);
+        }
+    }
+
+    // Batches of batchSize, each copied and deleted in one transaction, until no candidate is left
+    public int archiveUpdatedBefore(Instant updatedBefore) {
+        int total = 0;
+        while (true) {
+            List<ArchiveCandidate> batch = repository.findArchiveCandidates(updatedBefore, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return total;
+            }
+            ensurePartitions(batch);
+            try {
+                total += moveBatch(batch.stream().map(ArchiveCandidate::id).toList());
+            } catch (OptimisticLockingFailureException raced) {
+                // a row changed status between copy and delete; the whole batch rolled back, next run retries it
+                log.warn("Archiving batch rolled back: {}", raced.getMessage());
+                return total;
+            }
+            if (batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    private int moveBatch(List<UUID> ids) {
+        Instant now = Instant.now();
+        Integer moved = transactionTemplate.execute(status -> {
+            int copied = archive.copyFromTransaction(ids, now);
+            int deleted = repository.deleteArchived(ids);
+            if (copied != deleted) {
+                throw new OptimisticLockingFailureException(
+                        "copied " + copied + " rows to transaction_archive but deleted " + deleted);
+            }
+            return deleted;
+        });
+        return moved == null ? 0 : moved;
+    }
+
+    // On PostgreSQL, creates the monthly partitions the batch's created_at values fall into
+    private void ensurePartitions(List<ArchiveCandidate> batch) {
+        if (!isPartitioned()) {
+            return;
+        }
+        Set<YearMonth> months = new TreeSet<>();
+        for (ArchiveCandidate candidate : batch) {
+            YearMonth month = YearMonth.from(candidate.createdAt().atOffset(ZoneOffset.UTC));
+            if (!partitions.contains(month)) {
+                months.add(month);
+            }
+        }
+        for (YearMonth month : months) {
+            jdbcTemplate.execute(String.format(
+                    "create table if not exists transaction_archive_%d_%02d partition of transaction_archive " +
+                            "for values from ('%s-01 00:00:00+00') to ('%s-01 00:00:00+00')",
+                    month.getYear(), month.getMonthValue(), month, month.plusMonths(1)));
+            partitions.add(month);
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equals(product);
+            partitioned = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,332 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.cache.ProcessedWebhookEventStore;
+import com.ahy.payment.model.WebhookEventStatus;
+import com.ahy.payment.model.WebhookInboxEvent;
+import com.ahy.payment.observability.PaymentMetrics;
+import com.ahy.payment.repository.WebhookInboxRepository;
+import com.ahy.payment.util.WebhookEvent;
+import io.micrometer.common.KeyValues;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable queue between the Stripe webhook endpoint and {@link PaymentService}'s webhook handlers.
+ * <p>
+ * {@link #accept} persists the verified event and returns, so the endpoint acknowledges in one insert.
+ * {@link #drainBatch} claims the oldest events, groups them by payment intent and applies each group
+ * in order on a consumer lane chosen by the intent id, so events for one intent never run concurrently
+ * or out of order while different intents are applied in parallel.
+ * <p>
+ * Stripe has its answer once the event is accepted, so it will not redeliver: an event that fails to apply
+ * (typically one that arrived before its payment's external id was stored) is retried here, with exponential
+ * backoff from {@code payments.webhooks.retryBackoff} up to {@code maxRetryBackoff}, and only given up (FAILED)
+ * once {@code payments.webhooks.retryFor} after it was received.
+ * <p>
+ * Applied (DONE) rows are deleted once older than {@code payments.webhooks.retention}; FAILED rows stay
+ * for inspection. Redeliveries after that are still recognised by {@link ProcessedWebhookEventStore}.
+ */
+@Service
+public class WebhookInbox {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookInbox.class);
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final WebhookInboxRepository repository;
+    private final PaymentService paymentService;
+    private final ProcessedWebhookEventStore processedEvents;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentMetrics metrics;
+    private final boolean async;
+    private final int batchSize;
+    private final long maxDepth;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Duration retryFor;
+    private final Duration claimTimeout;
+    private final Duration retention;
+    private final ExecutorService[] lanes;
+
+    // identifies this instance's claims, so several instances can drain the same table
+    private final String owner = UUID.randomUUID().toString();
+
+    // NEW rows: kept current by this instance's enqueues and claims, recounted by refreshDepth
+    private final AtomicLong depth = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long lastBatchSize;
+    private volatile long lastLagMillis;
+
+    public WebhookInbox(WebhookInboxRepository repository,
+                        PaymentService paymentService,
+                        ProcessedWebhookEventStore processedEvents,
+                        TransactionTemplate transactionTemplate,
+                        PaymentMetrics metrics,
+                        @Value("${payments.webhooks.async:true}") boolean async,
+                        @Value("${payments.webhooks.consumers:4}") int consumers,
+                        @Value("${payments.webhooks.batchSize:100}") int batchSize,
+                        @Value("${payments.webhooks.maxDepth:10000}") long maxDepth,
+                        @Value("${payments.webhooks.retryBackoff:PT1S}") Duration retryBackoff,
+                        @Value("${payments.webhooks.maxRetryBackoff:PT1H}") Duration maxRetryBackoff,
+                        @Value("${payments.webhooks.retryFor:PT72H}") Duration retryFor,
+                        @Value("${payments.webhooks.claimTimeout:PT5M}") Duration claimTimeout,
+                        @Value("${payments.webhooks.retention:P7D}") Duration retention) {
+        this.repository = repository;
+        this.paymentService = paymentService;
+        this.processedEvents = processedEvents;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.maxDepth = maxDepth;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.retryFor = retryFor;
+        this.claimTimeout = claimTimeout;
+        this.retention = retention;
+
+        this.lanes = new ExecutorService[consumers];
+        for (int i = 0; i < consumers; i++) {
+            String name = "webhook-consumer-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Takes a verified event. A redelivery of an event id already accepted is acknowledged without
+     * further work. Otherwise, in async mode the event is persisted for the consumers; in sync mode
+     * it is applied before returning. Returns false, without persisting, when the queue is over
+     * {@code maxDepth}: the caller should answer 503 so Stripe redelivers later.
+     * <p>
+     * The event id is recorded in the same transaction as the inbox row (or the status change), so an
+     * id is never marked processed for an event that was not queued or applied: if either fails, or
+     * the process dies in between, both are rolled back and Stripe's redelivery is taken as new.
+     */
+    public boolean accept(WebhookEvent event) {
+        if (async && depth.get() >= maxDepth) {
+            rejected.increment();
+            count(event, "rejected");
+            return false;
+        }
+
+        boolean first;
+        try {
+            first = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!processedEvents.record(event.getEventId())) {
+                    // nothing to keep; on PostgreSQL the failed insert has aborted the transaction anyway
+                    status.setRollbackOnly();
+                    return false;
+                }
+                if (async) {
+                    enqueue(event);
+                } else {
+                    apply(event.getType(), event.getPaymentIntentId());
+                }
+                return true;
+            }));
+        } catch (RuntimeException ex) {
+            // rolled back; the store's in-memory window must not answer Stripe's retry as a duplicate either
+            processedEvents.forget(event.getEventId());
+            count(event, "error");
+            throw ex;
+        }
+
+        if (!first) {
+            count(event, "duplicate");
+            return true;
+        }
+        if (async) {
+            enqueued.increment();
+            addToDepth(1);
+        }
+        count(event, "accepted");
+        return true;
+    }
+
+    // payments.webhooks.received per event type and result; Stripe's event types are a fixed, small set
+    private void count(WebhookEvent event, String result) {
+        String type = event.getType() == null ? "unknown" : event.getType();
+        metrics.counter("payments.webhooks.received", KeyValues.of("type", type, "result", result)).increment();
+    }
+
+    private void enqueue(WebhookEvent event) {
+        WebhookInboxEvent row = new WebhookInboxEvent();
+        row.setEventId(event.getEventId());
+        row.setEventType(event.getType());
+        row.setPaymentIntentId(event.getPaymentIntentId());
+        row.setStatus(WebhookEventStatus.NEW);
+        repository.save(row);
+    }
+
+    /**
+     * Claims up to {@code batchSize} of the oldest events and applies them. Succeeded events are marked
+     * DONE with one bulk update. Returns the number of events claimed.
+     */
+    public int drainBatch() {
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(claimTimeout);
+
+        List<Long> ids = repository.findClaimableIds(now, staleBefore, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            depth.set(0);
+            lastBatchSize = 0;
+            return 0;
+        }
+
+        repository.claim(ids, owner, now, staleBefore);
+        // rows another instance claimed between the two statements are not returned
+        List<WebhookInboxEvent> claimed = repository.findByIdInAndClaimedByAndStatusOrderByIdAsc(
+                ids, owner, WebhookEventStatus.PROCESSING);
+        addToDepth(-claimed.size());
+
+        lastBatchSize = claimed.size();
+        if (!claimed.isEmpty() && claimed.get(0).getReceivedAt() != null) {
+            lastLagMillis = Duration.between(claimed.get(0).getReceivedAt(), now).toMillis();
+        }
+
+        Map<String, List<WebhookInboxEvent>> byIntent = new LinkedHashMap<>();
+        for (WebhookInboxEvent event : claimed) {
+            byIntent.computeIfAbsent(String.valueOf(event.getPaymentIntentId()), k -> new ArrayList<>()).add(event);
+        }
+
+        Queue<Long> done = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> groups = new ArrayList<>(byIntent.size());
+        for (Map.Entry<String, List<WebhookInboxEvent>> group : byIntent.entrySet()) {
+            ExecutorService lane = lanes[Math.floorMod(group.getKey().hashCode(), lanes.length)];
+            groups.add(CompletableFuture.runAsync(() -> applyInOrder(group.getValue(), done), lane));
+        }
+        CompletableFuture.allOf(groups.toArray(CompletableFuture[]::new)).join();
+
+        if (!done.isEmpty()) {
+            repository.markDone(done, Instant.now());
+        }
+        return claimed.size();
+    }
+
+    /*
+     * The in-memory depth misses other instances' enqueues and claims, and counts a reclaimed stale row
+     * as leaving NEW; a count on a slow schedule puts it right without a count(*) per batch.
+     */
+    @Scheduled(fixedDelayString = "${payments.webhooks.depthRefreshInterval:PT30S}",
+            initialDelayString = "${payments.webhooks.depthRefreshInterval:PT30S}")
+    public void refreshDepth() {
+        depth.set(repository.countByStatus(WebhookEventStatus.NEW));
+    }
+
+    @Scheduled(fixedDelayString = "${payments.webhooks.purgeInterval:PT1H}",
+            initialDelayString = "${payments.webhooks.purgeInterval:PT1H}")
+    public void purgeDone() {
+        int purged = repository.deleteDoneBefore(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} applied webhook inbox events older than {}", purged, retention);
+        }
+    }
+
+    private void addToDepth(long delta) {
+        depth.updateAndGet(current -> Math.max(0, current + delta));
+    }
+
+    public WebhookQueueStats stats() {
+        return new WebhookQueueStats(depth.get(), enqueued.sum(), rejected.sum(), processed.sum(),
+                retried.sum(), failed.sum(), lastBatchSize, lastLagMillis);
+    }
+
+    /*
+     * Applies one intent's events oldest first. When an event fails and will be retried, the events
+     * after it are put back untouched; findClaimableIds holds them back until the failed one is due again,
+     * so a later event is never applied before an earlier one.
+     */
+    private void applyInOrder(List<WebhookInboxEvent> events, Queue<Long> done) {
+        for (int i = 0; i < events.size(); i++) {
+            WebhookInboxEvent event = events.get(i);
+            try {
+                apply(event.getEventType(), event.getPaymentIntentId());
+                done.add(event.getId());
+                processed.increment();
+            } catch (RuntimeException ex) {
+                int attempts = event.getAttempts() + 1;
+                String error = truncate(ex.getMessage() != null ? ex.getMessage() : ex.toString());
+                Instant nextAttemptAt = Instant.now().plus(backoff(attempts));
+
+                if (event.getReceivedAt() != null && nextAttemptAt.isAfter(event.getReceivedAt().plus(retryFor))) {
+                    log.error("Giving up on webhook event {} ({} for {}) after {} attempts over {}: {}",
+                            event.getId(), event.getEventType(), event.getPaymentIntentId(), attempts, retryFor, error);
+                    repository.release(event.getId(), WebhookEventStatus.FAILED, attempts, error, null);
+                    failed.increment();
+                    continue;
+                }
+
+                repository.release(event.getId(), WebhookEventStatus.NEW, attempts, error, nextAttemptAt);
+                retried.increment();
+                List<WebhookInboxEvent> later = events.subList(i + 1, events.size());
+                for (WebhookInboxEvent next : later) {
+                    repository.release(next.getId(), WebhookEventStatus.NEW, next.getAttempts(), next.getLastError(),
+                            next.getNextAttemptAt());
+                }
+                addToDepth(1 + later.size());
+                return;
+            }
+        }
+    }
+
+    // retryBackoff doubled per failed attempt, capped at maxRetryBackoff
+    private Duration backoff(int attempts) {
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : delay;
+    }
+
+    private void apply(String type, String paymentIntentId) {
+        switch (type) {
+
+            case "payment_intent.succeeded" -> paymentService.handlePaymentIntentSucceeded(paymentIntentId);
+
+            case "payment_intent.payment_failed" -> paymentService.handlePaymentIntentFailed(paymentIntentId);
+
+            case "charge.refunded" -> paymentService.handleChargeRefunded(paymentIntentId);
+
+            default -> {
+                // Ignore unhandled events
+            }
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.ahy.payment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the webhook inbox. A full batch means more events are waiting, so it keeps going
+ * until a batch comes back short instead of waiting for the next poll.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.webhooks.async", havingValue = "true", matchIfMissing = true)
+public class WebhookInboxConsumer {
+
+    private final WebhookInbox inbox;
+    private final int batchSize;
+
+    public WebhookInboxConsumer(WebhookInbox inbox, @Value("${payments.webhooks.batchSize:100}") int batchSize) {
+        this.inbox = inbox;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${payments.webhooks.pollInterval:PT0.2S}")
+    public void drain() {
+        while (inbox.drainBatch() >= batchSize) {
+            // keep draining while the backlog fills whole batches
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.ahy.payment.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class WebhookQueueStats {
+    private long depth;          // events waiting to be claimed (estimate, refreshed on every drain)
+    private long enqueued;       // accepted and persisted by the endpoint
+    private long rejected;       // refused with 503 because the queue was full
+    private long processed;      // applied successfully
+    private long retried;        // put back after a failed attempt
+    private long failed;         // given up after retryFor
+    private long lastBatchSize;  // events claimed by the last drain
+    private long lastLagMillis;  // age of the oldest event in the last drain
+}
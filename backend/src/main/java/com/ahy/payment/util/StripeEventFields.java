@@ -0,0 +1,87 @@
+package com.ahy.payment.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * The three fields the webhook endpoint needs from a Stripe event: {@code id}, {@code type} and
+ * {@code data.object.id}. {@link #parse} reads them with one streaming pass over the payload,
+ * skipping every other subtree without building objects for it.
+ */
+public record StripeEventFields(String id, String type, String objectId) {
+
+    // thread-safe and expensive to create, so shared
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Returns the fields found (any of them may be null), or null if the payload is not a JSON object.
+     */
+    public static StripeEventFields parse(String payload) {
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            String id = null;
+            String type = null;
+            String objectId = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                switch (name) {
+                    case "id" -> id = stringValue(parser, value);
+                    case "type" -> type = stringValue(parser, value);
+                    case "data" -> {
+                        if (value == JsonToken.START_OBJECT) {
+                            objectId = readDataObjectId(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new StripeEventFields(id, type, objectId);
+        } catch (IOException malformed) {
+            return null;
+        }
+    }
+
+    // Positioned on the START_OBJECT of "data"; returns on its END_OBJECT
+    private static String readDataObjectId(JsonParser parser) throws IOException {
+        String objectId = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("object".equals(name) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if ("id".equals(field)) {
+                        objectId = stringValue(parser, fieldValue);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return objectId;
+    }
+
+    private static String stringValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
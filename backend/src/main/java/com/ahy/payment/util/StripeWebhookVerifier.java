@@ -3,20 +3,40 @@ package com.ahy.payment.util;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 @Component
 public class StripeWebhookVerifier {
 
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookVerifier.class);
+
+    private static final com.fasterxml.jackson.databind.ObjectMapper MAPPER = new com.fasterxml.jackson.databind.ObjectMapper();
+
+    /*
+     * Checks the signature on the raw payload, then reads id/type/data.object.id with a single streaming
+     * pass (StripeEventFields). The SDK's Gson Event model is only built for payloads the streaming
+     * pass cannot handle.
+     */
     public com.ahy.payment.util.WebhookEvent verifyStripeSignature(String payload, String signatureHeader, String secret) throws SignatureVerificationException {
-        Event event = SignatureUtil.verifyStripeSignature(payload, signatureHeader, secret);
+        Webhook.Signature.verifyHeader(payload, signatureHeader, secret, Webhook.DEFAULT_TOLERANCE);
 
-        String paymentIntentId = extractPaymentIntentId(event);
+        StripeEventFields fields = StripeEventFields.parse(payload);
+        com.ahy.payment.util.WebhookEvent verified;
+        if (fields != null && fields.type() != null && fields.objectId() != null) {
+            verified = new com.ahy.payment.util.WebhookEvent(fields.id(), fields.type(), fields.objectId());
+        } else {
+            Event event = ApiResource.GSON.fromJson(payload, Event.class);
+            verified = new com.ahy.payment.util.WebhookEvent(event.getId(), event.getType(), extractPaymentIntentId(event));
+        }
 
         // Log for observability in tests to ease debugging
-        org.slf4j.LoggerFactory.getLogger(StripeWebhookVerifier.class).info("Verified event type={} paymentIntentId={}", event.getType(), paymentIntentId);
+        log.info("Verified event id={} type={} paymentIntentId={}", verified.getEventId(), verified.getType(), verified.getPaymentIntentId());
 
-        return new com.ahy.payment.util.WebhookEvent(event.getType(), paymentIntentId);
+        return verified;
     }
 
     /*
@@ -33,8 +53,7 @@ public class StripeWebhookVerifier {
             // StripeObject may not expose getters consistently across SDK versions; parse JSON safely.
             try {
                 String json = ((com.stripe.model.StripeObject) dataObject).toJson();
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-                java.util.Map<String, Object> map = mapper.readValue(json, java.util.Map.class);
+                java.util.Map<String, Object> map = MAPPER.readValue(json, java.util.Map.class);
                 paymentIntentId = (String) map.get("id");
             } catch (Exception ignored) {
             }
@@ -1,7 +1,13 @@
 package com.ahy.payment.util;
 
+import com.ahy.payment.dto.response.BatchAuthorizeItemResponse;
+import com.ahy.payment.dto.response.BatchAuthorizeResponse;
 import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.ArchivedTransaction;
 import com.ahy.payment.model.Transaction;
+import com.ahy.payment.service.BatchAuthorizeResult;
+
+import java.util.List;
 
 public class TransactionMapper {
 
@@ -14,5 +20,31 @@ public class TransactionMapper {
         res.setCreatedAt(tx.getCreatedAt());
         return res;
     }
+
+    // Detached copy of an archived row, for callers that work with Transaction
+    public static Transaction fromArchive(ArchivedTransaction archived) {
+        Transaction tx = new Transaction();
+        tx.setId(archived.getId());
+        tx.setAmount(archived.getAmount());
+        tx.setCurrency(archived.getCurrency());
+        tx.setStatus(archived.getStatus());
+        tx.setExternalTransactionId(archived.getExternalTransactionId());
+        tx.setMetadata(archived.getMetadata());
+        tx.setCreatedAt(archived.getCreatedAt());
+        tx.setUpdatedAt(archived.getUpdatedAt());
+        tx.setIdempotencyKey(archived.getIdempotencyKey());
+        return tx;
+    }
+
+    public static BatchAuthorizeResponse toBatchResponse(List<BatchAuthorizeResult> results) {
+        List<BatchAuthorizeItemResponse> items = results.stream().map(result -> {
+            BatchAuthorizeItemResponse item = new BatchAuthorizeItemResponse();
+            item.setIdempotencyKey(result.getIdempotencyKey());
+            item.setTransaction(result.getTransaction() == null ? null : toResponse(result.getTransaction()));
+            item.setError(result.getError());
+            return item;
+        }).toList();
+        return new BatchAuthorizeResponse(items);
+    }
 }
 
@@ -0,0 +1,72 @@
+package com.ahy.payment.util;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Time-ordered UUIDs in the RFC 9562 version 7 layout:
+ * <pre>
+ *  48 bits  unix_ts_ms
+ *   4 bits  version (0111)
+ *  12 bits  counter: random start each millisecond, +1 per id within it
+ *   2 bits  variant (10)
+ *  62 bits  random
+ * </pre>
+ * Consecutive ids from one generator are strictly increasing (RFC 9562 section 6.2, method 1): when
+ * the counter runs out, or the wall clock steps back, the timestamp is advanced past the last one used.
+ * Ids from different nodes interleave by millisecond and are kept apart by the 62 random bits, which
+ * come from a {@link SecureRandom} (RFC 9562 section 6.9): ids appear in URLs and must not be guessable
+ * from ones already seen.
+ *
+ * <p>New ids land on the right-most leaf of a B-tree primary key instead of a random page, so index
+ * inserts append rather than split pages all over the tree.
+ */
+public final class UuidV7 {
+
+    private static final UuidV7 DEFAULT = new UuidV7(System::currentTimeMillis, new SecureRandom());
+
+    private static final int COUNTER_BITS = 12;
+    private static final int MAX_COUNTER = (1 << COUNTER_BITS) - 1;
+
+    private final LongSupplier clock;
+    private final RandomGenerator random;
+
+    private long lastMillis = -1;
+    private int counter;
+
+    // Tests pass a seeded SplittableRandom for repeatable ids
+    UuidV7(LongSupplier clock, RandomGenerator random) {
+        this.clock = clock;
+        this.random = random;
+    }
+
+    public static UUID next() {
+        return DEFAULT.generate();
+    }
+
+    // Milliseconds part of a version 7 id
+    public static Instant timestamp(UUID uuid) {
+        return Instant.ofEpochMilli(uuid.getMostSignificantBits() >>> 16);
+    }
+
+    synchronized UUID generate() {
+        long now = clock.getAsLong();
+        if (now > lastMillis) {
+            lastMillis = now;
+            // top counter bit starts at 0, so at least 2048 ids fit in a millisecond before borrowing the next
+            counter = random.nextInt(MAX_COUNTER >> 1);
+        } else if (counter < MAX_COUNTER) {
+            counter++;
+        } else {
+            lastMillis++;
+            counter = 0;
+        }
+
+        long msb = (lastMillis << 16) | (0x7L << 12) | counter;
+        long lsb = (random.nextLong() >>> 2) | 0x8000_0000_0000_0000L;
+        return new UUID(msb, lsb);
+    }
+}
@@ -1,14 +1,25 @@
 package com.ahy.payment.util;
 
 public class WebhookEvent {
+    private final String eventId;
     private final String type;
     private final String paymentIntentId;
 
-    public WebhookEvent(String type, String paymentIntentId) {
+    public WebhookEvent(String eventId, String type, String paymentIntentId) {
+        this.eventId = eventId;
         this.type = type;
         this.paymentIntentId = paymentIntentId;
     }
 
+    public WebhookEvent(String type, String paymentIntentId) {
+        this(null, type, paymentIntentId);
+    }
+
+    // Stripe's evt_... id; the same for every redelivery of one event
+    public String getEventId() {
+        return eventId;
+    }
+
     public String getType() {
         return type;
     }
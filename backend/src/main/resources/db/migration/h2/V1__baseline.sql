@@ -0,0 +1,14 @@
+-- H2 (tests, benchmarks) always starts from an empty database, so the scripts create the current
+-- schema directly; version numbers follow db/migration/postgresql.
+create table transaction (
+    id                      uuid not null,
+    amount                  numeric(38,2),
+    currency                varchar(255),
+    status                  enum ('AUTHORIZED','CAPTURED','CAPTURING','DECLINED','FAILED','PENDING','REFUNDED','REFUNDING'),
+    external_transaction_id varchar(255),
+    metadata                json,
+    created_at              timestamp(6) with time zone,
+    updated_at              timestamp(6) with time zone,
+    idempotency_key         varchar(255) not null unique,
+    primary key (id)
+);
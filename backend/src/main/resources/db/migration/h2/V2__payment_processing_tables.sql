@@ -0,0 +1,40 @@
+create table webhook_inbox (
+    id                bigint generated by default as identity,
+    event_id          varchar(255),
+    event_type        varchar(255),
+    payment_intent_id varchar(255),
+    status            enum ('DONE','FAILED','NEW','PROCESSING'),
+    attempts          integer not null,
+    last_error        varchar(255),
+    claimed_by        varchar(255),
+    claimed_at        timestamp(6) with time zone,
+    received_at       timestamp(6) with time zone,
+    processed_at      timestamp(6) with time zone,
+    primary key (id)
+);
+create index idx_webhook_inbox_status_id on webhook_inbox (status, id);
+
+create table processed_webhook_event (
+    event_id     varchar(255) not null,
+    processed_at timestamp(6) with time zone,
+    primary key (event_id)
+);
+create index idx_processed_webhook_event_processed_at on processed_webhook_event (processed_at);
+
+create sequence gateway_response_seq start with 1 increment by 50;
+create table gateway_response (
+    id             bigint not null,
+    transaction_id uuid,
+    operation      enum ('AUTHORIZE','CAPTURE','REFUND'),
+    status         enum ('AUTHORIZED','CAPTURED','CAPTURING','DECLINED','FAILED','PENDING','REFUNDED','REFUNDING'),
+    payload        varbinary(65535),
+    segment        varchar(255),
+    segment_offset bigint,
+    stored_size    integer not null,
+    raw_size       integer not null,
+    truncated      boolean not null,
+    recorded_at    timestamp(6) with time zone,
+    primary key (id)
+);
+create index idx_gateway_response_transaction_id on gateway_response (transaction_id);
+create index idx_gateway_response_recorded_at on gateway_response (recorded_at);
@@ -0,0 +1,3 @@
+-- H2 has no partial indexes: same names as on PostgreSQL, full-table equivalents
+create index idx_transaction_external_transaction_id on transaction (external_transaction_id);
+create index idx_transaction_in_progress on transaction (status, updated_at);
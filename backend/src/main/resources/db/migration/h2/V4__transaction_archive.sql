@@ -0,0 +1,15 @@
+-- H2 has no declarative partitioning: one plain table with the same columns and key
+create table transaction_archive (
+    id                      uuid not null,
+    amount                  numeric(38,2),
+    currency                varchar(255),
+    status                  enum ('AUTHORIZED','CAPTURED','CAPTURING','DECLINED','FAILED','PENDING','REFUNDED','REFUNDING'),
+    external_transaction_id varchar(255),
+    metadata                json,
+    created_at              timestamp(6) with time zone not null,
+    updated_at              timestamp(6) with time zone,
+    idempotency_key         varchar(255) not null,
+    archived_at             timestamp(6) with time zone,
+    primary key (id, created_at)
+);
+create index idx_transaction_archive_external_transaction_id on transaction_archive (external_transaction_id);
@@ -0,0 +1 @@
+create index idx_transaction_terminal on transaction (status, updated_at);
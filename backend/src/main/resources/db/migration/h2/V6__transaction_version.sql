@@ -0,0 +1 @@
+alter table transaction add column version bigint default 0 not null;
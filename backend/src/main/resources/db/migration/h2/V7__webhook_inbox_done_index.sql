@@ -0,0 +1 @@
+create index idx_webhook_inbox_done on webhook_inbox (status, processed_at);
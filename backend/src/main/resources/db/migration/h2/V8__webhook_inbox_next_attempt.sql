@@ -0,0 +1 @@
+alter table webhook_inbox add column next_attempt_at timestamp(6) with time zone;
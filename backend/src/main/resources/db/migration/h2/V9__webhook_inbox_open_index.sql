@@ -0,0 +1,5 @@
+-- V3 left out the inbox claim index. H2 has no partial indexes, so like idx_transaction_in_progress and
+-- idx_transaction_terminal this is a full-table index under the PostgreSQL name, even where it duplicates
+-- another one: SchemaIndexVerifier and the entity mappings look indexes up by name on both databases, and
+-- H2 only backs development and tests, where the extra index costs nothing that matters.
+create index idx_webhook_inbox_open on webhook_inbox (status, id);
@@ -0,0 +1,15 @@
+-- Schema of the first release, as ddl-auto created it. Existing databases are baselined at this
+-- version (spring.flyway.baseline-on-migrate) and only get the later scripts.
+create table if not exists transaction (
+    id                      uuid not null,
+    amount                  numeric(38,2),
+    currency                varchar(255),
+    status                  varchar(255) check (status in ('PENDING','AUTHORIZED','CAPTURED','REFUNDED','DECLINED','FAILED')),
+    external_transaction_id varchar(255),
+    metadata                jsonb,
+    created_at              timestamp(6) with time zone,
+    updated_at              timestamp(6) with time zone,
+    gateway_response        oid,
+    idempotency_key         varchar(255) not null unique,
+    primary key (id)
+);
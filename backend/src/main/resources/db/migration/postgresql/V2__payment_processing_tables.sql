@@ -0,0 +1,49 @@
+-- In-progress statuses for capture/refund outside a DB transaction. ddl-auto never updated the
+-- check constraint it created, so databases it manages reject CAPTURING/REFUNDING.
+alter table transaction drop constraint if exists transaction_status_check;
+alter table transaction add constraint transaction_status_check
+    check (status in ('PENDING','AUTHORIZED','CAPTURING','CAPTURED','REFUNDING','REFUNDED','DECLINED','FAILED'));
+
+-- Raw PSP responses moved to gateway_response; the column was never populated
+alter table transaction drop column if exists gateway_response;
+
+create table if not exists webhook_inbox (
+    id                bigint generated by default as identity,
+    event_id          varchar(255),
+    event_type        varchar(255),
+    payment_intent_id varchar(255),
+    status            varchar(255) check (status in ('NEW','PROCESSING','DONE','FAILED')),
+    attempts          integer not null,
+    last_error        varchar(255),
+    claimed_by        varchar(255),
+    claimed_at        timestamp(6) with time zone,
+    received_at       timestamp(6) with time zone,
+    processed_at      timestamp(6) with time zone,
+    primary key (id)
+);
+create index if not exists idx_webhook_inbox_status_id on webhook_inbox (status, id);
+
+create table if not exists processed_webhook_event (
+    event_id     varchar(255) not null,
+    processed_at timestamp(6) with time zone,
+    primary key (event_id)
+);
+create index if not exists idx_processed_webhook_event_processed_at on processed_webhook_event (processed_at);
+
+create sequence if not exists gateway_response_seq start with 1 increment by 50;
+create table if not exists gateway_response (
+    id             bigint not null,
+    transaction_id uuid,
+    operation      varchar(255) check (operation in ('AUTHORIZE','CAPTURE','REFUND')),
+    status         varchar(255) check (status in ('PENDING','AUTHORIZED','CAPTURING','CAPTURED','REFUNDING','REFUNDED','DECLINED','FAILED')),
+    payload        bytea,
+    segment        varchar(255),
+    segment_offset bigint,
+    stored_size    integer not null,
+    raw_size       integer not null,
+    truncated      boolean not null,
+    recorded_at    timestamp(6) with time zone,
+    primary key (id)
+);
+create index if not exists idx_gateway_response_transaction_id on gateway_response (transaction_id);
+create index if not exists idx_gateway_response_recorded_at on gateway_response (recorded_at);
@@ -0,0 +1,16 @@
+-- Indexes for the queries the service runs on every request. CONCURRENTLY keeps writes flowing while
+-- they build on a large table; Flyway runs such a script outside a transaction.
+
+-- Webhooks: TransactionRepository.findStatusViewByExternalTransactionId. Rows still PENDING have no
+-- external id and stay out of the index.
+create index concurrently if not exists idx_transaction_external_transaction_id
+    on transaction (external_transaction_id) where external_transaction_id is not null;
+
+-- Recovery job: TransactionRepository.findInProgressUpdatedBefore. Only the few rows in a
+-- non-terminal status are indexed; the query lists the statuses as literals so the planner can use it.
+create index concurrently if not exists idx_transaction_in_progress
+    on transaction (updated_at) where status in ('PENDING','CAPTURING','REFUNDING');
+
+-- Webhook consumers: WebhookInboxRepository.findClaimableIds/claim. Stays small however many DONE rows pile up.
+create index concurrently if not exists idx_webhook_inbox_open
+    on webhook_inbox (id) where status in ('NEW','PROCESSING');
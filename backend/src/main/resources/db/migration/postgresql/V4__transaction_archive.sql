@@ -0,0 +1,24 @@
+-- Cold tier for transactions in a terminal status (TransactionArchiver). Range-partitioned by month of
+-- created_at; the partitions themselves (transaction_archive_yyyy_mm) are created by the archiver
+-- before it moves rows into them. A partitioned table's primary key must contain the partition key.
+--
+-- The hot transaction table stays unpartitioned: its unique idempotency_key is what the insert-first
+-- reservation relies on, and PostgreSQL cannot enforce a unique key across partitions unless it
+-- includes created_at.
+create table if not exists transaction_archive (
+    id                      uuid not null,
+    amount                  numeric(38,2),
+    currency                varchar(255),
+    status                  varchar(255),
+    external_transaction_id varchar(255),
+    metadata                jsonb,
+    created_at              timestamp(6) with time zone not null,
+    updated_at              timestamp(6) with time zone,
+    idempotency_key         varchar(255) not null,
+    archived_at             timestamp(6) with time zone,
+    primary key (id, created_at)
+) partition by range (created_at);
+
+-- Webhooks for archived payments: ArchivedTransactionRepository.findStatusViewByExternalTransactionId
+create index if not exists idx_transaction_archive_external_transaction_id
+    on transaction_archive (external_transaction_id);
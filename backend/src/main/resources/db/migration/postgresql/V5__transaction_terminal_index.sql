@@ -0,0 +1,4 @@
+-- Archiver: TransactionRepository.findArchiveCandidates. Like idx_transaction_in_progress, the query
+-- lists the statuses as literals so the planner can use the partial index.
+create index concurrently if not exists idx_transaction_terminal
+    on transaction (updated_at) where status in ('REFUNDED','DECLINED','FAILED');
@@ -0,0 +1,2 @@
+-- Optimistic locking (Transaction.version). The constant default fills existing rows without a rewrite.
+alter table transaction add column if not exists version bigint not null default 0;
@@ -0,0 +1,4 @@
+-- Inbox retention: WebhookInboxRepository.deleteDoneBefore. Only DONE rows are purged, so the index
+-- covers only them.
+create index concurrently if not exists idx_webhook_inbox_done
+    on webhook_inbox (processed_at) where status = 'DONE';
@@ -0,0 +1,3 @@
+-- Retry backoff for webhook events that failed to apply (WebhookInboxRepository.findClaimableIds). A nullable
+-- column without default is added without a rewrite; null means due now.
+alter table webhook_inbox add column if not exists next_attempt_at timestamp(6) with time zone;
@@ -1,19 +1,34 @@
 package com.ahy.payment;
 
+import com.ahy.payment.controller.MetricsController;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(properties = {
         "spring.datasource.url=jdbc:h2:mem:testdb",
         "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
         "spring.jpa.hibernate.ddl-auto=create-drop",
         "spring.profiles.active=mock",
         "payments.stripe.webhookSecret=whsec_test"
 })
 class PaymentServiceApplicationTests {
 
+	@Autowired
+	private ApplicationContext context;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void metricsEndpoint_isOffByDefault() {
+		assertThat(context.getBeansOfType(MetricsController.class)).isEmpty();
+	}
+
 }
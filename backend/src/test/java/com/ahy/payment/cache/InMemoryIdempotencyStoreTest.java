@@ -0,0 +1,108 @@
+package com.ahy.payment.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryIdempotencyStoreTest {
+
+    @Test
+    void secondCall_isHit_andLoaderRunsOnce() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        UUID id = UUID.randomUUID();
+
+        UUID first = store.computeIfAbsent("k1", () -> {
+            loads.incrementAndGet();
+            return id;
+        });
+        UUID second = store.computeIfAbsent("k1", () -> {
+            loads.incrementAndGet();
+            return UUID.randomUUID();
+        });
+
+        assertThat(first).isEqualTo(id);
+        assertThat(second).isEqualTo(id);
+        assertThat(loads).hasValue(1);
+        assertThat(store.stats().getHits()).isEqualTo(1);
+        assertThat(store.stats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCalls_sameKey_areMerged() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UUID id = UUID.randomUUID();
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<UUID> a = pool.submit(() -> store.computeIfAbsent("k2", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return id;
+            }));
+            assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<UUID> b = pool.submit(() -> store.computeIfAbsent("k2", () -> {
+                loads.incrementAndGet();
+                return UUID.randomUUID();
+            }));
+            // give b time to join the in-flight future before releasing a
+            Thread.sleep(50);
+            release.countDown();
+
+            assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo(id);
+            assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo(id);
+            assertThat(loads).hasValue(1);
+            assertThat(store.stats().getInFlightJoins()).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoad_isNotCached() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(10, Duration.ofMinutes(1));
+
+        assertThatThrownBy(() -> store.computeIfAbsent("k3", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        UUID id = UUID.randomUUID();
+        assertThat(store.computeIfAbsent("k3", () -> id)).isEqualTo(id);
+        assertThat(store.stats().getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void sizeBound_evictsEntries() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(1, Duration.ofMinutes(1));
+        for (int i = 0; i < 50; i++) {
+            store.computeIfAbsent("key-" + i, UUID::randomUUID);
+        }
+        store.cleanUp();
+
+        assertThat(store.stats().getSize()).isLessThanOrEqualTo(1);
+        assertThat(store.stats().getEvictions()).isGreaterThan(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ahy.payment.cache;
+
+import com.ahy.payment.repository.ProcessedWebhookEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProcessedWebhookEventStoreTest {
+
+    private ProcessedWebhookEventRepository repository;
+    private ProcessedWebhookEventStore store;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ProcessedWebhookEventRepository.class);
+        store = new ProcessedWebhookEventStore(repository, 100, Duration.ofMinutes(1), Duration.ofDays(3));
+    }
+
+    @Test
+    void record_firstDelivery_insertsOnce_andRedeliveryIsAnsweredFromMemory() {
+        assertTrue(store.record("evt_1"));
+        assertFalse(store.record("evt_1"));
+        assertFalse(store.record("evt_1"));
+
+        verify(repository, times(1)).insert(eq("evt_1"), any());
+        WebhookDedupStats stats = store.stats();
+        assertEquals(1, stats.getRecorded());
+        assertEquals(2, stats.getMemoryHits());
+        assertEquals(2, stats.getDuplicates());
+    }
+
+    @Test
+    void record_idAlreadyInTable_isDuplicate() {
+        when(repository.insert(eq("evt_old"), any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertFalse(store.record("evt_old"));
+        assertFalse(store.record("evt_old"));
+
+        verify(repository, times(1)).insert(eq("evt_old"), any());
+        assertEquals(1, store.stats().getTableHits());
+        assertEquals(1, store.stats().getMemoryHits());
+    }
+
+    @Test
+    void forget_allowsTheNextDeliveryThrough() {
+        assertTrue(store.record("evt_1"));
+        store.forget("evt_1");
+
+        assertTrue(store.record("evt_1"));
+        verify(repository).deleteById("evt_1");
+        verify(repository, times(2)).insert(eq("evt_1"), any());
+    }
+
+    @Test
+    void record_nullId_isNeverDeduplicated() {
+        assertTrue(store.record(null));
+        assertTrue(store.record(null));
+        verifyNoInteractions(repository);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ahy.payment.cache;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionViewCacheTest {
+
+    private final InProcessCacheInvalidationBus bus = new InProcessCacheInvalidationBus();
+    private final TransactionViewCache cache = new TransactionViewCache(bus, 10, Duration.ofMinutes(1));
+
+    @Test
+    void secondRead_isHit_andLoaderRunsOnce() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(id, k -> load(k, loads));
+        TransactionResponse second = cache.get(id, k -> load(k, loads));
+
+        assertThat(second.getId()).isEqualTo(id);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().getHits()).isEqualTo(1);
+        assertThat(cache.stats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void missingTransaction_isNotCached() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(id, k -> {
+            loads.incrementAndGet();
+            return null;
+        })).isNull();
+        cache.get(id, k -> load(k, loads));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidate_outsideTransaction_evictsImmediately() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(id, k -> load(k, loads));
+
+        cache.invalidate(id);
+        cache.get(id, k -> load(k, loads));
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.stats().getInvalidations()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidate_insideTransaction_waitsForCommit() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(id, k -> load(k, loads));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(id);
+            cache.get(id, k -> load(k, loads));
+            assertThat(loads).hasValue(1);
+
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.get(id, k -> load(k, loads));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidate_duringLoad_doesNotWait_andDropsTheLoadedValue() throws Exception {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            Future<TransactionResponse> read = reader.submit(() -> cache.get(id, k -> {
+                loading.countDown();
+                await(release);
+                return load(k, loads);
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // returns while the load is still in progress (a blocking cache would wait for it here)
+            CompletableFuture.runAsync(() -> cache.invalidate(id)).get(5, TimeUnit.SECONDS);
+            release.countDown();
+
+            assertThat(read.get(5, TimeUnit.SECONDS).getId()).isEqualTo(id);
+            cache.get(id, k -> load(k, loads));
+            assertThat(loads).hasValue(2);
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    void messageFromAnotherNode_evictsLocalCopy() {
+        UUID id = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(id, k -> load(k, loads));
+
+        bus.publish(id);
+        cache.get(id, k -> load(k, loads));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static TransactionResponse load(UUID id, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new TransactionResponse(id, BigDecimal.TEN, "USD", PaymentStatus.AUTHORIZED, null);
+    }
+}
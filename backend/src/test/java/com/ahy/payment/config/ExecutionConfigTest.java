@@ -0,0 +1,129 @@
+package com.ahy.payment.config;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionConfigTest {
+
+    private final ExecutionConfig config = new ExecutionConfig();
+
+    @Test
+    void platformMode_usesBoundedPool() {
+        ExecutorService executor = config.gatewayExecutor(new MockEnvironment(), 16);
+        try {
+            assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+            assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize()).isEqualTo(16);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void virtualMode_fallsBackToPlatformThreads_onOlderRuntimes() {
+        MockEnvironment env = new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+        ExecutorService executor = config.gatewayExecutor(env, 16);
+        try {
+            if (Runtime.version().feature() >= 21) {
+                assertThat(executor).isNotInstanceOf(ThreadPoolExecutor.class);
+            } else {
+                assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Concurrency ceiling of each execution mode against a stub gateway with fixed PSP latency.
+     * Run with RUN_LOAD=true (and a Java 21+ runtime for the virtual-thread numbers).
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "RUN_LOAD", matches = "true")
+    void load_concurrencyCeiling_platformVsVirtual() throws Exception {
+        int calls = 4000;
+        long latencyMillis = 100;
+
+        LoadResult platform = drive(ExecutionConfig.newPlatformExecutor(200, "gateway-"), calls, latencyMillis);
+        System.out.printf("platform(200): peak in-flight=%d, %.0f calls/s%n", platform.peakInFlight, platform.throughput);
+        assertThat(platform.peakInFlight).isLessThanOrEqualTo(200);
+
+        ExecutorService virtual = ExecutionConfig.newVirtualThreadPerTaskExecutor();
+        if (virtual != null) {
+            LoadResult result = drive(virtual, calls, latencyMillis);
+            System.out.printf("virtual: peak in-flight=%d, %.0f calls/s%n", result.peakInFlight, result.throughput);
+            assertThat(result.peakInFlight).isGreaterThan(platform.peakInFlight);
+        }
+    }
+
+    private static LoadResult drive(ExecutorService executor, int calls, long latencyMillis) throws Exception {
+        SlowStubGateway gateway = new SlowStubGateway(latencyMillis);
+        try {
+            long start = System.nanoTime();
+            List<Future<GatewayResponse>> futures = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                futures.add(executor.submit(() -> gateway.authorize(BigDecimal.TEN, "USD", Map.of(), null)));
+            }
+            for (Future<GatewayResponse> f : futures) {
+                f.get(2, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return new LoadResult(gateway.peakInFlight.get(), calls / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private record LoadResult(int peakInFlight, double throughput) {
+    }
+
+    // Blocks like a PSP HTTP round trip and tracks how many calls were outstanding at once
+    private static class SlowStubGateway implements PaymentGateway {
+        private final long latencyMillis;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+
+        SlowStubGateway(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+            int now = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return new GatewayResponse(PaymentStatus.AUTHORIZED, "stub_1", null);
+        }
+
+        @Override
+        public GatewayResponse capture(String externalId, BigDecimal amount, String currency) {
+            return new GatewayResponse(PaymentStatus.CAPTURED, externalId, null);
+        }
+
+        @Override
+        public GatewayResponse refund(String externalId, BigDecimal amount, String currency) {
+            return new GatewayResponse(PaymentStatus.REFUNDED, externalId, null);
+        }
+    }
+}
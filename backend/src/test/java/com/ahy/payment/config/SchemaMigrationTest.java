@@ -0,0 +1,52 @@
+package com.ahy.payment.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Flyway builds the schema and Hibernate validates the entities against it (ddl-auto: validate)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrationdb;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "payments.stripe.webhookSecret=whsec_test",
+        "payments.recovery.enabled=false"
+})
+class SchemaMigrationTest {
+
+    @Autowired
+    private SchemaIndexVerifier verifier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrations_createEveryRequiredIndex() throws Exception {
+        assertThat(verifier.missingIndexes()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("select max(\"version\") from \"flyway_schema_history\"", String.class))
+                .isEqualTo("9");
+    }
+
+    @Test
+    void droppedIndex_isReported() throws Exception {
+        jdbcTemplate.execute("drop index idx_transaction_in_progress");
+        try {
+            assertThat(verifier.missingIndexes()).containsExactly("transaction.idx_transaction_in_progress");
+        } finally {
+            jdbcTemplate.execute("create index idx_transaction_in_progress on transaction (status, updated_at)");
+        }
+    }
+
+    @Test
+    void droppedInboxClaimIndex_isReported() throws Exception {
+        jdbcTemplate.execute("drop index idx_webhook_inbox_open");
+        try {
+            assertThat(verifier.missingIndexes()).containsExactly("webhook_inbox.idx_webhook_inbox_open");
+        } finally {
+            jdbcTemplate.execute("create index idx_webhook_inbox_open on webhook_inbox (status, id)");
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.ahy.payment.controller;
 
 import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.exception.GatewayUnavailableException;
+import com.ahy.payment.exception.InvalidStatusTransitionException;
 import com.ahy.payment.model.PaymentStatus;
 import com.ahy.payment.model.Transaction;
 import com.ahy.payment.service.PaymentService;
+import com.ahy.payment.util.TransactionMapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +16,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 
@@ -34,9 +38,15 @@ class PaymentControllerTest {
     @MockBean
     private PaymentService paymentService;
 
+    @MockBean
+    private com.ahy.payment.service.BatchPaymentService batchPaymentService;
+
     @MockBean
     private com.ahy.payment.util.StripeWebhookVerifier stripeWebhookVerifier;
 
+    @MockBean
+    private com.ahy.payment.service.WebhookInbox webhookInbox;
+
     @Test
     void authorizePayment_shouldReturn201_andTransaction() throws Exception {
         Transaction tx = new Transaction();
@@ -45,9 +55,9 @@ class PaymentControllerTest {
         tx.setCurrency("USD");
         tx.setStatus(PaymentStatus.AUTHORIZED);
 
-        when(paymentService.authorizePayment(
+        when(paymentService.authorizePaymentView(
                 any(), any(), any(), any()
-        )).thenReturn(tx);
+        )).thenReturn(TransactionMapper.toResponse(tx));
 
         AuthorizeRequest request = new AuthorizeRequest();
         request.setAmount(BigDecimal.valueOf(50));
@@ -67,13 +77,10 @@ class PaymentControllerTest {
     @org.junit.jupiter.api.Test
     void getPayment_found_shouldReturn200_andTransaction() throws Exception {
         UUID id = UUID.randomUUID();
-        Transaction tx = new Transaction();
-        tx.setId(id);
-        tx.setAmount(BigDecimal.valueOf(10));
-        tx.setCurrency("EUR");
-        tx.setStatus(PaymentStatus.AUTHORIZED);
+        com.ahy.payment.dto.response.TransactionResponse view = new com.ahy.payment.dto.response.TransactionResponse(
+                id, BigDecimal.valueOf(10), "EUR", PaymentStatus.AUTHORIZED, null);
 
-        when(paymentService.getTransaction(id)).thenReturn(tx);
+        when(paymentService.getTransactionView(id)).thenReturn(view);
 
         mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/payments/{id}", id))
                 .andExpect(org.springframework.test.web.servlet.result.MockMvcResultMatchers.status().isOk())
@@ -83,9 +90,124 @@ class PaymentControllerTest {
     @org.junit.jupiter.api.Test
     void getPayment_notFound_shouldReturn404() throws Exception {
         UUID id = UUID.randomUUID();
-        when(paymentService.getTransaction(id)).thenReturn(null);
+        when(paymentService.getTransactionView(id)).thenReturn(null);
 
         mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/payments/{id}", id))
                 .andExpect(org.springframework.test.web.servlet.result.MockMvcResultMatchers.status().isNotFound());
     }
+
+    @Test
+    void authorizeBatch_shouldReturnPerItemResults() throws Exception {
+        Transaction tx = new Transaction();
+        tx.setId(UUID.randomUUID());
+        tx.setAmount(BigDecimal.valueOf(20));
+        tx.setCurrency("USD");
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setIdempotencyKey("idem-b1");
+
+        when(batchPaymentService.authorizeBatch(any())).thenReturn(java.util.List.of(
+                com.ahy.payment.service.BatchAuthorizeResult.of(tx),
+                com.ahy.payment.service.BatchAuthorizeResult.failed("idem-b2", "Gateway call failed")
+        ));
+
+        AuthorizeRequest first = new AuthorizeRequest();
+        first.setAmount(BigDecimal.valueOf(20));
+        first.setCurrency("USD");
+        first.setIdempotencyKey("idem-b1");
+        AuthorizeRequest second = new AuthorizeRequest();
+        second.setAmount(BigDecimal.valueOf(30));
+        second.setCurrency("USD");
+        second.setIdempotencyKey("idem-b2");
+        com.ahy.payment.dto.request.BatchAuthorizeRequest batch = new com.ahy.payment.dto.request.BatchAuthorizeRequest();
+        batch.setRequests(java.util.List.of(first, second));
+
+        mockMvc.perform(post("/payments/authorize/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].idempotencyKey").value("idem-b1"))
+                .andExpect(jsonPath("$.results[0].transaction.status").value("AUTHORIZED"))
+                .andExpect(jsonPath("$.results[1].error").value("Gateway call failed"));
+    }
+
+    @Test
+    void authorizePayment_unknownCurrencyOrTooManyDecimals_shouldReturn400_withoutCallingTheService() throws Exception {
+        for (String[] amountAndCurrency : new String[][]{{"10.00", "ZZZ"}, {"10.005", "USD"}, {"1.5", "JPY"}}) {
+            AuthorizeRequest request = new AuthorizeRequest();
+            request.setAmount(new BigDecimal(amountAndCurrency[0]));
+            request.setCurrency(amountAndCurrency[1]);
+            request.setIdempotencyKey("idem-" + amountAndCurrency[1]);
+
+            mockMvc.perform(post("/payments/authorize")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isBadRequest());
+        }
+        org.mockito.Mockito.verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void authorizeBatch_invalidItem_shouldReturn400() throws Exception {
+        AuthorizeRequest invalid = new AuthorizeRequest();
+        invalid.setAmount(BigDecimal.valueOf(-1));
+        invalid.setCurrency("USD");
+        invalid.setIdempotencyKey("idem-bad");
+        com.ahy.payment.dto.request.BatchAuthorizeRequest batch = new com.ahy.payment.dto.request.BatchAuthorizeRequest();
+        batch.setRequests(java.util.List.of(invalid));
+
+        mockMvc.perform(post("/payments/authorize/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stripeWebhook_accepted_shouldReturn200() throws Exception {
+        com.ahy.payment.util.WebhookEvent event = new com.ahy.payment.util.WebhookEvent("payment_intent.succeeded", "pi_1");
+        when(stripeWebhookVerifier.verifyStripeSignature(any(), any(), any())).thenReturn(event);
+        when(webhookInbox.accept(event)).thenReturn(true);
+
+        mockMvc.perform(post("/payments/webhooks/stripe")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", "t=1,v1=sig")
+                        .content("{}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void stripeWebhook_queueFull_shouldReturn503() throws Exception {
+        com.ahy.payment.util.WebhookEvent event = new com.ahy.payment.util.WebhookEvent("payment_intent.succeeded", "pi_1");
+        when(stripeWebhookVerifier.verifyStripeSignature(any(), any(), any())).thenReturn(event);
+        when(webhookInbox.accept(event)).thenReturn(false);
+
+        mockMvc.perform(post("/payments/webhooks/stripe")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", "t=1,v1=sig")
+                        .content("{}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void capturePayment_wrongStatus_shouldReturn409() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(paymentService.capturePayment(id)).thenThrow(
+                new InvalidStatusTransitionException(id, PaymentStatus.REFUNDED, PaymentStatus.CAPTURING));
+
+        mockMvc.perform(post("/payments/" + id + "/capture"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409));
+    }
+
+    @Test
+    void capturePayment_gatewayUnavailable_shouldReturn503_withRetryAfter() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(paymentService.capturePayment(id)).thenThrow(
+                new GatewayUnavailableException("Payment gateway circuit is open; CAPTURE not sent", Duration.ofMillis(12_300)));
+
+        mockMvc.perform(post("/payments/" + id + "/capture"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "13"))
+                .andExpect(jsonPath("$.status").value(503));
+    }
 }
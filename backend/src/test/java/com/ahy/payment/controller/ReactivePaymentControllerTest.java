@@ -0,0 +1,123 @@
+package com.ahy.payment.controller;
+
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The "reactive" profile end to end: async controller, reactive mock gateway (1s latency), H2
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactivedb;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "payments.stripe.webhookSecret=whsec_test",
+        "payments.recovery.enabled=false",
+        "payments.mock.disableRandom=true",
+        "payments.mock.authorize.latency=1s",
+        "server.tomcat.threads.max=4",
+        "server.tomcat.threads.min-spare=1"
+})
+@ActiveProfiles({"mock", "reactive"})
+class ReactivePaymentControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void authorizeCaptureRefund_andInvalidTransitionsStillAnswer409() {
+        TransactionResponse authorized = restTemplate.postForObject("/payments/authorize", request("reactive-flow"), TransactionResponse.class);
+        assertThat(authorized.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        UUID id = authorized.getId();
+
+        ResponseEntity<String> refundTooEarly = restTemplate.postForEntity("/payments/" + id + "/refund", null, String.class);
+        assertThat(refundTooEarly.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+        assertThat(restTemplate.postForObject("/payments/" + id + "/capture", null, TransactionResponse.class).getStatus())
+                .isEqualTo(PaymentStatus.CAPTURED);
+        assertThat(restTemplate.postForObject("/payments/" + id + "/refund", null, TransactionResponse.class).getStatus())
+                .isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(restTemplate.getForObject("/payments/" + id, TransactionResponse.class).getStatus())
+                .isEqualTo(PaymentStatus.REFUNDED);
+
+        assertThat(restTemplate.getForEntity("/payments/" + UUID.randomUUID(), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void repeatedIdempotencyKey_returnsTheSamePayment() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> calls = sendAuthorizations(5, i -> "reactive-same-key");
+
+        List<UUID> ids = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> call : calls) {
+            ids.add(objectMapper.readValue(call.get(10, TimeUnit.SECONDS).body(), TransactionResponse.class).getId());
+        }
+        assertThat(ids).containsOnly(ids.get(0));
+    }
+
+    @Test
+    void manyPspCallsInFlight_withFourRequestThreads() throws Exception {
+        int requests = 100;
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> calls = sendAuthorizations(requests, i -> "reactive-load-" + i);
+        for (CompletableFuture<HttpResponse<String>> call : calls) {
+            assertThat(call.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(201);
+        }
+
+        // a request thread held per 1s PSP call would need 100 / 4 * 1s = 25s
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+    }
+
+    private List<CompletableFuture<HttpResponse<String>>> sendAuthorizations(int count,
+                                                                            IntFunction<String> key) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HttpRequest post = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payments/authorize"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(request(key.apply(i)))))
+                    .build();
+            calls.add(client.sendAsync(post, HttpResponse.BodyHandlers.ofString()));
+        }
+        return calls;
+    }
+
+    private static AuthorizeRequest request(String idempotencyKey) {
+        AuthorizeRequest request = new AuthorizeRequest();
+        request.setAmount(new BigDecimal("25.00"));
+        request.setCurrency("USD");
+        request.setIdempotencyKey(idempotencyKey);
+        request.setMetadata(Map.of("orderId", "ORD-" + idempotencyKey));
+        return request;
+    }
+}
@@ -0,0 +1,158 @@
+package com.ahy.payment.gateway.http;
+
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.model.PaymentIntent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Against a local HTTPS stub with a self-signed localhost certificate (src/test/resources/tls)
+class PooledStripeHttpClientTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private HttpsServer stripe;
+    private ExecutorService stubThreads;
+    private SSLContext trustingStub;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void startStub() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream("/tls/stripe-stub.p12")) {
+            keyStore.load(in, PASSWORD);
+        }
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keyStore, PASSWORD);
+        SSLContext server = SSLContext.getInstance("TLS");
+        server.init(keys.getKeyManagers(), null, null);
+
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+        trustingStub = SSLContext.getInstance("TLS");
+        trustingStub.init(null, trust.getTrustManagers(), null);
+
+        stripe = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stripe.setHttpsConfigurator(new HttpsConfigurator(server));
+        stripe.createContext("/v1/payment_intents/", this::paymentIntent);
+        stubThreads = Executors.newCachedThreadPool();
+        stripe.setExecutor(stubThreads);
+        stripe.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        release.countDown();
+        stripe.stop(0);
+        stubThreads.shutdownNow();
+    }
+
+    @Test
+    void sequentialRequests_reuseOneConnection() throws Exception {
+        PooledStripeHttpClient http = client(4, Duration.ofSeconds(1));
+        StripeClient stripeClient = http.newStripeClient("sk_test_stub", baseUrl());
+
+        for (int i = 0; i < 5; i++) {
+            PaymentIntent intent = stripeClient.paymentIntents().retrieve("pi_" + i);
+            assertThat(intent.getId()).isEqualTo("pi_" + i);
+        }
+
+        StripeHttpClientStats stats = http.stats();
+        assertThat(stats.getRequests()).isEqualTo(5);
+        assertThat(stats.getHandshakes()).isEqualTo(1);
+        assertThat(stats.getRequestsPerHandshake()).isEqualTo(5.0);
+        assertThat(stats.getInFlight()).isZero();
+    }
+
+    @Test
+    void requestsBeyondTheRouteLimit_waitForASlot_andFailWhenNoneFreesUp() throws Exception {
+        PooledStripeHttpClient http = client(1, Duration.ofMillis(500));
+        StripeClient stripeClient = http.newStripeClient("sk_test_stub", baseUrl());
+        release = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<PaymentIntent> first = callers.submit(() -> stripeClient.paymentIntents().retrieve("pi_slow"));
+            awaitInFlight(http, 1);
+            assertThat(http.stats().getSaturation()).isEqualTo(1.0);
+
+            assertThatThrownBy(() -> stripeClient.paymentIntents().retrieve("pi_queued"))
+                    .isInstanceOf(ApiConnectionException.class)
+                    .hasMessageContaining("maxConnectionsPerRoute=1");
+
+            Future<PaymentIntent> waiting = callers.submit(() -> stripeClient.paymentIntents().retrieve("pi_next"));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo("pi_slow");
+            assertThat(waiting.get(5, TimeUnit.SECONDS).getId()).isEqualTo("pi_next");
+        } finally {
+            callers.shutdownNow();
+        }
+
+        StripeHttpClientStats stats = http.stats();
+        assertThat(stats.getRouteWaits()).isEqualTo(2);
+        assertThat(stats.getRouteRejected()).isEqualTo(1);
+        assertThat(stats.getRequests()).isEqualTo(2);
+        assertThat(stats.getInFlight()).isZero();
+    }
+
+    private PooledStripeHttpClient client(int maxPerRoute, Duration acquireTimeout) {
+        return new PooledStripeHttpClient(HttpClient.Version.HTTP_2, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                maxPerRoute, acquireTimeout, trustingStub);
+    }
+
+    private String baseUrl() {
+        return "https://localhost:" + stripe.getAddress().getPort();
+    }
+
+    private static void awaitInFlight(PooledStripeHttpClient http, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (http.stats().getInFlight() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void paymentIntent(HttpExchange exchange) throws IOException {
+        String id = exchange.getRequestURI().getPath().substring("/v1/payment_intents/".length());
+        if (id.equals("pi_slow")) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = ("{\"id\":\"" + id + "\",\"object\":\"payment_intent\",\"status\":\"requires_capture\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
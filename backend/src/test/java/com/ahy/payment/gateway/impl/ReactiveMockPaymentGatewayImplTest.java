@@ -0,0 +1,72 @@
+package com.ahy.payment.gateway.impl;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.simulation.LatencyDistribution;
+import com.ahy.payment.gateway.simulation.MockGatewayRule;
+import com.ahy.payment.gateway.simulation.MockGatewaySimulation;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveMockPaymentGatewayImplTest {
+
+    // No random failures, the default decline rule, and the given latency for every operation
+    private static MockPaymentGatewayImpl answers(String latency) {
+        Map<GatewayOperation, MockGatewaySimulation.OperationProfile> profiles = new EnumMap<>(GatewayOperation.class);
+        for (GatewayOperation op : GatewayOperation.values()) {
+            profiles.put(op, new MockGatewaySimulation.OperationProfile(LatencyDistribution.parse(latency), 0, 0, 0));
+        }
+        return new MockPaymentGatewayImpl(new MockGatewaySimulation(profiles,
+                MockGatewayRule.parseAll(MockGatewaySimulation.DEFAULT_RULES), 1L, Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void answersLikeTheBlockingMock_afterTheLatency() throws Exception {
+        MockPaymentGatewayImpl answers = answers("fixed(100ms)");
+        ReactiveMockPaymentGatewayImpl gateway = new ReactiveMockPaymentGatewayImpl(answers);
+
+        long start = System.nanoTime();
+        CompletableFuture<GatewayResponse> authorized = gateway.authorize(new BigDecimal("10.00"), "USD", Map.of(), "key-1");
+        CompletableFuture<GatewayResponse> declined = gateway.authorize(new BigDecimal("5000.00"), "USD", Map.of(), "key-2");
+
+        assertThat(authorized.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(authorized.get().getExternalId())
+                .isEqualTo(answers.authorize(new BigDecimal("10.00"), "USD", Map.of(), "key-1").getExternalId());
+        assertThat(declined.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PaymentStatus.DECLINED);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+
+        String externalId = authorized.get().getExternalId();
+        assertThat(gateway.capture(externalId, null, "USD").get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PaymentStatus.CAPTURED);
+        assertThat(gateway.refund(externalId, null, "USD").get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+    }
+
+    @Test
+    void thousandsOfCallsInFlight_doNotNeedAThreadEach() throws Exception {
+        ReactiveMockPaymentGatewayImpl gateway = new ReactiveMockPaymentGatewayImpl(answers("normal(300ms, 20ms)"));
+        int threadsBefore = Thread.activeCount();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<GatewayResponse>> calls = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            calls.add(gateway.authorize(BigDecimal.TEN, "USD", Map.of(), "key-" + i));
+        }
+        int threadsWhileInFlight = Thread.activeCount();
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // one at a time, 5000 calls of 300ms would take 25 minutes
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(calls).allSatisfy(call -> assertThat(call.join().getStatus()).isEqualTo(PaymentStatus.AUTHORIZED));
+        assertThat(threadsWhileInFlight - threadsBefore).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ahy.payment.gateway.impl;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.http.PooledStripeHttpClient;
+import com.ahy.payment.model.PaymentStatus;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs the gateway against a local HTTP stub of the three Stripe endpoints it uses and counts the requests
+class StripePaymentGatewayImplTest {
+
+    private HttpServer stripe;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private StripePaymentGatewayImpl gateway;
+
+    private record Request(String method, String path, String body, String idempotencyKey) {
+    }
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stripe = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stripe.createContext("/v1/payment_intents", exchange -> {
+            Request request = record(exchange);
+            if (request.path().endsWith("/capture")) {
+                respond(exchange, "{\"id\":\"pi_123\",\"object\":\"payment_intent\",\"status\":\"succeeded\",\"currency\":\"usd\",\"amount\":1050}");
+            } else {
+                respond(exchange, "{\"id\":\"pi_123\",\"object\":\"payment_intent\",\"status\":\"requires_capture\",\"currency\":\"usd\",\"amount\":1050}");
+            }
+        });
+        stripe.createContext("/v1/refunds", exchange -> {
+            record(exchange);
+            respond(exchange, "{\"id\":\"re_1\",\"object\":\"refund\",\"status\":\"succeeded\",\"payment_intent\":\"pi_123\",\"amount\":1050}");
+        });
+        stripe.createContext("/", exchange -> {
+            record(exchange);
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        stripe.start();
+        gateway = new StripePaymentGatewayImpl("sk_test_stub", "whsec_test",
+                "http://localhost:" + stripe.getAddress().getPort(),
+                new PooledStripeHttpClient(HttpClient.Version.HTTP_2, Duration.ofSeconds(2), Duration.ofSeconds(5),
+                        4, Duration.ofSeconds(1)));
+    }
+
+    @AfterEach
+    void stopStub() {
+        stripe.stop(0);
+    }
+
+    @Test
+    void authorize_isOneCreate_withTheClientsIdempotencyKey() {
+        GatewayResponse response = gateway.authorize(new BigDecimal("10.50"), "USD", Map.of("orderId", "ORD-1"), "idem-1");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(response.getExternalId()).isEqualTo("pi_123");
+        assertThat(requests).singleElement().satisfies(request -> {
+            assertThat(request.path()).isEqualTo("/v1/payment_intents");
+            assertThat(request.idempotencyKey()).isEqualTo("authorize:idem-1");
+            assertThat(request.body()).contains("amount=1050", "currency=usd", "capture_method=manual");
+        });
+    }
+
+    @Test
+    void capture_isOneRequest_byPaymentIntentId() {
+        GatewayResponse response = gateway.capture("pi_123", new BigDecimal("10.50"), "USD");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.CAPTURED);
+        assertThat(requests).singleElement().satisfies(request -> {
+            assertThat(request.method()).isEqualTo("POST");
+            assertThat(request.path()).isEqualTo("/v1/payment_intents/pi_123/capture");
+            assertThat(request.idempotencyKey()).isEqualTo("capture:pi_123");
+            assertThat(request.body()).contains("amount_to_capture=1050");
+        });
+    }
+
+    @Test
+    void refund_isOneRequest_againstThePaymentIntent() {
+        GatewayResponse response = gateway.refund("pi_123", new BigDecimal("10.50"), "USD");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(response.getExternalId()).isEqualTo("pi_123");
+        assertThat(requests).singleElement().satisfies(request -> {
+            assertThat(request.path()).isEqualTo("/v1/refunds");
+            assertThat(request.idempotencyKey()).isEqualTo("refund:pi_123");
+            assertThat(request.body()).contains("payment_intent=pi_123", "amount=1050");
+        });
+    }
+
+    @Test
+    void minorUnits_followTheCurrencyExponent() {
+        assertThat(StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("10.50"), "usd")).isEqualTo(1050);
+        assertThat(StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("1050"), "JPY")).isEqualTo(1050);
+        assertThat(StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("1.050"), "BHD")).isEqualTo(1050);
+        assertThat(StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("10.500"), "USD")).isEqualTo(1050);
+    }
+
+    @Test
+    void minorUnits_neverRoundTheAmount() {
+        assertThatThrownBy(() -> StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("10.005"), "USD"))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> StripePaymentGatewayImpl.toMinorUnits(new BigDecimal("1.5"), "JPY"))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    private Request record(HttpExchange exchange) throws IOException {
+        String body = URLDecoder.decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8);
+        Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), body,
+                exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+        requests.add(request);
+        return request;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
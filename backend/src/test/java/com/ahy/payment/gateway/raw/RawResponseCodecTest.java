@@ -0,0 +1,61 @@
+package com.ahy.payment.gateway.raw;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RawResponseCodecTest {
+
+    private final RawResponseCodec codec = new RawResponseCodec();
+
+    @Test
+    void roundTrip() throws Exception {
+        byte[] raw = stripePayload();
+
+        byte[] stored = codec.encode(raw);
+
+        assertThat(stored[0]).isEqualTo(RawResponseCodec.STRIPE_V1);
+        assertThat(codec.decode(stored)).isEqualTo(raw);
+    }
+
+    @Test
+    void dictionary_beatsPlainDeflate() throws Exception {
+        byte[] raw = stripePayload();
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(plain, new Deflater(Deflater.BEST_COMPRESSION, true))) {
+            out.write(raw);
+        }
+
+        assertThat(codec.encode(raw).length).isLessThan(plain.size() * 2 / 3);
+    }
+
+    @Test
+    void unknownDictionary_rejected() throws Exception {
+        byte[] stored = codec.encode(stripePayload());
+        stored[0] = 42;
+
+        assertThatThrownBy(() -> codec.decode(stored)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void truncatedPayload_rejected() throws Exception {
+        byte[] stored = codec.encode(stripePayload());
+
+        assertThatThrownBy(() -> codec.decode(Arrays.copyOf(stored, stored.length / 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static byte[] stripePayload() throws Exception {
+        try (InputStream in = RawResponseCodecTest.class.getResourceAsStream("/stripe/payment_intent.succeeded.json")) {
+            return in.readAllBytes();
+        }
+    }
+}
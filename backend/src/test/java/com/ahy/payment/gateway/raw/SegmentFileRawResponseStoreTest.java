@@ -0,0 +1,87 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.GatewayResponseRecord;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.repository.GatewayResponseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SegmentFileRawResponseStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final GatewayResponseRepository repository = mock(GatewayResponseRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private SegmentFileRawResponseStore store;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void payloads_referencedByOffset_acrossSegments() throws Exception {
+        store = new SegmentFileRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 16384, Duration.ofDays(30),
+                directory, DataSize.ofBytes(200));
+
+        for (int i = 0; i < 20; i++) {
+            store.record(UUID.randomUUID(), GatewayOperation.AUTHORIZE,
+                    new GatewayResponse(PaymentStatus.AUTHORIZED, "pi_" + i, "{\"id\": \"pi_" + i + "\", \"status\": \"requires_capture\"}"));
+        }
+
+        List<GatewayResponseRecord> records = saved(20);
+        for (int i = 0; i < records.size(); i++) {
+            GatewayResponseRecord record = records.get(i);
+            assertThat(record.getPayload()).isNull();
+            assertThat(store.read(record)).contains("{\"id\": \"pi_" + i + "\", \"status\": \"requires_capture\"}");
+        }
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.count()).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    void purge_deletesOldClosedSegments_keepsActiveOne() throws Exception {
+        store = new SegmentFileRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 16384, Duration.ofDays(1),
+                directory, DataSize.ofBytes(1));
+
+        store.record(UUID.randomUUID(), GatewayOperation.AUTHORIZE, new GatewayResponse(PaymentStatus.DECLINED, null, "old"));
+        store.record(UUID.randomUUID(), GatewayOperation.AUTHORIZE, new GatewayResponse(PaymentStatus.DECLINED, null, "current"));
+        List<GatewayResponseRecord> records = saved(2);
+        Path old = directory.resolve(records.get(0).getSegment());
+        Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        Files.setLastModifiedTime(directory.resolve(records.get(1).getSegment()), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        store.purgeExpired();
+
+        assertThat(old).doesNotExist();
+        assertThat(store.read(records.get(0))).isEmpty();
+        assertThat(store.read(records.get(1))).contains("current");
+        verify(repository).deleteRecordedBefore(any());
+    }
+
+    private List<GatewayResponseRecord> saved(int count) {
+        ArgumentCaptor<GatewayResponseRecord> captor = ArgumentCaptor.forClass(GatewayResponseRecord.class);
+        verify(repository, times(count)).save(captor.capture());
+        return captor.getAllValues();
+    }
+}
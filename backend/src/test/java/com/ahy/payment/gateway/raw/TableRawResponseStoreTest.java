@@ -0,0 +1,109 @@
+package com.ahy.payment.gateway.raw;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.model.GatewayOperation;
+import com.ahy.payment.model.GatewayResponseRecord;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.repository.GatewayResponseRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class TableRawResponseStoreTest {
+
+    private final GatewayResponseRepository repository = mock(GatewayResponseRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+    }
+
+    @Test
+    void record_storesCompressedPayload_readableBack() throws Exception {
+        TableRawResponseStore store = new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 16384, Duration.ofDays(30));
+        String raw = new String(RawResponseCodecTest.stripePayload(), StandardCharsets.UTF_8);
+        UUID id = UUID.randomUUID();
+
+        store.record(id, GatewayOperation.AUTHORIZE, new GatewayResponse(PaymentStatus.AUTHORIZED, "pi_1", raw));
+
+        GatewayResponseRecord record = saved();
+        assertThat(record.getTransactionId()).isEqualTo(id);
+        assertThat(record.getOperation()).isEqualTo(GatewayOperation.AUTHORIZE);
+        assertThat(record.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(record.getPayload().length).isEqualTo(record.getStoredSize()).isLessThan(raw.length() / 3);
+        assertThat(store.read(record)).contains(raw);
+        assertThat(store.stats().getCompressionRatio()).isGreaterThan(3);
+    }
+
+    @Test
+    void sampling_skipsSuccesses_keepsFailures() {
+        TableRawResponseStore store = new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 0.0, 16384, Duration.ofDays(30));
+
+        store.record(UUID.randomUUID(), GatewayOperation.CAPTURE, new GatewayResponse(PaymentStatus.CAPTURED, "pi_1", "{}"));
+        store.record(UUID.randomUUID(), GatewayOperation.CAPTURE, new GatewayResponse(PaymentStatus.FAILED, "pi_1", "card_declined"));
+
+        assertThat(saved().getStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(store.stats().getSampledOut()).isEqualTo(1);
+        assertThat(store.stats().getRecorded()).isEqualTo(1);
+    }
+
+    @Test
+    void oversizedPayload_truncatedAtCap() {
+        TableRawResponseStore store = new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 100, Duration.ofDays(30));
+        String raw = "x".repeat(1000);
+
+        store.record(UUID.randomUUID(), GatewayOperation.REFUND, new GatewayResponse(PaymentStatus.REFUNDED, "pi_1", raw));
+
+        GatewayResponseRecord record = saved();
+        assertThat(record.isTruncated()).isTrue();
+        assertThat(record.getRawSize()).isEqualTo(1000);
+        assertThat(store.read(record)).contains("x".repeat(100));
+    }
+
+    @Test
+    void noRawBody_nothingStored() {
+        TableRawResponseStore store = new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 16384, Duration.ofDays(30));
+
+        store.record(UUID.randomUUID(), GatewayOperation.AUTHORIZE, new GatewayResponse(PaymentStatus.AUTHORIZED, "pi_1", null));
+
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void failedWrite_isRolledBackInItsOwnTransaction_andNotThrown() {
+        TableRawResponseStore store = new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 16384, Duration.ofDays(30));
+        when(repository.save(any())).thenThrow(new DataIntegrityViolationException("payload too large"));
+
+        store.record(UUID.randomUUID(), GatewayOperation.CAPTURE, new GatewayResponse(PaymentStatus.CAPTURED, "pi_1", "{}"));
+
+        // never the caller's transaction: on PostgreSQL a failed statement there aborts it, caught or not
+        verify(transactionManager).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager).rollback(any());
+        assertThat(store.stats().getFailed()).isEqualTo(1);
+        assertThat(store.stats().getRecorded()).isZero();
+    }
+
+    @Test
+    void capAboveColumnSize_rejected() {
+        assertThatThrownBy(() -> new TableRawResponseStore(repository, new RawResponseCodec(), transactionManager, 1.0, 1_000_000, Duration.ofDays(30)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private GatewayResponseRecord saved() {
+        ArgumentCaptor<GatewayResponseRecord> captor = ArgumentCaptor.forClass(GatewayResponseRecord.class);
+        verify(repository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,147 @@
+package com.ahy.payment.gateway.resilience;
+
+import com.ahy.payment.exception.GatewayTransientException;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a degraded PSP: every call answers successfully after {@code latency}, unless it is
+ * told to throw or to hang until {@link #release()} (ignoring interrupts, like a blocking socket read).
+ * It also answers the next {@link #failTransiently(int)} calls with a retryable error, hangs only the next
+ * {@link #hangNext(int)} calls, and records the idempotency keys it was sent. It allows concurrent duplicates
+ * unless told to behave like Stripe with {@link #rejectConcurrentDuplicates()}.
+ */
+class FaultInjectingPaymentGateway implements PaymentGateway {
+
+    enum Fault { NONE, THROW, HANG }
+
+    private volatile Fault fault = Fault.NONE;
+    private volatile Duration latency = Duration.ZERO;
+    private volatile boolean concurrentDuplicates = true;
+    private volatile CountDownLatch hang = new CountDownLatch(1);
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private final AtomicInteger hangs = new AtomicInteger();
+    private final List<String> keys = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    void inject(Fault fault) {
+        this.fault = fault;
+    }
+
+    void latency(Duration latency) {
+        this.latency = latency;
+    }
+
+    void rejectConcurrentDuplicates() {
+        this.concurrentDuplicates = false;
+    }
+
+    void failTransiently(int calls) {
+        transientFailures.set(calls);
+    }
+
+    void hangNext(int calls) {
+        hangs.set(calls);
+    }
+
+    List<String> keys() {
+        return keys;
+    }
+
+    // Lets every hanging call return
+    void release() {
+        hang.countDown();
+        hang = new CountDownLatch(1);
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+    int running() {
+        return running.get();
+    }
+
+    @Override
+    public GatewayResponse authorize(BigDecimal amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        keys.add(idempotencyKey);
+        return respond(PaymentStatus.AUTHORIZED, "fault_" + idempotencyKey);
+    }
+
+    @Override
+    public GatewayResponse capture(String externalId, BigDecimal amount, String currency) {
+        return respond(PaymentStatus.CAPTURED, externalId);
+    }
+
+    @Override
+    public GatewayResponse refund(String externalId, BigDecimal amount, String currency) {
+        return respond(PaymentStatus.REFUNDED, externalId);
+    }
+
+    @Override
+    public boolean allowsConcurrentDuplicates() {
+        return concurrentDuplicates;
+    }
+
+    private GatewayResponse respond(PaymentStatus status, String externalId) {
+        calls.incrementAndGet();
+        running.incrementAndGet();
+        try {
+            sleepUninterruptibly(latency);
+            if (transientFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new GatewayTransientException("injected PSP 503", null);
+            }
+            if (hangs.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                awaitUninterruptibly(hang);
+            }
+            switch (fault) {
+                case THROW -> throw new IllegalStateException("injected PSP failure");
+                case HANG -> awaitUninterruptibly(hang);
+                default -> { }
+            }
+            return new GatewayResponse(status, externalId, "{\"status\":\"" + status + "\"}");
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private static void sleepUninterruptibly(Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        boolean interrupted = false;
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
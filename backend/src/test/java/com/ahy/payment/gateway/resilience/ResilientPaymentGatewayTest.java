@@ -0,0 +1,211 @@
+package com.ahy.payment.gateway.resilience;
+
+import com.ahy.payment.exception.GatewayTransientException;
+import com.ahy.payment.exception.GatewayUnavailableException;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.model.PaymentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientPaymentGatewayTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(100);
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    private final FaultInjectingPaymentGateway psp = new FaultInjectingPaymentGateway();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong clock = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        psp.release();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void healthyGateway_passesResponsesThrough() {
+        ResilientPaymentGateway gateway = gateway(4, breaker(10, 5));
+
+        GatewayResponse response = gateway.capture("pi_1", AMOUNT, "USD");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.CAPTURED);
+        assertThat(gateway.stats().getCalls()).isEqualTo(1);
+        assertThat(gateway.stats().getCircuitState()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void hangingCall_answersPendingAtTheTimeout_andKeepsItsBulkheadSlotUntilItReturns() throws Exception {
+        ResilientPaymentGateway gateway = gateway(4, breaker(10, 5));
+        psp.inject(FaultInjectingPaymentGateway.Fault.HANG);
+
+        long start = System.nanoTime();
+        GatewayResponse response = gateway.refund("pi_2", AMOUNT, "USD");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.PENDING);
+        assertThat(response.getExternalId()).isEqualTo("pi_2");
+        assertThat(gateway.stats().getTimeouts()).isEqualTo(1);
+        assertThat(gateway.stats().getInFlight()).isEqualTo(1);
+
+        psp.release();
+        awaitIdle(gateway);
+        assertThat(gateway.stats().getInFlight()).isZero();
+    }
+
+    @Test
+    void fullBulkhead_refusesWithoutCallingThePsp() {
+        ResilientPaymentGateway gateway = gateway(2, breaker(10, 5));
+        psp.inject(FaultInjectingPaymentGateway.Fault.HANG);
+        gateway.authorize(AMOUNT, "USD", null, "key-1");
+        gateway.authorize(AMOUNT, "USD", null, "key-1");
+
+        assertThatThrownBy(() -> gateway.authorize(AMOUNT, "USD", null, "key-1"))
+                .isInstanceOf(GatewayUnavailableException.class);
+        assertThat(psp.calls()).isEqualTo(2);
+        assertThat(gateway.stats().getBulkheadRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void failures_openTheCircuit_andTrialCallsCloseItAgain() {
+        ResilientPaymentGateway gateway = gateway(4, breaker(4, 4));
+        psp.failTransiently(12);   // four calls of three attempts each
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> gateway.capture("pi_3", AMOUNT, "USD")).isInstanceOf(GatewayTransientException.class);
+        }
+
+        assertThatThrownBy(() -> gateway.capture("pi_3", AMOUNT, "USD"))
+                .isInstanceOf(GatewayUnavailableException.class)
+                .satisfies(ex -> assertThat(((GatewayUnavailableException) ex).getRetryAfter()).isEqualTo(Duration.ofSeconds(30)));
+        assertThat(psp.calls()).isEqualTo(12);
+        assertThat(gateway.stats().getCircuitState()).isEqualTo("OPEN");
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        gateway.capture("pi_3", AMOUNT, "USD");
+        assertThat(gateway.stats().getCircuitState()).isEqualTo("HALF_OPEN");
+        gateway.capture("pi_3", AMOUNT, "USD");
+
+        assertThat(gateway.stats().getCircuitState()).isEqualTo("CLOSED");
+        assertThat(gateway.stats().getCircuitOpened()).isEqualTo(1);
+        assertThat(gateway.stats().getCircuitRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void requestErrors_areNotPspFailures_andLeaveTheCircuitClosed() {
+        ResilientPaymentGateway gateway = gateway(4, breaker(4, 4));
+        psp.inject(FaultInjectingPaymentGateway.Fault.THROW);
+        for (int i = 0; i < 8; i++) {
+            assertThatThrownBy(() -> gateway.capture("pi_4", AMOUNT, "USD")).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(psp.calls()).isEqualTo(8);   // not retried either
+        assertThat(gateway.stats().getCircuitState()).isEqualTo("CLOSED");
+        assertThat(gateway.stats().getFailures()).isEqualTo(8);
+    }
+
+    @Test
+    void transientErrors_areRetriedWithTheSameKey_upToMaxAttempts() {
+        ResilientPaymentGateway gateway = gateway(4, breaker(10, 5));
+        psp.failTransiently(2);
+
+        GatewayResponse response = gateway.authorize(AMOUNT, "USD", null, "key-retry");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(psp.keys()).containsExactly("key-retry", "key-retry", "key-retry");
+        assertThat(gateway.stats().getRetries()).isEqualTo(2);
+
+        psp.failTransiently(3);
+        assertThatThrownBy(() -> gateway.authorize(AMOUNT, "USD", null, "key-exhausted"))
+                .isInstanceOf(GatewayTransientException.class);
+        assertThat(gateway.stats().getFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void slowCall_isHedgedAfterThePercentileDelay_andTheHedgeAnswers() {
+        ResilientPaymentGateway gateway = gateway(4, breaker(10, 5),
+                new ResilientPaymentGateway.HedgePolicy(true, 0.95, Duration.ofMillis(20)));
+        for (int i = 0; i < 64; i++) {
+            gateway.authorize(AMOUNT, "USD", null, "warm-" + i);   // fills the latency window
+        }
+        psp.hangNext(1);
+
+        GatewayResponse response = gateway.authorize(AMOUNT, "USD", null, "key-hedged");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(response.getExternalId()).isEqualTo("fault_key-hedged");
+        assertThat(psp.keys()).filteredOn("key-hedged"::equals).hasSize(2);
+        assertThat(gateway.stats().getHedges()).isEqualTo(1);
+        assertThat(gateway.stats().getTimeouts()).isZero();
+    }
+
+    @Test
+    void slowCall_toAPspThatRejectsConcurrentDuplicates_isNotHedged() {
+        psp.rejectConcurrentDuplicates();
+        ResilientPaymentGateway gateway = gateway(4, breaker(10, 5),
+                new ResilientPaymentGateway.HedgePolicy(true, 0.95, Duration.ofMillis(20)));
+        for (int i = 0; i < 64; i++) {
+            gateway.authorize(AMOUNT, "USD", null, "warm-" + i);
+        }
+        psp.latency(Duration.ofMillis(60));   // past the 20ms hedge delay, within the timeout
+
+        GatewayResponse response = gateway.authorize(AMOUNT, "USD", null, "key-not-hedged");
+
+        assertThat(response.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+        assertThat(psp.keys()).filteredOn("key-not-hedged"::equals).hasSize(1);
+        assertThat(gateway.stats().getHedges()).isZero();
+    }
+
+    @Test
+    void circuitBreaker_forgetsOutcomesThatSlideOutOfTheWindow() {
+        CircuitBreaker breaker = breaker(4, 4);
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();   // pushes the three failures out again
+        }
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.timesOpened()).isEqualTo(1);
+
+        CircuitBreaker healthy = breaker(4, 4);
+        healthy.onFailure();
+        for (int i = 0; i < 3; i++) {
+            healthy.onSuccess();
+        }
+        healthy.onFailure();
+        assertThat(healthy.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private ResilientPaymentGateway gateway(int maxConcurrent, CircuitBreaker breaker) {
+        return gateway(maxConcurrent, breaker, new ResilientPaymentGateway.HedgePolicy(false, 0.95, Duration.ZERO));
+    }
+
+    // Three attempts with at most 5ms between them
+    private ResilientPaymentGateway gateway(int maxConcurrent, CircuitBreaker breaker, ResilientPaymentGateway.HedgePolicy hedge) {
+        return new ResilientPaymentGateway(psp, executor, ResilientPaymentGateway.timeouts(TIMEOUT, TIMEOUT, TIMEOUT),
+                maxConcurrent, Duration.ZERO, breaker,
+                new ResilientPaymentGateway.RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5)), hedge);
+    }
+
+    // 50% of the window, 30s open, two trial calls
+    private CircuitBreaker breaker(int windowSize, int minimumCalls) {
+        return new CircuitBreaker(windowSize, minimumCalls, 0.5, Duration.ofSeconds(30), 2, clock::get);
+    }
+
+    private static void awaitIdle(ResilientPaymentGateway gateway) throws InterruptedException {
+        for (int i = 0; i < 200 && gateway.stats().getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ahy.payment.gateway.simulation;
+
+import com.ahy.payment.model.GatewayOperation;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class MockGatewaySimulationTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("25.00");
+
+    @Test
+    void sameSeed_makesTheSameDecisions() {
+        List<MockGatewaySimulation.Decision> first = decisions(simulation(42L, "normal(50ms, 10ms)", 0.2, 0.1, 0.05, ""), 500);
+        List<MockGatewaySimulation.Decision> replay = decisions(simulation(42L, "normal(50ms, 10ms)", 0.2, 0.1, 0.05, ""), 500);
+        List<MockGatewaySimulation.Decision> other = decisions(simulation(43L, "normal(50ms, 10ms)", 0.2, 0.1, 0.05, ""), 500);
+
+        assertThat(replay).isEqualTo(first);
+        assertThat(other).isNotEqualTo(first);
+    }
+
+    @Test
+    void outcomes_followTheConfiguredRates() {
+        MockGatewaySimulation simulation = simulation(7L, "0ms", 0.2, 0.1, 0.05, "");
+
+        Map<SimulatedOutcome, Integer> counts = count(simulation, GatewayOperation.AUTHORIZE, AMOUNT, "USD", 20_000);
+
+        assertThat(counts.get(SimulatedOutcome.FAILED) / 20_000.0).isCloseTo(0.2, within(0.02));
+        assertThat(counts.get(SimulatedOutcome.ERROR) / 20_000.0).isCloseTo(0.1, within(0.02));
+        assertThat(counts.get(SimulatedOutcome.TIMEOUT) / 20_000.0).isCloseTo(0.05, within(0.02));
+        assertThat(counts.get(SimulatedOutcome.OK) / 20_000.0).isCloseTo(0.65, within(0.02));
+    }
+
+    @Test
+    void timeouts_waitTimeoutLatencyInsteadOfTheDrawnLatency() {
+        MockGatewaySimulation simulation = simulation(1L, "fixed(20ms)", 0, 0, 0, "currency=JPY -> TIMEOUT");
+
+        assertThat(simulation.next(GatewayOperation.AUTHORIZE, AMOUNT, "JPY"))
+                .isEqualTo(new MockGatewaySimulation.Decision(Duration.ofSeconds(30).toNanos(), SimulatedOutcome.TIMEOUT));
+        assertThat(simulation.next(GatewayOperation.AUTHORIZE, AMOUNT, "USD"))
+                .isEqualTo(new MockGatewaySimulation.Decision(Duration.ofMillis(20).toNanos(), SimulatedOutcome.OK));
+    }
+
+    @Test
+    void rules_matchOnOperationCurrencyAndAmount_inOrder() {
+        MockGatewaySimulation simulation = simulation(3L, "0ms", 0.5, 0, 0,
+                "op=authorize & amount>1000 -> DECLINED; op=capture & currency=eur & amount>=500 -> FAILED; currency=GBP -> OK");
+
+        assertThat(outcome(simulation, GatewayOperation.AUTHORIZE, new BigDecimal("1000.01"), "USD")).isEqualTo(SimulatedOutcome.DECLINED);
+        assertThat(outcome(simulation, GatewayOperation.CAPTURE, new BigDecimal("500"), "EUR")).isEqualTo(SimulatedOutcome.FAILED);
+        // an amount condition never matches a call sent without one
+        assertThat(count(simulation, GatewayOperation.CAPTURE, null, "EUR", 1_000).get(SimulatedOutcome.OK)).isLessThan(1_000);
+        // OK overrides the 50% failure rate
+        assertThat(count(simulation, GatewayOperation.REFUND, AMOUNT, "GBP", 1_000).get(SimulatedOutcome.OK)).isEqualTo(1_000);
+    }
+
+    @Test
+    void ruleWithAPercentage_firesForThatShareOfMatchingCalls() {
+        MockGatewaySimulation simulation = simulation(5L, "0ms", 0, 0, 0, "op=refund -> ERROR 25%");
+
+        assertThat(count(simulation, GatewayOperation.REFUND, AMOUNT, "USD", 20_000).get(SimulatedOutcome.ERROR) / 20_000.0)
+                .isCloseTo(0.25, within(0.02));
+        assertThat(count(simulation, GatewayOperation.CAPTURE, AMOUNT, "USD", 1_000).get(SimulatedOutcome.OK)).isEqualTo(1_000);
+    }
+
+    @Test
+    void latencyDistributions_sampleTheirShape() {
+        SplittableRandom random = new SplittableRandom(11);
+
+        assertThat(LatencyDistribution.parse("250ms").sampleNanos(random)).isEqualTo(Duration.ofMillis(250).toNanos());
+        assertThat(LatencyDistribution.parse("fixed(PT0.25S)").sampleNanos(random)).isEqualTo(Duration.ofMillis(250).toNanos());
+
+        long[] normal = samples(LatencyDistribution.parse("normal(80ms, 20ms)"), random);
+        assertThat(Arrays.stream(normal).average().orElseThrow()).isCloseTo(Duration.ofMillis(80).toNanos(), within(1e6));
+        assertThat(Arrays.stream(normal).min().orElseThrow()).isNotNegative();
+
+        long[] pareto = samples(LatencyDistribution.parse("pareto(30ms, 1.5, 5s)"), random);
+        Arrays.sort(pareto);
+        assertThat(pareto[0]).isGreaterThanOrEqualTo(Duration.ofMillis(30).toNanos());
+        assertThat(pareto[pareto.length - 1]).isLessThanOrEqualTo(Duration.ofSeconds(5).toNanos());
+        // long tail: p99 = scale * 100^(1/1.5), about 21x the minimum
+        assertThat(pareto[(int) (pareto.length * 0.99)]).isGreaterThan(Duration.ofMillis(30 * 15).toNanos());
+    }
+
+    @Test
+    void invalidSpecs_areRejected() {
+        assertThatThrownBy(() -> LatencyDistribution.parse("uniform(1ms, 2ms)")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LatencyDistribution.parse("normal(1ms)")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LatencyDistribution.parse("pareto(1ms, 0)")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MockGatewayRule.parse("amount>100 DECLINED")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MockGatewayRule.parse("country=DE -> FAILED")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MockGatewayRule.parse("amount~5 -> FAILED")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static MockGatewaySimulation simulation(long seed, String latency, double failureRate, double errorRate,
+                                                    double timeoutRate, String rules) {
+        Map<GatewayOperation, MockGatewaySimulation.OperationProfile> profiles = new EnumMap<>(GatewayOperation.class);
+        for (GatewayOperation op : GatewayOperation.values()) {
+            profiles.put(op, new MockGatewaySimulation.OperationProfile(LatencyDistribution.parse(latency),
+                    failureRate, errorRate, timeoutRate));
+        }
+        return new MockGatewaySimulation(profiles, MockGatewayRule.parseAll(rules), seed, Duration.ofSeconds(30));
+    }
+
+    private static List<MockGatewaySimulation.Decision> decisions(MockGatewaySimulation simulation, int calls) {
+        List<MockGatewaySimulation.Decision> decisions = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            decisions.add(simulation.next(GatewayOperation.values()[i % 3], AMOUNT, "USD"));
+        }
+        return decisions;
+    }
+
+    private static SimulatedOutcome outcome(MockGatewaySimulation simulation, GatewayOperation op, BigDecimal amount, String currency) {
+        return simulation.next(op, amount, currency).outcome();
+    }
+
+    private static Map<SimulatedOutcome, Integer> count(MockGatewaySimulation simulation, GatewayOperation op,
+                                                        BigDecimal amount, String currency, int calls) {
+        Map<SimulatedOutcome, Integer> counts = new EnumMap<>(SimulatedOutcome.class);
+        for (SimulatedOutcome outcome : SimulatedOutcome.values()) {
+            counts.put(outcome, 0);
+        }
+        for (int i = 0; i < calls; i++) {
+            counts.merge(simulation.next(op, amount, currency).outcome(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static long[] samples(LatencyDistribution distribution, SplittableRandom random) {
+        long[] samples = new long[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = distribution.sampleNanos(random);
+        }
+        return samples;
+    }
+}
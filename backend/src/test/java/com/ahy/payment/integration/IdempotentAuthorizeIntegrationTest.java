@@ -0,0 +1,77 @@
+package com.ahy.payment.integration;
+
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.TransactionRepository;
+import com.ahy.payment.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledIfEnvironmentVariable(named = "RUN_INTEGRATION", matches = "true")
+@SpringBootTest
+@ActiveProfiles("mock")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:idemdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // bypass the node-local cache so every request goes through the database reservation
+        "payments.idempotency.store=external",
+        "payments.mock.disableRandom=true",
+        "payments.stripe.webhookSecret=whsec_test"
+})
+class IdempotentAuthorizeIntegrationTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void concurrentRetries_sameKey_produceOneTransaction() throws Exception {
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Transaction>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return paymentService.authorizePayment(BigDecimal.valueOf(25), "USD", null, "idem-race-integ");
+                }));
+            }
+            start.countDown();
+
+            UUID id = null;
+            for (Future<Transaction> f : results) {
+                Transaction tx = f.get(30, TimeUnit.SECONDS);
+                assertThat(tx.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+                if (id == null) {
+                    id = tx.getId();
+                }
+                assertThat(tx.getId()).isEqualTo(id);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(transactionRepository.findAll())
+                .filteredOn(t -> "idem-race-integ".equals(t.getIdempotencyKey()))
+                .hasSize(1);
+    }
+}
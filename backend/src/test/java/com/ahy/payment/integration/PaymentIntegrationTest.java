@@ -49,11 +49,18 @@ class PaymentIntegrationTest {
         registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
         registry.add("payments.mock.disableRandom", () -> "true");
         registry.add("payments.stripe.webhookSecret", () -> "whsec_test");
+        registry.add("payments.observability.endpoint.enabled", () -> "true");
     }
 
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private org.springframework.jdbc.core.JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private com.ahy.payment.repository.TransactionRepository transactionRepository;
+
     @Test
     void authorize_capture_refund_flow() {
         AuthorizeRequest request = new AuthorizeRequest();
@@ -80,4 +87,105 @@ class PaymentIntegrationTest {
         assertThat(refunded).isNotNull();
         assertThat(refunded.getStatus()).isEqualTo(com.ahy.payment.model.PaymentStatus.REFUNDED);
     }
+
+    @Test
+    void capture_rawResponseCannotBeStored_statusChangeStillCommits() {
+        AuthorizeRequest request = new AuthorizeRequest();
+        request.setAmount(BigDecimal.valueOf(40));
+        request.setCurrency("USD");
+        request.setIdempotencyKey("idem-integ-raw");
+        TransactionResponse created = restTemplate.postForEntity("/payments/authorize", request, TransactionResponse.class).getBody();
+
+        // every gateway_response insert fails; on PostgreSQL a failed statement aborts its whole transaction
+        jdbcTemplate.execute("alter table gateway_response rename to gateway_response_moved");
+        try {
+            var captureResp = restTemplate.postForEntity("/payments/" + created.getId() + "/capture", null, TransactionResponse.class);
+            assertThat(captureResp.getStatusCode().is2xxSuccessful()).isTrue();
+            assertThat(captureResp.getBody().getStatus()).isEqualTo(com.ahy.payment.model.PaymentStatus.CAPTURED);
+        } finally {
+            jdbcTemplate.execute("alter table gateway_response_moved rename to gateway_response");
+        }
+
+        assertThat(transactionRepository.findById(created.getId()).orElseThrow().getStatus())
+                .isEqualTo(com.ahy.payment.model.PaymentStatus.CAPTURED);
+    }
+
+    @Test
+    void authorize_batch_returnsOneResultPerItem() {
+        AuthorizeRequest first = new AuthorizeRequest();
+        first.setAmount(BigDecimal.valueOf(10));
+        first.setCurrency("USD");
+        first.setIdempotencyKey("idem-batch-1");
+        AuthorizeRequest second = new AuthorizeRequest();
+        second.setAmount(BigDecimal.valueOf(20));
+        second.setCurrency("EUR");
+        second.setIdempotencyKey("idem-batch-2");
+        com.ahy.payment.dto.request.BatchAuthorizeRequest batch = new com.ahy.payment.dto.request.BatchAuthorizeRequest();
+        batch.setRequests(java.util.List.of(first, second, first));
+
+        var resp = restTemplate.postForEntity("/payments/authorize/batch", batch, com.ahy.payment.dto.response.BatchAuthorizeResponse.class);
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        var results = resp.getBody().getResults();
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).getTransaction().getStatus()).isEqualTo(com.ahy.payment.model.PaymentStatus.AUTHORIZED);
+        assertThat(results.get(1).getTransaction().getCurrency()).isEqualTo("EUR");
+        assertThat(results.get(2).getTransaction().getId()).isEqualTo(results.get(0).getTransaction().getId());
+
+        // replaying the batch resolves every key from the database
+        var replay = restTemplate.postForEntity("/payments/authorize/batch", batch, com.ahy.payment.dto.response.BatchAuthorizeResponse.class);
+        assertThat(replay.getBody().getResults().get(1).getTransaction().getId()).isEqualTo(results.get(1).getTransaction().getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void metrics_coverEndpointsGatewayRepositoriesPoolAndComponentStats() {
+        AuthorizeRequest request = new AuthorizeRequest();
+        request.setAmount(BigDecimal.valueOf(30));
+        request.setCurrency("USD");
+        request.setIdempotencyKey("idem-metrics-1");
+        assertThat(restTemplate.postForEntity("/payments/authorize", request, TransactionResponse.class)
+                .getStatusCode().is2xxSuccessful()).isTrue();
+
+        java.util.List<Map<String, Object>> meters = restTemplate.getForObject("/internal/metrics", java.util.List.class);
+
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("http.server.requests");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("uri", "/payments/authorize");
+        });
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.gateway");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("operation", "authorize")
+                    .containsEntry("outcome", "AUTHORIZED");
+        });
+        assertThat(meters).anySatisfy(m -> assertThat(m.get("name")).isEqualTo("payments.service"));
+        assertThat(meters).anySatisfy(m -> assertThat(m.get("name")).isEqualTo("payments.repository"));
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.request.breakdown");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("component", "db");
+        });
+        assertThat(meters).anySatisfy(m -> assertThat(m.get("name")).isEqualTo("db.pool.active"));
+
+        // the components' own counts, read from their stats()
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.idempotency.lookups");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("result", "miss");
+            assertThat(((Number) m.get("count")).longValue()).isPositive();
+        });
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.transitions");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("from", "PENDING").containsEntry("to", "AUTHORIZED");
+            assertThat(((Number) m.get("count")).longValue()).isPositive();
+        });
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.gateway.calls");
+            assertThat(((Number) m.get("count")).longValue()).isPositive();
+        });
+        assertThat(meters).anySatisfy(m -> {
+            assertThat(m.get("name")).isEqualTo("payments.gateway.circuit.state");
+            assertThat((Map<String, String>) m.get("tags")).containsEntry("state", "CLOSED");
+            assertThat(m.get("value")).isEqualTo(1.0);
+        });
+        assertThat(meters).extracting(m -> m.get("name")).contains("payments.views.size", "payments.webhooks.dedup.size",
+                "payments.webhooks.queue.depth", "payments.gateway.responses");
+    }
 }
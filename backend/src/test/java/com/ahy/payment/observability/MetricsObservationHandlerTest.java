@@ -0,0 +1,93 @@
+package com.ahy.payment.observability;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetricsObservationHandlerTest {
+
+    private final PaymentMetrics metrics = new PaymentMetrics();
+    private final ObservationRegistry registry = ObservationRegistry.create();
+
+    {
+        registry.observationConfig().observationHandler(new MetricsObservationHandler(metrics));
+    }
+
+    @Test
+    void stoppedObservation_isTimed_withItsTags_andExceptionNone() {
+        Observation.createNotStarted(ObservedComponents.SERVICE, registry)
+                .lowCardinalityKeyValue("method", "authorize")
+                .observe(() -> { });
+
+        LatencyTimer timer = metrics.timer(ObservedComponents.SERVICE,
+                KeyValues.of("method", "authorize", ObservedComponents.EXCEPTION, "none"));
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedObservation_isTaggedWithTheExceptionClass() {
+        assertThatThrownBy(() -> Observation.createNotStarted(ObservedComponents.GATEWAY, registry)
+                .observe(() -> {
+                    throw new IllegalStateException("psp down");
+                }))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(metrics.timer(ObservedComponents.GATEWAY,
+                KeyValues.of(ObservedComponents.EXCEPTION, "IllegalStateException")).count()).isEqualTo(1);
+    }
+
+    @Test
+    void request_breaksDownIntoDbPspAndApp_countingNestedCallsOnce() {
+        Observation request = Observation.createNotStarted(ObservedComponents.HTTP_SERVER_REQUESTS, registry)
+                .lowCardinalityKeyValue("method", "POST")
+                .lowCardinalityKeyValue("uri", "/payments/authorize")
+                .start();
+        request.scoped(() -> {
+            Observation.createNotStarted(ObservedComponents.SERVICE, registry).observe(() -> {
+                Observation.createNotStarted(ObservedComponents.REPOSITORY, registry).observe(() -> {
+                    // a repository calling another: its time is already inside the outer one
+                    Observation.createNotStarted(ObservedComponents.REPOSITORY, registry).observe(() -> sleep(5));
+                });
+                Observation.createNotStarted(ObservedComponents.GATEWAY, registry).observe(() -> sleep(10));
+            });
+        });
+        request.stop();
+
+        long db = totalNanos("db");
+        long psp = totalNanos("psp");
+        long outerRepository = metrics.timer(ObservedComponents.REPOSITORY,
+                KeyValues.of(ObservedComponents.EXCEPTION, "none")).maxNanos();
+        assertThat(db).isEqualTo(outerRepository);
+        assertThat(psp).isGreaterThanOrEqualTo(10_000_000L);
+        long total = metrics.timer(ObservedComponents.HTTP_SERVER_REQUESTS,
+                KeyValues.of("method", "POST", "uri", "/payments/authorize", ObservedComponents.EXCEPTION, "none"))
+                .totalNanos();
+        assertThat(db + psp + totalNanos("app")).isEqualTo(total);
+    }
+
+    @Test
+    void observationOffTheRequestThread_isTimed_butNotBrokenDown() {
+        Observation.createNotStarted(ObservedComponents.GATEWAY, registry).observe(() -> { });
+
+        assertThat(metrics.timer(ObservedComponents.GATEWAY, KeyValues.of(ObservedComponents.EXCEPTION, "none")).count())
+                .isEqualTo(1);
+        assertThat(metrics.snapshot()).noneMatch(m -> m.getName().equals(MetricsObservationHandler.BREAKDOWN));
+    }
+
+    private long totalNanos(String component) {
+        return metrics.timer(MetricsObservationHandler.BREAKDOWN,
+                KeyValues.of("method", "POST", "uri", "/payments/authorize", "component", component)).totalNanos();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
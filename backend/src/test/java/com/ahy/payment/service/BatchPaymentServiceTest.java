@@ -0,0 +1,149 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.cache.InProcessCacheInvalidationBus;
+import com.ahy.payment.cache.TransactionViewCache;
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.raw.RawResponseStore;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BatchPaymentServiceTest {
+
+    private TransactionRepository repository;
+    private PaymentGateway gateway;
+    private PaymentService paymentService;
+    private ExecutorService executor;
+    private BatchPaymentService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TransactionRepository.class);
+        gateway = mock(PaymentGateway.class);
+        paymentService = mock(PaymentService.class);
+        executor = Executors.newFixedThreadPool(4);
+        service = new BatchPaymentServiceImpl(repository, gateway, paymentService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), executor,
+                new TransactionViewCache(new InProcessCacheInvalidationBus(), 100, Duration.ofMinutes(1)),
+                mock(RawResponseStore.class), new PaymentStateMachine(), 2, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void authorizeBatch_existingKeysReturned_newKeysReservedInOneBatch() {
+        Transaction existing = new Transaction();
+        existing.setId(UUID.randomUUID());
+        existing.setIdempotencyKey("k-old");
+        existing.setStatus(PaymentStatus.CAPTURED);
+        when(repository.findByIdempotencyKeyIn(any())).thenReturn(List.of(existing));
+
+        List<Transaction> rows = new ArrayList<>();
+        when(repository.saveAllAndFlush(anyList())).thenAnswer(inv -> {
+            List<Transaction> pending = inv.getArgument(0);
+            for (Transaction tx : pending) {
+                assertEquals(PaymentStatus.PENDING, tx.getStatus());
+                tx.setId(UUID.randomUUID());
+                rows.add(tx);
+            }
+            return pending;
+        });
+        when(repository.findAllById(anyList())).thenAnswer(inv -> rows);
+        when(gateway.authorize(any(), anyString(), any(), any()))
+                .thenAnswer(inv -> new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-" + inv.getArgument(0), null));
+
+        List<BatchAuthorizeResult> results = service.authorizeBatch(List.of(
+                request("k-new-1", "10"), request("k-old", "20"), request("k-new-2", "30"), request("k-new-1", "10")));
+
+        assertEquals(4, results.size());
+        assertEquals(PaymentStatus.AUTHORIZED, results.get(0).getTransaction().getStatus());
+        assertSame(existing, results.get(1).getTransaction());
+        assertEquals("ext-30", results.get(2).getTransaction().getExternalTransactionId());
+        assertSame(results.get(0).getTransaction(), results.get(3).getTransaction());
+
+        verify(repository, times(1)).findByIdempotencyKeyIn(any());
+        verify(repository, times(1)).saveAllAndFlush(argThat(list -> ((List<?>) list).size() == 2));
+        verify(gateway, times(2)).authorize(any(), anyString(), any(), any());
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void authorizeBatch_gatewayFailure_isReportedPerItem_andKeyReleased() {
+        when(repository.findByIdempotencyKeyIn(any())).thenReturn(List.of());
+        List<Transaction> rows = new ArrayList<>();
+        when(repository.saveAllAndFlush(anyList())).thenAnswer(inv -> {
+            List<Transaction> pending = inv.getArgument(0);
+            pending.forEach(tx -> {
+                tx.setId(UUID.randomUUID());
+                rows.add(tx);
+            });
+            return pending;
+        });
+        when(repository.findAllById(anyList())).thenAnswer(inv -> new ArrayList<>(rows));
+        when(gateway.authorize(eq(new BigDecimal("1")), anyString(), any(), any()))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-ok", null));
+        when(gateway.authorize(eq(new BigDecimal("2")), anyString(), any(), any()))
+                .thenThrow(new IllegalStateException("psp down"));
+
+        List<BatchAuthorizeResult> results = service.authorizeBatch(List.of(request("k-ok", "1"), request("k-bad", "2")));
+
+        assertEquals(PaymentStatus.AUTHORIZED, results.get(0).getTransaction().getStatus());
+        assertNull(results.get(1).getTransaction());
+        assertEquals("psp down", results.get(1).getError());
+        verify(repository).deleteAllInBatch(argThat(list -> ((List<?>) list).size() == 1));
+    }
+
+    @Test
+    void authorizeBatch_reservationConflict_fallsBackToSinglePath() {
+        when(repository.findByIdempotencyKeyIn(any())).thenReturn(List.of());
+        when(repository.saveAllAndFlush(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        AtomicInteger calls = new AtomicInteger();
+        when(paymentService.authorizePayment(any(), anyString(), any(), anyString())).thenAnswer(inv -> {
+            calls.incrementAndGet();
+            Transaction tx = new Transaction();
+            tx.setIdempotencyKey(inv.getArgument(3));
+            tx.setStatus(PaymentStatus.AUTHORIZED);
+            return tx;
+        });
+
+        List<BatchAuthorizeResult> results = service.authorizeBatch(List.of(request("k-a", "1"), request("k-b", "2")));
+
+        assertEquals(2, calls.get());
+        assertEquals("k-a", results.get(0).getTransaction().getIdempotencyKey());
+        assertEquals("k-b", results.get(1).getTransaction().getIdempotencyKey());
+        verifyNoInteractions(gateway);
+    }
+
+    private static AuthorizeRequest request(String key, String amount) {
+        AuthorizeRequest r = new AuthorizeRequest();
+        r.setIdempotencyKey(key);
+        r.setAmount(new BigDecimal(amount));
+        r.setCurrency("USD");
+        r.setMetadata(Map.of());
+        return r;
+    }
+}
@@ -1,17 +1,35 @@
 package com.ahy.payment.service;
 
+import com.ahy.payment.cache.InMemoryIdempotencyStore;
+import com.ahy.payment.cache.InProcessCacheInvalidationBus;
+import com.ahy.payment.cache.TransactionViewCache;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.exception.GatewayTransientException;
+import com.ahy.payment.exception.InvalidStatusTransitionException;
+import com.ahy.payment.exception.TransactionNotFoundException;
 import com.ahy.payment.gateway.GatewayResponse;
 import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.raw.RawResponseStore;
 import com.ahy.payment.model.PaymentStatus;
 import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.ArchivedTransactionRepository;
 import com.ahy.payment.repository.TransactionRepository;
+import com.ahy.payment.repository.TransactionStatusView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID; 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,13 +39,25 @@ class PaymentServiceImplTest {
 
     private TransactionRepository repository;
     private PaymentGateway gateway;
+    private TransactionViewCache viewCache;
+    private RawResponseStore rawResponses;
+    private ArchivedTransactionRepository archive;
+    private PaymentStateMachine stateMachine;
+    private PlatformTransactionManager transactionManager;
     private PaymentService service; // interface reference
 
     @BeforeEach
     void setUp() {
         repository = mock(TransactionRepository.class);
         gateway = mock(PaymentGateway.class);
-        service = new PaymentServiceImpl(repository, gateway); // ✅ implementation
+        transactionManager = mock(PlatformTransactionManager.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        rawResponses = mock(RawResponseStore.class);
+        archive = mock(ArchivedTransactionRepository.class);
+        stateMachine = new PaymentStateMachine();
+        viewCache = new TransactionViewCache(new InProcessCacheInvalidationBus(), 100, Duration.ofMinutes(1));
+        service = new PaymentServiceImpl(repository, gateway,
+                new InMemoryIdempotencyStore(100, Duration.ofMinutes(1)), transactionTemplate, viewCache, rawResponses, archive, stateMachine); // ✅ implementation
     }
 
     @Test
@@ -36,10 +66,10 @@ class PaymentServiceImplTest {
         Map<String, String> metadata = new HashMap<>();
         metadata.put("orderId", "ORD-1");
 
-        when(repository.findByIdempotencyKey(anyString()))
-                .thenReturn(Optional.empty());
+        when(repository.saveAndFlush(any(Transaction.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
 
-        when(gateway.authorize(any(), anyString(), any()))
+        when(gateway.authorize(any(), anyString(), any(), any()))
                 .thenReturn(new GatewayResponse(
                         PaymentStatus.AUTHORIZED,
                         "ext-123",
@@ -62,7 +92,149 @@ class PaymentServiceImplTest {
         assertEquals("ext-123", result.getExternalTransactionId());
 
         verify(gateway, times(1))
-                .authorize(any(), anyString(), any());
+                .authorize(any(), anyString(), any(), any());
+    }
+
+    @Test
+    void authorizePayment_reservesPendingRowBeforeGatewayCall() {
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> {
+            Transaction reserved = inv.getArgument(0);
+            assertEquals(PaymentStatus.PENDING, reserved.getStatus());
+            return reserved;
+        });
+        when(gateway.authorize(any(), anyString(), any(), any()))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-res", null));
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-reserve");
+
+        var order = inOrder(repository, gateway);
+        order.verify(repository).saveAndFlush(any(Transaction.class));
+        order.verify(gateway).authorize(any(), anyString(), any(), any());
+        order.verify(repository).save(any(Transaction.class));
+        verify(repository, never()).findByIdempotencyKey(anyString());
+    }
+
+    @Test
+    void authorizePayment_lostReservation_waitsForWinner_withoutGatewayCall() {
+        when(repository.saveAndFlush(any(Transaction.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate idempotency_key"));
+
+        Transaction done = new Transaction();
+        done.setIdempotencyKey("idem-race");
+        done.setStatus(PaymentStatus.AUTHORIZED);
+        done.setExternalTransactionId("ext-winner");
+        when(repository.findStatusByIdempotencyKey("idem-race"))
+                .thenReturn(Optional.of(PaymentStatus.PENDING))
+                .thenReturn(Optional.of(PaymentStatus.AUTHORIZED));
+        when(repository.findByIdempotencyKey("idem-race")).thenReturn(Optional.of(done));
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-race");
+
+        assertEquals(PaymentStatus.AUTHORIZED, result.getStatus());
+        assertEquals("ext-winner", result.getExternalTransactionId());
+        verify(gateway, never()).authorize(any(), anyString(), any(), any());
+        verify(repository, times(2)).findStatusByIdempotencyKey("idem-race");
+    }
+
+    @Test
+    void authorizePayment_keyAlreadyTaken_waitsWithoutAttemptingTheInsert() {
+        when(repository.existsByIdempotencyKey("idem-taken")).thenReturn(true);
+        Transaction done = new Transaction();
+        done.setIdempotencyKey("idem-taken");
+        done.setStatus(PaymentStatus.AUTHORIZED);
+        when(repository.findStatusByIdempotencyKey("idem-taken")).thenReturn(Optional.of(PaymentStatus.AUTHORIZED));
+        when(repository.findByIdempotencyKey("idem-taken")).thenReturn(Optional.of(done));
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-taken");
+
+        assertEquals(PaymentStatus.AUTHORIZED, result.getStatus());
+        verify(repository, never()).saveAndFlush(any(Transaction.class));
+        verify(gateway, never()).authorize(any(), anyString(), any(), any());
+    }
+
+    @Test
+    void authorizePayment_holderReleasesTheKey_waiterReservesItAgain() {
+        // the holder's gateway call threw while this request waited: its PENDING row is deleted
+        when(repository.existsByIdempotencyKey("idem-released")).thenReturn(true).thenReturn(false);
+        when(repository.findStatusByIdempotencyKey("idem-released"))
+                .thenReturn(Optional.of(PaymentStatus.PENDING))
+                .thenReturn(Optional.empty());
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.authorize(any(), anyString(), any(), any()))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-retry", null));
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-released");
+
+        assertEquals(PaymentStatus.AUTHORIZED, result.getStatus());
+        assertEquals("ext-retry", result.getExternalTransactionId());
+        verify(repository, times(1)).saveAndFlush(any(Transaction.class));
+        verify(gateway, times(1)).authorize(any(), anyString(), eq(null), eq("idem-released"));
+    }
+
+    @Test
+    void authorizePayment_gatewayThrows_releasesReservation() {
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.authorize(any(), anyString(), any(), any())).thenThrow(new IllegalStateException("psp down"));
+
+        assertThrows(IllegalStateException.class,
+                () -> service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-boom"));
+        verify(repository, times(1)).delete(any(Transaction.class));
+    }
+
+    @Test
+    void authorizePayment_repeatedKey_servedFromCache_withTheCurrentRow() {
+        UUID id = UUID.randomUUID();
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> {
+            Transaction reserved = inv.getArgument(0);
+            reserved.setId(id);
+            return reserved;
+        });
+        when(gateway.authorize(any(), anyString(), any(), any()))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-rep", null));
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Transaction first = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-repeat");
+        // captured in between: the replay must not answer with the AUTHORIZED snapshot
+        Transaction current = new Transaction();
+        current.setId(id);
+        current.setStatus(PaymentStatus.CAPTURED);
+        when(repository.findById(id)).thenReturn(Optional.of(current));
+        first.setStatus(PaymentStatus.FAILED);   // nor with whatever the first caller did to its copy
+        Transaction second = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-repeat");
+
+        assertEquals(PaymentStatus.CAPTURED, second.getStatus());
+        assertNotSame(first, second);
+        verify(repository, times(1)).saveAndFlush(any(Transaction.class));
+        verify(gateway, times(1)).authorize(any(), anyString(), any(), any());
+    }
+
+    @Test
+    void authorizePaymentView_repeatedKey_isServedFromTheViewCache() {
+        UUID id = UUID.randomUUID();
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> {
+            Transaction reserved = inv.getArgument(0);
+            reserved.setId(id);
+            return reserved;
+        });
+        when(gateway.authorize(any(), anyString(), any(), any()))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-view", null));
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.findResponseById(id))
+                .thenReturn(Optional.of(new TransactionResponse(id, new BigDecimal("10"), "USD", PaymentStatus.AUTHORIZED, null)));
+
+        TransactionResponse first = service.authorizePaymentView(new BigDecimal("10"), "USD", null, "idem-view");
+        TransactionResponse replay = service.authorizePaymentView(new BigDecimal("10"), "USD", null, "idem-view");
+        TransactionResponse again = service.authorizePaymentView(new BigDecimal("10"), "USD", null, "idem-view");
+
+        assertEquals(PaymentStatus.AUTHORIZED, first.getStatus());
+        assertEquals(id, replay.getId());
+        assertSame(replay, again);
+        // the first replay fills the cache with the projection; neither replay loads the entity
+        verify(repository, times(1)).findResponseById(id);
+        verify(repository, never()).findById(any());
+        verify(gateway, times(1)).authorize(any(), anyString(), any(), any());
     }
 
     @Test
@@ -74,15 +246,85 @@ class PaymentServiceImplTest {
         tx.setExternalTransactionId("ext-999");
         tx.setAmount(new BigDecimal("100"));
 
-        when(repository.findById(id)).thenReturn(Optional.of(tx));
-        when(gateway.capture("ext-999", tx.getAmount()))
+        stubRow(tx);
+        when(gateway.capture("ext-999", tx.getAmount(), tx.getCurrency()))
                 .thenReturn(new GatewayResponse(PaymentStatus.CAPTURED, "ext-999", null));
         when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
 
         Transaction updated = service.capturePayment(id);
 
         assertEquals(PaymentStatus.CAPTURED, updated.getStatus());
-        verify(gateway, times(1)).capture("ext-999", tx.getAmount());
+        verify(gateway, times(1)).capture("ext-999", tx.getAmount(), tx.getCurrency());
+    }
+
+    @Test
+    void capturePayment_handsRawResponseToStore() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("pi_raw");
+        tx.setAmount(new BigDecimal("100"));
+
+        GatewayResponse captured = new GatewayResponse(PaymentStatus.CAPTURED, "pi_raw", "{\"id\":\"pi_raw\"}");
+        stubRow(tx);
+        when(gateway.capture("pi_raw", tx.getAmount(), tx.getCurrency())).thenReturn(captured);
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.capturePayment(id);
+
+        // after the outcome's commit: a payload write that fails cannot take the status change with it
+        var order = inOrder(repository, transactionManager, rawResponses);
+        order.verify(repository).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.CAPTURING)), eq(PaymentStatus.CAPTURED), any());
+        order.verify(transactionManager).commit(any());
+        order.verify(rawResponses).record(id, com.ahy.payment.model.GatewayOperation.CAPTURE, captured);
+    }
+
+    @Test
+    void getTransactionView_servedFromCache_untilStatusChanges() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("ext-1");
+        tx.setAmount(new BigDecimal("10"));
+
+        when(repository.findResponseById(id))
+                .thenReturn(Optional.of(new TransactionResponse(id, tx.getAmount(), "USD", PaymentStatus.AUTHORIZED, null)))
+                .thenReturn(Optional.of(new TransactionResponse(id, tx.getAmount(), "USD", PaymentStatus.CAPTURED, null)));
+
+        assertEquals(PaymentStatus.AUTHORIZED, service.getTransactionView(id).getStatus());
+        assertEquals(PaymentStatus.AUTHORIZED, service.getTransactionView(id).getStatus());
+        verify(repository, times(1)).findResponseById(id);
+
+        stubRow(tx);
+        when(gateway.capture("ext-1", tx.getAmount(), tx.getCurrency()))
+                .thenReturn(new GatewayResponse(PaymentStatus.CAPTURED, "ext-1", null));
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        service.capturePayment(id);
+
+        assertEquals(PaymentStatus.CAPTURED, service.getTransactionView(id).getStatus());
+        verify(repository, times(2)).findResponseById(id);
+    }
+
+    @Test
+    void capturePayment_countsEachTransition() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("ext-count");
+        tx.setAmount(new BigDecimal("10"));
+        stubRow(tx);
+        when(gateway.capture(any(), any(), any())).thenReturn(new GatewayResponse(PaymentStatus.CAPTURED, "ext-count", null));
+
+        service.capturePayment(id);
+        assertThrows(InvalidStatusTransitionException.class, () -> service.capturePayment(id));
+
+        PaymentTransitionStats stats = stateMachine.stats();
+        assertEquals(1, stats.getApplied().get(PaymentStatus.AUTHORIZED).get(PaymentStatus.CAPTURING));
+        assertEquals(1, stats.getApplied().get(PaymentStatus.CAPTURING).get(PaymentStatus.CAPTURED));
+        assertEquals(1, stats.getRejected().get(PaymentStatus.CAPTURED).get(PaymentStatus.CAPTURING));
     }
 
     @Test
@@ -91,9 +333,9 @@ class PaymentServiceImplTest {
         Transaction tx = new Transaction();
         tx.setId(id);
         tx.setStatus(PaymentStatus.CAPTURED);
-        when(repository.findById(id)).thenReturn(Optional.of(tx));
+        stubRow(tx);
 
-        assertThrows(RuntimeException.class, () -> service.capturePayment(id));
+        assertThrows(InvalidStatusTransitionException.class, () -> service.capturePayment(id));
     }
 
     @Test
@@ -105,13 +347,33 @@ class PaymentServiceImplTest {
         tx.setExternalTransactionId("ext-555");
         tx.setAmount(new BigDecimal("20"));
 
-        when(repository.findById(id)).thenReturn(Optional.of(tx));
-        when(gateway.refund("ext-555", tx.getAmount())).thenReturn(new GatewayResponse(PaymentStatus.REFUNDED, "ext-555", null));
+        stubRow(tx);
+        when(gateway.refund("ext-555", tx.getAmount(), tx.getCurrency())).thenReturn(new GatewayResponse(PaymentStatus.REFUNDED, "ext-555", null));
         when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
 
         Transaction updated = service.refundPayment(id);
         assertEquals(PaymentStatus.REFUNDED, updated.getStatus());
-        verify(gateway, times(1)).refund("ext-555", tx.getAmount());
+        verify(gateway, times(1)).refund("ext-555", tx.getAmount(), tx.getCurrency());
+    }
+
+    @Test
+    void refundPayment_refusedByThePsp_goesBackToCaptured_andKeepsTheResponse() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.CAPTURED);
+        tx.setExternalTransactionId("ext-556");
+        tx.setAmount(new BigDecimal("20"));
+
+        stubRow(tx);
+        GatewayResponse refused = new GatewayResponse(PaymentStatus.FAILED, "ext-556", "charge_already_refunded");
+        when(gateway.refund("ext-556", tx.getAmount(), tx.getCurrency())).thenReturn(refused);
+
+        Transaction updated = service.refundPayment(id);
+
+        assertEquals(PaymentStatus.CAPTURED, updated.getStatus());
+        verify(repository).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.REFUNDING)), eq(PaymentStatus.CAPTURED), any());
+        verify(rawResponses).record(id, com.ahy.payment.model.GatewayOperation.REFUND, refused);
     }
 
     @Test
@@ -120,78 +382,314 @@ class PaymentServiceImplTest {
         Transaction tx = new Transaction();
         tx.setId(id);
         tx.setStatus(PaymentStatus.AUTHORIZED);
-        when(repository.findById(id)).thenReturn(Optional.of(tx));
+        stubRow(tx);
 
-        assertThrows(RuntimeException.class, () -> service.refundPayment(id));
+        assertThrows(InvalidStatusTransitionException.class, () -> service.refundPayment(id));
     }
 
     @Test
-    void handlePaymentIntentSucceeded_updatesStatus() {
+    void capturePayment_marksCapturingBeforeGatewayCall() {
+        UUID id = UUID.randomUUID();
         Transaction tx = new Transaction();
+        tx.setId(id);
         tx.setStatus(PaymentStatus.AUTHORIZED);
-        tx.setExternalTransactionId("pi_ok");
-        when(repository.findByExternalTransactionId("pi_ok")).thenReturn(Optional.of(tx));
-        service.handlePaymentIntentSucceeded("pi_ok");
-        assertEquals(PaymentStatus.CAPTURED, tx.getStatus());
-        verify(repository, times(1)).save(tx);
+        tx.setExternalTransactionId("ext-cap");
+        tx.setAmount(new BigDecimal("10"));
+
+        stubRow(tx);
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.capture("ext-cap", tx.getAmount(), tx.getCurrency())).thenAnswer(inv -> {
+            assertEquals(PaymentStatus.CAPTURING, tx.getStatus());
+            return new GatewayResponse(PaymentStatus.CAPTURED, "ext-cap", null);
+        });
+
+        assertEquals(PaymentStatus.CAPTURED, service.capturePayment(id).getStatus());
+        verify(repository).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.AUTHORIZED)), eq(PaymentStatus.CAPTURING), any());
+        verify(repository).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.CAPTURING)), eq(PaymentStatus.CAPTURED), any());
     }
 
     @Test
-    void handlePaymentIntentSucceeded_noOpIfAlreadyCaptured() {
+    void capturePayment_gatewayThrows_revertsToAuthorized() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("ext-err");
+
+        stubRow(tx);
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.capture(any(), any(), any())).thenThrow(new IllegalStateException("psp down"));
+
+        assertThrows(IllegalStateException.class, () -> service.capturePayment(id));
+        assertEquals(PaymentStatus.AUTHORIZED, tx.getStatus());
+    }
+
+    @Test
+    void capturePayment_gatewayTimedOut_staysCapturingForRecovery() {
+        UUID id = UUID.randomUUID();
         Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("ext-slow");
+
+        stubRow(tx);
+        when(gateway.capture(any(), any(), any())).thenReturn(new GatewayResponse(PaymentStatus.PENDING, "ext-slow", null));
+
+        assertEquals(PaymentStatus.CAPTURING, service.capturePayment(id).getStatus());
+        assertTrue(stateMachine.stats().getRejected().isEmpty());
+    }
+
+    @Test
+    void authorizePayment_gatewayTimedOut_keepsReservationPending() {
+        when(repository.saveAndFlush(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.authorize(any(), anyString(), any(), any())).thenReturn(new GatewayResponse(PaymentStatus.PENDING, null, null));
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-slow");
+
+        assertEquals(PaymentStatus.PENDING, result.getStatus());
+        verify(repository, never()).save(any(Transaction.class));
+        verify(repository, never()).delete(any(Transaction.class));
+    }
+
+    @Test
+    void refundPayment_outcomeNotApplied_ifWebhookAlreadyMovedRow() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
         tx.setStatus(PaymentStatus.CAPTURED);
-        tx.setExternalTransactionId("pi_already");
-        when(repository.findByExternalTransactionId("pi_already")).thenReturn(Optional.of(tx));
+        tx.setExternalTransactionId("ext-wh");
+
+        stubRow(tx);
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.refund(any(), any(), any())).thenAnswer(inv -> {
+            tx.setStatus(PaymentStatus.REFUNDED); // charge.refunded webhook landed first
+            return new GatewayResponse(PaymentStatus.FAILED, "ext-wh", null);
+        });
+
+        assertEquals(PaymentStatus.REFUNDED, service.refundPayment(id).getStatus());
+    }
+
+    @Test
+    void recoverStalePayments_redrivesCaptureAndAuthorizationWithItsKey() {
+        Transaction capturing = new Transaction();
+        capturing.setId(UUID.randomUUID());
+        capturing.setStatus(PaymentStatus.CAPTURING);
+        capturing.setExternalTransactionId("ext-stuck");
+        Transaction pending = new Transaction();
+        pending.setId(UUID.randomUUID());
+        pending.setStatus(PaymentStatus.PENDING);
+        pending.setAmount(BigDecimal.TEN);
+        pending.setCurrency("USD");
+        pending.setIdempotencyKey("idem-timed-out");
+
+        when(repository.findInProgressUpdatedBefore(any(), any())).thenReturn(List.of(capturing, pending));
+        stubRow(capturing);
+        stubRow(pending);
+        when(repository.save(any(Transaction.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(gateway.capture(eq("ext-stuck"), any(), any())).thenReturn(new GatewayResponse(PaymentStatus.CAPTURED, "ext-stuck", null));
+        // the PSP did authorize before the timeout; the same key returns that payment intent
+        when(gateway.authorize(any(), any(), any(), eq("idem-timed-out")))
+                .thenReturn(new GatewayResponse(PaymentStatus.AUTHORIZED, "pi_late", null));
+
+        int recovered = service.recoverStalePayments(Instant.now());
+
+        assertEquals(2, recovered);
+        assertEquals(PaymentStatus.CAPTURED, capturing.getStatus());
+        assertEquals(PaymentStatus.AUTHORIZED, pending.getStatus());
+        assertEquals("pi_late", pending.getExternalTransactionId());
+    }
+
+    @Test
+    void recoverStalePayments_authorizationStillWithoutAnswer_staysPending() {
+        Transaction pending = new Transaction();
+        pending.setId(UUID.randomUUID());
+        pending.setStatus(PaymentStatus.PENDING);
+        pending.setIdempotencyKey("idem-still-unknown");
+
+        when(repository.findInProgressUpdatedBefore(any(), any())).thenReturn(List.of(pending));
+        stubRow(pending);
+        when(gateway.authorize(any(), any(), any(), eq("idem-still-unknown")))
+                .thenReturn(new GatewayResponse(PaymentStatus.PENDING, null, null))
+                .thenThrow(new GatewayTransientException("Stripe request failed"));
+
+        service.recoverStalePayments(Instant.now());
+        service.recoverStalePayments(Instant.now());
+
+        assertEquals(PaymentStatus.PENDING, pending.getStatus());
+        verify(repository, never()).save(any(Transaction.class));
+        verify(repository, never()).compareAndSetStatus(any(), any(), eq(PaymentStatus.FAILED), any());
+    }
+
+    @Test
+    void handlePaymentIntentSucceeded_updatesStatus() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_ok"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.AUTHORIZED)));
+        when(repository.compareAndSetStatus(eq(id), any(), any(), any())).thenReturn(1);
+        service.handlePaymentIntentSucceeded("pi_ok");
+        verify(repository, times(1)).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.AUTHORIZED)), eq(PaymentStatus.CAPTURED), any(Instant.class));
+        verify(repository, never()).findByExternalTransactionId(any());
+    }
+
+    @Test
+    void handlePaymentIntentSucceeded_noOpIfAlreadyCaptured() {
+        when(repository.findStatusViewByExternalTransactionId("pi_already"))
+                .thenReturn(Optional.of(new TransactionStatusView(UUID.randomUUID(), PaymentStatus.CAPTURED)));
         service.handlePaymentIntentSucceeded("pi_already");
-        verify(repository, times(0)).save(any(Transaction.class));
+        verify(repository, never()).compareAndSetStatus(any(), any(), any(), any());
     }
 
     @Test
     void handlePaymentIntentSucceeded_notFound_throws() {
-        when(repository.findByExternalTransactionId("missing")).thenReturn(Optional.empty());
+        when(repository.findStatusViewByExternalTransactionId("missing")).thenReturn(Optional.empty());
         assertThrows(com.ahy.payment.exception.PaymentNotFoundException.class, () -> service.handlePaymentIntentSucceeded("missing"));
     }
 
+    @Test
+    void handleChargeRefunded_archivedPayment_isIgnored() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_old")).thenReturn(Optional.empty());
+        when(archive.findStatusViewByExternalTransactionId("pi_old"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.REFUNDED)));
+
+        assertDoesNotThrow(() -> service.handleChargeRefunded("pi_old"));
+        verify(repository, never()).compareAndSetStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    void getTransactionView_fallsBackToArchive() {
+        UUID id = UUID.randomUUID();
+        when(repository.findResponseById(id)).thenReturn(Optional.empty());
+        when(archive.findResponseById(id)).thenReturn(Optional.of(
+                new TransactionResponse(id, BigDecimal.TEN, "USD", PaymentStatus.REFUNDED, Instant.now())));
+
+        assertEquals(PaymentStatus.REFUNDED, service.getTransactionView(id).getStatus());
+    }
+
+    @Test
+    void capturePayment_archivedPayment_isRejected() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusById(id)).thenReturn(Optional.empty());
+        when(archive.findStatusById(id)).thenReturn(Optional.of(PaymentStatus.REFUNDED));
+
+        InvalidStatusTransitionException ex = assertThrows(InvalidStatusTransitionException.class, () -> service.capturePayment(id));
+        assertEquals(PaymentStatus.REFUNDED, ex.getCurrent());
+        verifyNoInteractions(gateway);
+    }
+
+    @Test
+    void capturePayment_unknownId_isNotFound() {
+        assertThrows(TransactionNotFoundException.class, () -> service.capturePayment(UUID.randomUUID()));
+        verifyNoInteractions(gateway);
+    }
+
+    @Test
+    void handlePaymentIntentFailed_lateEventForRefundedPayment_isIgnored() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_done"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.REFUNDED)));
+
+        service.handlePaymentIntentFailed("pi_done");
+
+        verify(repository, never()).compareAndSetStatus(any(), any(), any(), any());
+        assertEquals(1, stateMachine.stats().getRejected().get(PaymentStatus.REFUNDED).get(PaymentStatus.FAILED));
+    }
+
     @Test
     void handlePaymentIntentFailed_updatesStatus() {
-        Transaction tx = new Transaction();
-        tx.setStatus(PaymentStatus.AUTHORIZED);
-        tx.setExternalTransactionId("pi_fail");
-        when(repository.findByExternalTransactionId("pi_fail")).thenReturn(Optional.of(tx));
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_fail"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.AUTHORIZED)));
+        when(repository.compareAndSetStatus(eq(id), any(), any(), any())).thenReturn(1);
         service.handlePaymentIntentFailed("pi_fail");
-        assertEquals(PaymentStatus.FAILED, tx.getStatus());
-        verify(repository, times(1)).save(tx);
+        verify(repository, times(1)).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.AUTHORIZED)), eq(PaymentStatus.FAILED), any(Instant.class));
+        verify(repository, never()).findByExternalTransactionId(any());
     }
 
     @Test
     void handlePaymentIntentFailed_noOpIfAlreadyFailed() {
-        Transaction tx = new Transaction();
-        tx.setStatus(PaymentStatus.FAILED);
-        tx.setExternalTransactionId("pi_already_failed");
-        when(repository.findByExternalTransactionId("pi_already_failed")).thenReturn(Optional.of(tx));
+        when(repository.findStatusViewByExternalTransactionId("pi_already_failed"))
+                .thenReturn(Optional.of(new TransactionStatusView(UUID.randomUUID(), PaymentStatus.FAILED)));
         service.handlePaymentIntentFailed("pi_already_failed");
-        verify(repository, times(0)).save(any(Transaction.class));
+        verify(repository, never()).compareAndSetStatus(any(), any(), any(), any());
     }
 
     @Test
     void handleChargeRefunded_updatesStatus() {
-        Transaction tx = new Transaction();
-        tx.setStatus(PaymentStatus.CAPTURED);
-        tx.setExternalTransactionId("pi_ref");
-        when(repository.findByExternalTransactionId("pi_ref")).thenReturn(Optional.of(tx));
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_ref"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.CAPTURED)));
+        when(repository.compareAndSetStatus(eq(id), any(), any(), any())).thenReturn(1);
         service.handleChargeRefunded("pi_ref");
-        assertEquals(PaymentStatus.REFUNDED, tx.getStatus());
-        verify(repository, times(1)).save(tx);
+        verify(repository, times(1)).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.CAPTURED)), eq(PaymentStatus.REFUNDED), any(Instant.class));
+        verify(repository, never()).findByExternalTransactionId(any());
     }
 
     @Test
     void handleChargeRefunded_noOpIfAlreadyRefunded() {
-        Transaction tx = new Transaction();
-        tx.setStatus(PaymentStatus.REFUNDED);
-        tx.setExternalTransactionId("pi_already_ref");
-        when(repository.findByExternalTransactionId("pi_already_ref")).thenReturn(Optional.of(tx));
+        when(repository.findStatusViewByExternalTransactionId("pi_already_ref"))
+                .thenReturn(Optional.of(new TransactionStatusView(UUID.randomUUID(), PaymentStatus.REFUNDED)));
         service.handleChargeRefunded("pi_already_ref");
-        verify(repository, times(0)).save(any(Transaction.class));
+        verify(repository, never()).compareAndSetStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    void capturePayment_concurrentCapture_onlyOneCallsGateway() {
+        UUID id = UUID.randomUUID();
+        Transaction tx = new Transaction();
+        tx.setId(id);
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("ext-double");
+        tx.setAmount(new BigDecimal("10"));
+        stubRow(tx);
+        when(gateway.capture(any(), any(), any())).thenAnswer(inv -> {
+            // second capture request while the first one is at the PSP
+            assertThrows(RuntimeException.class, () -> service.capturePayment(id));
+            return new GatewayResponse(PaymentStatus.CAPTURED, "ext-double", null);
+        });
+
+        assertEquals(PaymentStatus.CAPTURED, service.capturePayment(id).getStatus());
+        verify(gateway, times(1)).capture(any(), any(), any());
+    }
+
+    @Test
+    void handlePaymentIntentSucceeded_rereadsAfterLostRace() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_race"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.AUTHORIZED)))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.CAPTURING)));
+        when(repository.compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.AUTHORIZED)), any(), any())).thenReturn(0);
+        when(repository.compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.CAPTURING)), any(), any())).thenReturn(1);
+
+        service.handlePaymentIntentSucceeded("pi_race");
+
+        verify(repository).compareAndSetStatus(eq(id), eq(Set.of(PaymentStatus.CAPTURING)), eq(PaymentStatus.CAPTURED), any());
+    }
+
+    @Test
+    void handlePaymentIntentSucceeded_givesUpAfterMaxAttempts() {
+        UUID id = UUID.randomUUID();
+        when(repository.findStatusViewByExternalTransactionId("pi_busy"))
+                .thenReturn(Optional.of(new TransactionStatusView(id, PaymentStatus.AUTHORIZED)));
+        when(repository.compareAndSetStatus(any(), any(), any(), any())).thenReturn(0);
+
+        assertThrows(org.springframework.dao.OptimisticLockingFailureException.class,
+                () -> service.handlePaymentIntentSucceeded("pi_busy"));
+        verify(repository, times(3)).compareAndSetStatus(any(), any(), any(), any());
     }
-}
 
+    // Backs findById, findStatusById, existsById and compareAndSetStatus with one row, as the database would
+    private void stubRow(Transaction tx) {
+        when(repository.findById(tx.getId())).thenReturn(Optional.of(tx));
+        when(repository.findStatusById(tx.getId())).thenAnswer(inv -> Optional.of(tx.getStatus()));
+        when(repository.existsById(tx.getId())).thenReturn(true);
+        when(repository.compareAndSetStatus(eq(tx.getId()), any(), any(), any())).thenAnswer(inv -> {
+            Collection<PaymentStatus> expected = inv.getArgument(1);
+            if (!expected.contains(tx.getStatus())) {
+                return 0;
+            }
+            tx.setStatus(inv.getArgument(2));
+            return 1;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.exception.InvalidStatusTransitionException;
+import com.ahy.payment.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentStateMachineTest {
+
+    private final PaymentStateMachine stateMachine = new PaymentStateMachine();
+
+    @Test
+    void terminalStatuses_haveNoWayOut() {
+        for (PaymentStatus status : PaymentStatus.values()) {
+            boolean terminal = EnumSet.of(PaymentStatus.REFUNDED, PaymentStatus.DECLINED, PaymentStatus.FAILED).contains(status);
+            assertThat(status.isTerminal()).as(status.name()).isEqualTo(terminal);
+        }
+        assertThat(PaymentStatus.REFUNDED.canTransitionTo(PaymentStatus.FAILED)).isFalse();
+    }
+
+    @Test
+    void inProgressStatuses_canFallBack() {
+        assertThat(PaymentStatus.CAPTURING.canTransitionTo(PaymentStatus.AUTHORIZED)).isTrue();
+        assertThat(PaymentStatus.REFUNDING.canTransitionTo(PaymentStatus.CAPTURED)).isTrue();
+        assertThat(PaymentStatus.CAPTURED.canTransitionTo(PaymentStatus.AUTHORIZED)).isFalse();
+        // captured money is not lost because its refund failed
+        assertThat(PaymentStatus.REFUNDING.canTransitionTo(PaymentStatus.FAILED)).isFalse();
+    }
+
+    @Test
+    void check_rejectsWithTypedError_andCountsIt() {
+        UUID id = UUID.randomUUID();
+
+        assertThatThrownBy(() -> stateMachine.check(id, PaymentStatus.PENDING, PaymentStatus.REFUNDING))
+                .isInstanceOf(InvalidStatusTransitionException.class)
+                .hasMessageContaining("PENDING")
+                .hasMessageContaining("REFUNDING");
+        assertThat(stateMachine.allows(PaymentStatus.REFUNDED, PaymentStatus.FAILED)).isFalse();
+
+        assertThat(stateMachine.stats().getRejected())
+                .containsOnlyKeys(PaymentStatus.PENDING, PaymentStatus.REFUNDED);
+        assertThat(stateMachine.stats().getApplied()).isEmpty();
+    }
+
+    @Test
+    void applied_isCountedPerPair() {
+        stateMachine.applied(PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURING);
+        stateMachine.applied(PaymentStatus.AUTHORIZED, PaymentStatus.CAPTURING);
+        stateMachine.applied(PaymentStatus.CAPTURING, PaymentStatus.CAPTURED);
+
+        assertThat(stateMachine.stats().getApplied().get(PaymentStatus.AUTHORIZED))
+                .containsExactlyEntriesOf(Map.of(PaymentStatus.CAPTURING, 2L));
+        assertThat(stateMachine.stats().getApplied().get(PaymentStatus.CAPTURING).get(PaymentStatus.CAPTURED)).isEqualTo(1);
+    }
+}
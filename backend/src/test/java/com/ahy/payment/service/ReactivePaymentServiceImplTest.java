@@ -0,0 +1,73 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.ReactivePaymentGateway;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReactivePaymentServiceImplTest {
+
+    private PaymentServiceImpl steps;
+    private ReactivePaymentGateway gateway;
+    private ExecutorService persistence;
+    private ReactivePaymentServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        steps = mock(PaymentServiceImpl.class);
+        gateway = mock(ReactivePaymentGateway.class);
+        persistence = Executors.newFixedThreadPool(2);
+        service = new ReactivePaymentServiceImpl(steps, gateway, persistence);
+    }
+
+    @AfterEach
+    void tearDown() {
+        persistence.shutdownNow();
+    }
+
+    @Test
+    void authorizePayment_keyTaken_answersWithTheHoldersOutcome() throws Exception {
+        Transaction done = new Transaction();
+        done.setStatus(PaymentStatus.AUTHORIZED);
+        when(steps.reserve(any(), anyString(), any(), eq("idem-taken"))).thenReturn(null);
+        when(steps.awaitOutcome(eq("idem-taken"), any())).thenReturn(CompletableFuture.completedFuture(done));
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-taken").get(5, TimeUnit.SECONDS);
+
+        assertSame(done, result);
+        verifyNoInteractions(gateway);
+    }
+
+    @Test
+    void authorizePayment_holderReleasesTheKey_waiterReservesItAgain() throws Exception {
+        Transaction reserved = new Transaction();
+        reserved.setStatus(PaymentStatus.PENDING);
+        Transaction authorized = new Transaction();
+        authorized.setStatus(PaymentStatus.AUTHORIZED);
+        GatewayResponse resp = new GatewayResponse(PaymentStatus.AUTHORIZED, "ext-retry", null);
+        // the holder's gateway call threw while this request waited: the wait completes empty
+        when(steps.reserve(any(), anyString(), any(), eq("idem-released"))).thenReturn(null).thenReturn(reserved);
+        when(steps.awaitOutcome(eq("idem-released"), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(gateway.authorize(any(), anyString(), any(), eq("idem-released"))).thenReturn(CompletableFuture.completedFuture(resp));
+        when(steps.completeAuthorization(reserved, resp)).thenReturn(authorized);
+
+        Transaction result = service.authorizePayment(new BigDecimal("10"), "USD", null, "idem-released").get(5, TimeUnit.SECONDS);
+
+        assertSame(authorized, result);
+        verify(steps, times(2)).reserve(any(), anyString(), any(), eq("idem-released"));
+        verify(gateway, times(1)).authorize(any(), anyString(), any(), any());
+    }
+}
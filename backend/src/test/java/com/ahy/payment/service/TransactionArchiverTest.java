@@ -0,0 +1,103 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.repository.ArchivedTransactionRepository;
+import com.ahy.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs against the Flyway schema (H2 flavour of transaction_archive)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archivedb;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "payments.stripe.webhookSecret=whsec_test",
+        "payments.recovery.enabled=false",
+        "payments.archive.batchSize=2"
+})
+class TransactionArchiverTest {
+
+    @Autowired
+    private TransactionArchiver archiver;
+
+    @Autowired
+    private TransactionRepository repository;
+
+    @Autowired
+    private ArchivedTransactionRepository archive;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        archive.deleteAllInBatch();
+        repository.deleteAllInBatch();
+    }
+
+    @Test
+    void oldTerminalRows_moveToArchive_inBatches() {
+        Instant old = Instant.now().minus(Duration.ofDays(40));
+        Transaction refunded = insert(PaymentStatus.REFUNDED, "pi_refunded", old);
+        Transaction declined = insert(PaymentStatus.DECLINED, "pi_declined", old);
+        Transaction failed = insert(PaymentStatus.FAILED, "pi_failed", old);
+        Transaction captured = insert(PaymentStatus.CAPTURED, "pi_captured", old);
+        Transaction recentRefund = insert(PaymentStatus.REFUNDED, "pi_recent", Instant.now());
+
+        int archived = archiver.archiveUpdatedBefore(Instant.now().minus(Duration.ofDays(30)));
+
+        assertThat(archived).isEqualTo(3);
+        assertThat(repository.findAll()).extracting(Transaction::getId)
+                .containsExactlyInAnyOrder(captured.getId(), recentRefund.getId());
+        assertThat(archive.findAll()).hasSize(3).allSatisfy(row -> assertThat(row.getArchivedAt()).isNotNull());
+
+        Transaction restored = paymentService.getTransaction(refunded.getId());
+        assertThat(restored.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(restored.getMetadata()).containsEntry("orderId", "ORD-1");
+        assertThat(restored.getIdempotencyKey()).isEqualTo("key-pi_refunded");
+        assertThat(paymentService.getTransactionView(declined.getId()).getStatus()).isEqualTo(PaymentStatus.DECLINED);
+        assertThat(archive.findStatusViewByExternalTransactionId("pi_failed")).map(v -> v.id()).hasValue(failed.getId());
+    }
+
+    @Test
+    void webhookForArchivedPayment_isAcknowledgedWithoutChange() {
+        insert(PaymentStatus.REFUNDED, "pi_late", Instant.now().minus(Duration.ofDays(40)));
+        archiver.archiveUpdatedBefore(Instant.now().minus(Duration.ofDays(30)));
+
+        paymentService.handleChargeRefunded("pi_late");
+
+        assertThat(repository.findStatusViewByExternalTransactionId("pi_late")).isEmpty();
+        assertThat(archive.findStatusViewByExternalTransactionId("pi_late")).isPresent();
+    }
+
+    // @PreUpdate would overwrite updatedAt on a save, so the age is set with plain SQL
+    private Transaction insert(PaymentStatus status, String externalId, Instant updatedAt) {
+        Transaction tx = new Transaction();
+        tx.setAmount(new BigDecimal("25.00"));
+        tx.setCurrency("USD");
+        tx.setStatus(status);
+        tx.setExternalTransactionId(externalId);
+        tx.setMetadata(Map.of("orderId", "ORD-1"));
+        tx.setIdempotencyKey("key-" + externalId);
+        Transaction saved = repository.saveAndFlush(tx);
+        jdbcTemplate.update("update transaction set created_at = ?, updated_at = ? where id = ?",
+                Timestamp.from(updatedAt), Timestamp.from(updatedAt), saved.getId());
+        return saved;
+    }
+}
@@ -0,0 +1,273 @@
+package com.ahy.payment.service;
+
+import com.ahy.payment.cache.ProcessedWebhookEventStore;
+import com.ahy.payment.exception.PaymentNotFoundException;
+import com.ahy.payment.model.WebhookEventStatus;
+import com.ahy.payment.model.WebhookInboxEvent;
+import com.ahy.payment.observability.PaymentMetrics;
+import com.ahy.payment.repository.WebhookInboxRepository;
+import com.ahy.payment.util.WebhookEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WebhookInboxTest {
+
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+
+    private WebhookInboxRepository repository;
+    private PaymentService paymentService;
+    private ProcessedWebhookEventStore processedEvents;
+    private PlatformTransactionManager transactionManager;
+    private TransactionTemplate transactionTemplate;
+    private WebhookInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(WebhookInboxRepository.class);
+        paymentService = mock(PaymentService.class);
+        processedEvents = mock(ProcessedWebhookEventStore.class);
+        when(processedEvents.record(any())).thenReturn(true);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        inbox = new WebhookInbox(repository, paymentService, processedEvents, transactionTemplate, new PaymentMetrics(), true, 2, 100, 2, RETRY_BACKOFF, Duration.ofHours(1), Duration.ofHours(72), Duration.ofMinutes(5), Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    @Test
+    void accept_async_persistsWithoutApplying_andRejectsAboveMaxDepth() {
+        assertTrue(inbox.accept(new WebhookEvent("payment_intent.succeeded", "pi_1")));
+        assertTrue(inbox.accept(new WebhookEvent("charge.refunded", "pi_2")));
+        assertFalse(inbox.accept(new WebhookEvent("charge.refunded", "pi_3")));
+
+        verify(repository, times(2)).save(any(WebhookInboxEvent.class));
+        verifyNoInteractions(paymentService);
+        WebhookQueueStats stats = inbox.stats();
+        assertEquals(2, stats.getEnqueued());
+        assertEquals(1, stats.getRejected());
+        assertEquals(2, stats.getDepth());
+    }
+
+    @Test
+    void accept_sync_appliesImmediately() {
+        WebhookInbox sync = new WebhookInbox(repository, paymentService, processedEvents, transactionTemplate, new PaymentMetrics(), false, 1, 100, 10, RETRY_BACKOFF, Duration.ofHours(1), Duration.ofHours(72), Duration.ofMinutes(5), Duration.ofDays(7));
+        try {
+            assertTrue(sync.accept(new WebhookEvent("payment_intent.payment_failed", "pi_1")));
+        } finally {
+            sync.shutdown();
+        }
+
+        verify(paymentService).handlePaymentIntentFailed("pi_1");
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void accept_redelivery_isAcknowledgedWithoutEnqueueing() {
+        when(processedEvents.record("evt_1")).thenReturn(false);
+
+        assertTrue(inbox.accept(new WebhookEvent("evt_1", "payment_intent.succeeded", "pi_1")));
+
+        verify(repository, never()).save(any());
+        assertEquals(0, inbox.stats().getEnqueued());
+        verify(transactionManager).commit(argThat(TransactionStatus::isRollbackOnly));
+    }
+
+    @Test
+    void accept_enqueueFails_rollsBackTheRecordedEventId() {
+        when(repository.save(any(WebhookInboxEvent.class))).thenThrow(new DataAccessResourceFailureException("db down"));
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> inbox.accept(new WebhookEvent("evt_2", "charge.refunded", "pi_2")));
+
+        // the id and the inbox row go in one transaction, so the id is not left marked processed
+        InOrder order = inOrder(processedEvents, repository, transactionManager);
+        order.verify(processedEvents).record("evt_2");
+        order.verify(repository).save(any(WebhookInboxEvent.class));
+        order.verify(transactionManager).rollback(any());
+        order.verify(processedEvents).forget("evt_2");
+        verify(transactionManager, never()).commit(any());
+        assertEquals(0, inbox.stats().getEnqueued());
+        assertEquals(0, inbox.stats().getDepth());
+    }
+
+    @Test
+    void accept_sync_failure_forgetsEventId() {
+        WebhookInbox sync = new WebhookInbox(repository, paymentService, processedEvents, transactionTemplate, new PaymentMetrics(), false, 1, 100, 10, RETRY_BACKOFF, Duration.ofHours(1), Duration.ofHours(72), Duration.ofMinutes(5), Duration.ofDays(7));
+        doThrow(new PaymentNotFoundException("pi_1")).when(paymentService).handlePaymentIntentSucceeded("pi_1");
+        try {
+            assertThrows(PaymentNotFoundException.class,
+                    () -> sync.accept(new WebhookEvent("evt_1", "payment_intent.succeeded", "pi_1")));
+        } finally {
+            sync.shutdown();
+        }
+
+        verify(processedEvents).forget("evt_1");
+    }
+
+    @Test
+    void drainBatch_appliesEachIntentInOrder_andMarksDoneInOneUpdate() {
+        List<WebhookInboxEvent> claimed = List.of(
+                event(1L, "payment_intent.succeeded", "pi_a", 0),
+                event(2L, "payment_intent.succeeded", "pi_b", 0),
+                event(3L, "charge.refunded", "pi_a", 0));
+        stubClaim(claimed);
+
+        assertEquals(3, inbox.drainBatch());
+
+        InOrder order = inOrder(paymentService);
+        order.verify(paymentService).handlePaymentIntentSucceeded("pi_a");
+        order.verify(paymentService).handleChargeRefunded("pi_a");
+        verify(paymentService).handlePaymentIntentSucceeded("pi_b");
+        verify(repository).markDone(argThat((Collection<Long> ids) -> ids.size() == 3 && ids.containsAll(List.of(1L, 2L, 3L))), any());
+        assertEquals(3, inbox.stats().getProcessed());
+        assertEquals(3, inbox.stats().getLastBatchSize());
+    }
+
+    @Test
+    void drainBatch_failedEvent_holdsBackLaterEventsForSameIntent() {
+        stubClaim(List.of(
+                event(1L, "payment_intent.succeeded", "pi_a", 0),
+                event(2L, "charge.refunded", "pi_a", 0)));
+        doThrow(new PaymentNotFoundException("pi_a")).when(paymentService).handlePaymentIntentSucceeded("pi_a");
+
+        inbox.drainBatch();
+
+        verify(paymentService, never()).handleChargeRefunded(any());
+        verify(repository).release(eq(1L), eq(WebhookEventStatus.NEW), eq(1), anyString(), notNull());
+        verify(repository).release(eq(2L), eq(WebhookEventStatus.NEW), eq(0), isNull(), isNull());
+        verify(repository, never()).markDone(any(), any());
+        assertEquals(1, inbox.stats().getRetried());
+    }
+
+    @Test
+    void drainBatch_webhookBeforeItsPaymentIsResolvable_isRetriedWithBackoff_untilItApplies() {
+        WebhookInboxEvent early = event(1L, "payment_intent.succeeded", "pi_a", 0);
+        stubClaim(List.of(early));
+        // the webhook beat completeAuthorization: no transaction carries pi_a yet
+        doThrow(new PaymentNotFoundException("pi_a")).doNothing().when(paymentService).handlePaymentIntentSucceeded("pi_a");
+
+        Instant before = Instant.now();
+        inbox.drainBatch();
+
+        // put back, not due again before the backoff has passed, and nothing given up
+        verify(repository).release(eq(1L), eq(WebhookEventStatus.NEW), eq(1), anyString(),
+                argThat(next -> !next.isBefore(before.plus(RETRY_BACKOFF))));
+        verify(repository, never()).markDone(any(), any());
+
+        // due again once the authorization has stored pi_a
+        early.setAttempts(1);
+        inbox.drainBatch();
+
+        verify(repository).markDone(argThat((Collection<Long> ids) -> ids.contains(1L)), any());
+        verify(repository, never()).release(any(), eq(WebhookEventStatus.FAILED), anyInt(), any(), any());
+        assertEquals(0, inbox.stats().getFailed());
+    }
+
+    @Test
+    void drainBatch_backoffDoubles_upToTheCap() {
+        WebhookInboxEvent event = event(1L, "payment_intent.succeeded", "pi_a", 3);
+        stubClaim(List.of(event));
+        doThrow(new PaymentNotFoundException("pi_a")).when(paymentService).handlePaymentIntentSucceeded("pi_a");
+
+        Instant before = Instant.now();
+        inbox.drainBatch();
+        Instant after = Instant.now();
+        verify(repository).release(eq(1L), eq(WebhookEventStatus.NEW), eq(4), anyString(), argThat(next ->
+                !next.isBefore(before.plusSeconds(8)) && !next.isAfter(after.plusSeconds(8))));
+
+        event.setAttempts(30);
+        inbox.drainBatch();
+        verify(repository).release(eq(1L), eq(WebhookEventStatus.NEW), eq(31), anyString(), argThat(next ->
+                !next.isAfter(Instant.now().plus(Duration.ofHours(1)))));
+    }
+
+    @Test
+    void drainBatch_pastTheRetryWindow_marksFailedAndContinues() {
+        WebhookInboxEvent stale = event(1L, "payment_intent.succeeded", "pi_a", 40);
+        stale.setReceivedAt(Instant.now().minus(Duration.ofHours(72)));
+        stubClaim(List.of(
+                stale,
+                event(2L, "charge.refunded", "pi_a", 0)));
+        doThrow(new PaymentNotFoundException("pi_a")).when(paymentService).handlePaymentIntentSucceeded("pi_a");
+
+        inbox.drainBatch();
+
+        verify(repository).release(eq(1L), eq(WebhookEventStatus.FAILED), eq(41), anyString(), isNull());
+        verify(paymentService).handleChargeRefunded("pi_a");
+        verify(repository).markDone(argThat((Collection<Long> ids) -> ids.size() == 1 && ids.contains(2L)), any());
+        assertEquals(1, inbox.stats().getFailed());
+    }
+
+    @Test
+    void drainBatch_keepsDepthWithoutCounting_andRetriesGoBackOnIt() {
+        inbox.accept(new WebhookEvent("payment_intent.succeeded", "pi_a"));
+        inbox.accept(new WebhookEvent("charge.refunded", "pi_a"));
+        stubClaim(List.of(
+                event(1L, "payment_intent.succeeded", "pi_a", 0),
+                event(2L, "charge.refunded", "pi_a", 0)));
+        doThrow(new PaymentNotFoundException("pi_a")).when(paymentService).handlePaymentIntentSucceeded("pi_a");
+
+        inbox.drainBatch();
+
+        assertEquals(2, inbox.stats().getDepth());   // both released to NEW
+        verify(repository, never()).countByStatus(any());
+    }
+
+    @Test
+    void purgeDone_deletesAppliedEventsOlderThanTheRetention() {
+        Instant before = Instant.now();
+        inbox.purgeDone();
+        Instant after = Instant.now();
+
+        verify(repository).deleteDoneBefore(argThat(cutoff ->
+                !cutoff.isBefore(before.minus(Duration.ofDays(7))) && !cutoff.isAfter(after.minus(Duration.ofDays(7)))));
+    }
+
+    @Test
+    void drainBatch_emptyQueue_doesNothing() {
+        when(repository.findClaimableIds(any(), any(), any())).thenReturn(List.of());
+
+        assertEquals(0, inbox.drainBatch());
+
+        verify(repository, never()).claim(any(), any(), any(), any());
+        assertEquals(0, inbox.stats().getDepth());
+    }
+
+    private void stubClaim(List<WebhookInboxEvent> claimed) {
+        List<Long> ids = claimed.stream().map(WebhookInboxEvent::getId).toList();
+        when(repository.findClaimableIds(any(), any(), any())).thenReturn(ids);
+        when(repository.findByIdInAndClaimedByAndStatusOrderByIdAsc(eq(ids), anyString(), eq(WebhookEventStatus.PROCESSING)))
+                .thenReturn(claimed);
+    }
+
+    private static WebhookInboxEvent event(Long id, String type, String paymentIntentId, int attempts) {
+        WebhookInboxEvent event = new WebhookInboxEvent();
+        event.setId(id);
+        event.setEventType(type);
+        event.setPaymentIntentId(paymentIntentId);
+        event.setStatus(WebhookEventStatus.PROCESSING);
+        event.setAttempts(attempts);
+        event.setReceivedAt(Instant.now());
+        return event;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ahy.payment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripeEventFieldsTest {
+
+    @Test
+    void parse_realisticEvent_ignoresNestedIds() throws Exception {
+        String payload = new String(getClass().getResourceAsStream("/stripe/payment_intent.succeeded.json").readAllBytes(),
+                StandardCharsets.UTF_8);
+
+        StripeEventFields fields = StripeEventFields.parse(payload);
+
+        assertThat(fields.id()).isEqualTo("evt_3QxYzL2eZvKYlo2C1aBcDeFg");
+        assertThat(fields.type()).isEqualTo("payment_intent.succeeded");
+        assertThat(fields.objectId()).isEqualTo("pi_3QxYzL2eZvKYlo2C1h7Ks9Qd");
+    }
+
+    @Test
+    void parse_missingObjectId_returnsNullField() {
+        StripeEventFields fields = StripeEventFields.parse(
+                "{\"id\":\"evt_1\",\"type\":\"unknown.event\",\"data\":{\"object\":{\"object\":\"payment_intent\"}}}");
+
+        assertThat(fields.type()).isEqualTo("unknown.event");
+        assertThat(fields.objectId()).isNull();
+    }
+
+    @Test
+    void parse_notAnObject_returnsNull() {
+        assertThat(StripeEventFields.parse("[1,2]")).isNull();
+        assertThat(StripeEventFields.parse("{\"id\": ")).isNull();
+    }
+}
@@ -103,5 +103,45 @@ public class StripeWebhookVerifierTest {
         assertThat(id).isEqualTo("pi_fallback_2");
     }
 
+    @Test
+    void verify_validSignature_readsFieldsFromPayload() throws Exception {
+        String payload = "{\"id\":\"evt_fast\",\"object\":\"event\",\"type\":\"charge.refunded\"," +
+                "\"data\":{\"object\":{\"id\":\"pi_fast_1\",\"object\":\"payment_intent\"}}}";
+
+        WebhookEvent event = verifier.verifyStripeSignature(payload, signatureHeader(payload, "whsec_test"), "whsec_test");
+
+        assertThat(event.getEventId()).isEqualTo("evt_fast");
+        assertThat(event.getType()).isEqualTo("charge.refunded");
+        assertThat(event.getPaymentIntentId()).isEqualTo("pi_fast_1");
+    }
+
+    @Test
+    void verify_missingObjectId_fallsBackToEventModel() throws Exception {
+        String payload = "{\"id\":\"evt_slow\",\"object\":\"event\",\"type\":\"unknown.event\"," +
+                "\"data\":{\"object\":{\"object\":\"payment_intent\"}}}";
+
+        assertThatThrownBy(() -> verifier.verifyStripeSignature(payload, signatureHeader(payload, "whsec_test"), "whsec_test"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Could not extract payment intent id");
+    }
+
+    @Test
+    void verify_wrongSecret_throws() throws Exception {
+        String payload = "{\"id\":\"evt_bad\",\"type\":\"charge.refunded\",\"data\":{\"object\":{\"id\":\"pi_1\"}}}";
 
+        assertThatThrownBy(() -> verifier.verifyStripeSignature(payload, signatureHeader(payload, "other"), "whsec_test"))
+                .isInstanceOf(com.stripe.exception.SignatureVerificationException.class);
+    }
+
+    private static String signatureHeader(String payload, String secret) throws Exception {
+        long timestamp = System.currentTimeMillis() / 1000L;
+        javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
+        mac.init(new javax.crypto.spec.SecretKeySpec(secret.getBytes(java.nio.charset.StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] digest = mac.doFinal((timestamp + "." + payload).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return "t=" + timestamp + ",v1=" + hex;
+    }
 }
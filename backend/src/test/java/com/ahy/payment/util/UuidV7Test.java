@@ -0,0 +1,90 @@
+package com.ahy.payment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+
+    private static final long T0 = 1_760_000_000_000L;
+
+    @Test
+    void next_hasVersion7Layout_andCarriesTheTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(UuidV7.timestamp(id).toEpochMilli()).isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void idsWithinOneMillisecond_increase_andOverflowBorrowsTheNextMillisecond() {
+        UuidV7 generator = new UuidV7(() -> T0, new SplittableRandom(1));
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.generate());
+        }
+
+        assertIncreasing(ids);
+        assertThat(UuidV7.timestamp(ids.get(0))).isEqualTo(Instant.ofEpochMilli(T0));
+        assertThat(UuidV7.timestamp(ids.get(ids.size() - 1))).isAfter(Instant.ofEpochMilli(T0));
+    }
+
+    @Test
+    void clockSteppingBack_doesNotBreakOrdering() {
+        AtomicLong clock = new AtomicLong(T0);
+        UuidV7 generator = new UuidV7(clock::get, new SplittableRandom(2));
+
+        UUID first = generator.generate();
+        clock.set(T0 - 5_000);
+        UUID second = generator.generate();
+
+        assertIncreasing(List.of(first, second));
+    }
+
+    @Test
+    void concurrentCallers_neverShareAnId() throws InterruptedException {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    ids.add(UuidV7.next());
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ids).hasSize(100_000);
+    }
+
+    // Byte order, i.e. the order PostgreSQL and H2 sort uuid columns in
+    private static void assertIncreasing(List<UUID> ids) {
+        Set<UUID> seen = new HashSet<>();
+        for (int i = 1; i < ids.size(); i++) {
+            UUID a = ids.get(i - 1);
+            UUID b = ids.get(i);
+            int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+            }
+            assertThat(cmp).as("id %d after id %d", i, i - 1).isNegative();
+            assertThat(seen.add(b)).isTrue();
+        }
+    }
+}
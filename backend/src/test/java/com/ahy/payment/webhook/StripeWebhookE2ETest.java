@@ -2,7 +2,10 @@ package com.ahy.payment.webhook;
 
 import com.ahy.payment.model.PaymentStatus;
 import com.ahy.payment.model.Transaction;
+import com.ahy.payment.model.WebhookEventStatus;
+import com.ahy.payment.model.WebhookInboxEvent;
 import com.ahy.payment.repository.TransactionRepository;
+import com.ahy.payment.repository.WebhookInboxRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +22,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.UUID;
 
@@ -27,7 +31,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 @EnabledIfEnvironmentVariable(named = "RUN_INTEGRATION", matches = "true")
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("mock")
-@TestPropertySource(properties = "payments.stripe.webhookSecret=whsec_test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:webhookdb;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "payments.stripe.webhookSecret=whsec_test"
+})
 public class StripeWebhookE2ETest {
 
     @Autowired
@@ -36,6 +44,9 @@ public class StripeWebhookE2ETest {
     @Autowired
     private TransactionRepository transactionRepository;
 
+    @Autowired
+    private WebhookInboxRepository webhookInboxRepository;
+
     private static String computeStripeSignatureHeader(String payload, String secret) throws Exception {
         long timestamp = System.currentTimeMillis() / 1000L;
         String signedPayload = timestamp + "." + payload;
@@ -89,8 +100,85 @@ public class StripeWebhookE2ETest {
         var resp = restTemplate.postForEntity("/payments/webhooks/stripe", request, Void.class);
         assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
 
-        Transaction updated = transactionRepository.findByExternalTransactionId("pi_test_123").orElseThrow();
-        assertThat(updated.getStatus()).isEqualTo(PaymentStatus.CAPTURED);
+        // applied asynchronously by the webhook inbox consumers
+        assertThat(awaitStatus("pi_test_123", PaymentStatus.CAPTURED, Duration.ofSeconds(10)))
+                .isEqualTo(PaymentStatus.CAPTURED);
+    }
+
+    @Test
+    void stripeWebhook_redelivery_shouldBeAcknowledgedOnce() throws Exception {
+        Transaction tx = new Transaction();
+        tx.setAmount(BigDecimal.valueOf(7));
+        tx.setCurrency("USD");
+        tx.setExternalTransactionId("pi_test_789");
+        tx.setStatus(PaymentStatus.CAPTURED);
+        tx.setIdempotencyKey("idem-webhook-3");
+        transactionRepository.saveAndFlush(tx);
+
+        String payload = "{\"id\": \"evt_redelivered\", \"object\": \"event\", \"type\": \"charge.refunded\", " +
+                "\"data\": {\"object\": {\"id\": \"pi_test_789\", \"object\": \"payment_intent\"}}}";
+
+        for (int i = 0; i < 3; i++) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.add("Stripe-Signature", computeStripeSignatureHeader(payload, "whsec_test"));
+            var resp = restTemplate.postForEntity("/payments/webhooks/stripe", new HttpEntity<>(payload, headers), Void.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        assertThat(webhookInboxRepository.findAll())
+                .filteredOn(e -> "evt_redelivered".equals(e.getEventId()))
+                .hasSize(1);
+        assertThat(awaitStatus("pi_test_789", PaymentStatus.REFUNDED, Duration.ofSeconds(10)))
+                .isEqualTo(PaymentStatus.REFUNDED);
+    }
+
+    @Test
+    void stripeWebhook_beforeThePaymentIsResolvable_isRetriedUntilItApplies() throws Exception {
+        String payload = "{\"id\": \"evt_early\", \"object\": \"event\", \"type\": \"payment_intent.succeeded\", " +
+                "\"data\": {\"object\": {\"id\": \"pi_test_early\", \"object\": \"payment_intent\"}}}";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("Stripe-Signature", computeStripeSignatureHeader(payload, "whsec_test"));
+
+        // acknowledged before any transaction carries the intent id, so Stripe will not send it again
+        var resp = restTemplate.postForEntity("/payments/webhooks/stripe", new HttpEntity<>(payload, headers), Void.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        WebhookInboxEvent event;
+        do {
+            Thread.sleep(50);
+            event = webhookInboxRepository.findAll().stream()
+                    .filter(e -> "evt_early".equals(e.getEventId())).findFirst().orElseThrow();
+        } while (event.getAttempts() == 0 && System.nanoTime() < deadline);
+        assertThat(event.getStatus()).isEqualTo(WebhookEventStatus.NEW);
+        assertThat(event.getNextAttemptAt()).isNotNull();
+
+        // the authorization stores the external id only now
+        Transaction tx = new Transaction();
+        tx.setAmount(BigDecimal.valueOf(12));
+        tx.setCurrency("USD");
+        tx.setExternalTransactionId("pi_test_early");
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setIdempotencyKey("idem-webhook-4");
+        transactionRepository.saveAndFlush(tx);
+
+        assertThat(awaitStatus("pi_test_early", PaymentStatus.CAPTURED, Duration.ofSeconds(10)))
+                .isEqualTo(PaymentStatus.CAPTURED);
+    }
+
+    private PaymentStatus awaitStatus(String paymentIntentId, PaymentStatus expected, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        PaymentStatus status;
+        do {
+            status = transactionRepository.findByExternalTransactionId(paymentIntentId).orElseThrow().getStatus();
+            if (status == expected) {
+                break;
+            }
+            Thread.sleep(50);
+        } while (System.nanoTime() < deadline);
+        return status;
     }
 
     @Test
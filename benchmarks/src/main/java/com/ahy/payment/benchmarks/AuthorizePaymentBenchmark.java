@@ -0,0 +1,92 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.PaymentServiceApplication;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.service.PaymentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PaymentServiceImpl.authorizePayment through the real Spring context (JPA, idempotency store,
+ * mock gateway) on an embedded H2 database. {@code newKey} is the full reserve, authorize and
+ * update path; {@code repeatedKey} is a replay answered by the idempotency store and a read of the row,
+ * {@code repeatedKeyView} the same replay as the API answers it, from the view cache.
+ * Hibernate's insert/update path takes tens of seconds to reach steady state, hence the long warmup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizePaymentBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("120.50");
+
+    private final AtomicLong keys = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(PaymentServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("mock")
+                // command-line arguments, so they override the service's application.yml
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--payments.mock.disableRandom=true",
+                        "--payments.stripe.webhookSecret=whsec_benchmark",
+                        "--payments.recovery.enabled=false",
+                        "--payments.webhooks.async=false");
+        paymentService = context.getBean(PaymentService.class);
+        paymentService.authorizePayment(AMOUNT, "USD", Fixtures.METADATA, "bench-repeated");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction newKey() {
+        return paymentService.authorizePayment(AMOUNT, "USD", Fixtures.METADATA, "bench-" + keys.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Transaction newKeyContended() {
+        return paymentService.authorizePayment(AMOUNT, "USD", Fixtures.METADATA, "bench-" + keys.incrementAndGet());
+    }
+
+    @Benchmark
+    public Transaction repeatedKey() {
+        return paymentService.authorizePayment(AMOUNT, "USD", Fixtures.METADATA, "bench-repeated");
+    }
+
+    @Benchmark
+    public TransactionResponse repeatedKeyView() {
+        return paymentService.authorizePaymentView(AMOUNT, "USD", Fixtures.METADATA, "bench-repeated");
+    }
+}
@@ -0,0 +1,42 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.model.PaymentStatus;
+import com.ahy.payment.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+// Representative domain objects shared by the suites
+final class Fixtures {
+
+    static final Map<String, String> METADATA = Map.of("orderId", "ORD-1234", "customerId", "cus_RkPq7w2XyZ0a1B", "channel", "web");
+
+    private Fixtures() {
+    }
+
+    static Transaction transaction() {
+        Transaction tx = new Transaction();
+        tx.setId(UUID.randomUUID());
+        tx.setAmount(new BigDecimal("120.50"));
+        tx.setCurrency("USD");
+        tx.setStatus(PaymentStatus.AUTHORIZED);
+        tx.setExternalTransactionId("mock_" + UUID.randomUUID());
+        tx.setMetadata(METADATA);
+        tx.setIdempotencyKey("idem-" + UUID.randomUUID());
+        tx.setCreatedAt(Instant.now());
+        tx.setUpdatedAt(Instant.now());
+        return tx;
+    }
+
+    static AuthorizeRequest authorizeRequest(String idempotencyKey) {
+        AuthorizeRequest request = new AuthorizeRequest();
+        request.setAmount(new BigDecimal("120.50"));
+        request.setCurrency("USD");
+        request.setIdempotencyKey(idempotencyKey);
+        request.setMetadata(METADATA);
+        return request;
+    }
+}
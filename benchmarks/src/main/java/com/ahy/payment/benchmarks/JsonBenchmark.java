@@ -0,0 +1,51 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.dto.request.AuthorizeRequest;
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.util.TransactionMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Request body in, response body out: the JSON work Spring MVC does around POST /payments/authorize
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper mapper;
+    private byte[] authorizeRequestJson;
+    private TransactionResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        // java.time support as registered by Spring Boot's Jackson auto-configuration
+        mapper = JsonMapper.builder().findAndAddModules().build();
+        authorizeRequestJson = mapper.writeValueAsBytes(Fixtures.authorizeRequest("idem-3f2a9c"));
+        response = TransactionMapper.toResponse(Fixtures.transaction());
+    }
+
+    @Benchmark
+    public AuthorizeRequest readAuthorizeRequest() throws Exception {
+        return mapper.readValue(authorizeRequestJson, AuthorizeRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionResponse() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+}
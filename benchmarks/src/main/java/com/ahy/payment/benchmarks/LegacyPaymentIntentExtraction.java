@@ -0,0 +1,63 @@
+package com.ahy.payment.benchmarks;
+
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+
+/**
+ * The extraction StripeWebhookVerifier did before the streaming parser, kept as the benchmark
+ * baseline: full Gson Event model, a new ObjectMapper per StripeObject, a logger lookup per event.
+ */
+final class LegacyPaymentIntentExtraction {
+
+    private LegacyPaymentIntentExtraction() {
+    }
+
+    static String[] extract(String payload) {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        String paymentIntentId = extractPaymentIntentId(event);
+        org.slf4j.LoggerFactory.getLogger(LegacyPaymentIntentExtraction.class);
+        return new String[]{event.getId(), event.getType(), paymentIntentId};
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static String extractPaymentIntentId(Event event) {
+        Object dataObject = event.getData().getObject();
+        String paymentIntentId = null;
+
+        if (dataObject instanceof PaymentIntent) {
+            paymentIntentId = ((PaymentIntent) dataObject).getId();
+        } else if (dataObject instanceof com.stripe.model.StripeObject) {
+            try {
+                String json = ((com.stripe.model.StripeObject) dataObject).toJson();
+                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+                java.util.Map<String, Object> map = mapper.readValue(json, java.util.Map.class);
+                paymentIntentId = (String) map.get("id");
+            } catch (Exception ignored) {
+            }
+        } else if (dataObject instanceof com.google.gson.JsonObject) {
+            com.google.gson.JsonObject jsonObj = (com.google.gson.JsonObject) dataObject;
+            if (jsonObj.has("id")) {
+                paymentIntentId = jsonObj.get("id").getAsString();
+            }
+        } else if (dataObject instanceof java.util.Map) {
+            paymentIntentId = (String) ((java.util.Map) dataObject).get("id");
+        } else {
+            try {
+                java.lang.reflect.Method m = event.getClass().getMethod("getDataObjectDeserializer");
+                Object deser = m.invoke(event);
+                java.lang.reflect.Method getObject = deser.getClass().getMethod("getObject");
+                Object opt = getObject.invoke(deser);
+                if (opt instanceof java.util.Optional && ((java.util.Optional) opt).orElse(null) instanceof PaymentIntent intent) {
+                    paymentIntentId = intent.getId();
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        if (paymentIntentId == null) {
+            throw new IllegalArgumentException("Could not extract payment intent id from event");
+        }
+        return paymentIntentId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.impl.MockPaymentGatewayImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// The mock PSP is on every authorize in the default profile; it should cost next to nothing
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MockGatewayBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("120.50");
+
+    private final MockPaymentGatewayImpl gateway = new MockPaymentGatewayImpl();
+
+    @Benchmark
+    public GatewayResponse authorize() {
+        return gateway.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public GatewayResponse authorizeContended() {
+        return gateway.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+}
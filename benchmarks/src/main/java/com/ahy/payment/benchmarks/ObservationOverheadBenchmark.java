@@ -0,0 +1,78 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.gateway.GatewayResponse;
+import com.ahy.payment.gateway.PaymentGateway;
+import com.ahy.payment.gateway.impl.MockPaymentGatewayImpl;
+import com.ahy.payment.observability.MetricsObservationHandler;
+import com.ahy.payment.observability.ObservingBeanPostProcessor;
+import com.ahy.payment.observability.PaymentMetrics;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * What observing a call costs, on the cheapest call there is (the mock PSP): direct, through the observing
+ * proxy with observation switched off (NOOP registry), and through the proxy recording into PaymentMetrics.
+ * The difference between the last two is the per-call price of a timer; the first two, of the proxy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservationOverheadBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("120.50");
+
+    private final PaymentGateway direct = new MockPaymentGatewayImpl();
+    private final PaymentGateway unobserved = observed(ObservationRegistry.NOOP);
+    private final PaymentGateway observed = observed(metricsRegistry());
+
+    @Benchmark
+    public GatewayResponse direct() {
+        return direct.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+
+    @Benchmark
+    public GatewayResponse proxyNoop() {
+        return unobserved.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+
+    @Benchmark
+    public GatewayResponse observed() {
+        return observed.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+
+    // Same timer from 4 threads: the LongAdder/bucket updates under contention
+    @Benchmark
+    @Threads(4)
+    public GatewayResponse observedContended() {
+        return observed.authorize(AMOUNT, "USD", Fixtures.METADATA, null);
+    }
+
+    private static ObservationRegistry metricsRegistry() {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new MetricsObservationHandler(new PaymentMetrics()));
+        return registry;
+    }
+
+    private static PaymentGateway observed(ObservationRegistry registry) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("observationRegistry", registry));
+        ObservingBeanPostProcessor postProcessor = new ObservingBeanPostProcessor(beans.getBeanProvider(ObservationRegistry.class));
+        return (PaymentGateway) postProcessor.postProcessAfterInitialization(new MockPaymentGatewayImpl(), "mockGateway");
+    }
+}
@@ -0,0 +1,24 @@
+package com.ahy.payment.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Realistic Stripe event bodies shipped under src/main/resources/stripe
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static String load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/stripe/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("No payload named " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.util.UuidV7;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Batched inserts into a table keyed by a UUID primary key, with random (version 4, what
+ * {@code @GeneratedValue} produced) and time-ordered ({@link UuidV7}, {@code @TimeOrderedId}) ids.
+ * The table is pre-filled with {@code preload} rows so the primary key is already deeper than the cache
+ * of hot pages; each invocation inserts and commits one batch of {@value #BATCH} rows.
+ * <p>
+ * Besides time per batch, {@code indexBytes} is the size of the primary key index at the end of the
+ * iteration, {@code rows} the rows it holds and {@code indexBytesPerRow} their ratio. On PostgreSQL
+ * that is {@code pg_relation_size} of the index, which is where page splits show up as bloat (random ids
+ * leave leaf pages around half full, sequential ones fill them). H2 only offers {@code DISK_SPACE_USED}
+ * of the whole table, and its copy-on-write store rewrites pages either way, so on H2 compare the times.
+ * <p>
+ * Runs on a file-backed embedded H2 by default. For PostgreSQL:
+ * {@code -p url=jdbc:postgresql://localhost:5432/bench -p user=postgres -p password=postgres}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimaryKeyInsertBenchmark {
+
+    private static final int BATCH = 1_000;
+
+    @Param({"random", "timeOrdered"})
+    public String ids;
+
+    @Param({"200000"})
+    public int preload;
+
+    @Param({""})
+    public String url;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    private Supplier<UUID> generator;
+    private Connection connection;
+    private PreparedStatement insert;
+    private Path h2Directory;
+    private boolean postgres;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long indexBytes;
+        public long rows;
+        public double indexBytesPerRow;
+
+        // Read after the iteration's last batch; JMH reports it alongside the timing
+        @TearDown(Level.Iteration)
+        public void measureIndex(PrimaryKeyInsertBenchmark bench) throws SQLException {
+            indexBytes = bench.queryLong(bench.postgres
+                    ? "select pg_relation_size('pk_insert_bench_pkey')"
+                    : "select disk_space_used('PK_INSERT_BENCH')");
+            rows = bench.queryLong("select count(*) from pk_insert_bench");
+            indexBytesPerRow = (double) indexBytes / rows;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        generator = "timeOrdered".equals(ids) ? UuidV7::next : UUID::randomUUID;
+
+        String jdbcUrl = url;
+        if (jdbcUrl.isEmpty()) {
+            h2Directory = Files.createTempDirectory("pk-insert");
+            jdbcUrl = "jdbc:h2:" + h2Directory.resolve("bench") + ";DB_CLOSE_DELAY=-1";
+        }
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        postgres = connection.getMetaData().getDatabaseProductName().equals("PostgreSQL");
+
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("drop table if exists pk_insert_bench");
+            ddl.execute("create table pk_insert_bench (id uuid primary key, amount numeric(38,2), " +
+                    "currency varchar(3), status varchar(16), created_at timestamp(6) with time zone)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement(
+                "insert into pk_insert_bench (id, amount, currency, status, created_at) values (?, ?, ?, ?, ?)");
+
+        for (int loaded = 0; loaded < preload; loaded += BATCH) {
+            insertAndCommit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Statement drop = connection.createStatement()) {
+            drop.execute("drop table pk_insert_bench");
+        }
+        connection.commit();
+        connection.close();
+        if (h2Directory != null) {
+            try (var files = Files.list(h2Directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(h2Directory);
+        }
+    }
+
+    @Benchmark
+    public int insertBatch(Counters counters) throws SQLException {
+        return insertAndCommit();
+    }
+
+    private int insertAndCommit() throws SQLException {
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int i = 0; i < BATCH; i++) {
+            insert.setObject(1, generator.get());
+            insert.setBigDecimal(2, new BigDecimal("120.50"));
+            insert.setString(3, "USD");
+            insert.setString(4, "AUTHORIZED");
+            insert.setTimestamp(5, now);
+            insert.addBatch();
+        }
+        int inserted = insert.executeBatch().length;
+        connection.commit();
+        return inserted;
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.util.StripeWebhookVerifier;
+import com.ahy.payment.util.WebhookEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Everything the webhook endpoint does before enqueueing: HMAC check plus field extraction
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerificationBenchmark {
+
+    private static final String SECRET = "whsec_benchmark";
+
+    @Param({"payment_intent.succeeded", "charge.refunded"})
+    public String event;
+
+    private final StripeWebhookVerifier verifier = new StripeWebhookVerifier();
+    private String payload;
+    private String signatureHeader;
+
+    // per iteration, so the timestamp stays inside Stripe's five-minute tolerance on long runs
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        payload = Payloads.load(event);
+        long timestamp = System.currentTimeMillis() / 1000L;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] digest = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        signatureHeader = "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(digest);
+    }
+
+    @Benchmark
+    public WebhookEvent verifyStripeSignature() throws Exception {
+        return verifier.verifyStripeSignature(payload, signatureHeader, SECRET);
+    }
+}
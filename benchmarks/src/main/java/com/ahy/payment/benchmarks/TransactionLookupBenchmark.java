@@ -0,0 +1,177 @@
+package com.ahy.payment.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaction lookups before and after the raw PSP response moved from {@code transaction.gateway_response}
+ * to its own table. Plain JDBC on embedded H2 running the SQL Hibernate issues for each path:
+ * <ul>
+ *   <li>{@code legacy*}: every entity column including the gateway_response LOB (previous findById /
+ *   findByExternalTransactionId)</li>
+ *   <li>{@code entityById}: the entity as it is loaded now (capture/refund)</li>
+ *   <li>{@code responseView}: the GET /payments/{id} projection</li>
+ *   <li>{@code statusViewByExternalId}: the webhook projection</li>
+ * </ul>
+ * Besides time per lookup, the {@code bytesRead} counter sums the text size of every value fetched;
+ * bytes per lookup is {@code bytesRead / lookups}. The stored payload is a real PaymentIntent body (~2.5 KB).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionLookupBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String ENTITY_COLUMNS =
+            "id, amount, currency, status, external_transaction_id, metadata, created_at, updated_at, idempotency_key";
+
+    private final UUID[] ids = new UUID[ROWS];
+    private final String[] externalIds = new String[ROWS];
+
+    private Connection connection;
+    private PreparedStatement legacyById;
+    private PreparedStatement legacyByExternalId;
+    private PreparedStatement entityById;
+    private PreparedStatement responseById;
+    private PreparedStatement statusByExternalId;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long bytesRead;
+        public long lookups;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesRead = 0;
+            lookups = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:lookup;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("create table transaction (id uuid primary key, amount numeric(38,2), currency varchar(255), " +
+                    "status varchar(16), external_transaction_id varchar(255), metadata json, " +
+                    "created_at timestamp(6) with time zone, updated_at timestamp(6) with time zone, " +
+                    "gateway_response clob, idempotency_key varchar(255) not null unique)");
+            ddl.execute("create index idx_transaction_external_id on transaction (external_transaction_id)");
+        }
+
+        String payload = Payloads.load("payment_intent.succeeded");
+        String metadata = "{\"orderId\":\"ORD-1234\",\"customerId\":\"cus_RkPq7w2XyZ0a1B\",\"channel\":\"web\"}";
+        try (PreparedStatement insert = connection.prepareStatement("insert into transaction (" + ENTITY_COLUMNS +
+                ", gateway_response) values (?, ?, ?, ?, ?, ? format json, ?, ?, ?, ?)")) {
+            Timestamp now = Timestamp.from(Instant.now());
+            for (int i = 0; i < ROWS; i++) {
+                ids[i] = UUID.randomUUID();
+                externalIds[i] = "pi_" + UUID.randomUUID().toString().replace("-", "").substring(0, 24);
+                insert.setObject(1, ids[i]);
+                insert.setBigDecimal(2, new BigDecimal("120.50"));
+                insert.setString(3, "USD");
+                insert.setString(4, "AUTHORIZED");
+                insert.setString(5, externalIds[i]);
+                insert.setString(6, metadata);
+                insert.setTimestamp(7, now);
+                insert.setTimestamp(8, now);
+                insert.setString(9, "idem-" + ids[i]);
+                insert.setString(10, payload);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        legacyById = connection.prepareStatement("select " + ENTITY_COLUMNS + ", gateway_response from transaction where id = ?");
+        legacyByExternalId = connection.prepareStatement("select " + ENTITY_COLUMNS + ", gateway_response from transaction where external_transaction_id = ?");
+        entityById = connection.prepareStatement("select " + ENTITY_COLUMNS + " from transaction where id = ?");
+        responseById = connection.prepareStatement("select id, amount, currency, status, created_at from transaction where id = ?");
+        statusByExternalId = connection.prepareStatement("select id, status from transaction where external_transaction_id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement drop = connection.createStatement()) {
+            drop.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long legacyEntityById(Counters counters) throws SQLException {
+        return lookup(legacyById, ids[next()], counters);
+    }
+
+    @Benchmark
+    public long legacyEntityByExternalId(Counters counters) throws SQLException {
+        return lookup(legacyByExternalId, externalIds[next()], counters);
+    }
+
+    @Benchmark
+    public long entityById(Counters counters) throws SQLException {
+        return lookup(entityById, ids[next()], counters);
+    }
+
+    @Benchmark
+    public long responseView(Counters counters) throws SQLException {
+        return lookup(responseById, ids[next()], counters);
+    }
+
+    @Benchmark
+    public long statusViewByExternalId(Counters counters) throws SQLException {
+        return lookup(statusByExternalId, externalIds[next()], counters);
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(ROWS);
+    }
+
+    // Reads every column of the row as text, as a hydrating ORM would, and returns the byte count
+    private static long lookup(PreparedStatement query, Object key, Counters counters) throws SQLException {
+        query.setObject(1, key);
+        long bytes = 0;
+        try (ResultSet rs = query.executeQuery()) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int c = 1; c <= columns; c++) {
+                    String value = rs.getString(c);
+                    if (value != null) {
+                        bytes += value.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+            }
+        }
+        counters.bytesRead += bytes;
+        counters.lookups++;
+        return bytes;
+    }
+}
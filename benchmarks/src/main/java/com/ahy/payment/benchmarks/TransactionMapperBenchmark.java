@@ -0,0 +1,39 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.dto.response.TransactionResponse;
+import com.ahy.payment.model.Transaction;
+import com.ahy.payment.util.TransactionMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Entity -> response DTO on every controller call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionMapperBenchmark {
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        transaction = Fixtures.transaction();
+    }
+
+    @Benchmark
+    public TransactionResponse toResponse() {
+        return TransactionMapper.toResponse(transaction);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ahy.payment.benchmarks;
+
+import com.ahy.payment.util.StripeEventFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id/type/data.object.id extraction from a verified Stripe payload: the previous Gson Event model path
+ * against the single-pass streaming parser. Signature checking is the same for both and left out.
+ * Run with {@code -prof gc} to compare allocation per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookExtractionBenchmark {
+
+    @Param({"payment_intent.succeeded", "charge.refunded"})
+    public String event;
+
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = Payloads.load(event);
+
+        String[] legacy = LegacyPaymentIntentExtraction.extract(payload);
+        StripeEventFields streaming = StripeEventFields.parse(payload);
+        if (!legacy[2].equals(streaming.objectId()) || !legacy[1].equals(streaming.type())) {
+            throw new IllegalStateException("Extractors disagree on " + event);
+        }
+    }
+
+    @Benchmark
+    public String[] legacyGsonEvent() {
+        return LegacyPaymentIntentExtraction.extract(payload);
+    }
+
+    @Benchmark
+    public StripeEventFields streaming() {
+        return StripeEventFields.parse(payload);
+    }
+}
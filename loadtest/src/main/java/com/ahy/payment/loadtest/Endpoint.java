@@ -0,0 +1,10 @@
+package com.ahy.payment.loadtest;
+
+// The API calls the generator mixes; capture, refund, GET and webhooks work on payments it authorized earlier
+enum Endpoint {
+    AUTHORIZE,  // POST /payments/authorize, new idempotency key
+    CAPTURE,    // POST /payments/{id}/capture of an authorized payment
+    REFUND,     // POST /payments/{id}/refund of a captured payment
+    GET,        // GET /payments/{id} of a recent payment
+    WEBHOOK     // POST /payments/webhooks/stripe, signed payment_intent.succeeded for an authorized payment
+}
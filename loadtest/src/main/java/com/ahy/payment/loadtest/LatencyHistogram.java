@@ -0,0 +1,108 @@
+package com.ahy.payment.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with HdrHistogram's layout: values up to {@code highestTrackable} are kept with three
+ * significant decimal digits (relative error below 0.1%) in a fixed array of counters, so recording is
+ * one index computation and one atomic increment, from any thread, with no allocation.
+ * <p>
+ * Buckets double in width; each holds 1024 sub-buckets, and the first bucket 2048, so values below 2048
+ * are exact. Values are in whatever unit the caller records; the load generator uses microseconds.
+ * Values above {@code highestTrackable} are counted at {@code highestTrackable}.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 10;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_COUNT = SUB_BUCKET_HALF_COUNT * 2;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int LEADING_ZERO_COUNT_BASE = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1;
+
+    private final long highestTrackable;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram(long highestTrackable) {
+        if (highestTrackable < SUB_BUCKET_COUNT) {
+            throw new IllegalArgumentException("highestTrackable must be at least " + SUB_BUCKET_COUNT);
+        }
+        this.highestTrackable = highestTrackable;
+        this.counts = new AtomicLongArray(countsIndex(highestTrackable) + 1);
+    }
+
+    void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), highestTrackable);
+        counts.incrementAndGet(countsIndex(clamped));
+        totalCount.increment();
+        max.accumulate(clamped);
+    }
+
+    long count() {
+        return totalCount.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * The value at or below which {@code percentile} percent of the recorded values fall, reported as the
+     * highest value equivalent to its sub-bucket (HdrHistogram's convention): never an underestimate.
+     */
+    long valueAtPercentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(valueFromIndex(i)), max());
+            }
+        }
+        return max();
+    }
+
+    double mean() {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                long lowest = valueFromIndex(i);
+                sum += c * (lowest + highestEquivalentValue(lowest)) / 2.0;
+            }
+        }
+        return sum / total;
+    }
+
+    private static int countsIndex(long value) {
+        int bucketIndex = LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long valueFromIndex(int index) {
+        int bucketIndex = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucketIndex = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucketIndex < 0) {
+            subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+            bucketIndex = 0;
+        }
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    private static long highestEquivalentValue(long value) {
+        int bucketIndex = LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        return value + (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,290 @@
+package com.ahy.payment.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: requests start on a schedule fixed by the arrival rate, not when the previous one
+ * returns, so a slow service meets a growing queue exactly as it would in production.
+ * <p>
+ * Each request has an intended start time. Its latency is measured from that time, not from when it was
+ * actually sent, which corrects for coordinated omission: if the generator (or the in-flight limit) fell
+ * behind, the wait counts against the service instead of silently disappearing. The latency from the
+ * actual send is kept as well, as the service time, to show how much of the tail is queueing.
+ */
+final class LoadGenerator {
+
+    // Histograms are in microseconds, up to an hour
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    /** Latencies and error count of one endpoint (or of all of them). */
+    static final class Recorder {
+        final LatencyHistogram corrected = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+        final LatencyHistogram serviceTime = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+        final LongAdder errors = new LongAdder();
+
+        private void record(long correctedMicros, long serviceMicros, boolean error) {
+            corrected.record(correctedMicros);
+            serviceTime.record(serviceMicros);
+            if (error) {
+                errors.increment();
+            }
+        }
+    }
+
+    /** A payment the generator authorized, for the calls that need one. */
+    private record Payment(String id, String idempotencyKey) {
+    }
+
+    private static final int RECENT_PAYMENTS = 4096;
+
+    private final LoadTestConfig config;
+    private final URI baseUri;
+    private final HttpClient http;
+    private final WebhookSigner signer;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Semaphore inFlight;
+
+    private final Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+    private final Recorder all = new Recorder();
+    private final LongAdder shed = new LongAdder();
+    private volatile boolean closed;
+    private int unfinished;
+
+    // Authorized and captured payments waiting for their next call, plus a ring of recent ones for GETs
+    private final ConcurrentLinkedQueue<Payment> authorized = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Payment> captured = new ConcurrentLinkedQueue<>();
+    private final AtomicReferenceArray<String> recent = new AtomicReferenceArray<>(RECENT_PAYMENTS);
+    private final AtomicLong recentCursor = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Endpoint[] mixTable;
+    // Keeps idempotency keys unique across runs against the same database
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private long measuredNanos;
+
+    LoadGenerator(LoadTestConfig config, URI baseUri) {
+        this.config = config;
+        this.baseUri = baseUri;
+        this.signer = new WebhookSigner(config.webhookSecret());
+        this.inFlight = new Semaphore(config.maxInFlight());
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder());
+        }
+        this.mixTable = mixTable(config.mix());
+    }
+
+    /**
+     * Runs the warmup and the measured period, then waits (a little over the request timeout) for the
+     * requests still in flight. Only requests intended to start after the warmup are recorded.
+     */
+    void run() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(config.seed());
+        double meanIntervalNanos = 1e9 / config.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+
+        double offset = 0;
+        while (true) {
+            offset += config.poisson() ? -Math.log(1.0 - random.nextDouble()) * meanIntervalNanos : meanIntervalNanos;
+            long intended = start + (long) offset;
+            if (intended - end >= 0) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended - measureFrom >= 0;
+            Endpoint endpoint = mixTable[random.nextInt(mixTable.length)];
+            // Waiting for a slot is part of the latency: the clock started at the intended time
+            if (!inFlight.tryAcquire(config.requestTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                shed.increment();
+                if (measured) {
+                    record(endpoint, intended, System.nanoTime(), true);
+                }
+                continue;
+            }
+            send(endpoint, intended, measured, random);
+        }
+        measuredNanos = end - measureFrom;
+
+        // every request times out after requestTimeout; the margin covers reading the body
+        long drain = config.requestTimeout().plusSeconds(5).toNanos();
+        if (!inFlight.tryAcquire(config.maxInFlight(), drain, TimeUnit.NANOSECONDS)) {
+            closed = true;
+            unfinished = config.maxInFlight() - inFlight.availablePermits();
+        }
+    }
+
+    Map<Endpoint, Recorder> recorders() {
+        return recorders;
+    }
+
+    Recorder all() {
+        return all;
+    }
+
+    // Requests that waited the whole request timeout for an in-flight slot, recorded as errors
+    long shed() {
+        return shed.sum();
+    }
+
+    // Requests still in flight when the run gave up waiting; they are not in the histograms
+    int unfinished() {
+        return unfinished;
+    }
+
+    long measuredNanos() {
+        return measuredNanos;
+    }
+
+    private void send(Endpoint endpoint, long intended, boolean measured, SplittableRandom random) {
+        Payment payment = null;
+        Endpoint actual = endpoint;
+        switch (endpoint) {
+            case CAPTURE, WEBHOOK -> payment = authorized.poll();
+            case REFUND -> payment = captured.poll();
+            case GET -> {
+                long filled = Math.min(recentCursor.get(), RECENT_PAYMENTS);
+                String id = filled == 0 ? null : recent.get(random.nextInt((int) filled));
+                payment = id == null ? null : new Payment(id, null);
+            }
+            default -> {
+            }
+        }
+        // Nothing to work on yet (start of the run, or the pool drained): authorize instead
+        if (payment == null) {
+            actual = Endpoint.AUTHORIZE;
+            payment = new Payment(null, "lt-" + runId + "-" + sequence.incrementAndGet());
+        }
+
+        HttpRequest request = request(actual, payment);
+        Endpoint recordedAs = actual;
+        Payment target = payment;
+        long sent = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> {
+                    long now = System.nanoTime();
+                    inFlight.release();
+                    boolean ok = failure == null && response.statusCode() / 100 == 2;
+                    if (ok) {
+                        advance(recordedAs, target, response.body());
+                    }
+                    if (measured && !closed) {
+                        record(recordedAs, intended, sent, now, !ok);
+                    }
+                });
+    }
+
+    private HttpRequest request(Endpoint endpoint, Payment payment) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(config.requestTimeout());
+        return switch (endpoint) {
+            case AUTHORIZE -> {
+                String body = "{\"amount\":25.00,\"currency\":\"USD\",\"idempotencyKey\":\"" + payment.idempotencyKey()
+                        + "\",\"metadata\":{\"source\":\"loadtest\"}}";
+                yield builder.uri(baseUri.resolve("/payments/authorize"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            }
+            case CAPTURE -> builder.uri(baseUri.resolve("/payments/" + payment.id() + "/capture"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            case REFUND -> builder.uri(baseUri.resolve("/payments/" + payment.id() + "/refund"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            case GET -> builder.uri(baseUri.resolve("/payments/" + payment.id())).GET().build();
+            case WEBHOOK -> {
+                String payload = webhookPayload(payment);
+                yield builder.uri(baseUri.resolve("/payments/webhooks/stripe"))
+                        .header("Content-Type", "application/json")
+                        .header("Stripe-Signature", signer.signatureHeader(payload))
+                        .POST(HttpRequest.BodyPublishers.ofString(payload))
+                        .build();
+            }
+        };
+    }
+
+    /*
+     * The mock gateway derives the PSP id from the idempotency key (mock_ + name UUID of the key), so the
+     * event can name the payment without another round trip.
+     */
+    private String webhookPayload(Payment payment) {
+        String externalId = "mock_" + UUID.nameUUIDFromBytes(payment.idempotencyKey().getBytes(StandardCharsets.UTF_8));
+        return "{\"id\":\"evt_lt_" + UUID.randomUUID() + "\",\"object\":\"event\",\"type\":\"payment_intent.succeeded\","
+                + "\"data\":{\"object\":{\"id\":\"" + externalId + "\",\"object\":\"payment_intent\"}}}";
+    }
+
+    // Moves the payment to the pool of its next call
+    private void advance(Endpoint endpoint, Payment payment, String body) {
+        switch (endpoint) {
+            case AUTHORIZE -> {
+                String id = field(body, "id");
+                if (id != null && "AUTHORIZED".equals(field(body, "status"))) {
+                    authorized.add(new Payment(id, payment.idempotencyKey()));
+                    recent.set((int) (recentCursor.getAndIncrement() % RECENT_PAYMENTS), id);
+                }
+            }
+            case CAPTURE -> captured.add(payment);
+            // a payment captured by the webhook is applied asynchronously; it leaves the pools
+            default -> {
+            }
+        }
+    }
+
+    private void record(Endpoint endpoint, long intended, long now, boolean error) {
+        record(endpoint, intended, now, now, error);
+    }
+
+    private void record(Endpoint endpoint, long intended, long sent, long now, boolean error) {
+        long correctedMicros = (now - intended) / 1_000;
+        long serviceMicros = (now - sent) / 1_000;
+        recorders.get(endpoint).record(correctedMicros, serviceMicros, error);
+        all.record(correctedMicros, serviceMicros, error);
+    }
+
+    private String field(String body, String name) {
+        try {
+            JsonNode node = mapper.readTree(body).get(name);
+            return node == null || node.isNull() ? null : node.asText();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static Endpoint[] mixTable(Map<Endpoint, Integer> mix) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        Endpoint[] table = new Endpoint[total];
+        int i = 0;
+        for (Map.Entry<Endpoint, Integer> weight : mix.entrySet()) {
+            for (int w = 0; w < weight.getValue(); w++) {
+                table[i++] = weight.getKey();
+            }
+        }
+        return table;
+    }
+}
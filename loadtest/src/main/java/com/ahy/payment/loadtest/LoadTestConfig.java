@@ -0,0 +1,126 @@
+package com.ahy.payment.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line of the load generator, {@code --name=value} each (see README.md). Arguments starting with
+ * {@code --app.} are passed to the in-process service without the prefix, e.g.
+ * {@code --app.payments.mock.authorize.latency=normal(80ms, 20ms)}.
+ */
+record LoadTestConfig(String target,
+                      double rate,
+                      Duration duration,
+                      Duration warmup,
+                      boolean poisson,
+                      long seed,
+                      int maxInFlight,
+                      Duration requestTimeout,
+                      Map<Endpoint, Integer> mix,
+                      String webhookSecret,
+                      String resultFile,
+                      List<Slo> slos,
+                      List<String> appArgs) {
+
+    static final String DEFAULT_MIX = "authorize=40,capture=20,refund=10,get=20,webhook=10";
+
+    /**
+     * A threshold the run must stay within, e.g. {@code --slo.authorize.p99=250ms}, {@code --slo.all.max=2s}
+     * or {@code --slo.all.errorRate=0.01}. Percentiles are p50, p90, p99, p999 (99.9th) and max, on the
+     * coordinated-omission-corrected latencies.
+     *
+     * @param endpoint null for all endpoints together
+     * @param limit    microseconds for latencies, a fraction for errorRate
+     */
+    record Slo(Endpoint endpoint, String metric, double limit, String text) {
+
+        static Slo parse(String key, String value) {
+            String[] parts = key.split("\\.");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected --slo.<endpoint|all>.<p50|p90|p99|p999|max|errorRate>: --slo." + key);
+            }
+            Endpoint endpoint = parts[0].equalsIgnoreCase("all") ? null : Endpoint.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            String metric = parts[1];
+            double limit = switch (metric) {
+                case "errorRate" -> Double.parseDouble(value);
+                case "p50", "p90", "p99", "p999", "max" -> DurationStyle.detectAndParse(value).toNanos() / 1_000.0;
+                default -> throw new IllegalArgumentException("Unknown SLO metric '" + metric + "' in --slo." + key);
+            };
+            return new Slo(endpoint, metric, limit, key + " <= " + value);
+        }
+    }
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<Slo> slos = new ArrayList<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got '" + arg + "'");
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("app.")) {
+                appArgs.add("--" + name.substring(4) + "=" + value);
+            } else if (name.startsWith("slo.")) {
+                slos.add(Slo.parse(name.substring(4), value));
+            } else {
+                options.put(name, value);
+            }
+        }
+
+        LoadTestConfig config = new LoadTestConfig(
+                options.remove("target"),
+                Double.parseDouble(options.getOrDefault("rate", "200")),
+                duration(options.getOrDefault("duration", "60s")),
+                duration(options.getOrDefault("warmup", "10s")),
+                switch (options.getOrDefault("arrivals", "constant")) {
+                    case "constant" -> false;
+                    case "poisson" -> true;
+                    default -> throw new IllegalArgumentException("--arrivals is constant or poisson");
+                },
+                Long.parseLong(options.getOrDefault("seed", "1")),
+                Integer.parseInt(options.getOrDefault("maxInFlight", "10000")),
+                duration(options.getOrDefault("requestTimeout", "30s")),
+                mix(options.getOrDefault("mix", DEFAULT_MIX)),
+                options.getOrDefault("webhookSecret", "whsec_loadtest"),
+                options.getOrDefault("result", "loadtest-result.json"),
+                List.copyOf(slos),
+                List.copyOf(appArgs));
+
+        for (String known : List.of("rate", "duration", "warmup", "arrivals", "seed", "maxInFlight", "requestTimeout",
+                "mix", "webhookSecret", "result")) {
+            options.remove(known);
+        }
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+        if (config.rate() <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+        }
+        return config;
+    }
+
+    private static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+
+    private static Map<Endpoint, Integer> mix(String value) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String entry : value.split(",")) {
+            String[] weight = entry.trim().split("=");
+            mix.put(Endpoint.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        if (mix.getOrDefault(Endpoint.AUTHORIZE, 0) <= 0) {
+            throw new IllegalArgumentException("--mix needs a positive authorize weight; every other call works on authorized payments");
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ahy.payment.loadtest;
+
+import com.ahy.payment.PaymentServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs a load test and exits non-zero when an SLO is breached, so a CI job can gate on it. Without
+ * {@code --target} the service is started in this JVM on a free port, with the mock gateway and an
+ * in-memory H2 database; {@code --app.*} arguments override its properties.
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+
+        ConfigurableApplicationContext app = null;
+        URI target;
+        if (config.target() == null) {
+            app = start(config);
+            target = URI.create("http://localhost:" + app.getEnvironment().getProperty("local.server.port"));
+        } else {
+            target = URI.create(config.target());
+        }
+
+        LoadTestReport report;
+        try {
+            System.out.printf("Load: %.1f req/s (%s arrivals) against %s, %s warmup + %s measured, mix %s%n",
+                    config.rate(), config.poisson() ? "poisson" : "constant", target, config.warmup(),
+                    config.duration(), config.mix());
+            LoadGenerator generator = new LoadGenerator(config, target);
+            generator.run();
+            report = LoadTestReport.of(generator, config.slos());
+            if (generator.shed() > 0) {
+                System.out.println(generator.shed() + " requests found no in-flight slot within the request timeout");
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+
+        System.out.print(report.table());
+        report.write(Path.of(config.resultFile()));
+        System.out.println("Results written to " + config.resultFile());
+        System.exit(report.passed() ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext start(LoadTestConfig config) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("payments.stripe.webhookSecret", config.webhookSecret());
+        properties.put("payments.recovery.enabled", "false");
+        // a repeated command-line option would be joined with commas, so --app.* replaces the default instead
+        for (String arg : config.appArgs()) {
+            properties.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        String[] args = properties.entrySet().stream().map(p -> "--" + p.getKey() + "=" + p.getValue()).toArray(String[]::new);
+        return new SpringApplicationBuilder(PaymentServiceApplication.class)
+                .profiles("mock")
+                .run(args);
+    }
+}
@@ -0,0 +1,129 @@
+package com.ahy.payment.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of a run: per endpoint and overall, the request count, error rate, throughput and the
+ * coordinated-omission-corrected latency percentiles (microseconds), with the uncorrected service time
+ * alongside; and the SLOs that were breached.
+ */
+record LoadTestReport(double measuredSeconds, Map<String, EndpointSummary> endpoints, List<String> violations) {
+
+    static final String ALL = "all";
+
+    record EndpointSummary(long count,
+                           long errors,
+                           double throughput,  // completed requests per second
+                           long p50,
+                           long p90,
+                           long p99,
+                           long p999,
+                           long max,
+                           long serviceTimeP50,
+                           long serviceTimeP99) {
+
+        static EndpointSummary of(LoadGenerator.Recorder recorder, double seconds) {
+            LatencyHistogram corrected = recorder.corrected;
+            LatencyHistogram serviceTime = recorder.serviceTime;
+            return new EndpointSummary(corrected.count(), recorder.errors.sum(), corrected.count() / seconds,
+                    corrected.valueAtPercentile(50), corrected.valueAtPercentile(90),
+                    corrected.valueAtPercentile(99), corrected.valueAtPercentile(99.9), corrected.max(),
+                    serviceTime.valueAtPercentile(50), serviceTime.valueAtPercentile(99));
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+
+        double metric(String name) {
+            return switch (name) {
+                case "p50" -> p50;
+                case "p90" -> p90;
+                case "p99" -> p99;
+                case "p999" -> p999;
+                case "max" -> max;
+                case "errorRate" -> errorRate();
+                default -> throw new IllegalArgumentException("Unknown SLO metric " + name);
+            };
+        }
+    }
+
+    static LoadTestReport of(LoadGenerator generator, List<LoadTestConfig.Slo> slos) {
+        double seconds = generator.measuredNanos() / 1e9;
+        Map<String, EndpointSummary> endpoints = new LinkedHashMap<>();
+        generator.recorders().forEach((endpoint, recorder) -> endpoints.put(name(endpoint), EndpointSummary.of(recorder, seconds)));
+        endpoints.put(ALL, EndpointSummary.of(generator.all(), seconds));
+        List<String> violations = new ArrayList<>(evaluate(endpoints, slos));
+        // unanswered requests have no latency to compare, but a run with them cannot pass
+        if (generator.unfinished() > 0) {
+            violations.add(generator.unfinished() + " requests still unanswered at the end of the run");
+        }
+        return new LoadTestReport(seconds, endpoints, List.copyOf(violations));
+    }
+
+    /*
+     * An SLO on an endpoint that received no requests is not a pass: it is reported, since the run did not
+     * show what the SLO asks about.
+     */
+    static List<String> evaluate(Map<String, EndpointSummary> endpoints, List<LoadTestConfig.Slo> slos) {
+        List<String> violations = new ArrayList<>();
+        for (LoadTestConfig.Slo slo : slos) {
+            EndpointSummary summary = endpoints.get(slo.endpoint() == null ? ALL : name(slo.endpoint()));
+            if (summary == null || summary.count() == 0) {
+                violations.add(slo.text() + ": no requests measured");
+                continue;
+            }
+            double actual = summary.metric(slo.metric());
+            if (actual > slo.limit()) {
+                String shown = slo.metric().equals("errorRate")
+                        ? String.format(Locale.ROOT, "%.4f", actual)
+                        : millis((long) actual);
+                violations.add(slo.text() + ": was " + shown);
+            }
+        }
+        return List.copyOf(violations);
+    }
+
+    boolean passed() {
+        return violations.isEmpty();
+    }
+
+    String table() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "Measured %.1fs; latency from the intended start (corrected), service time from the send%n",
+                measuredSeconds));
+        out.append(String.format(Locale.ROOT, "%-10s %8s %7s %8s %9s %9s %9s %9s %9s %11s %11s%n", "endpoint", "count",
+                "errors", "req/s", "p50", "p90", "p99", "p99.9", "max", "svc p50", "svc p99"));
+        endpoints.forEach((name, s) -> out.append(String.format(Locale.ROOT,
+                "%-10s %8d %6.2f%% %8.1f %9s %9s %9s %9s %9s %11s %11s%n", name, s.count(), s.errorRate() * 100,
+                s.throughput(), millis(s.p50()), millis(s.p90()), millis(s.p99()), millis(s.p999()), millis(s.max()),
+                millis(s.serviceTimeP50()), millis(s.serviceTimeP99()))));
+        if (violations.isEmpty()) {
+            out.append("SLOs met").append(System.lineSeparator());
+        } else {
+            violations.forEach(v -> out.append("SLO breached: ").append(v).append(System.lineSeparator()));
+        }
+        return out.toString();
+    }
+
+    void write(Path file) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+    }
+
+    private static String name(Endpoint endpoint) {
+        return endpoint.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ahy.payment.loadtest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Stripe-Signature header for a payload, computed the way Stripe does (and StripeWebhookE2ETest does):
+ * HMAC-SHA256 over {@code <timestamp>.<payload>} with the endpoint secret.
+ */
+final class WebhookSigner {
+
+    private final SecretKeySpec key;
+
+    WebhookSigner(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    String signatureHeader(String payload) {
+        long timestamp = System.currentTimeMillis() / 1000L;
+        try {
+            // Mac instances are not thread-safe; one per call is cheap next to the HTTP round trip
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+            return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 unavailable", ex);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ahy.payment.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000_000L);
+        for (int v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.valueAtPercentile(50)).isEqualTo(50);
+        assertThat(histogram.valueAtPercentile(99)).isEqualTo(99);
+        assertThat(histogram.valueAtPercentile(100)).isEqualTo(100);
+        assertThat(histogram.max()).isEqualTo(100);
+        assertThat(histogram.mean()).isCloseTo(50.5, within(1e-9));
+    }
+
+    @Test
+    void percentiles_stayWithinATenthOfAPercent_neverBelow() {
+        LatencyHistogram histogram = new LatencyHistogram(3_600_000_000L);
+        SplittableRandom random = new SplittableRandom(3);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // microseconds from 100us to about 20s, heavy-tailed
+            values[i] = (long) (100 / Math.pow(1 - random.nextDouble(), 1.2));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertThat(histogram.valueAtPercentile(percentile))
+                    .isGreaterThanOrEqualTo(exact)
+                    .isLessThanOrEqualTo(exact + exact / 1000 + 1);
+        }
+        assertThat(histogram.max()).isEqualTo(values[values.length - 1]);
+    }
+
+    @Test
+    void valuesAboveTheRange_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(10_000);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+
+        assertThat(histogram.valueAtPercentile(0)).isZero();
+        assertThat(histogram.max()).isEqualTo(10_000);
+        assertThat(histogram.valueAtPercentile(100)).isEqualTo(10_000);
+    }
+}
@@ -0,0 +1,64 @@
+package com.ahy.payment.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadTestReportTest {
+
+    @Test
+    void options_areParsed_andAppPropertiesPassedThrough() {
+        LoadTestConfig config = LoadTestConfig.parse(new String[]{
+                "--rate=500", "--duration=2m", "--arrivals=poisson", "--mix=authorize=3,get=1",
+                "--slo.authorize.p99=250ms", "--slo.all.errorRate=0.01",
+                "--app.payments.mock.authorize.latency=normal(80ms, 20ms)"});
+
+        assertThat(config.rate()).isEqualTo(500);
+        assertThat(config.duration()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(config.poisson()).isTrue();
+        assertThat(config.mix()).containsOnly(Map.entry(Endpoint.AUTHORIZE, 3), Map.entry(Endpoint.GET, 1));
+        assertThat(config.slos()).containsExactly(
+                new LoadTestConfig.Slo(Endpoint.AUTHORIZE, "p99", 250_000, "authorize.p99 <= 250ms"),
+                new LoadTestConfig.Slo(null, "errorRate", 0.01, "all.errorRate <= 0.01"));
+        assertThat(config.appArgs()).containsExactly("--payments.mock.authorize.latency=normal(80ms, 20ms)");
+        assertThat(config.target()).isNull();
+    }
+
+    @Test
+    void invalidOptions_areRejected() {
+        assertThatThrownBy(() -> LoadTestConfig.parse(new String[]{"--rtae=5"})).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LoadTestConfig.parse(new String[]{"--mix=get=1"})).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LoadTestConfig.parse(new String[]{"--slo.all.p95=1s"})).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void slos_areCheckedAgainstTheirEndpoint() {
+        Map<String, LoadTestReport.EndpointSummary> endpoints = new LinkedHashMap<>();
+        endpoints.put("authorize", summary(1000, 0, 300_000));
+        endpoints.put("get", summary(1000, 20, 40_000));
+        endpoints.put("refund", summary(0, 0, 0));
+        endpoints.put(LoadTestReport.ALL, summary(2000, 20, 290_000));
+
+        List<String> violations = LoadTestReport.evaluate(endpoints, List.of(
+                LoadTestConfig.Slo.parse("authorize.p99", "250ms"),
+                LoadTestConfig.Slo.parse("get.p99", "250ms"),
+                LoadTestConfig.Slo.parse("all.errorRate", "0.005"),
+                LoadTestConfig.Slo.parse("all.errorRate", "0.02"),
+                LoadTestConfig.Slo.parse("refund.max", "1s")));
+
+        assertThat(violations).containsExactly(
+                "authorize.p99 <= 250ms: was 300.0ms",
+                "all.errorRate <= 0.005: was 0.0100",
+                "refund.max <= 1s: no requests measured");
+    }
+
+    private static LoadTestReport.EndpointSummary summary(long count, long errors, long p99) {
+        return new LoadTestReport.EndpointSummary(count, errors, count / 10.0, p99 / 4, p99 / 2, p99, p99, p99, p99 / 4, p99);
+    }
+}